@@ -0,0 +1,143 @@
+package n10s;
+
+import static n10s.RDFToLPGStatementProcessor.LABEL;
+import static n10s.RDFToLPGStatementProcessor.PROPERTY;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import n10s.benchmarks.SyntheticData;
+import n10s.graphconfig.GraphConfig;
+import n10s.graphconfig.RDFParserConfig;
+import n10s.utils.NsPrefixMap;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Literal;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.vocabulary.RDF;
+import org.neo4j.logging.NullLog;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * The mapping of each parsed statement to nodes, labels, properties and relationships, without
+ * writing anything: {@link RDFToLPGStatementProcessor#handleStatement}, and the IRI shortening and
+ * literal conversion it spends most of its time in.
+ * <p>
+ * Each invocation goes through the whole set of statements (or IRIs, or literals) generated in the
+ * setup, so the scores are per statement.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class StatementMappingBenchmark {
+
+  private static final int STATEMENTS = 100_000;
+
+  @Param({"SHORTEN", "KEEP", "IGNORE"})
+  public String handleVocabUris;
+
+  @Param({"false", "true"})
+  public boolean keepLangTagAndCustomDataTypes;
+
+  private List<Statement> statements;
+  private IRI[] iris;
+  private int[] elementTypes;
+  private Statement[] literalStatements;
+  private MappingOnlyProcessor processor;
+
+  @Setup(Level.Trial)
+  public void generate() {
+    SyntheticData data = new SyntheticData(42);
+    statements = data.statements(STATEMENTS);
+    iris = new IRI[STATEMENTS];
+    elementTypes = new int[STATEMENTS];
+    for (int i = 0; i < STATEMENTS; i++) {
+      Statement st = statements.get(i);
+      boolean type = st.getPredicate().equals(RDF.TYPE);
+      iris[i] = type ? (IRI) st.getObject() : st.getPredicate();
+      elementTypes[i] = type ? LABEL : PROPERTY;
+    }
+    literalStatements = data.literalStatements(STATEMENTS).toArray(new Statement[0]);
+  }
+
+  /**
+   * A new processor per iteration, so the iri translation cache and the prefixes start empty.
+   */
+  @Setup(Level.Iteration)
+  public void newProcessor() throws Exception {
+    Map<String, Object> params = new HashMap<>();
+    params.put("handleVocabUris", handleVocabUris);
+    params.put("keepLangTag", keepLangTagAndCustomDataTypes);
+    params.put("keepCustomDataTypes", keepLangTagAndCustomDataTypes);
+    params.put("commitSize", 25_000L);
+    processor = new MappingOnlyProcessor(
+        new RDFParserConfig(params, new GraphConfig(params)));
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(STATEMENTS)
+  public void handleStatement() {
+    for (Statement st : statements) {
+      processor.handleStatement(st);
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(STATEMENTS)
+  public void handleIRI(Blackhole bh) {
+    for (int i = 0; i < iris.length; i++) {
+      bh.consume(processor.handleIRI(iris[i], elementTypes[i]));
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(STATEMENTS)
+  public void getObjectValue(Blackhole bh) {
+    for (Statement st : literalStatements) {
+      bh.consume(processor.getObjectValue(st.getPredicate(), (Literal) st.getObject()));
+    }
+  }
+
+  /**
+   * Maps the statements and drops them on every partial commit, as the DB stays out of the
+   * measurement. Starts with no namespace prefixes defined, as on an empty DB.
+   */
+  static class MappingOnlyProcessor extends RDFToLPGStatementProcessor {
+
+    MappingOnlyProcessor(RDFParserConfig conf) {
+      super(null, null, conf, NullLog.getInstance());
+      namespaces = new NsPrefixMap();
+    }
+
+    @Override
+    protected void periodicOperation() {
+      statements.clear();
+      resourceLabels.clear();
+      resourceProps.clear();
+      relProps.clear();
+      totalTriplesMapped += mappedTripleCounter;
+      mappedTripleCounter = 0;
+    }
+
+    @Override
+    public void endRDF() {
+      periodicOperation();
+    }
+  }
+}
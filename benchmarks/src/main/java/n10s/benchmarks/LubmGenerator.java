@@ -0,0 +1,214 @@
+package n10s.benchmarks;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates a university dataset following the LUBM benchmark (the Lehigh University Benchmark,
+ * univ-bench ontology): universities made of departments, each with its faculty, students,
+ * courses, publications and research groups, linked the way LUBM links them and with the same
+ * numbers of each (so LUBM(1) is in the order of 100K triples, and size grows linearly with the
+ * number of universities).
+ * <p>
+ * Written as N-Triples, or as N-Quads with the triples of each department in a named graph of its
+ * own. The same seed and number of universities always give the same data.
+ */
+public class LubmGenerator {
+
+  public static final String UB = "http://swat.cse.lehigh.edu/onto/univ-bench.owl#";
+  private static final String RDF_TYPE = "<http://www.w3.org/1999/02/22-rdf-syntax-ns#type>";
+  private static final String[] RESEARCH_AREAS = {"Artificial Intelligence", "Databases",
+      "Networks", "Theory", "Graphics", "Programming Languages", "Operating Systems",
+      "Security", "Bioinformatics", "Human Computer Interaction", "Robotics", "Compilers"};
+
+  private final long seed;
+  private final int universities;
+
+  private Random random;
+  private Writer out;
+  private String graph;
+  private long triples;
+
+  public LubmGenerator(long seed, int universities) {
+    this.seed = seed;
+    this.universities = universities;
+  }
+
+  /**
+   * @return the number of triples written
+   */
+  public long writeNTriples(Path file) throws IOException {
+    return write(file, false);
+  }
+
+  /**
+   * @return the number of quads written
+   */
+  public long writeNQuads(Path file) throws IOException {
+    return write(file, true);
+  }
+
+  private long write(Path file, boolean quads) throws IOException {
+    random = new Random(seed);
+    triples = 0;
+    graph = null;
+    try (Writer writer = new BufferedWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8),
+        1 << 16)) {
+      out = writer;
+      for (int u = 0; u < universities; u++) {
+        university(u, quads);
+      }
+    } finally {
+      out = null;
+    }
+    return triples;
+  }
+
+  private void university(int u, boolean quads) throws IOException {
+    String university = "http://www.University" + u + ".edu";
+    graph = quads ? university : null;
+    type(university, "University");
+    literal(university, "name", "University" + u);
+    int departments = between(15, 25);
+    for (int d = 0; d < departments; d++) {
+      String department = "http://www.Department" + d + ".University" + u + ".edu";
+      graph = quads ? department : null;
+      department(department, d, university);
+    }
+  }
+
+  private void department(String department, int d, String university) throws IOException {
+    type(department, "Department");
+    literal(department, "name", "Department" + d);
+    relationship(department, "subOrganizationOf", university);
+
+    for (int g = between(10, 20) - 1; g >= 0; g--) {
+      String group = department + "/ResearchGroup" + g;
+      type(group, "ResearchGroup");
+      relationship(group, "subOrganizationOf", department);
+    }
+
+    List<String> faculty = new ArrayList<>();
+    List<String> professors = new ArrayList<>();
+    List<String> courses = new ArrayList<>();
+    List<String> graduateCourses = new ArrayList<>();
+    String[] ranks = {"FullProfessor", "AssociateProfessor", "AssistantProfessor", "Lecturer"};
+    int[][] sizes = {{7, 10}, {10, 14}, {8, 11}, {5, 7}};
+    int[][] publications = {{15, 20}, {10, 18}, {5, 10}, {0, 5}};
+    for (int r = 0; r < ranks.length; r++) {
+      int count = between(sizes[r][0], sizes[r][1]);
+      for (int i = 0; i < count; i++) {
+        String member = department + "/" + ranks[r] + i;
+        person(member, ranks[r], ranks[r] + i, department);
+        relationship(member, "worksFor", department);
+        literal(member, "researchInterest", RESEARCH_AREAS[random.nextInt(RESEARCH_AREAS.length)]);
+        for (String degree : new String[]{"undergraduateDegreeFrom", "mastersDegreeFrom",
+            "doctoralDegreeFrom"}) {
+          relationship(member, degree, "http://www.University" + random.nextInt(1000) + ".edu");
+        }
+        if (r == 0 && i == 0) {
+          relationship(member, "headOf", department);
+        }
+        for (int c = between(1, 2); c > 0; c--) {
+          String course = department + "/Course" + courses.size();
+          courses.add(course);
+          type(course, "Course");
+          literal(course, "name", "Course" + (courses.size() - 1));
+          relationship(member, "teacherOf", course);
+        }
+        for (int c = between(1, 2); c > 0; c--) {
+          String course = department + "/GraduateCourse" + graduateCourses.size();
+          graduateCourses.add(course);
+          type(course, "GraduateCourse");
+          literal(course, "name", "GraduateCourse" + (graduateCourses.size() - 1));
+          relationship(member, "teacherOf", course);
+        }
+        for (int p = between(publications[r][0], publications[r][1]) - 1; p >= 0; p--) {
+          String publication = member + "/Publication" + p;
+          type(publication, "Publication");
+          literal(publication, "name", "Publication" + p);
+          relationship(publication, "publicationAuthor", member);
+        }
+        faculty.add(member);
+        if (r < 3) {
+          professors.add(member);
+        }
+      }
+    }
+
+    int undergraduates = faculty.size() * between(8, 14);
+    for (int i = 0; i < undergraduates; i++) {
+      String student = department + "/UndergraduateStudent" + i;
+      person(student, "UndergraduateStudent", "UndergraduateStudent" + i, department);
+      relationship(student, "memberOf", department);
+      for (int c = between(2, 4); c > 0; c--) {
+        relationship(student, "takesCourse", courses.get(random.nextInt(courses.size())));
+      }
+      if (random.nextInt(5) == 0) {
+        relationship(student, "advisor", professors.get(random.nextInt(professors.size())));
+      }
+    }
+
+    int graduates = faculty.size() * between(3, 4);
+    for (int i = 0; i < graduates; i++) {
+      String student = department + "/GraduateStudent" + i;
+      person(student, "GraduateStudent", "GraduateStudent" + i, department);
+      relationship(student, "memberOf", department);
+      relationship(student, "undergraduateDegreeFrom",
+          "http://www.University" + random.nextInt(1000) + ".edu");
+      relationship(student, "advisor", professors.get(random.nextInt(professors.size())));
+      for (int c = between(1, 3); c > 0; c--) {
+        relationship(student, "takesCourse",
+            graduateCourses.get(random.nextInt(graduateCourses.size())));
+      }
+      if (random.nextInt(4) == 0) {
+        type(student, "TeachingAssistant");
+        relationship(student, "teachingAssistantOf", courses.get(random.nextInt(courses.size())));
+      }
+    }
+  }
+
+  private void person(String person, String type, String name, String department)
+      throws IOException {
+    type(person, type);
+    literal(person, "name", name);
+    literal(person, "emailAddress",
+        name + "@" + department.substring("http://www.".length()));
+    literal(person, "telephone", "xxx-xxx-" + String.format("%04d", random.nextInt(10_000)));
+  }
+
+  private void type(String subject, String type) throws IOException {
+    write("<" + subject + "> " + RDF_TYPE + " <" + UB + type + ">");
+  }
+
+  private void relationship(String subject, String property, String object) throws IOException {
+    write("<" + subject + "> <" + UB + property + "> <" + object + ">");
+  }
+
+  // the values generated need no escaping
+  private void literal(String subject, String property, String value) throws IOException {
+    write("<" + subject + "> <" + UB + property + "> \"" + value + "\"");
+  }
+
+  private void write(String triple) throws IOException {
+    out.write(triple);
+    if (graph != null) {
+      out.write(" <");
+      out.write(graph);
+      out.write('>');
+    }
+    out.write(" .\n");
+    triples++;
+  }
+
+  private int between(int min, int max) {
+    return min + random.nextInt(max - min + 1);
+  }
+}
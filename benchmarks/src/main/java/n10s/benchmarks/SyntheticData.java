@@ -0,0 +1,341 @@
+package n10s.benchmarks;
+
+import static n10s.graphconfig.Params.CUSTOM_DATA_TYPE_SEPERATOR;
+import static n10s.graphconfig.Params.PREFIX_SEPARATOR;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import n10s.graphconfig.GraphConfig;
+import n10s.utils.NsPrefixMap;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Literal;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.model.vocabulary.RDF;
+import org.eclipse.rdf4j.model.vocabulary.XMLSchema;
+
+/**
+ * Generates triples, and the property names and values an import of them leaves in the graph,
+ * shaped like those of a real dataset (DBpedia like): a few vocabularies hold most of the
+ * predicates and a long tail of them holds the rest, predicates are used following a Zipf
+ * distribution, each predicate always has the same kind of object, and literals mix plain and
+ * language tagged strings, numbers, dates, datetimes in their various lexical forms, booleans and
+ * custom datatypes.
+ * <p>
+ * The same seed always gives the same data.
+ */
+public class SyntheticData {
+
+  public static final String RESOURCE_NS = "http://dbpedia.org/resource/";
+
+  // most used first
+  private static final String[] VOCABULARIES = {
+      "http://dbpedia.org/ontology/", "http://dbpedia.org/property/", "http://schema.org/",
+      "http://xmlns.com/foaf/0.1/", "http://www.w3.org/2000/01/rdf-schema#",
+      "http://purl.org/dc/terms/", "http://www.w3.org/2004/02/skos/core#",
+      "http://www.wikidata.org/prop/direct/", "http://www.w3.org/2003/01/geo/wgs84_pos#",
+      "http://www.w3.org/2002/07/owl#"};
+  private static final int LONG_TAIL_VOCABULARIES = 200;
+  private static final int PREDICATES = 2_000;
+  private static final int CLASSES = 300;
+  private static final int RESOURCES = 100_000;
+  private static final String[] LANGUAGES = {"en", "de", "fr", "es", "it", "ja", "ru", "pt",
+      "zh", "nl"};
+  private static final String[] CUSTOM_DATATYPES = {
+      "http://dbpedia.org/datatype/squareKilometre", "http://dbpedia.org/datatype/kilometre",
+      "http://dbpedia.org/datatype/euro",
+      "http://dbpedia.org/datatype/inhabitantsPerSquareKilometre"};
+  private static final String[] WORDS = {"name", "birth", "date", "place", "population", "area",
+      "member", "country", "city", "label", "type", "genre", "author", "year", "total", "elevation",
+      "language", "leader", "party", "team", "height", "weight", "founded", "owner", "capital",
+      "currency", "river", "length", "time", "zone", "title", "record", "code", "number",
+      "club", "position", "death", "spouse", "child", "parent", "award", "work", "subject",
+      "abstract", "comment", "longitude", "latitude", "website", "image"};
+
+  // the kind of object of each predicate
+  private static final int RESOURCE = 0;
+  private static final int STRING = 1;
+  private static final int LANG_STRING = 2;
+  private static final int INTEGER = 3;
+  private static final int DOUBLE = 4;
+  private static final int DATE = 5;
+  private static final int DATE_TIME = 6;
+  private static final int BOOLEAN = 7;
+  private static final int CUSTOM = 8;
+  // percentage of the predicates of each kind, in the order above
+  private static final int[] KIND_WEIGHTS = {35, 19, 16, 10, 5, 5, 5, 3, 2};
+  // percentage of the statements that are rdf:type ones
+  private static final int TYPE_STATEMENTS = 10;
+
+  private final ValueFactory vf = SimpleValueFactory.getInstance();
+  private final Random random;
+  private final List<String> namespaces = new ArrayList<>();
+  private final Map<String, String> prefixes;
+  private final IRI[] predicates = new IRI[PREDICATES];
+  private final int[] predicateKinds = new int[PREDICATES];
+  private final IRI[] classes = new IRI[CLASSES];
+  private final Zipf namespaceRank;
+  private final Zipf predicateRank = new Zipf(PREDICATES, 1.1);
+  private final Zipf classRank = new Zipf(CLASSES, 1.0);
+  private final Zipf resourceRank = new Zipf(RESOURCES, 0.8);
+  private final Zipf languageRank = new Zipf(LANGUAGES.length, 1.5);
+
+  public SyntheticData(long seed) {
+    random = new Random(seed);
+    namespaces.addAll(Arrays.asList(VOCABULARIES));
+    for (int i = 0; i < LONG_TAIL_VOCABULARIES; i++) {
+      namespaces.add("http://example.org/vocabularies/v" + i + "/");
+    }
+    namespaceRank = new Zipf(namespaces.size(), 1.2);
+    NsPrefixMap prefixMap = new NsPrefixMap();
+    for (String ns : namespaces) {
+      prefixMap.getPrefixOrAdd(ns, false);
+    }
+    prefixes = prefixMap.getPrefixToNs();
+    for (int i = 0; i < PREDICATES; i++) {
+      predicates[i] = vf.createIRI(namespaces.get(namespaceRank.next(random)), localName(i));
+      predicateKinds[i] = weighted(KIND_WEIGHTS);
+    }
+    for (int i = 0; i < CLASSES; i++) {
+      classes[i] = vf.createIRI(namespaces.get(namespaceRank.next(random)),
+          capitalize(localName(i)));
+    }
+  }
+
+  /**
+   * @return the namespaces of the vocabularies, by prefix (as an import with
+   * handleVocabUris: 'SHORTEN' would define them)
+   */
+  public Map<String, String> prefixes() {
+    return prefixes;
+  }
+
+  public List<Statement> statements(int count) {
+    List<Statement> statements = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      IRI subject = resource();
+      if (random.nextInt(100) < TYPE_STATEMENTS) {
+        statements.add(vf.createStatement(subject, RDF.TYPE, classes[classRank.next(random)]));
+        continue;
+      }
+      int p = predicateRank.next(random);
+      statements.add(vf.createStatement(subject, predicates[p],
+          predicateKinds[p] == RESOURCE ? resource() : literal(predicateKinds[p])));
+    }
+    return statements;
+  }
+
+  /**
+   * @return the namespaces of the IRIs of a dataset, in the order they'd be shortened
+   */
+  public List<String> namespaceSequence(int count) {
+    List<String> sequence = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      sequence.add(random.nextInt(100) < TYPE_STATEMENTS
+          ? classes[classRank.next(random)].getNamespace()
+          : predicates[predicateRank.next(random)].getNamespace());
+    }
+    return sequence;
+  }
+
+  /**
+   * @return (predicate, literal) pairs, as the object of the predicate
+   */
+  public List<Statement> literalStatements(int count) {
+    List<Statement> statements = new ArrayList<>(count);
+    while (statements.size() < count) {
+      int p = predicateRank.next(random);
+      if (predicateKinds[p] != RESOURCE) {
+        statements.add(vf.createStatement(resource(), predicates[p], literal(predicateKinds[p])));
+      }
+    }
+    return statements;
+  }
+
+  /**
+   * @return xsd:dateTime values in the lexical forms found in datasets
+   */
+  public List<String> dateTimes(int count) {
+    List<String> dateTimes = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      dateTimes.add(dateTime());
+    }
+    return dateTimes;
+  }
+
+  /**
+   * @return the values of the properties an import leaves in the graph, as an export reads them
+   */
+  public List<Object> propertyValues(int count) {
+    List<Object> values = new ArrayList<>(count);
+    while (values.size() < count) {
+      int kind = predicateKinds[predicateRank.next(random)];
+      switch (kind) {
+        case RESOURCE:
+          continue;
+        case STRING:
+          values.add(words(1 + random.nextInt(6)));
+          break;
+        case LANG_STRING:
+          values.add(words(1 + random.nextInt(6)) + "@" + language());
+          break;
+        case INTEGER:
+          values.add((long) random.nextInt(10_000_000));
+          break;
+        case DOUBLE:
+          values.add(random.nextDouble() * 1000);
+          break;
+        case DATE:
+          values.add(date());
+          break;
+        case DATE_TIME:
+          values.add(date().atTime(random.nextInt(24), random.nextInt(60), random.nextInt(60)));
+          break;
+        case BOOLEAN:
+          values.add(random.nextBoolean());
+          break;
+        default:
+          values.add(random.nextInt(100_000) / 10.0 + CUSTOM_DATA_TYPE_SEPERATOR
+              + CUSTOM_DATATYPES[random.nextInt(CUSTOM_DATATYPES.length)]);
+      }
+    }
+    return values;
+  }
+
+  /**
+   * @param handleVocabUris how the import named the properties, relationships and labels
+   * @return the names of the properties, relationships and labels of the graph, as an export
+   * reads them
+   */
+  public List<String> elementNames(int count, int handleVocabUris) {
+    Map<String, String> nsToPrefix = new LinkedHashMap<>();
+    prefixes.forEach((prefix, ns) -> nsToPrefix.put(ns, prefix));
+    List<String> names = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      IRI iri = random.nextInt(100) < TYPE_STATEMENTS ? classes[classRank.next(random)]
+          : predicates[predicateRank.next(random)];
+      if (handleVocabUris == GraphConfig.GRAPHCONF_VOC_URI_KEEP) {
+        names.add(iri.stringValue());
+      } else if (handleVocabUris == GraphConfig.GRAPHCONF_VOC_URI_IGNORE) {
+        names.add(iri.getLocalName());
+      } else {
+        names.add(nsToPrefix.get(iri.getNamespace()) + PREFIX_SEPARATOR + iri.getLocalName());
+      }
+    }
+    return names;
+  }
+
+  private IRI resource() {
+    return vf.createIRI(RESOURCE_NS, "Entity_" + resourceRank.next(random));
+  }
+
+  private Literal literal(int kind) {
+    switch (kind) {
+      case STRING:
+        return vf.createLiteral(words(1 + random.nextInt(6)));
+      case LANG_STRING:
+        return vf.createLiteral(words(1 + random.nextInt(6)), language());
+      case INTEGER:
+        return vf.createLiteral(String.valueOf(random.nextInt(10_000_000)), XMLSchema.INTEGER);
+      case DOUBLE:
+        return vf.createLiteral(String.valueOf(random.nextDouble() * 1000), XMLSchema.DOUBLE);
+      case DATE:
+        return vf.createLiteral(date().toString(), XMLSchema.DATE);
+      case DATE_TIME:
+        return vf.createLiteral(dateTime(), XMLSchema.DATETIME);
+      case BOOLEAN:
+        return vf.createLiteral(String.valueOf(random.nextBoolean()), XMLSchema.BOOLEAN);
+      default:
+        return vf.createLiteral(String.valueOf(random.nextInt(100_000) / 10.0),
+            vf.createIRI(CUSTOM_DATATYPES[random.nextInt(CUSTOM_DATATYPES.length)]));
+    }
+  }
+
+  private String dateTime() {
+    LocalDateTime dateTime = date().atTime(random.nextInt(24), random.nextInt(60),
+        random.nextInt(60), random.nextInt(1000) * 1_000_000);
+    String local = String.format("%sT%02d:%02d", dateTime.toLocalDate(), dateTime.getHour(),
+        dateTime.getMinute());
+    switch (random.nextInt(6)) {
+      case 0:
+        // no seconds
+        return local;
+      case 1:
+        return local + String.format(":%02d", dateTime.getSecond());
+      case 2:
+        return local + String.format(":%02dZ", dateTime.getSecond());
+      case 3:
+        return local + String.format(":%02d.%03dZ", dateTime.getSecond(),
+            dateTime.getNano() / 1_000_000);
+      case 4:
+        return local + String.format(":%02d+%02d:00", dateTime.getSecond(), random.nextInt(13));
+      default:
+        return local + String.format(":%02d.%03d-%02d:30", dateTime.getSecond(),
+            dateTime.getNano() / 1_000_000, random.nextInt(10));
+    }
+  }
+
+  private LocalDate date() {
+    return LocalDate.ofEpochDay(random.nextInt(365 * 200) - 365 * 100);
+  }
+
+  private String language() {
+    return LANGUAGES[languageRank.next(random)];
+  }
+
+  private String words(int count) {
+    StringBuilder words = new StringBuilder(capitalize(WORDS[random.nextInt(WORDS.length)]));
+    for (int i = 1; i < count; i++) {
+      words.append(' ').append(WORDS[random.nextInt(WORDS.length)]);
+    }
+    return words.toString();
+  }
+
+  private int weighted(int[] weights) {
+    int r = random.nextInt(Arrays.stream(weights).sum());
+    int i = 0;
+    while (r >= weights[i]) {
+      r -= weights[i++];
+    }
+    return i;
+  }
+
+  private static String localName(int i) {
+    String name = WORDS[i % WORDS.length] + capitalize(WORDS[(i / WORDS.length) % WORDS.length]);
+    return i < WORDS.length * WORDS.length ? name : name + i;
+  }
+
+  private static String capitalize(String word) {
+    return Character.toUpperCase(word.charAt(0)) + word.substring(1);
+  }
+
+  /**
+   * Draws ranks 0..n-1, rank k with a probability proportional to 1 / (k+1)^exponent.
+   */
+  static class Zipf {
+
+    private final double[] cumulative;
+
+    Zipf(int n, double exponent) {
+      cumulative = new double[n];
+      double sum = 0;
+      for (int k = 0; k < n; k++) {
+        sum += 1 / Math.pow(k + 1, exponent);
+        cumulative[k] = sum;
+      }
+    }
+
+    int next(Random random) {
+      int i = Arrays.binarySearch(cumulative,
+          random.nextDouble() * cumulative[cumulative.length - 1]);
+      return i >= 0 ? i : -i - 1;
+    }
+  }
+}
@@ -0,0 +1,330 @@
+package n10s.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.stream.Collectors;
+import n10s.endpoint.RDFEndpoint;
+import n10s.graphconfig.GraphConfigProcedures;
+import n10s.quadrdf.load.QuadRDFLoadProcedures;
+import n10s.rdf.delete.RDFDeleteProcedures;
+import n10s.rdf.export.RDFExportProcedures;
+import n10s.rdf.load.RDFLoadProcedures;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.harness.Neo4j;
+import org.neo4j.harness.Neo4jBuilders;
+
+/**
+ * End to end throughput of the import, delete, export and describe paths, on an in-process DB
+ * (as the tests use) loaded with LUBM data of the scale asked for.
+ * <p>
+ * For each graph config and repetition, a new DB is started and goes through: n10s.rdf.import.fetch
+ * of the whole dataset, n10s.rdf.export.cypher of all the resources, describe requests to the
+ * {@link RDFEndpoint} for a sample of them and n10s.rdf.delete.fetch of the whole dataset. Then
+ * another new DB gets the dataset as quads, with n10s.experimental.quadrdf.import.fetch. The
+ * triples per second of each operation are written as JSON, to compare across versions.
+ * <p>
+ * Options, as key=value arguments: universities (LUBM scale, 1), repetitions (3), describes (1000),
+ * commitSize (25000), configs (comma separated names of {@link #GRAPH_CONFIGS}, all of them),
+ * output (n10s-throughput.json).
+ */
+public class ThroughputHarness {
+
+  private static final long SEED = 42;
+  private static final Map<String, Map<String, Object>> GRAPH_CONFIGS = new LinkedHashMap<>();
+
+  static {
+    GRAPH_CONFIGS.put("shorten", graphConfig("handleVocabUris", "SHORTEN"));
+    GRAPH_CONFIGS.put("keep-labels-and-nodes",
+        graphConfig("handleVocabUris", "KEEP", "handleRDFTypes", "LABELS_AND_NODES"));
+    GRAPH_CONFIGS.put("ignore-multival-array",
+        graphConfig("handleVocabUris", "IGNORE", "handleMultival", "ARRAY"));
+  }
+
+  private final int describes;
+  private final long commitSize;
+  private final HttpClient http = HttpClient.newHttpClient();
+
+  ThroughputHarness(int describes, long commitSize) {
+    this.describes = describes;
+    this.commitSize = commitSize;
+  }
+
+  public static void main(String[] args) throws Exception {
+    Map<String, String> options = new HashMap<>();
+    for (String arg : args) {
+      String[] option = arg.split("=", 2);
+      if (option.length != 2) {
+        throw new IllegalArgumentException("Options are passed as key=value, found: " + arg);
+      }
+      options.put(option[0], option[1]);
+    }
+    int universities = Integer.parseInt(options.getOrDefault("universities", "1"));
+    int repetitions = Integer.parseInt(options.getOrDefault("repetitions", "3"));
+    Path output = Paths.get(options.getOrDefault("output", "n10s-throughput.json"));
+    List<String> configs = options.containsKey("configs")
+        ? Arrays.asList(options.get("configs").split(","))
+        : new ArrayList<>(GRAPH_CONFIGS.keySet());
+    for (String config : configs) {
+      if (!GRAPH_CONFIGS.containsKey(config)) {
+        throw new IllegalArgumentException("Unknown config " + config + ", the configs are: "
+            + GRAPH_CONFIGS.keySet());
+      }
+    }
+    ThroughputHarness harness = new ThroughputHarness(
+        Integer.parseInt(options.getOrDefault("describes", "1000")),
+        Long.parseLong(options.getOrDefault("commitSize", "25000")));
+
+    Path dataDir = Files.createTempDirectory("n10s-throughput");
+    LubmGenerator generator = new LubmGenerator(SEED, universities);
+    Path triples = dataDir.resolve("lubm.nt");
+    Path quads = dataDir.resolve("lubm.nq");
+    Map<String, Object> dataset = new LinkedHashMap<>();
+    dataset.put("generator", "LUBM");
+    dataset.put("universities", universities);
+    dataset.put("triples", generator.writeNTriples(triples));
+    dataset.put("quads", generator.writeNQuads(quads));
+
+    List<Map<String, Object>> results = new ArrayList<>();
+    try {
+      for (String config : configs) {
+        Map<String, List<Measurement>> measurements = new LinkedHashMap<>();
+        for (int i = 0; i < repetitions; i++) {
+          harness.runTriples(GRAPH_CONFIGS.get(config), triples, measurements);
+          harness.runQuads(GRAPH_CONFIGS.get(config), quads, measurements);
+        }
+        measurements.forEach((operation, runs) -> results.add(result(config, operation, runs)));
+      }
+    } finally {
+      Files.deleteIfExists(triples);
+      Files.deleteIfExists(quads);
+      Files.deleteIfExists(dataDir);
+    }
+
+    Map<String, Object> report = new LinkedHashMap<>();
+    report.put("neosemanticsVersion", neosemanticsVersion());
+    report.put("timestamp", Instant.now().toString());
+    report.put("javaVersion", System.getProperty("java.version"));
+    report.put("availableProcessors", Runtime.getRuntime().availableProcessors());
+    report.put("maxHeapBytes", Runtime.getRuntime().maxMemory());
+    report.put("dataset", dataset);
+    report.put("commitSize", harness.commitSize);
+    report.put("repetitions", repetitions);
+    report.put("results", results);
+    new ObjectMapper().writerWithDefaultPrettyPrinter().writeValue(output.toFile(), report);
+    System.out.println("Results written to " + output.toAbsolutePath());
+  }
+
+  private void runTriples(Map<String, Object> graphConfig, Path triples,
+      Map<String, List<Measurement>> measurements) throws Exception {
+    Neo4j neo4j = start();
+    try {
+      GraphDatabaseService db = neo4j.defaultDatabaseService();
+      db.executeTransactionally("CREATE CONSTRAINT n10s_unique_uri "
+          + "ON (r:Resource) ASSERT r.uri IS UNIQUE");
+      db.executeTransactionally("CALL n10s.graphconfig.init($config)",
+          Collections.singletonMap("config", graphConfig));
+      Map<String, Object> params = new HashMap<>();
+      params.put("url", triples.toUri().toString());
+      params.put("params", Collections.singletonMap("commitSize", commitSize));
+
+      measure(measurements, "n10s.rdf.import.fetch", () -> procedure(db,
+          "CALL n10s.rdf.import.fetch($url, 'N-Triples', $params)", params, "triplesLoaded"));
+      measure(measurements, "n10s.rdf.export.cypher", () -> db.executeTransactionally(
+          "CALL n10s.rdf.export.cypher('MATCH (n:Resource) OPTIONAL MATCH (n)-[r]->() "
+              + "RETURN n, r') YIELD subject RETURN count(*) AS triples",
+          Collections.emptyMap(), result -> new Measurement((Long) result.next().get("triples"))));
+      List<String> sample = sample(db);
+      measure(measurements, "RDFEndpoint.describe", () -> describe(neo4j, sample));
+      measure(measurements, "n10s.rdf.delete.fetch", () -> procedure(db,
+          "CALL n10s.rdf.delete.fetch($url, 'N-Triples', $params)", params, "triplesDeleted"));
+    } finally {
+      neo4j.close();
+    }
+  }
+
+  private void runQuads(Map<String, Object> graphConfig, Path quads,
+      Map<String, List<Measurement>> measurements) throws Exception {
+    Neo4j neo4j = start();
+    try {
+      GraphDatabaseService db = neo4j.defaultDatabaseService();
+      db.executeTransactionally("CREATE INDEX ON :Resource(uri)");
+      db.executeTransactionally("CALL n10s.graphconfig.init($config)",
+          Collections.singletonMap("config", graphConfig));
+      Map<String, Object> params = new HashMap<>();
+      params.put("url", quads.toUri().toString());
+      params.put("params", Collections.singletonMap("commitSize", commitSize));
+
+      measure(measurements, "n10s.experimental.quadrdf.import.fetch", () -> procedure(db,
+          "CALL n10s.experimental.quadrdf.import.fetch($url, 'N-Quads', $params)", params,
+          "triplesLoaded"));
+    } finally {
+      neo4j.close();
+    }
+  }
+
+  private static Neo4j start() {
+    return Neo4jBuilders.newInProcessBuilder()
+        .withUnmanagedExtension("/rdf", RDFEndpoint.class)
+        .withProcedure(RDFLoadProcedures.class)
+        .withProcedure(RDFDeleteProcedures.class)
+        .withProcedure(QuadRDFLoadProcedures.class)
+        .withProcedure(RDFExportProcedures.class)
+        .withProcedure(GraphConfigProcedures.class)
+        .build();
+  }
+
+  /**
+   * Runs an import or delete procedure, failing the measurement if it doesn't terminate OK.
+   */
+  private static Measurement procedure(GraphDatabaseService db, String call,
+      Map<String, Object> params, String tripleCountColumn) {
+    return db.executeTransactionally(call, params, result -> {
+      Map<String, Object> row = result.next();
+      if (!"OK".equals(row.get("terminationStatus"))) {
+        throw new IllegalStateException("Terminated " + row.get("terminationStatus") + ": "
+            + row.get("extraInfo"));
+      }
+      Measurement measurement = new Measurement((Long) row.get(tripleCountColumn));
+      measurement.stats = row.get("stats");
+      return measurement;
+    });
+  }
+
+  /**
+   * @return the uris of {@link #describes} resources picked at random
+   */
+  private List<String> sample(GraphDatabaseService db) {
+    List<String> uris = db.executeTransactionally("MATCH (n:Resource) RETURN n.uri AS uri",
+        Collections.emptyMap(), result -> result.<String>columnAs("uri").stream()
+            .collect(Collectors.toList()));
+    Collections.shuffle(uris, new Random(SEED));
+    return uris.subList(0, Math.min(describes, uris.size()));
+  }
+
+  private Measurement describe(Neo4j neo4j, List<String> uris) throws Exception {
+    String describe = neo4j.httpURI().resolve("rdf").toString() + "/neo4j/describe/";
+    long triples = 0;
+    for (String uri : uris) {
+      HttpRequest request = HttpRequest.newBuilder(
+          URI.create(describe + URLEncoder.encode(uri, StandardCharsets.UTF_8)))
+          .header("Accept", "text/plain").GET().build();
+      HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+      if (response.statusCode() != 200) {
+        throw new IllegalStateException("Describe of " + uri + " answered "
+            + response.statusCode());
+      }
+      // one triple per line in N-Triples
+      triples += response.body().lines().filter(line -> !line.isEmpty()).count();
+    }
+    Measurement measurement = new Measurement(triples);
+    measurement.requests = uris.size();
+    return measurement;
+  }
+
+  private static void measure(Map<String, List<Measurement>> measurements, String operation,
+      Operation run) {
+    long start = System.nanoTime();
+    Measurement measurement;
+    try {
+      measurement = run.run();
+    } catch (Exception e) {
+      measurement = new Measurement(0);
+      measurement.error = e.getMessage();
+    }
+    measurement.millis = (System.nanoTime() - start) / 1_000_000;
+    measurements.computeIfAbsent(operation, op -> new ArrayList<>()).add(measurement);
+  }
+
+  private static Map<String, Object> result(String config, String operation,
+      List<Measurement> runs) {
+    Map<String, Object> result = new LinkedHashMap<>();
+    result.put("config", config);
+    result.put("graphConfig", GRAPH_CONFIGS.get(config));
+    result.put("operation", operation);
+    List<Double> throughputs = runs.stream().filter(run -> run.error == null)
+        .map(Measurement::triplesPerSecond).sorted().collect(Collectors.toList());
+    result.put("medianTriplesPerSecond",
+        throughputs.isEmpty() ? null : throughputs.get(throughputs.size() / 2));
+    result.put("runs", runs.stream().map(Measurement::toMap).collect(Collectors.toList()));
+    return result;
+  }
+
+  private static Map<String, Object> graphConfig(String... keysAndValues) {
+    Map<String, Object> config = new LinkedHashMap<>();
+    for (int i = 0; i < keysAndValues.length; i += 2) {
+      config.put(keysAndValues[i], keysAndValues[i + 1]);
+    }
+    return config;
+  }
+
+  private static String neosemanticsVersion() throws IOException {
+    try (InputStream in = ThroughputHarness.class
+        .getResourceAsStream("/META-INF/maven/org.neo4j/neosemantics/pom.properties")) {
+      if (in == null) {
+        return null;
+      }
+      Properties properties = new Properties();
+      properties.load(in);
+      return properties.getProperty("version");
+    }
+  }
+
+  private interface Operation {
+
+    Measurement run() throws Exception;
+  }
+
+  private static class Measurement {
+
+    private final long triples;
+    private long millis;
+    private long requests = 0;
+    private Object stats;
+    private String error;
+
+    Measurement(long triples) {
+      this.triples = triples;
+    }
+
+    double triplesPerSecond() {
+      return millis == 0 ? 0 : triples * 1000.0 / millis;
+    }
+
+    Map<String, Object> toMap() {
+      Map<String, Object> run = new LinkedHashMap<>();
+      run.put("millis", millis);
+      run.put("triples", triples);
+      run.put("triplesPerSecond", triplesPerSecond());
+      if (requests > 0) {
+        run.put("requestsPerSecond", millis == 0 ? 0 : requests * 1000.0 / millis);
+      }
+      if (stats != null) {
+        run.put("stats", stats);
+      }
+      if (error != null) {
+        run.put("error", error);
+      }
+      return run;
+    }
+  }
+}
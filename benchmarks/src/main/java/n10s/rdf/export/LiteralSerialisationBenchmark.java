@@ -0,0 +1,115 @@
+package n10s.rdf.export;
+
+import static n10s.graphconfig.Params.BASE_SCH_NS;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import n10s.benchmarks.SyntheticData;
+import n10s.graphconfig.GraphConfig;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.harness.Neo4j;
+import org.neo4j.harness.Neo4jBuilders;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * The serialisation of the properties of each node and relationship exported: names back to IRIs
+ * ({@link LPGRDFToRDFProcesssor#buildURI}) and values to typed literals
+ * ({@link ExportProcessor#createTypedLiteral}).
+ * <p>
+ * The processor needs a DB for the namespace prefix definition, an in-process one is started with
+ * the prefixes of the synthetic vocabularies defined.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class LiteralSerialisationBenchmark {
+
+  private static final int VALUES = 100_000;
+  // well over this many of the values generated are strings
+  private static final int STRING_VALUES = 20_000;
+
+  @Param({"SHORTEN", "KEEP", "IGNORE"})
+  public String handleVocabUris;
+
+  private Neo4j neo4j;
+  private Transaction tx;
+  private LPGRDFToRDFProcesssor processor;
+  private String[] names;
+  private Object[] values;
+  private String[] stringValues;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    SyntheticData data = new SyntheticData(42);
+    neo4j = Neo4jBuilders.newInProcessBuilder().withDisabledServer().build();
+    GraphDatabaseService db = neo4j.defaultDatabaseService();
+    Map<String, Object> params = new HashMap<>();
+    params.put("prefixes", data.prefixes());
+    db.executeTransactionally("CREATE (n:_NsPrefDef) SET n = $prefixes", params);
+
+    params.clear();
+    params.put("handleVocabUris", handleVocabUris);
+    GraphConfig graphConfig = new GraphConfig(params);
+    tx = db.beginTx();
+    processor = new LPGRDFToRDFProcesssor(db, tx, graphConfig, false);
+
+    names = data.elementNames(VALUES, graphConfig.getHandleVocabUris()).toArray(new String[0]);
+    List<Object> propertyValues = data.propertyValues(VALUES);
+    values = propertyValues.toArray();
+    stringValues = propertyValues.stream().filter(v -> v instanceof String)
+        .limit(STRING_VALUES).toArray(String[]::new);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    tx.close();
+    neo4j.close();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(VALUES)
+  public void buildURI(Blackhole bh) {
+    for (String name : names) {
+      bh.consume(processor.buildURI(BASE_SCH_NS, name));
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(VALUES)
+  public void createTypedLiteral(Blackhole bh) {
+    for (Object value : values) {
+      bh.consume(processor.createTypedLiteral(value));
+    }
+  }
+
+  /**
+   * Only the string values, the only ones that can have a language tag or custom datatype.
+   */
+  @Benchmark
+  @OperationsPerInvocation(STRING_VALUES)
+  public void getLiteralWithTagOrDTIfPresent(Blackhole bh) {
+    for (String value : stringValues) {
+      bh.consume(processor.getLiteralWithTagOrDTIfPresent(value));
+    }
+  }
+}
@@ -0,0 +1,56 @@
+package n10s.utils;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import n10s.benchmarks.SyntheticData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Parsing of xsd:dateTime literals, with and without seconds, fractions of a second and timezone.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class DateUtilsBenchmark {
+
+  private static final int DATE_TIMES = 10_000;
+
+  private String[] dateTimes;
+
+  @Setup(Level.Trial)
+  public void generate() {
+    List<String> generated = new SyntheticData(42).dateTimes(DATE_TIMES);
+    dateTimes = generated.toArray(new String[0]);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(DATE_TIMES)
+  public void parseDateTime(Blackhole bh) {
+    for (String dateTime : dateTimes) {
+      bh.consume(DateUtils.parseDateTime(dateTime));
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(DATE_TIMES)
+  public void parseXsdDateTime(Blackhole bh) {
+    for (String dateTime : dateTimes) {
+      bh.consume(DateUtils.parseXsdDateTime(dateTime));
+    }
+  }
+}
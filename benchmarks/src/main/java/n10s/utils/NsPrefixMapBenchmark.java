@@ -0,0 +1,67 @@
+package n10s.utils;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import n10s.benchmarks.SyntheticData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * {@link NsPrefixMap#getPrefixOrAdd}, called for the namespace of every IRI shortened on import.
+ * Most calls find the prefix already defined, the first one for each namespace adds it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class NsPrefixMapBenchmark {
+
+  private static final int NAMESPACES = 100_000;
+
+  @Param({"false", "true"})
+  public boolean prefixesDefined;
+
+  private String[] namespaces;
+  private NsPrefixMap prefixMap;
+
+  @Setup(Level.Trial)
+  public void generate() {
+    List<String> sequence = new SyntheticData(42).namespaceSequence(NAMESPACES);
+    namespaces = sequence.toArray(new String[0]);
+  }
+
+  /**
+   * Starts from an empty map, or from one with all the namespaces already defined.
+   */
+  @Setup(Level.Invocation)
+  public void newPrefixMap() {
+    prefixMap = new NsPrefixMap();
+    if (prefixesDefined) {
+      for (String ns : namespaces) {
+        prefixMap.getPrefixOrAdd(ns, false);
+      }
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(NAMESPACES)
+  public void getPrefixOrAdd(Blackhole bh) {
+    for (String ns : namespaces) {
+      bh.consume(prefixMap.getPrefixOrAdd(ns, false));
+    }
+  }
+}
@@ -0,0 +1,225 @@
+package n10s;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.file.FileSystems;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPInputStream;
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.ArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.zip.ZipArchiveInputStream;
+import org.apache.commons.io.input.CloseShieldInputStream;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.rio.RDFFormat;
+import org.eclipse.rdf4j.rio.RDFHandler;
+import org.eclipse.rdf4j.rio.RDFHandlerException;
+import org.eclipse.rdf4j.rio.RDFParseException;
+import org.eclipse.rdf4j.rio.RDFParser;
+import org.eclipse.rdf4j.rio.Rio;
+import org.eclipse.rdf4j.rio.helpers.AbstractRDFHandler;
+import org.eclipse.rdf4j.rio.helpers.BasicParserSettings;
+import org.eclipse.rdf4j.rio.helpers.StatementCollector;
+
+/**
+ * Parses all the entries of a zip or tgz (tar.gz) archive matching a glob pattern, as in
+ * {@code file:///data/dump.zip!*.ttl}, as a single import: one startRDF, the statements of every
+ * entry in archive order, one endRDF.
+ * <p>
+ * The archive is read once, as a stream. Small entries are read into memory and parsed in a pool
+ * of threads while the next ones are read; the larger ones are streamed straight to a parser on
+ * the calling thread, so an entry is never held in memory whole. Statements are always passed to
+ * the handler on the calling thread.
+ */
+public class ArchiveEntryParser {
+
+  private static final String ENTRY_SEPARATOR = "!";
+  private static final String GLOB_CHARS = "*?[{";
+  // entries up to this size are parsed in parallel
+  private static final int MAX_BUFFERED_ENTRY = 4 << 20;
+
+  private final RDFFormat format;
+  private final int threads;
+  private final boolean verifyUriSyntax;
+  // null unless blank node ids must be preserved, each entry gets a scope nested in it
+  private final ScopedBNodeValueFactory bnodeScope;
+
+  public ArchiveEntryParser(RDFFormat format, int threads, boolean verifyUriSyntax,
+      ScopedBNodeValueFactory bnodeScope) {
+    this.format = format;
+    this.threads = Math.max(threads, 1);
+    this.verifyUriSyntax = verifyUriSyntax;
+    this.bnodeScope = bnodeScope;
+  }
+
+  /**
+   * @return true if the url selects archive entries with a pattern rather than naming one
+   */
+  public static boolean isEntryPattern(String url) {
+    int separator = url.indexOf(ENTRY_SEPARATOR);
+    if (separator < 0) {
+      return false;
+    }
+    String entry = url.substring(separator + 1);
+    return entry.chars().anyMatch(c -> GLOB_CHARS.indexOf(c) >= 0);
+  }
+
+  /**
+   * @param archive the raw content of the archive (still compressed)
+   * @param url the url of the archive followed by '!' and the pattern
+   */
+  public void parse(InputStream archive, String url, RDFHandler handler) throws IOException {
+    int separator = url.indexOf(ENTRY_SEPARATOR);
+    String archiveUrl = url.substring(0, separator);
+    String pattern = url.substring(separator + 1);
+    PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+
+    Deque<Future<StatementCollector>> inFlight = new ArrayDeque<>();
+    ExecutorService parsers = Executors.newFixedThreadPool(threads,
+        new ThreadFactoryBuilder().setNameFormat("n10s-archive-parser-%d").setDaemon(true)
+            .build());
+    try (ArchiveInputStream entries = open(archive, archiveUrl)) {
+      handler.startRDF();
+      int matched = 0;
+      ArchiveEntry entry;
+      while ((entry = entries.getNextEntry()) != null) {
+        if (entry.isDirectory() || !matcher.matches(Paths.get(entry.getName()))) {
+          continue;
+        }
+        matched++;
+        String entryName = entry.getName();
+        String baseUri = archiveUrl + ENTRY_SEPARATOR + entryName;
+        byte[] head = readUpTo(entries, MAX_BUFFERED_ENTRY + 1);
+        if (head.length <= MAX_BUFFERED_ENTRY) {
+          inFlight.add(parsers.submit(() -> parseInMemory(head, baseUri, entryName)));
+          if (inFlight.size() > threads * 2) {
+            handle(inFlight.poll(), handler);
+          }
+        } else {
+          // statements of the entries before it go first
+          while (!inFlight.isEmpty()) {
+            handle(inFlight.poll(), handler);
+          }
+          InputStream content = new SequenceInputStream(new ByteArrayInputStream(head),
+              new CloseShieldInputStream(entries));
+          newParser(new ForwardingHandler(handler), entryName).parse(content, baseUri);
+        }
+      }
+      while (!inFlight.isEmpty()) {
+        handle(inFlight.poll(), handler);
+      }
+      if (matched == 0) {
+        throw new RDFParseException("No entry of the archive matches '" + pattern + "'");
+      }
+      handler.endRDF();
+    } finally {
+      inFlight.forEach(f -> f.cancel(true));
+      parsers.shutdownNow();
+    }
+  }
+
+  private static ArchiveInputStream open(InputStream archive, String archiveUrl)
+      throws IOException {
+    if (archiveUrl.endsWith(".zip")) {
+      return new ZipArchiveInputStream(archive);
+    } else if (archiveUrl.endsWith(".tar.gz") || archiveUrl.endsWith(".tgz")) {
+      return new TarArchiveInputStream(new GZIPInputStream(archive));
+    }
+    throw new IllegalArgumentException(
+        "'!' notation for filenames can only be used with zip or tgz files");
+  }
+
+  private StatementCollector parseInMemory(byte[] content, String baseUri, String entryName)
+      throws IOException {
+    StatementCollector collector = new StatementCollector();
+    newParser(collector, entryName).parse(new ByteArrayInputStream(content), baseUri);
+    return collector;
+  }
+
+  private RDFParser newParser(RDFHandler handler, String entryName) {
+    RDFParser rdfParser = Rio.createParser(format);
+    rdfParser.set(BasicParserSettings.VERIFY_URI_SYNTAX, verifyUriSyntax);
+    if (bnodeScope != null) {
+      // the same label in two entries is two blank nodes, as if they were parsed apart
+      rdfParser.setValueFactory(bnodeScope.nestedScope(entryName));
+      rdfParser.set(BasicParserSettings.PRESERVE_BNODE_IDS, true);
+    }
+    rdfParser.setRDFHandler(handler);
+    return rdfParser;
+  }
+
+  private void handle(Future<StatementCollector> parsedEntry, RDFHandler handler)
+      throws IOException {
+    StatementCollector collector;
+    try {
+      collector = parsedEntry.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RDFHandlerException("Interrupted while parsing. ", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new RDFHandlerException("Problems parsing. ", cause);
+    }
+    for (Map.Entry<String, String> ns : collector.getNamespaces().entrySet()) {
+      handler.handleNamespace(ns.getKey(), ns.getValue());
+    }
+    for (Statement st : collector.getStatements()) {
+      handler.handleStatement(st);
+    }
+  }
+
+  /**
+   * @return the next bytes of the stream, up to max, fewer if it ends before
+   */
+  private static byte[] readUpTo(InputStream in, int max) throws IOException {
+    byte[] buffer = new byte[Math.min(max, 1 << 16)];
+    int length = 0;
+    int read;
+    while (length < max && (read = in.read(buffer, length, buffer.length - length)) >= 0) {
+      length += read;
+      if (length == buffer.length && length < max) {
+        buffer = Arrays.copyOf(buffer, Math.min(max, buffer.length * 2));
+      }
+    }
+    return length == buffer.length ? buffer : Arrays.copyOf(buffer, length);
+  }
+
+  /**
+   * Passes the content of one entry to the handler of the whole archive.
+   */
+  private static class ForwardingHandler extends AbstractRDFHandler {
+
+    private final RDFHandler handler;
+
+    ForwardingHandler(RDFHandler handler) {
+      this.handler = handler;
+    }
+
+    @Override
+    public void handleNamespace(String prefix, String uri) throws RDFHandlerException {
+      handler.handleNamespace(prefix, uri);
+    }
+
+    @Override
+    public void handleStatement(Statement st) throws RDFHandlerException {
+      handler.handleStatement(st);
+    }
+  }
+}
@@ -0,0 +1,196 @@
+package n10s;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.rio.RDFFormat;
+import org.eclipse.rdf4j.rio.RDFHandler;
+import org.eclipse.rdf4j.rio.RDFHandlerException;
+import org.eclipse.rdf4j.rio.RDFParseException;
+import org.eclipse.rdf4j.rio.RDFParser;
+import org.eclipse.rdf4j.rio.Rio;
+import org.eclipse.rdf4j.rio.helpers.BasicParserSettings;
+import org.eclipse.rdf4j.rio.helpers.StatementCollector;
+
+/**
+ * Parses line based serialisations (N-Triples, N-Quads) using several cores. The input is read in
+ * chunks cut at line boundaries, each chunk is parsed by its own parser in a pool of threads and
+ * the statements are passed to the handler in input order, on the calling thread, so handlers
+ * don't need to be thread safe.
+ * <p>
+ * Blank node ids are preserved so that the same label in different chunks refers to the same blank
+ * node, as it does in the file. They are scoped to the parse (see {@link
+ * ScopedBNodeValueFactory}), so the same label in another file is another blank node, unless a
+ * scope is given.
+ */
+public class ChunkedLineParser {
+
+  private static final int CHUNK_SIZE = 1 << 20;
+
+  private final RDFFormat format;
+  private final int threads;
+  private final boolean verifyUriSyntax;
+  // null for a new scope on every parse
+  private final ScopedBNodeValueFactory bnodeScope;
+
+  public ChunkedLineParser(RDFFormat format, int threads, boolean verifyUriSyntax) {
+    this(format, threads, verifyUriSyntax, null);
+  }
+
+  /**
+   * @param bnodeScope scope of the blank node ids, to keep them the same across parses of the
+   * same content (e.g. a resumed import job)
+   */
+  public ChunkedLineParser(RDFFormat format, int threads, boolean verifyUriSyntax,
+      ScopedBNodeValueFactory bnodeScope) {
+    this.format = format;
+    this.threads = threads;
+    this.verifyUriSyntax = verifyUriSyntax;
+    this.bnodeScope = bnodeScope;
+  }
+
+  public static boolean supports(RDFFormat format) {
+    return format.equals(RDFFormat.NTRIPLES) || format.equals(RDFFormat.NQUADS);
+  }
+
+  public void parse(InputStream inputStream, String baseUri, RDFHandler handler)
+      throws IOException {
+    // parsed chunks waiting to be handled, bounds the memory used
+    int maxInFlight = threads * 2;
+    Deque<Future<List<Statement>>> inFlight = new ArrayDeque<>();
+    ScopedBNodeValueFactory scope = bnodeScope != null ? bnodeScope
+        : ScopedBNodeValueFactory.newScope();
+    ExecutorService parsers = Executors.newFixedThreadPool(threads,
+        new ThreadFactoryBuilder().setNameFormat("n10s-parser-%d").setDaemon(true).build());
+    try {
+      handler.startRDF();
+      ChunkReader reader = new ChunkReader(inputStream);
+      byte[] chunk;
+      while ((chunk = reader.next()) != null) {
+        final byte[] lines = chunk;
+        final long firstLine = reader.firstLineOfLastChunk;
+        inFlight.add(parsers.submit(() -> parseChunk(lines, firstLine, baseUri, scope)));
+        if (inFlight.size() > maxInFlight) {
+          handle(inFlight.poll(), handler);
+        }
+      }
+      while (!inFlight.isEmpty()) {
+        handle(inFlight.poll(), handler);
+      }
+      handler.endRDF();
+    } finally {
+      inFlight.forEach(f -> f.cancel(true));
+      parsers.shutdownNow();
+    }
+  }
+
+  private List<Statement> parseChunk(byte[] lines, long firstLine, String baseUri,
+      ScopedBNodeValueFactory bnodeScope) throws IOException {
+    RDFParser rdfParser = Rio.createParser(format);
+    rdfParser.setValueFactory(bnodeScope);
+    rdfParser.set(BasicParserSettings.VERIFY_URI_SYNTAX, verifyUriSyntax);
+    rdfParser.set(BasicParserSettings.PRESERVE_BNODE_IDS, true);
+    List<Statement> statements = new ArrayList<>();
+    rdfParser.setRDFHandler(new StatementCollector(statements));
+    try {
+      rdfParser.parse(new ByteArrayInputStream(lines), baseUri);
+    } catch (RDFParseException e) {
+      long lineNumber = e.getLineNumber() > 0 ? firstLine + e.getLineNumber() - 1 : -1;
+      throw new RDFParseException("Error parsing line " + lineNumber + ". " + e.getMessage(), e,
+          lineNumber, e.getColumnNumber());
+    }
+    return statements;
+  }
+
+  private void handle(Future<List<Statement>> parsedChunk, RDFHandler handler)
+      throws IOException {
+    List<Statement> statements;
+    try {
+      statements = parsedChunk.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RDFHandlerException("Interrupted while parsing. ", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new RDFHandlerException("Problems parsing. ", cause);
+    }
+    for (Statement st : statements) {
+      handler.handleStatement(st);
+    }
+  }
+
+  /**
+   * Splits the input in chunks of (at least) CHUNK_SIZE bytes ending at a line boundary.
+   */
+  private static class ChunkReader {
+
+    private final InputStream in;
+    private byte[] carry = new byte[0];
+    private long nextLine = 1;
+    long firstLineOfLastChunk;
+
+    ChunkReader(InputStream in) {
+      this.in = in;
+    }
+
+    byte[] next() throws IOException {
+      byte[] buffer = Arrays.copyOf(carry, Math.max(CHUNK_SIZE, carry.length * 2));
+      int length = carry.length;
+      boolean eof = false;
+      int lastNewLine = -1;
+      while (!eof) {
+        while (length < buffer.length) {
+          int read = in.read(buffer, length, buffer.length - length);
+          if (read < 0) {
+            eof = true;
+            break;
+          }
+          length += read;
+        }
+        lastNewLine = lastIndexOf(buffer, length, (byte) '\n');
+        if (eof || lastNewLine >= 0) {
+          break;
+        }
+        // a line longer than the buffer
+        buffer = Arrays.copyOf(buffer, buffer.length * 2);
+      }
+      if (length == 0) {
+        return null;
+      }
+      int chunkLength = eof ? length : lastNewLine + 1;
+      carry = Arrays.copyOfRange(buffer, chunkLength, length);
+      firstLineOfLastChunk = nextLine;
+      for (int i = 0; i < chunkLength; i++) {
+        if (buffer[i] == '\n') {
+          nextLine++;
+        }
+      }
+      return chunkLength == buffer.length ? buffer : Arrays.copyOf(buffer, chunkLength);
+    }
+
+    private static int lastIndexOf(byte[] buffer, int length, byte b) {
+      for (int i = length - 1; i >= 0; i--) {
+        if (buffer[i] == b) {
+          return i;
+        }
+      }
+      return -1;
+    }
+  }
+}
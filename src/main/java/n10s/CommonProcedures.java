@@ -1,30 +1,46 @@
 package n10s;
 
+import com.google.common.hash.Hashing;
 import java.io.BufferedWriter;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStreamWriter;
 import java.net.HttpURLConnection;
+import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLConnection;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
+import n10s.graphconfig.GraphConfig;
+import n10s.graphconfig.RDFParserConfig;
+import n10s.utils.ImportDirectory;
+import n10s.utils.MappedFileInputStream;
+import n10s.utils.ResourceDeletions;
 import org.apache.commons.compress.archivers.ArchiveEntry;
 import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
 import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
-import org.apache.commons.io.IOUtils;
 import org.eclipse.rdf4j.rio.RDFFormat;
 import org.eclipse.rdf4j.rio.RDFParser;
 import org.eclipse.rdf4j.rio.Rio;
 import org.eclipse.rdf4j.rio.helpers.BasicParserSettings;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.ResourceIterator;
 import org.neo4j.graphdb.Transaction;
 import org.neo4j.graphdb.schema.ConstraintDefinition;
 import org.neo4j.graphdb.schema.ConstraintType;
@@ -37,6 +53,7 @@ public class CommonProcedures {
 
 
   public static final String UNIQUENESS_CONSTRAINT_ON_URI = "n10s_unique_uri";
+  private static final int DECOMPRESSION_BUFFER_SIZE = 1 << 16;
 
   protected static RDFFormat[] availableParsers = new RDFFormat[]{RDFFormat.RDFXML,
       RDFFormat.JSONLD,
@@ -52,6 +69,9 @@ public class CommonProcedures {
   @Context
   public Log log;
 
+  // content fetched through the fetch cache by the last getInputStream
+  private FetchCache.Fetched lastFetch;
+
   protected void checkConstraintExist() throws RDFImportPreRequisitesNotMet {
 
     boolean constraintExists = isConstraintOnResourceUriPresent();
@@ -65,6 +85,16 @@ public class CommonProcedures {
 
   }
 
+  protected void checkNoResourcesInGraph() throws RDFImportPreRequisitesNotMet {
+    try (ResourceIterator<Node> resources = tx.findNodes(Label.label("Resource"))) {
+      if (resources.hasNext()) {
+        throw new RDFImportPreRequisitesNotMet(
+            "The initialLoad mode can only be used on a graph with no Resource nodes. "
+                + "Please remove the initialLoad param or empty the graph and try again.");
+      }
+    }
+  }
+
   protected boolean isConstraintOnResourceUriPresent() {
     Iterator<ConstraintDefinition> constraintIterator = tx.schema().getConstraints().iterator();
 
@@ -108,28 +138,57 @@ public class CommonProcedures {
 
   protected void parseRDFPayloadOrFromUrl( RDFFormat format, String url, String rdfFragment,
      Map<String, Object> props, ConfiguredStatementHandler statementLoader) throws IOException {
+    instantiateAndKickOffParser(getRDFPayloadOrUrlInputStream(url, rdfFragment, props),
+        getBaseUri(url, rdfFragment), format, statementLoader);
+  }
+
+  protected InputStream getRDFPayloadOrUrlInputStream(String url, String rdfFragment,
+      Map<String, Object> props) throws IOException {
     if (rdfFragment != null) {
-      instantiateAndKickOffParser(
-          new ByteArrayInputStream(rdfFragment.getBytes(Charset.defaultCharset())),
-          "http://neo4j.com/base/", format, statementLoader);
+      return new ByteArrayInputStream(rdfFragment.getBytes(Charset.defaultCharset()));
     } else {
-      instantiateAndKickOffParser(getInputStream(url, props), url, format, statementLoader);
+      return getInputStream(url, props);
     }
   }
 
+  protected String getBaseUri(String url, String rdfFragment) {
+    return rdfFragment != null ? "http://neo4j.com/base/" : url;
+  }
+
   protected void instantiateAndKickOffParser(InputStream inputStream, @Name("url") String url,
       @Name("format") RDFFormat format,
       ConfiguredStatementHandler handler)
       throws IOException {
+    // a resumed import must map blank nodes to the same uris the first run did, and the same
+    // label in another job must not be the same blank node
+    ScopedBNodeValueFactory jobScope = handler.getParserConfig().getJobId() != null
+        ? ScopedBNodeValueFactory.namedScope(handler.getParserConfig().getJobId()) : null;
+    if (ArchiveEntryParser.isEntryPattern(url)) {
+      new ArchiveEntryParser(format, handler.getParserConfig().getParserThreads(),
+          handler.getParserConfig().isVerifyUriSyntax(), jobScope)
+          .parse(inputStream, url, handler);
+      return;
+    }
+    if (ChunkedLineParser.supports(format) && handler.getParserConfig().getParserThreads() > 1) {
+      new ChunkedLineParser(format, handler.getParserConfig().getParserThreads(),
+          handler.getParserConfig().isVerifyUriSyntax(), jobScope)
+          .parse(inputStream, url, handler);
+      return;
+    }
     RDFParser rdfParser = Rio.createParser(format);
     rdfParser
         .set(BasicParserSettings.VERIFY_URI_SYNTAX, handler.getParserConfig().isVerifyUriSyntax());
+    if (jobScope != null) {
+      rdfParser.setValueFactory(jobScope);
+      rdfParser.set(BasicParserSettings.PRESERVE_BNODE_IDS, true);
+    }
     rdfParser.setRDFHandler(handler);
     rdfParser.parse(inputStream, url);
   }
 
   protected InputStream getInputStream(String url, Map<String, Object> props) throws IOException {
     URLConnection urlConn;
+    String requestedUrl = url;
 
     if ((url.contains(".zip") || url.contains(".tgz")|| url.contains(".gz")|| url.contains(".bz2"))) {
       String zipFileName = null;
@@ -145,38 +204,48 @@ public class CommonProcedures {
         }
       }
       urlConn = new URL(url).openConnection();
+      prepareFetch(urlConn, props);
 
+      if (zipFileName != null && ArchiveEntryParser.isEntryPattern("!" + zipFileName)) {
+        // all the matching entries are read by the ArchiveEntryParser
+        return openContent(urlConn, requestedUrl, props);
+      }
       if (url.endsWith(".zip")) {
-        ZipInputStream zip = new ZipInputStream(urlConn.getInputStream());
+        ZipInputStream zip = new ZipInputStream(openContent(urlConn, requestedUrl, props));
         if (zipFileName!=null){
           ZipEntry zipEntry;
           while ((zipEntry = zip.getNextEntry()) != null) {
             if (!zipEntry.isDirectory() && zipEntry.getName().equals(zipFileName)) {
-              return new ByteArrayInputStream(IOUtils.toByteArray(zip));
+              // positioned at the entry, reads end with it
+              return zip;
             }
           }
         }else {
           throw new IllegalArgumentException("Filename is required for zip files (use '!' notation)");
         }
       } else if (url.endsWith(".tar.gz") || url.endsWith(".tgz")) {
-        TarArchiveInputStream tgz = new TarArchiveInputStream(new GZIPInputStream(urlConn.getInputStream()));
+        TarArchiveInputStream tgz = new TarArchiveInputStream(
+            new GZIPInputStream(openContent(urlConn, requestedUrl, props),
+                DECOMPRESSION_BUFFER_SIZE));
         if (zipFileName!=null){
           ArchiveEntry zipEntry;
           while ((zipEntry = tgz.getNextEntry()) != null) {
             if (!zipEntry.isDirectory() && zipEntry.getName().equals(zipFileName)) {
-              return new ByteArrayInputStream(IOUtils.toByteArray(tgz));
+              return tgz;
             }
           }
         } else {
           return tgz;
         }
       } else if (url.endsWith(".gz")){
-        return new GZIPInputStream(urlConn.getInputStream());
+        return new GZIPInputStream(openContent(urlConn, requestedUrl, props),
+            DECOMPRESSION_BUFFER_SIZE);
       } else if (url.endsWith(".bz2")){
-        return new BZip2CompressorInputStream(urlConn.getInputStream());
+        return new BZip2CompressorInputStream(openContent(urlConn, requestedUrl, props));
       }
     }else {
       urlConn = new URL(url).openConnection();
+      prepareFetch(urlConn, props);
     }
 
 
@@ -201,7 +270,124 @@ public class CommonProcedures {
         urlConn.getInputStream().close();
         return getInputStream(newUrl, props);
       }
-      return urlConn.getInputStream();
+      return openContent(urlConn, requestedUrl, props);
+  }
+
+  private void prepareFetch(URLConnection urlConn, Map<String, Object> props)
+      throws IOException {
+    if (isFetchCached(urlConn, props)) {
+      fetchCache(props).addConditions((HttpURLConnection) urlConn);
+    }
+  }
+
+  private FetchCache fetchCache(Map<String, Object> props) throws IOException {
+    if (!props.containsKey("fetchCacheDir")) {
+      return FetchCache.at(null);
+    }
+    // relative to dbms.directories.import, procedures can't write just anywhere
+    try {
+      return FetchCache.at(ImportDirectory.resolve(db, (String) props.get("fetchCacheDir")));
+    } catch (IllegalArgumentException e) {
+      throw new IOException("fetchCacheDir: " + e.getMessage());
+    }
+  }
+
+  private static boolean isFetchCached(URLConnection urlConn, Map<String, Object> props) {
+    // the content of a POST depends on its payload
+    return props.containsKey("fetchCache") && (Boolean) props.get("fetchCache")
+        && urlConn instanceof HttpURLConnection && !props.containsKey("payload");
+  }
+
+  /**
+   * Records in the fetch cache (if used) that the content fetched was imported successfully, so
+   * that the next import of the same url is skipped if it's unchanged.
+   */
+  protected void fetchCompleted() {
+    if (lastFetch != null) {
+      try {
+        lastFetch.markImported(importedContentStamp());
+      } catch (IOException e) {
+        log.warn("Could not record the import in the fetch cache: " + e.getMessage());
+      }
+    }
+  }
+
+  /**
+   * @return what identifies an import in the fetch cache: loading a url with a different
+   * procedure, into another database or with another config are different imports
+   */
+  private String fetchCacheKey(String requestedUrl, Map<String, Object> props) {
+    Map<String, Object> config = new TreeMap<>();
+    try {
+      GraphConfig graphConfig = new GraphConfig(tx);
+      graphConfig.serialiseConfig().forEach((k, v) -> config.put("graphConfig." + k, v));
+      config.putAll(new RDFParserConfig(props, graphConfig).getConfigSummary());
+    } catch (GraphConfig.GraphConfigNotFound e) {
+      // not an RDF import (e.g. SHACL shapes), the params are all there is
+      config.putAll(props);
+    }
+    config.keySet().removeAll(Arrays.asList("fetchCache", "fetchCacheDir"));
+    StringBuilder canonical = new StringBuilder();
+    config.forEach((k, v) -> canonical.append(k).append('=')
+        .append(v instanceof Collection ? new TreeSet<>(((Collection<?>) v).stream()
+            .map(String::valueOf).collect(Collectors.toList())) : v).append('\n'));
+    return getClass().getName() + " " + db.databaseName() + " " + requestedUrl + " "
+        + Hashing.sha256().hashString(canonical, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * @return the state of the database to record with an import in the fetch cache, checked by
+   * {@link #isImportedContentInDB(String)} when the content is not modified
+   */
+  protected String importedContentStamp() {
+    return ResourceDeletions.forDatabase(db).getStamp();
+  }
+
+  /**
+   * @param importStamp the {@link #importedContentStamp()} recorded with the last import of this
+   * same content
+   * @return false if what was imported may no longer be in the database, so content that hasn't
+   * changed since the last import has to be imported again: Resource nodes have been deleted since
+   */
+  protected boolean isImportedContentInDB(String importStamp) {
+    return importStamp != null && importStamp.equals(importedContentStamp());
+  }
+
+  /**
+   * Local files are read through memory mapping, content fetched over http through the fetch
+   * cache if enabled, everything else through the connection.
+   */
+  private InputStream openContent(URLConnection urlConn, String requestedUrl,
+      Map<String, Object> props) throws IOException {
+    if (isFetchCached(urlConn, props)) {
+      try {
+        lastFetch = fetchCache(props)
+            .fetch((HttpURLConnection) urlConn, fetchCacheKey(requestedUrl, props));
+      } catch (FetchCache.SourceNotModified e) {
+        if (isImportedContentInDB(e.getGraphStamp())) {
+          throw e;
+        }
+        // same content, but what it was loaded into is gone
+        log.debug(e.getMessage() + ", imported again as it is no longer in the database");
+        return new MappedFileInputStream(e.getContent(), null);
+      }
+      return new MappedFileInputStream(lastFetch.getContent(), null);
+    }
+    URL source = urlConn.getURL();
+    if ("file".equals(source.getProtocol())) {
+      try {
+        Path file = Paths.get(source.toURI());
+        return new MappedFileInputStream(file, (bytesRead, size) -> {
+          if (log != null) {
+            log.debug("Read " + (100 * bytesRead / size) + "% of " + source + " (" + bytesRead
+                + " out of " + size + " bytes)");
+          }
+        });
+      } catch (URISyntaxException | IllegalArgumentException e) {
+        // not a plain local path, let the connection deal with it
+      }
+    }
+    return urlConn.getInputStream();
   }
 
   //Taken from APOC (apoc.util.Util)
@@ -213,7 +399,8 @@ public class CommonProcedures {
 
   public static boolean isRedirect(HttpURLConnection con) throws IOException {
     int code = con.getResponseCode();
-    boolean isRedirectCode = code >= 300 && code < 400;
+    boolean isRedirectCode = code >= 300 && code < 400
+        && code != HttpURLConnection.HTTP_NOT_MODIFIED;
     if (isRedirectCode) {
       URL location = new URL(con.getHeaderField("Location"));
       String oldProtocol = con.getURL().getProtocol();
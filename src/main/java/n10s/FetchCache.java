@@ -0,0 +1,245 @@
+package n10s;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Properties;
+
+/**
+ * On disk cache of the content fetched over http(s), for imports that are run again and again on
+ * the same urls. For each url it keeps the content last fetched, its ETag and Last-Modified headers
+ * and a sha-256 of it, and for each import the hash of the content it last loaded successfully
+ * along with a stamp of the state of the graph it was loaded into.
+ * <ul>
+ * <li>requests are made conditional on the cached ETag / Last-Modified, so an unchanged source
+ * answers 304 without sending the content again;</li>
+ * <li>if the content (whether not modified or downloaded again with the same hash) is the one the
+ * import already loaded, {@link SourceNotModified} is thrown, and the import is skipped unless
+ * the graph no longer matches the stamp;</li>
+ * <li>otherwise the import reads the local copy, which stays there for a retry if it fails.</li>
+ * </ul>
+ */
+public class FetchCache {
+
+  public static final String DEFAULT_DIRECTORY = "n10s-fetch-cache";
+  private static final String ETAG = "etag";
+  private static final String LAST_MODIFIED = "lastModified";
+  private static final String SHA_256 = "sha256";
+
+  private final Path directory;
+
+  public FetchCache(Path directory) {
+    this.directory = directory;
+  }
+
+  /**
+   * @param cacheDir the directory passed as param, already resolved within the import directory,
+   * null for the default one
+   */
+  public static FetchCache at(Path cacheDir) throws IOException {
+    Path directory = cacheDir != null ? cacheDir
+        : Paths.get(System.getProperty("java.io.tmpdir"), DEFAULT_DIRECTORY);
+    Files.createDirectories(directory);
+    return new FetchCache(directory);
+  }
+
+  /**
+   * Makes the request conditional on the cached copy, if any. To be called before the connection
+   * is made.
+   */
+  public void addConditions(HttpURLConnection connection) throws IOException {
+    Properties cached = load(metadataFile(connection));
+    if (cached != null && Files.exists(contentFile(connection))) {
+      if (cached.getProperty(ETAG) != null) {
+        connection.setRequestProperty("If-None-Match", cached.getProperty(ETAG));
+      }
+      if (cached.getProperty(LAST_MODIFIED) != null) {
+        connection.setRequestProperty("If-Modified-Since", cached.getProperty(LAST_MODIFIED));
+      }
+    }
+  }
+
+  /**
+   * Gets the content of the url, from the response or from the cache if not modified.
+   *
+   * @param importKey identifies the import, the hash of the content it loads is recorded under it
+   * by {@link Fetched#markImported(String)}
+   * @throws SourceNotModified if the import has already loaded this same content
+   */
+  public Fetched fetch(HttpURLConnection connection, String importKey) throws IOException {
+    Path content = contentFile(connection);
+    Path metadataFile = metadataFile(connection);
+    Properties metadata;
+    if (connection.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED
+        && Files.exists(content) && (metadata = load(metadataFile)) != null) {
+      connection.disconnect();
+    } else {
+      metadata = download(connection, content);
+      store(metadata, metadataFile);
+    }
+    String sha256 = metadata.getProperty(SHA_256);
+    String[] imported = imported(importKey);
+    if (imported != null && sha256.equals(imported[0])) {
+      throw new SourceNotModified("Content of " + connection.getURL()
+          + " not modified since the last import (sha-256 " + sha256 + ")", content,
+          imported.length > 1 ? imported[1] : null);
+    }
+    return new Fetched(content, sha256, importedFile(importKey));
+  }
+
+  private Properties download(URLConnection connection, Path content) throws IOException {
+    MessageDigest digest = sha256();
+    Path temp = Files.createTempFile(directory, "fetch", ".tmp");
+    try {
+      try (InputStream in = new DigestInputStream(connection.getInputStream(), digest)) {
+        Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
+      }
+      Files.move(temp, content, StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+    Properties metadata = new Properties();
+    if (connection.getHeaderField("ETag") != null) {
+      metadata.setProperty(ETAG, connection.getHeaderField("ETag"));
+    }
+    if (connection.getHeaderField("Last-Modified") != null) {
+      metadata.setProperty(LAST_MODIFIED, connection.getHeaderField("Last-Modified"));
+    }
+    metadata.setProperty(SHA_256, hex(digest.digest()));
+    return metadata;
+  }
+
+  /**
+   * @return the hash of the content the import last loaded, and the stamp of the graph if any
+   */
+  private String[] imported(String importKey) throws IOException {
+    Path imported = importedFile(importKey);
+    return Files.exists(imported)
+        ? new String(Files.readAllBytes(imported), StandardCharsets.UTF_8).split("\n", 2) : null;
+  }
+
+  private Path contentFile(URLConnection connection) {
+    return directory.resolve(key(connection.getURL().toString()) + ".content");
+  }
+
+  private Path metadataFile(URLConnection connection) {
+    return directory.resolve(key(connection.getURL().toString()) + ".properties");
+  }
+
+  private Path importedFile(String importKey) {
+    return directory.resolve(key(importKey) + ".imported");
+  }
+
+  private static Properties load(Path file) throws IOException {
+    if (!Files.exists(file)) {
+      return null;
+    }
+    Properties properties = new Properties();
+    try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+      properties.load(reader);
+    }
+    return properties.getProperty(SHA_256) != null ? properties : null;
+  }
+
+  private static void store(Properties properties, Path file) throws IOException {
+    try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+      properties.store(writer, null);
+    }
+  }
+
+  private static String key(String url) {
+    return hex(sha256().digest(url.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  private static MessageDigest sha256() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static String hex(byte[] bytes) {
+    StringBuilder hex = new StringBuilder();
+    for (byte b : bytes) {
+      hex.append(String.format("%02x", b));
+    }
+    return hex.toString();
+  }
+
+  /**
+   * Content fetched for an import.
+   */
+  public static class Fetched {
+
+    private final Path content;
+    private final String sha256;
+    private final Path importedFile;
+
+    Fetched(Path content, String sha256, Path importedFile) {
+      this.content = content;
+      this.sha256 = sha256;
+      this.importedFile = importedFile;
+    }
+
+    public Path getContent() {
+      return content;
+    }
+
+    public String getSha256() {
+      return sha256;
+    }
+
+    /**
+     * Records that the import loaded this content, so the next run skips it if it's unchanged.
+     *
+     * @param graphStamp the state of the graph once loaded, passed back by {@link
+     * SourceNotModified#getGraphStamp()}, null if there's none
+     */
+    public void markImported(String graphStamp) throws IOException {
+      try (OutputStream out = Files.newOutputStream(importedFile)) {
+        out.write((graphStamp != null ? sha256 + "\n" + graphStamp : sha256)
+            .getBytes(StandardCharsets.UTF_8));
+      }
+    }
+  }
+
+  public static class SourceNotModified extends IOException {
+
+    private final Path content;
+    private final String graphStamp;
+
+    public SourceNotModified(String message, Path content, String graphStamp) {
+      super(message);
+      this.content = content;
+      this.graphStamp = graphStamp;
+    }
+
+    /**
+     * @return the cached content, for when it has to be read again anyway
+     */
+    public Path getContent() {
+      return content;
+    }
+
+    /**
+     * @return the state of the graph when the content was last imported, null if not recorded
+     */
+    public String getGraphStamp() {
+      return graphStamp;
+    }
+  }
+}
@@ -0,0 +1,252 @@
+package n10s;
+
+import static n10s.graphconfig.GraphConfig.GRAPHCONF_VOC_URI_IGNORE;
+import static n10s.graphconfig.GraphConfig.GRAPHCONF_VOC_URI_KEEP;
+import static n10s.graphconfig.GraphConfig.GRAPHCONF_VOC_URI_MAP;
+import static n10s.graphconfig.GraphConfig.GRAPHCONF_VOC_URI_SHORTEN;
+import static n10s.graphconfig.GraphConfig.GRAPHCONF_VOC_URI_SHORTEN_STRICT;
+import static n10s.graphconfig.Params.CUSTOM_DATA_TYPE_SEPERATOR;
+import static n10s.graphconfig.Params.PREFIX_SEPARATOR;
+import static n10s.mapping.MappingUtils.getImportMappingsFromDB;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import n10s.graphconfig.GraphConfig;
+import n10s.graphconfig.RDFParserConfig;
+import n10s.utils.DateUtils;
+import n10s.utils.NsPrefixMap;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Literal;
+import org.eclipse.rdf4j.model.vocabulary.RDF;
+import org.eclipse.rdf4j.model.vocabulary.XMLSchema;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.logging.Log;
+
+/**
+ * Translates IRIs to the names of relationship types, labels and properties, and literals to
+ * property values, as the graph config says. Used by the {@link RDFToLPGStatementProcessor}s to
+ * write statements to the graph, and to find them in it by what they were translated to.
+ */
+public class RDFToLPGMapper {
+
+  public static final int RELATIONSHIP = 0;
+  public static final int LABEL = 1;
+  public static final int PROPERTY = 2;
+  public static final int DATATYPE = 3;
+  // translated names kept per element type
+  private static final int IRI_TRANSLATION_CACHE_SIZE = 10000;
+  // conversion of the typed literals that map to a neo4j type, by datatype
+  private static final Map<IRI, Function<Literal, Object>> LITERAL_CONVERTERS =
+      literalConverters();
+
+  private final RDFParserConfig parserConfig;
+  private final Map<String, String> vocMappings;
+  private final List<Map<String, String>> translatedIRIs = new ArrayList<>();
+  // the prefix map (and its generation) the cached translations were computed with
+  private NsPrefixMap translatedIRIsNamespaces;
+  private long translatedIRIsNsGeneration;
+
+  public RDFToLPGMapper(GraphDatabaseService db, RDFParserConfig conf, Log log) {
+    this.parserConfig = conf;
+    for (int elementType = RELATIONSHIP; elementType <= DATATYPE; elementType++) {
+      translatedIRIs.add(new LinkedHashMap<String, String>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+          return size() > IRI_TRANSLATION_CACHE_SIZE;
+        }
+      });
+    }
+    //initialise vocMappings  if needed
+    if (this.parserConfig.getGraphConf().getHandleVocabUris()
+        == GraphConfig.GRAPHCONF_VOC_URI_MAP) {
+      Map<String, String> mappingsTemp = getImportMappingsFromDB(db);
+      if (mappingsTemp.containsKey(RDF.TYPE.stringValue())) {
+        //a mapping on RDF.TYPE is illegal
+        mappingsTemp.remove(RDF.TYPE.stringValue());
+        log.debug(
+            "Mapping on rdf:type property is not applicable in RDF import and will be discarded");
+      }
+      this.vocMappings = mappingsTemp;
+    } else {
+      this.vocMappings = null;
+    }
+  }
+
+  /**
+   * Processing for literals as follows Mapping according to this figure:
+   * https://www.w3.org/TR/xmlschema11-2/#built-in-datatypes String -> String Each sub-category of
+   * integer -> long decimal, float, and double -> double boolean -> boolean Custom data type ->
+   * String (value + CUSTOM_DATA_TYPE_SEPERATOR + custom DT IRI)
+   *
+   * @param namespaces the prefixes to shorten custom datatypes with, null if not shortening
+   * @return processed literal, null if filtered by the language filter
+   */
+  public Object getObjectValue(IRI propertyIRI, Literal object, NsPrefixMap namespaces) {
+    IRI datatype = object.getDatatype();
+    if (datatype.equals(XMLSchema.STRING) || datatype.equals(RDF.LANGSTRING)) {
+      final Optional<String> language = object.getLanguage();
+      if (parserConfig.getLanguageFilter() == null || !language.isPresent() || parserConfig
+          .getLanguageFilter().equals(language.get())) {
+        return object.stringValue() + (
+            parserConfig.getGraphConf().isKeepLangTag() && language.isPresent() ? "@"
+                + language.get()
+                : "");
+      } else {
+        //filtered by lang
+        return null;
+      }
+    }
+    Function<Literal, Object> converter = LITERAL_CONVERTERS.get(datatype);
+    if (converter != null) {
+      return converter.apply(object);
+    } else {
+      //it's a custom data type
+      if (parserConfig.getGraphConf().isKeepCustomDataTypes() && !(
+          parserConfig.getGraphConf().getHandleVocabUris() == GRAPHCONF_VOC_URI_IGNORE
+              || parserConfig.getGraphConf().getHandleVocabUris() == GRAPHCONF_VOC_URI_MAP)) {
+        //keep custom type as long as property is not absent from customDT list
+        // (no property IRI: the value of any property, with the custom type kept)
+        if (parserConfig.getGraphConf().getCustomDataTypePropList() == null || propertyIRI == null
+            || parserConfig.getGraphConf().getCustomDataTypePropList()
+            .contains(propertyIRI.stringValue())) {
+          return getValueWithDatatype(datatype, object.stringValue(), namespaces);
+        } else {
+          return object.stringValue();
+        }
+      }
+    }
+    // default
+    return object.stringValue();
+  }
+
+  public String getValueWithDatatype(IRI datatype, String value, NsPrefixMap namespaces) {
+    StringBuilder result = new StringBuilder(value);
+    result.append(CUSTOM_DATA_TYPE_SEPERATOR);
+    if (parserConfig.getGraphConf().getHandleVocabUris() == GRAPHCONF_VOC_URI_SHORTEN) {
+      result.append(handleIRI(datatype, DATATYPE, namespaces));
+    } else {
+      result.append(datatype.stringValue());
+    }
+    return result.toString();
+  }
+
+  /**
+   * @param namespaces the prefixes to shorten with (new ones are added to it), null if not
+   * shortening
+   * @return the name the IRI is given as an element of the type
+   */
+  public String handleIRI(IRI iri, int elementType, NsPrefixMap namespaces) {
+    if (parserConfig.getGraphConf().getHandleVocabUris() == GRAPHCONF_VOC_URI_KEEP) {
+      return iri.stringValue();
+    }
+    // the same predicates and classes come again and again, translate them once
+    if (namespaces != translatedIRIsNamespaces || (namespaces != null
+        && namespaces.getGeneration() != translatedIRIsNsGeneration)) {
+      translatedIRIs.forEach(Map::clear);
+      translatedIRIsNamespaces = namespaces;
+      translatedIRIsNsGeneration = namespaces != null ? namespaces.getGeneration() : 0;
+    }
+    Map<String, String> translated = translatedIRIs.get(elementType);
+    String name = translated.get(iri.stringValue());
+    if (name == null) {
+      name = translateIRI(iri, elementType, namespaces);
+      translated.put(iri.stringValue(), name);
+    }
+    return name;
+  }
+
+  private String translateIRI(IRI iri, int elementType, NsPrefixMap namespaces) {
+    if (parserConfig.getGraphConf().getHandleVocabUris() == GRAPHCONF_VOC_URI_SHORTEN ||
+        parserConfig.getGraphConf().getHandleVocabUris() == GRAPHCONF_VOC_URI_SHORTEN_STRICT) {
+      String localName = iri.getLocalName();
+      String prefix = namespaces.getPrefixOrAdd(iri.getNamespace(),
+          parserConfig.getGraphConf().getHandleVocabUris() == GRAPHCONF_VOC_URI_SHORTEN_STRICT);
+      return prefix + PREFIX_SEPARATOR + localName;
+    } else if (parserConfig.getGraphConf().getHandleVocabUris() == GRAPHCONF_VOC_URI_IGNORE) {
+      return applyCapitalisation(iri.getLocalName(), elementType);
+    } else if (parserConfig.getGraphConf().getHandleVocabUris() == GRAPHCONF_VOC_URI_MAP) {
+      return mapElement(iri, elementType, null);
+    } else { //if (handleUris  ==  URL_KEEP){
+      return iri.stringValue();
+    }
+  }
+
+  private String applyCapitalisation(String name, int element) {
+    if (parserConfig.getGraphConf().isApplyNeo4jNaming()) {
+      //apply Neo4j naming recommendations
+      if (element == RELATIONSHIP) {
+        return name.toUpperCase();
+      } else if (element == LABEL) {
+        return name.substring(0, 1).toUpperCase() + name.substring(1);
+      } else if (element == PROPERTY) {
+        return name.substring(0, 1).toLowerCase() + name.substring(1);
+      } else {
+        //should not happen
+        return name;
+      }
+    } else {
+      //keep capitalisation as is
+      return name;
+    }
+  }
+
+
+  private String mapElement(IRI iri, int elementType, String mappingId) {
+    //Placeholder for mapping based data load
+    //if mappingId is null use default mapping
+    if (this.vocMappings.containsKey(iri.stringValue())) {
+      return this.vocMappings.get(iri.stringValue());
+    } else {
+      //if no mapping defined, default to 'IGNORE'
+      return applyCapitalisation(iri.getLocalName(), elementType);
+    }
+  }
+
+  private static Map<IRI, Function<Literal, Object>> literalConverters() {
+    Map<IRI, Function<Literal, Object>> converters = new HashMap<>();
+    for (IRI longType : new IRI[]{XMLSchema.INTEGER, XMLSchema.LONG, XMLSchema.INT,
+        XMLSchema.SHORT, XMLSchema.BYTE, XMLSchema.NON_NEGATIVE_INTEGER,
+        XMLSchema.POSITIVE_INTEGER, XMLSchema.UNSIGNED_LONG, XMLSchema.UNSIGNED_INT,
+        XMLSchema.UNSIGNED_SHORT, XMLSchema.UNSIGNED_BYTE, XMLSchema.NON_POSITIVE_INTEGER,
+        XMLSchema.NEGATIVE_INTEGER}) {
+      converters.put(longType, Literal::longValue);
+    }
+    for (IRI doubleType : new IRI[]{XMLSchema.DECIMAL, XMLSchema.DOUBLE, XMLSchema.FLOAT}) {
+      converters.put(doubleType, Literal::doubleValue);
+    }
+    converters.put(XMLSchema.BOOLEAN, Literal::booleanValue);
+    converters.put(XMLSchema.DATETIME, literal -> {
+      LocalDateTime dateTime = DateUtils.parseXsdDateTime(literal.stringValue());
+      if (dateTime != null) {
+        return dateTime;
+      }
+      try {
+        // other forms DatatypeConverter accepts
+        return DateUtils.parseDateTime(literal.stringValue());
+      } catch (IllegalArgumentException e) {
+        //if date cannot be parsed we return string value
+        return literal.stringValue();
+      }
+    });
+    converters.put(XMLSchema.DATE, literal -> {
+      LocalDate date = DateUtils.parseXsdDate(literal.stringValue());
+      if (date != null) {
+        return date;
+      }
+      try {
+        return DateUtils.parseDate(literal.stringValue());
+      } catch (IllegalArgumentException e) {
+        //if date cannot be parsed we return string value
+        return literal.stringValue();
+      }
+    });
+    return converters;
+  }
+}
@@ -1,8 +1,7 @@
 package n10s;
 
-import n10s.graphconfig.GraphConfig;
 import n10s.graphconfig.RDFParserConfig;
-import n10s.utils.DateUtils;
+import n10s.stats.ImportStats;
 import n10s.utils.InvalidNamespacePrefixDefinitionInDB;
 import n10s.utils.NsPrefixMap;
 import org.eclipse.rdf4j.model.*;
@@ -15,18 +14,12 @@ import org.neo4j.graphdb.Transaction;
 import org.neo4j.internal.helpers.collection.Iterables;
 import org.neo4j.logging.Log;
 
-import java.time.DateTimeException;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeParseException;
 import java.util.*;
 
-import javax.xml.bind.DatatypeConverter;
 
 import static n10s.graphconfig.GraphConfig.*;
-import static n10s.graphconfig.Params.CUSTOM_DATA_TYPE_SEPERATOR;
-import static n10s.graphconfig.Params.PREFIX_SEPARATOR;
-import static n10s.mapping.MappingUtils.getImportMappingsFromDB;
 
 
 /**
@@ -35,15 +28,19 @@ import static n10s.mapping.MappingUtils.getImportMappingsFromDB;
 
 public abstract class RDFToLPGStatementProcessor extends ConfiguredStatementHandler {
 
-  public static final int RELATIONSHIP = 0;
-  public static final int LABEL = 1;
-  public static final int PROPERTY = 2;
-  public static final int DATATYPE = 3;
+  public static final int RELATIONSHIP = RDFToLPGMapper.RELATIONSHIP;
+  public static final int LABEL = RDFToLPGMapper.LABEL;
+  public static final int PROPERTY = RDFToLPGMapper.PROPERTY;
+  public static final int DATATYPE = RDFToLPGMapper.DATATYPE;
   protected final Log log;
   private static final String[] EMPTY_ARRAY = new String[0];
+  // one in so many statements is timed, and the stats are updated once per batch (or so many
+  // statements, whichever comes first) rather than on every statement
+  private static final int STATS_SAMPLING = 64;
+  private static final int STATS_REPORT_STATEMENTS = 100_000;
   protected Transaction tx;
   protected final RDFParserConfig parserConfig;
-  private final Map<String, String> vocMappings;
+  private final RDFToLPGMapper mapper;
   protected GraphDatabaseService graphdb;
   protected NsPrefixMap namespaces;
   protected Set<Statement> statements = new HashSet<>();
@@ -55,7 +52,13 @@ public abstract class RDFToLPGStatementProcessor extends ConfiguredStatementHand
   public long mappedTripleCounter = 0;
   protected final ValueFactory vf = SimpleValueFactory.getInstance();
   protected StringBuilder loadWarnings = new StringBuilder();
-  protected boolean datatypeConflictFound = false;
+  protected volatile boolean datatypeConflictFound = false;
+  // only set by the processors that report their stats
+  protected ImportStats stats;
+  private long unreportedStatements = 0;
+  private long unreportedSamples = 0;
+  private long unreportedSampledNanos = 0;
+  private long unreportedPeriodicNanos = 0;
 
 
   public RDFToLPGStatementProcessor(GraphDatabaseService db, Transaction tx, RDFParserConfig conf,
@@ -64,20 +67,7 @@ public abstract class RDFToLPGStatementProcessor extends ConfiguredStatementHand
     this.tx = tx;
     this.parserConfig = conf;
     log = l;
-    //initialise vocMappings  if needed
-    if (this.parserConfig.getGraphConf().getHandleVocabUris()
-        == GraphConfig.GRAPHCONF_VOC_URI_MAP) {
-      Map<String, String> mappingsTemp = getImportMappingsFromDB(this.graphdb);
-      if (mappingsTemp.containsKey(RDF.TYPE.stringValue())) {
-        //a mapping on RDF.TYPE is illegal
-        mappingsTemp.remove(RDF.TYPE.stringValue());
-        log.debug(
-            "Mapping on rdf:type property is not applicable in RDF import and will be discarded");
-      }
-      this.vocMappings = mappingsTemp;
-    } else {
-      this.vocMappings = null;
-    }
+    mapper = new RDFToLPGMapper(db, conf, l);
   }
 
   private void loadNamespaces() throws InvalidNamespacePrefixDefinitionInDB {
@@ -85,94 +75,14 @@ public abstract class RDFToLPGStatementProcessor extends ConfiguredStatementHand
   }
 
   /**
-   * Processing for literals as follows Mapping according to this figure:
-   * https://www.w3.org/TR/xmlschema11-2/#built-in-datatypes String -> String Each sub-category of
-   * integer -> long decimal, float, and double -> double boolean -> boolean Custom data type ->
-   * String (value + CUSTOM_DATA_TYPE_SEPERATOR + custom DT IRI)
-   *
-   * @return processed literal
+   * @return the value the literal is given as a property, see {@link RDFToLPGMapper}
    */
   protected Object getObjectValue(IRI propertyIRI, Literal object) {
-    IRI datatype = object.getDatatype();
-    if (datatype.equals(XMLSchema.STRING) || datatype.equals(RDF.LANGSTRING)) {
-      final Optional<String> language = object.getLanguage();
-      if (parserConfig.getLanguageFilter() == null || !language.isPresent() || parserConfig
-          .getLanguageFilter().equals(language.get())) {
-        return object.stringValue() + (
-            parserConfig.getGraphConf().isKeepLangTag() && language.isPresent() ? "@"
-                + language.get()
-                : "");
-      } else {
-        //filtered by lang
-        return null;
-      }
-    } else if (typeMapsToLongType(datatype)) {
-      return object.longValue();
-    } else if (typeMapsToDouble(datatype)) {
-      return object.doubleValue();
-    } else if (datatype.equals(XMLSchema.BOOLEAN)) {
-      return object.booleanValue();
-    } else if (datatype.equals(XMLSchema.DATETIME)) {
-      try {
-        return DateUtils.parseDateTime(object.stringValue());
-      } catch (IllegalArgumentException e) {
-        //if date cannot be parsed we return string value
-        return object.stringValue();
-      }
-    } else if (datatype.equals(XMLSchema.DATE)) {
-      try {
-        return DateUtils.parseDate(object.stringValue());
-      } catch (IllegalArgumentException e) {
-        //if date cannot be parsed we return string value
-        return object.stringValue();
-      }
-    } else {
-      //it's a custom data type
-      if (parserConfig.getGraphConf().isKeepCustomDataTypes() && !(
-          parserConfig.getGraphConf().getHandleVocabUris() == GRAPHCONF_VOC_URI_IGNORE
-              || parserConfig.getGraphConf().getHandleVocabUris() == GRAPHCONF_VOC_URI_MAP)) {
-        //keep custom type as long as property is not absent from customDT list
-        if (parserConfig.getGraphConf().getCustomDataTypePropList() == null || parserConfig
-            .getGraphConf().getCustomDataTypePropList()
-            .contains(propertyIRI.stringValue())) {
-          return getValueWithDatatype(datatype, object.stringValue());
-        } else {
-          return object.stringValue();
-        }
-      }
-    }
-    // default
-    return object.stringValue();
+    return mapper.getObjectValue(propertyIRI, object, namespaces);
   }
-  
-  
 
   protected String getValueWithDatatype(IRI datatype, String value) {
-    StringBuilder result = new StringBuilder(value);
-    result.append(CUSTOM_DATA_TYPE_SEPERATOR);
-    if (parserConfig.getGraphConf().getHandleVocabUris() == GRAPHCONF_VOC_URI_SHORTEN) {
-      result.append(handleIRI(datatype, DATATYPE));
-    } else {
-      result.append(datatype.stringValue());
-    }
-    return result.toString();
-  }
-
-  private boolean typeMapsToDouble(IRI datatype) {
-    return datatype.equals(XMLSchema.DECIMAL) || datatype.equals(XMLSchema.DOUBLE) ||
-        datatype.equals(XMLSchema.FLOAT);
-  }
-
-  private boolean typeMapsToLongType(IRI datatype) {
-    return datatype.equals(XMLSchema.INTEGER) || datatype.equals(XMLSchema.LONG) || datatype
-        .equals(XMLSchema.INT) ||
-        datatype.equals(XMLSchema.SHORT) || datatype.equals(XMLSchema.BYTE) ||
-        datatype.equals(XMLSchema.NON_NEGATIVE_INTEGER) || datatype
-        .equals(XMLSchema.POSITIVE_INTEGER) ||
-        datatype.equals(XMLSchema.UNSIGNED_LONG) || datatype.equals(XMLSchema.UNSIGNED_INT) ||
-        datatype.equals(XMLSchema.UNSIGNED_SHORT) || datatype.equals(XMLSchema.UNSIGNED_BYTE) ||
-        datatype.equals(XMLSchema.NON_POSITIVE_INTEGER) || datatype
-        .equals(XMLSchema.NEGATIVE_INTEGER);
+    return mapper.getValueWithDatatype(datatype, value, namespaces);
   }
 
   @Override
@@ -182,54 +92,9 @@ public abstract class RDFToLPGStatementProcessor extends ConfiguredStatementHand
 
 
   protected String handleIRI(IRI iri, int elementType) {
-    //TODO: would caching this improve perf? It's kind of cached in getPrefix()
-    if (parserConfig.getGraphConf().getHandleVocabUris() == GRAPHCONF_VOC_URI_SHORTEN ||
-        parserConfig.getGraphConf().getHandleVocabUris() == GRAPHCONF_VOC_URI_SHORTEN_STRICT) {
-      String localName = iri.getLocalName();
-      String prefix = namespaces.getPrefixOrAdd(iri.getNamespace(),
-          parserConfig.getGraphConf().getHandleVocabUris() == GRAPHCONF_VOC_URI_SHORTEN_STRICT);
-      return prefix + PREFIX_SEPARATOR + localName;
-    } else if (parserConfig.getGraphConf().getHandleVocabUris() == GRAPHCONF_VOC_URI_IGNORE) {
-      return applyCapitalisation(iri.getLocalName(), elementType);
-    } else if (parserConfig.getGraphConf().getHandleVocabUris() == GRAPHCONF_VOC_URI_MAP) {
-      return mapElement(iri, elementType, null);
-    } else { //if (handleUris  ==  URL_KEEP){
-      return iri.stringValue();
-    }
+    return mapper.handleIRI(iri, elementType, namespaces);
   }
 
-  private String applyCapitalisation(String name, int element) {
-    if (parserConfig.getGraphConf().isApplyNeo4jNaming()) {
-      //apply Neo4j naming recommendations
-      if (element == RELATIONSHIP) {
-        return name.toUpperCase();
-      } else if (element == LABEL) {
-        return name.substring(0, 1).toUpperCase() + name.substring(1);
-      } else if (element == PROPERTY) {
-        return name.substring(0, 1).toLowerCase() + name.substring(1);
-      } else {
-        //should not happen
-        return name;
-      }
-    } else {
-      //keep capitalisation as is
-      return name;
-    }
-  }
-
-
-  private String mapElement(IRI iri, int elementType, String mappingId) {
-    //Placeholder for mapping based data load
-    //if mappingId is null use default mapping
-    if (this.vocMappings.containsKey(iri.stringValue())) {
-      return this.vocMappings.get(iri.stringValue());
-    } else {
-      //if no mapping defined, default to 'IGNORE'
-      return applyCapitalisation(iri.getLocalName(), elementType);
-    }
-  }
-
-
   @Override
   public void startRDF() throws RDFHandlerException {
     if (parserConfig.getGraphConf().getHandleVocabUris() == GRAPHCONF_VOC_URI_SHORTEN ||
@@ -304,32 +169,36 @@ public abstract class RDFToLPGStatementProcessor extends ConfiguredStatementHand
 
     String propName = handleIRI(propertyIRI, PROPERTY);
 
-    if (parserConfig.getGraphConf().getHandleMultival() == GRAPHCONF_MULTIVAL_PROP_OVERWRITE) {
+    if (isMultivalued(propertyIRI)) {
+      if (props.containsKey(propName)) {
+        List<Object> propVals = (List<Object>) props.get(propName);
+        propVals.add(propValue);
+
+        // If multiple datatypes are tried to be stored in the same List,
+        // a java.lang.ArrayStoreException arises
+      } else {
+        List<Object> propVals = new ArrayList<>();
+        propVals.add(propValue);
+        props.put(propName, propVals);
+      }
+    } else {
       // Ok for single valued props. If applied to multivalued ones
       // only the last value read is kept.
+      // (also if handleMultival set to ARRAY but prop not in list)
       props.put(propName, propValue);
-    } else if (parserConfig.getGraphConf().getHandleMultival() == GRAPHCONF_MULTIVAL_PROP_ARRAY) {
-      if (parserConfig.getGraphConf().getMultivalPropList() == null || parserConfig.getGraphConf()
-          .getMultivalPropList()
-          .contains(propertyIRI.stringValue())) {
-        if (props.containsKey(propName)) {
-          List<Object> propVals = (List<Object>) props.get(propName);
-          propVals.add(propValue);
-
-          // If multiple datatypes are tried to be stored in the same List,
-          // a java.lang.ArrayStoreException arises
-        } else {
-          List<Object> propVals = new ArrayList<>();
-          propVals.add(propValue);
-          props.put(propName, propVals);
-        }
-      } else {
-        //if handleMultival set to ARRAY but prop not in list, then default to overwrite.
-        props.put(propName, propValue);
-      }
     }
   }
 
+  /**
+   * @return true if the values of the property are to be kept in an array, false if each value
+   * overwrites the previous one
+   */
+  protected boolean isMultivalued(IRI propertyIRI) {
+    return parserConfig.getGraphConf().getHandleMultival() == GRAPHCONF_MULTIVAL_PROP_ARRAY && (
+        parserConfig.getGraphConf().getMultivalPropList() == null || parserConfig.getGraphConf()
+            .getMultivalPropList().contains(propertyIRI.stringValue()));
+  }
+
   protected void setLabel(String subjectUri, String label) {
     Set<String> labels;
 
@@ -343,15 +212,40 @@ public abstract class RDFToLPGStatementProcessor extends ConfiguredStatementHand
     labels.add(label);
   }
 
-  private void addResource(String subjectUri) {
+  protected void addResource(String subjectUri) {
 
     if (!resourceLabels.containsKey(subjectUri)) {
       initialise(subjectUri);
     }
   }
 
+  /**
+   * Adds the relationship (and its end nodes) to the current batch.
+   */
+  protected void addRelationship(String subjectUri, IRI predicate, String objectUri) {
+    addResource(subjectUri);
+    addResource(objectUri);
+    addStatement(vf.createStatement(vf.createIRI(subjectUri), predicate, vf.createIRI(objectUri)));
+  }
+
+  /**
+   * Adds the relationship (and its end nodes) to the current batch with a property taken from an
+   * RDF* statement about it.
+   */
+  protected boolean addRelationshipProp(String subjectUri, IRI relPredicate, String objectUri,
+      IRI predicate, Literal propValueRaw) {
+    addResource(subjectUri);
+    addResource(objectUri);
+    Statement stmt = vf.createStatement(vf.createIRI(subjectUri), relPredicate,
+        vf.createIRI(objectUri));
+    addStatement(stmt);
+    return addRelProp(stmt, predicate, propValueRaw);
+  }
+
   @Override
   public void handleStatement(Statement st) {
+    boolean timed = stats != null && totalTriplesParsed % STATS_SAMPLING == 0;
+    long start = timed ? System.nanoTime() : 0;
     IRI predicate = st.getPredicate();
     Resource subject = st.getSubject();
     Value object = st.getObject();
@@ -375,12 +269,8 @@ public abstract class RDFToLPGStatementProcessor extends ConfiguredStatementHand
           String objectUri1 = reifiedStatement.getObject() instanceof BNode? "bnode://" +
                   reifiedStatement.getObject().stringValue(): reifiedStatement.getObject().stringValue();
 
-          addResource(subjectUri1);
-          addResource(objectUri1);
-          Statement stmt = vf.createStatement(vf.createIRI(subjectUri1),
-              reifiedStatement.getPredicate(), vf.createIRI(objectUri1));
-          addStatement(stmt);
-          addRelProp(stmt, predicate, (Literal)object);
+          addRelationshipProp(subjectUri1, reifiedStatement.getPredicate(), objectUri1, predicate,
+              (Literal) object);
           mappedTripleCounter++;
         }
       } else if (object instanceof Literal) {
@@ -398,11 +288,7 @@ public abstract class RDFToLPGStatementProcessor extends ConfiguredStatementHand
 
         if (parserConfig.getGraphConf().getHandleRDFTypes()
             == GRAPHCONF_RDFTYPES_AS_LABELS_AND_NODES) {
-          addResource(subjectUri);
-          addResource(object.stringValue());
-          //addStatement(st);
-          addStatement(vf.createStatement(vf.createIRI(subjectUri),
-                  predicate, object));
+          addRelationship(subjectUri, predicate, object.stringValue());
         }
 
         mappedTripleCounter++;
@@ -410,20 +296,51 @@ public abstract class RDFToLPGStatementProcessor extends ConfiguredStatementHand
       } else if (object instanceof Triple) {
         //ignore RDF* statements with triples as object
       } else {
-        addResource(subjectUri);
         String objectUri = object instanceof BNode? "bnode://" + object.stringValue(): object.stringValue();
-        addResource(objectUri);
-        addStatement(vf.createStatement(vf.createIRI(subjectUri),
-                predicate, vf.createIRI(objectUri)));
+        addRelationship(subjectUri, predicate, objectUri);
         mappedTripleCounter++;
       }
     }
     totalTriplesParsed++;
 
-    if (parserConfig.getCommitSize() != Long.MAX_VALUE && mappedTripleCounter != 0
-        && mappedTripleCounter % parserConfig.getCommitSize() == 0) {
+    // the counter is reset on every partial commit. The commit size can change between batches
+    long periodicNanos = 0;
+    boolean periodic = parserConfig.getCommitSize() != Long.MAX_VALUE && mappedTripleCounter != 0
+        && mappedTripleCounter >= parserConfig.getCommitSize();
+    if (periodic) {
+      long periodicStart = stats != null ? System.nanoTime() : 0;
       periodicOperation();
+      periodicNanos = stats != null ? System.nanoTime() - periodicStart : 0;
+    }
+    if (stats != null) {
+      unreportedStatements++;
+      unreportedPeriodicNanos += periodicNanos;
+      if (timed) {
+        unreportedSamples++;
+        unreportedSampledNanos += System.nanoTime() - start - periodicNanos;
+      }
+      if (periodic || unreportedStatements >= STATS_REPORT_STATEMENTS) {
+        reportStatementStats();
+      }
+    }
+  }
+
+  /**
+   * Adds the statements handled since the last call to the stats, with the time mapping them
+   * estimated from the ones timed. Called once per batch, and by the processors that report their
+   * stats when parsing ends.
+   */
+  protected void reportStatementStats() {
+    if (stats == null || unreportedStatements == 0) {
+      return;
     }
+    long mappingNanos = unreportedSamples == 0 ? 0
+        : Math.round((double) unreportedSampledNanos / unreportedSamples * unreportedStatements);
+    stats.statementsHandled(unreportedStatements, mappingNanos, unreportedPeriodicNanos);
+    unreportedStatements = 0;
+    unreportedSamples = 0;
+    unreportedSampledNanos = 0;
+    unreportedPeriodicNanos = 0;
   }
 
   protected boolean addRelProp(Statement stmt, IRI predicate, Literal propValueRaw){
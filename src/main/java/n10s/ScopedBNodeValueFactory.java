@@ -0,0 +1,53 @@
+package n10s;
+
+import com.google.common.hash.Hashing;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import org.eclipse.rdf4j.model.BNode;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+
+/**
+ * Value factory for parsers that preserve blank node ids (needed when a file is parsed in several
+ * pieces that must agree on them). The ids are prefixed with the scope they belong to, so that
+ * the same label in two different files, or in two imports of the same file, doesn't end up being
+ * the same blank node (and the same bnode:// node in the graph).
+ */
+public class ScopedBNodeValueFactory extends SimpleValueFactory {
+
+  private final String prefix;
+
+  private ScopedBNodeValueFactory(String prefix) {
+    this.prefix = prefix;
+  }
+
+  /**
+   * @return a factory with a scope of its own, for a single parse
+   */
+  public static ScopedBNodeValueFactory newScope() {
+    return new ScopedBNodeValueFactory(
+        UUID.randomUUID().toString().replace("-", "").substring(0, 16) + "_");
+  }
+
+  /**
+   * @return a factory whose scope is given by the name, the same for the same name
+   */
+  public static ScopedBNodeValueFactory namedScope(String name) {
+    return new ScopedBNodeValueFactory(hash(name) + "_");
+  }
+
+  /**
+   * @return a factory with a scope nested in this one, e.g. for an entry of an archive
+   */
+  public ScopedBNodeValueFactory nestedScope(String name) {
+    return new ScopedBNodeValueFactory(prefix + hash(name) + "_");
+  }
+
+  @Override
+  public BNode createBNode(String nodeID) {
+    return super.createBNode(prefix + nodeID);
+  }
+
+  private static String hash(String name) {
+    return Hashing.sha256().hashString(name, StandardCharsets.UTF_8).toString().substring(0, 16);
+  }
+}
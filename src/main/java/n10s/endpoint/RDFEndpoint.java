@@ -9,6 +9,7 @@ import static n10s.mapping.MappingUtils.*;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import javax.ws.rs.GET;
 import javax.ws.rs.HeaderParam;
@@ -22,6 +23,7 @@ import javax.ws.rs.core.Response;
 import javax.ws.rs.core.StreamingOutput;
 import n10s.graphconfig.GraphConfig;
 import n10s.graphconfig.GraphConfig.GraphConfigNotFound;
+import n10s.quadrdf.NamedGraphExporter;
 import n10s.rdf.export.ExportProcessor;
 import n10s.rdf.export.LPGRDFToRDFProcesssor;
 import n10s.rdf.export.LPGToRDFProcesssor;
@@ -255,6 +257,30 @@ public class RDFEndpoint {
     return rdfFormat.equals(RDFFormat.TURTLESTAR) ||  rdfFormat.equals(RDFFormat.TRIGSTAR);
   }
 
+  @GET
+  @Path("/{dbname}/graph")
+  @Produces({"application/n-quads", "application/trig"})
+  public Response exportNamedGraphs(@Context DatabaseManagementService gds,
+      @PathParam("dbname") String dbNameParam,
+      @QueryParam("graphuri") List<String> namedGraphIds,
+      @QueryParam("format") String format,
+      @HeaderParam("accept") String acceptHeaderParam) {
+    // named graphs only serialise as quads, anything but TriG gets N-Quads
+    RDFFormat rdfFormat = getFormat(acceptHeaderParam, format).equals(RDFFormat.TRIG)
+        ? RDFFormat.TRIG : RDFFormat.NQUADS;
+    return Response.ok().type(rdfFormat.getDefaultMIMEType())
+        .entity((StreamingOutput) outputStream -> {
+          GraphDatabaseService neo4j = gds.database(dbNameParam);
+          NamedGraphExporter exporter = new NamedGraphExporter(neo4j, log, rdfFormat);
+          try {
+            exporter.write(namedGraphIds.isEmpty() ? exporter.graphUris() : namedGraphIds,
+                outputStream);
+          } catch (Exception e) {
+            handleSerialisationError(outputStream, e, rdfFormat.getDefaultMIMEType(), null);
+          }
+        }).build();
+  }
+
   @GET
   @Path("/{dbname}/onto")
   @Produces({"application/rdf+xml", "text/plain", "text/turtle", "text/n3",
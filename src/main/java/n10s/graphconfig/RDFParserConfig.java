@@ -14,15 +14,37 @@ public class RDFParserConfig {
   private static final long DEFAULT_NODE_CACHE_SIZE = 10000;
   //number of triples streamed by default
   private static final int DEFAULT_STREAM_TRIPLE_LIMIT = 1000;
+  //target duration of each partial commit in adaptive mode
+  private static final long DEFAULT_TARGET_COMMIT_MILLIS = 2000;
+  //transaction state allowed per partial commit in adaptive mode
+  private static final long DEFAULT_TX_MEMORY_BUDGET = Runtime.getRuntime().maxMemory() / 10;
+  //resources an initial load expects to create, sizes its bloom filter
+  private static final long DEFAULT_EXPECTED_RESOURCES = 10_000_000;
+  //threads parsing line based formats (N-Triples, N-Quads)
+  private static final int DEFAULT_PARSER_THREADS = Runtime.getRuntime().availableProcessors();
   private final Set<String> predicateExclusionList;
   private final boolean verifyUriSyntax;
   private final long nodeCacheSize;
   private final String languageFilter;
-  private long commitSize;
+  // may be changed by the writer thread of a pipelined import with adaptiveCommitSize
+  private volatile long commitSize;
   private long streamTripleLimit;
   private boolean abortOnError;
   private GraphConfig graphConf;
   private boolean strictDataTypeCheck;
+  private boolean pipelined;
+  private boolean initialLoad;
+  private long expectedResources;
+  private int parserThreads;
+  private boolean adaptiveCommitSize;
+  private long targetCommitMillis;
+  private long txMemoryBudget;
+  private String jobId;
+  private boolean resume;
+  private boolean concurrent;
+  private boolean delta;
+  private String sourceId;
+  private String deltaDir;
 
   public RDFParserConfig(Map<String, Object> props, GraphConfig gc) {
     this.graphConf = gc;
@@ -45,6 +67,29 @@ public class RDFParserConfig {
             .get("abortOnError") : true;
     strictDataTypeCheck = props.containsKey("strictDataTypeCheck") ? (Boolean) props
             .get("strictDataTypeCheck") : true;
+    pipelined = props.containsKey("pipelined") ? (Boolean) props
+            .get("pipelined") : false;
+    initialLoad = props.containsKey("initialLoad") ? (Boolean) props
+            .get("initialLoad") : false;
+    expectedResources = props.containsKey("expectedResources") ? (long) props
+            .get("expectedResources") : DEFAULT_EXPECTED_RESOURCES;
+    parserThreads = props.containsKey("parserThreads") ? ((Long) props
+            .get("parserThreads")).intValue() : DEFAULT_PARSER_THREADS;
+    adaptiveCommitSize = props.containsKey("adaptiveCommitSize") ? (Boolean) props
+            .get("adaptiveCommitSize") : false;
+    targetCommitMillis = props.containsKey("targetCommitMillis") ? (long) props
+            .get("targetCommitMillis") : DEFAULT_TARGET_COMMIT_MILLIS;
+    txMemoryBudget = props.containsKey("txMemoryBudget") ? (long) props
+            .get("txMemoryBudget") : DEFAULT_TX_MEMORY_BUDGET;
+    jobId = props.containsKey("jobId") ? (String) props.get("jobId") : null;
+    resume = props.containsKey("resume") ? (Boolean) props
+            .get("resume") : false;
+    concurrent = props.containsKey("concurrent") ? (Boolean) props
+            .get("concurrent") : false;
+    delta = props.containsKey("delta") ? (Boolean) props
+            .get("delta") : false;
+    sourceId = props.containsKey("sourceId") ? (String) props.get("sourceId") : null;
+    deltaDir = props.containsKey("deltaDir") ? (String) props.get("deltaDir") : null;
   }
 
   public Set<String> getPredicateExclusionList() {
@@ -83,6 +128,32 @@ public class RDFParserConfig {
 
   public boolean isStrictDataTypeCheck() { return strictDataTypeCheck;  }
 
+  public boolean isPipelined() { return pipelined; }
+
+  public boolean isInitialLoad() { return initialLoad; }
+
+  public long getExpectedResources() { return expectedResources; }
+
+  public int getParserThreads() { return parserThreads; }
+
+  public boolean isAdaptiveCommitSize() { return adaptiveCommitSize; }
+
+  public long getTargetCommitMillis() { return targetCommitMillis; }
+
+  public long getTxMemoryBudget() { return txMemoryBudget; }
+
+  public String getJobId() { return jobId; }
+
+  public boolean isResume() { return resume; }
+
+  public boolean isConcurrent() { return concurrent; }
+
+  public boolean isDelta() { return delta; }
+
+  public String getSourceId() { return sourceId; }
+
+  public String getDeltaDir() { return deltaDir; }
+
   public Map<String, Object> getConfigSummary() {
     Map<String, Object> summary = new HashMap<>();
 
@@ -110,6 +181,58 @@ public class RDFParserConfig {
       summary.put("abortOnError", abortOnError);
     }
 
+    if (pipelined) {
+      summary.put("pipelined", pipelined);
+    }
+
+    if (initialLoad) {
+      summary.put("initialLoad", initialLoad);
+    }
+
+    if (expectedResources != DEFAULT_EXPECTED_RESOURCES) {
+      summary.put("expectedResources", expectedResources);
+    }
+
+    if (parserThreads != DEFAULT_PARSER_THREADS) {
+      summary.put("parserThreads", parserThreads);
+    }
+
+    if (adaptiveCommitSize) {
+      summary.put("adaptiveCommitSize", adaptiveCommitSize);
+    }
+
+    if (targetCommitMillis != DEFAULT_TARGET_COMMIT_MILLIS) {
+      summary.put("targetCommitMillis", targetCommitMillis);
+    }
+
+    if (txMemoryBudget != DEFAULT_TX_MEMORY_BUDGET) {
+      summary.put("txMemoryBudget", txMemoryBudget);
+    }
+
+    if (jobId != null) {
+      summary.put("jobId", jobId);
+    }
+
+    if (resume) {
+      summary.put("resume", resume);
+    }
+
+    if (concurrent) {
+      summary.put("concurrent", concurrent);
+    }
+
+    if (delta) {
+      summary.put("delta", delta);
+    }
+
+    if (sourceId != null) {
+      summary.put("sourceId", sourceId);
+    }
+
+    if (deltaDir != null) {
+      summary.put("deltaDir", deltaDir);
+    }
+
     if (streamTripleLimit != DEFAULT_STREAM_TRIPLE_LIMIT) {
       summary.put("limit", streamTripleLimit);
     }
@@ -9,6 +9,7 @@ import n10s.result.NamespacePrefixesResult;
 import n10s.utils.InvalidNamespacePrefixDefinitionInDB;
 import n10s.utils.NamespacePrefixConflictException;
 import n10s.utils.NsPrefixMap;
+import n10s.utils.NsPrefixRegistry;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Label;
 import org.neo4j.graphdb.Node;
@@ -87,6 +88,7 @@ public class NsPrefixDefProcedures {
 
     if (namespacePrefixDefinitionNodes.hasNext()) {
       namespacePrefixDefinitionNodes.next().delete();
+      NsPrefixRegistry.prefixesChangedBy(tx);
     }
 
     return Stream.empty();
@@ -7,6 +7,7 @@ import java.util.List;
 import java.util.Map;
 import n10s.CommonProcedures;
 import n10s.ConfiguredStatementHandler.TripleLimitReached;
+import n10s.FetchCache;
 import n10s.RDFImportException;
 import n10s.graphconfig.GraphConfig;
 import n10s.graphconfig.GraphConfig.GraphConfigNotFound;
@@ -63,6 +64,11 @@ public class OntoProcedures extends CommonProcedures {
         importResults.setTriplesLoaded(ontoImporter.totalTriplesMapped);
         importResults.setTriplesParsed(ontoImporter.totalTriplesParsed);
         importResults.setConfigSummary(props);
+        fetchCompleted();
+      } catch (FetchCache.SourceNotModified e) {
+        // nothing to import
+        importResults.setExtraInfo(e.getMessage());
+        importResults.setConfigSummary(props);
       } catch (IOException | RDFHandlerException | QueryExecutionException | RDFParseException e) {
         importResults.setTerminationKO(e.getMessage());
         importResults.setTriplesLoaded(ontoImporter.totalTriplesMapped);
@@ -0,0 +1,213 @@
+package n10s.quadrdf;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.ResourceIterator;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.TransientFailureException;
+import org.neo4j.graphdb.schema.IndexDefinition;
+import org.neo4j.logging.Log;
+
+/**
+ * Deletes, or moves to another graph, all the nodes of a named graph (the ones with its uri as
+ * graphUri) without being given its content. The nodes are found through the index on
+ * :Resource(graphUri) if there is one, and processed in batches, each in its own transaction, in
+ * parallel. A drop deletes the relationships first, each one by the batch of its start node, and
+ * then the nodes. Transactions that deadlock with each other are retried.
+ */
+public class NamedGraphDropper {
+
+  public static final long DEFAULT_BATCH_SIZE = 10_000;
+  public static final int DEFAULT_PARALLELISM = Math.min(4,
+      Runtime.getRuntime().availableProcessors());
+  private static final int MAX_RETRIES = 5;
+  private static final int RETRY_BACKOFF_MILLIS = 50;
+  private static final Label RESOURCE = RDFQuadToLPGStatementProcessor.RESOURCE;
+
+  private final GraphDatabaseService graphdb;
+  private final Log log;
+  private final int batchSize;
+  private final int parallelism;
+  private long nodesDeleted = 0;
+  private long relationshipsDeleted = 0;
+
+  public NamedGraphDropper(GraphDatabaseService graphdb, Log log, long batchSize,
+      int parallelism) {
+    this.graphdb = graphdb;
+    this.log = log;
+    this.batchSize = (int) Math.max(1, Math.min(batchSize, Integer.MAX_VALUE));
+    this.parallelism = Math.max(1, parallelism);
+  }
+
+  /**
+   * @return true if there is an index on :Resource(graphUri) to find the nodes of a graph
+   */
+  public static boolean isGraphUriIndexed(Transaction tx) {
+    for (IndexDefinition index : tx.schema().getIndexes(RESOURCE)) {
+      if (!index.isCompositeIndex()
+          && index.getPropertyKeys().iterator().next().equals("graphUri")) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Deletes the nodes of the graph and their relationships.
+   */
+  public void drop(String graphUri) {
+    long[] nodeIds = nodeIds(graphUri);
+    if (nodeIds.length == 0) {
+      return;
+    }
+    relationshipsDeleted += inBatches(nodeIds, "Relationships of graph " + graphUri + " deleted",
+        node -> {
+          long deleted = 0;
+          for (Relationship rel : node.getRelationships(Direction.OUTGOING)) {
+            rel.delete();
+            deleted++;
+          }
+          return deleted;
+        });
+    // only relationships from nodes out of the graph are left
+    relationshipsDeleted += inBatches(nodeIds, "Nodes of graph " + graphUri + " deleted",
+        node -> {
+          long deleted = 0;
+          for (Relationship rel : node.getRelationships()) {
+            rel.delete();
+            deleted++;
+          }
+          node.delete();
+          return deleted;
+        });
+    nodesDeleted += nodeIds.length;
+  }
+
+  /**
+   * Moves the nodes of a graph to another one, that must have no nodes.
+   *
+   * @return the number of nodes moved
+   */
+  public long rename(String graphUri, String newGraphUri) {
+    long[] nodeIds = nodeIds(graphUri);
+    inBatches(nodeIds, "Nodes of graph " + graphUri + " moved to " + newGraphUri,
+        node -> {
+          node.setProperty("graphUri", newGraphUri);
+          return 0;
+        });
+    return nodeIds.length;
+  }
+
+  public long getNodesDeleted() {
+    return nodesDeleted;
+  }
+
+  public long getRelationshipsDeleted() {
+    return relationshipsDeleted;
+  }
+
+  private long[] nodeIds(String graphUri) {
+    long[] nodeIds = new long[1024];
+    int count = 0;
+    try (Transaction tx = graphdb.beginTx();
+        ResourceIterator<Node> nodes = tx.findNodes(RESOURCE, "graphUri", graphUri)) {
+      while (nodes.hasNext()) {
+        if (count == nodeIds.length) {
+          nodeIds = Arrays.copyOf(nodeIds, count * 2);
+        }
+        nodeIds[count++] = nodes.next().getId();
+      }
+    }
+    return Arrays.copyOf(nodeIds, count);
+  }
+
+  /**
+   * Runs the operation on every node, a batch per transaction, logging the progress as batches
+   * complete.
+   *
+   * @return the sum of what the operation returned
+   */
+  private long inBatches(long[] nodeIds, String progressMessage, NodeOperation operation) {
+    int batches = (nodeIds.length + batchSize - 1) / batchSize;
+    if (batches == 0) {
+      return 0;
+    }
+    ExecutorService pool = Executors.newFixedThreadPool(Math.min(parallelism, batches),
+        new ThreadFactoryBuilder().setNameFormat("n10s-graph-drop-%d").setDaemon(true).build());
+    try {
+      ExecutorCompletionService<Long> completion = new ExecutorCompletionService<>(pool);
+      for (int from = 0; from < nodeIds.length; from += batchSize) {
+        long[] batch = Arrays.copyOfRange(nodeIds, from, Math.min(from + batchSize,
+            nodeIds.length));
+        completion.submit(() -> inTransaction(batch, operation));
+      }
+      long total = 0;
+      long done = 0;
+      for (int i = 0; i < batches; i++) {
+        total += completion.take().get();
+        done = Math.min(done + batchSize, nodeIds.length);
+        log.info(progressMessage + ": " + done + " of " + nodeIds.length + " nodes");
+      }
+      return total;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new NamedGraphException("Interrupted while processing a named graph. ", e);
+    } catch (ExecutionException e) {
+      throw new NamedGraphException("Problems when processing a named graph. ", e);
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  private long inTransaction(long[] nodeIds, NodeOperation operation) {
+    for (int attempt = 1; ; attempt++) {
+      try (Transaction tx = graphdb.beginTx()) {
+        long total = 0;
+        for (long nodeId : nodeIds) {
+          try {
+            total += operation.apply(tx.getNodeById(nodeId));
+          } catch (NotFoundException e) {
+            // deleted since the nodes of the graph were listed
+          }
+        }
+        tx.commit();
+        return total;
+      } catch (TransientFailureException e) {
+        // deadlocks between the batches deleting relationships end up here
+        if (attempt == MAX_RETRIES) {
+          throw e;
+        }
+        log.debug("Retrying batch of a named graph after: " + e.getMessage());
+        try {
+          Thread.sleep(ThreadLocalRandom.current().nextInt(RETRY_BACKOFF_MILLIS * attempt));
+        } catch (InterruptedException ie) {
+          Thread.currentThread().interrupt();
+          throw e;
+        }
+      }
+    }
+  }
+
+  private interface NodeOperation {
+
+    long apply(Node node);
+  }
+
+  public static class NamedGraphException extends RuntimeException {
+
+    public NamedGraphException(String message, Exception cause) {
+      super(message, cause);
+    }
+  }
+}
@@ -0,0 +1,196 @@
+package n10s.quadrdf;
+
+import static n10s.mapping.MappingUtils.getPrefixesInUse;
+
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import n10s.graphconfig.GraphConfig;
+import n10s.rdf.export.LPGRDFToRDFProcesssor;
+import n10s.utils.InvalidNamespacePrefixDefinitionInDB;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.rio.RDFFormat;
+import org.eclipse.rdf4j.rio.RDFHandlerException;
+import org.eclipse.rdf4j.rio.RDFWriter;
+import org.eclipse.rdf4j.rio.Rio;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.logging.Log;
+
+/**
+ * Serialises named graphs (the nodes with the graph's uri as graphUri, and their relationships)
+ * as N-Quads or TriG, one graph at a time, streaming the statements of each graph from the index
+ * on :Resource(graphUri) straight to the writer. Graphs can be written to a file each, several of
+ * them in parallel, each in its own transaction.
+ */
+public class NamedGraphExporter {
+
+  public static final int DEFAULT_PARALLELISM = NamedGraphDropper.DEFAULT_PARALLELISM;
+  private static final int MAX_FILE_NAME_PREFIX = 64;
+
+  private final GraphDatabaseService graphdb;
+  private final Log log;
+  private final RDFFormat format;
+
+  public NamedGraphExporter(GraphDatabaseService graphdb, Log log, RDFFormat format) {
+    this.graphdb = graphdb;
+    this.log = log;
+    this.format = format;
+  }
+
+  /**
+   * @return the uris of all the named graphs in the DB
+   */
+  public List<String> graphUris() throws InvalidNamespacePrefixDefinitionInDB {
+    List<String> graphUris = new ArrayList<>();
+    try (Transaction tx = graphdb.beginTx();
+        Stream<String> uris = newProcessor(tx).streamNamedGraphUris()) {
+      uris.forEach(graphUris::add);
+    }
+    return graphUris;
+  }
+
+  /**
+   * Writes the graphs one after the other to the output stream, in a single transaction.
+   *
+   * @return the number of statements written
+   */
+  public long write(List<String> graphUris, OutputStream out)
+      throws InvalidNamespacePrefixDefinitionInDB {
+    try (Transaction tx = graphdb.beginTx()) {
+      LPGRDFToRDFProcesssor proc = newProcessor(tx);
+      RDFWriter writer = startWriter(out);
+      long statements = 0;
+      for (String graphUri : graphUris) {
+        statements += write(proc, graphUri, writer);
+      }
+      writer.endRDF();
+      return statements;
+    }
+  }
+
+  /**
+   * Writes each graph to a file of its own in the directory, parallelism of them at a time. The
+   * files are named after the graph uri, see {@link #fileName(String)}, and overwritten if they
+   * exist.
+   *
+   * @return the result for each graph, in the order of the graph uris
+   */
+  public List<GraphFile> writeFiles(List<String> graphUris, Path directory, int parallelism)
+      throws IOException {
+    Files.createDirectories(directory);
+    List<GraphFile> results = new ArrayList<>();
+    if (graphUris.isEmpty()) {
+      return results;
+    }
+    ExecutorService pool = Executors.newFixedThreadPool(
+        Math.max(1, Math.min(parallelism, graphUris.size())),
+        new ThreadFactoryBuilder().setNameFormat("n10s-graph-export-%d").setDaemon(true).build());
+    try {
+      List<Future<Long>> futures = new ArrayList<>();
+      for (String graphUri : graphUris) {
+        GraphFile result = new GraphFile(graphUri, directory.resolve(fileName(graphUri)));
+        results.add(result);
+        futures.add(pool.submit(() -> writeFile(result)));
+      }
+      for (int i = 0; i < futures.size(); i++) {
+        GraphFile result = results.get(i);
+        try {
+          result.statements = futures.get(i).get();
+          log.info("Named graph " + result.graphUri + " exported to " + result.file + ": "
+              + result.statements + " statements");
+        } catch (ExecutionException e) {
+          result.error = e.getCause().getMessage();
+          log.error("Named graph " + result.graphUri + " could not be exported: " + result.error);
+        }
+      }
+      return results;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while exporting named graphs", e);
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  /**
+   * @return the name of the file a graph is exported to: the graph uri, with anything but
+   * letters, digits, dots and dashes turned into underscores, and a hash of the full uri to tell
+   * apart the uris that end up the same, plus the extension of the format
+   */
+  public String fileName(String graphUri) {
+    String name = graphUri.replaceFirst("^[a-zA-Z]+://", "").replaceAll("[^a-zA-Z0-9.-]+", "_");
+    if (name.length() > MAX_FILE_NAME_PREFIX) {
+      name = name.substring(0, MAX_FILE_NAME_PREFIX);
+    }
+    return name + "-" + Hashing.sha256().hashString(graphUri, StandardCharsets.UTF_8).toString()
+        .substring(0, 12) + "." + format.getDefaultFileExtension();
+  }
+
+  private long writeFile(GraphFile result)
+      throws IOException, InvalidNamespacePrefixDefinitionInDB {
+    try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(result.file),
+        1 << 16); Transaction tx = graphdb.beginTx()) {
+      RDFWriter writer = startWriter(out);
+      long statements = write(newProcessor(tx), result.graphUri, writer);
+      writer.endRDF();
+      return statements;
+    }
+  }
+
+  private long write(LPGRDFToRDFProcesssor proc, String graphUri, RDFWriter writer)
+      throws RDFHandlerException {
+    long[] statements = {0};
+    try (Stream<Statement> graph = proc.streamNamedGraph(graphUri)) {
+      graph.forEach(st -> {
+        writer.handleStatement(st);
+        statements[0]++;
+      });
+    }
+    return statements[0];
+  }
+
+  private RDFWriter startWriter(OutputStream out) {
+    RDFWriter writer = Rio.createWriter(format, out);
+    writer.startRDF();
+    if (format.equals(RDFFormat.TRIG)) {
+      getPrefixesInUse(graphdb).forEach(writer::handleNamespace);
+    }
+    return writer;
+  }
+
+  private LPGRDFToRDFProcesssor newProcessor(Transaction tx)
+      throws InvalidNamespacePrefixDefinitionInDB {
+    try {
+      return new LPGRDFToRDFProcesssor(graphdb, tx, new GraphConfig(tx), false);
+    } catch (GraphConfig.GraphConfigNotFound e) {
+      throw new IllegalStateException(
+          "A Graph Config is required for named graphs to be exported");
+    }
+  }
+
+  public static class GraphFile {
+
+    public final String graphUri;
+    public final Path file;
+    public long statements;
+    public String error;
+
+    GraphFile(String graphUri, Path file) {
+      this.graphUri = graphUri;
+      this.file = file;
+    }
+  }
+}
@@ -1,16 +1,28 @@
 package n10s.quadrdf;
 
 import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
 import n10s.CommonProcedures;
+import n10s.ConfiguredStatementHandler;
 import n10s.graphconfig.GraphConfig;
 import n10s.graphconfig.RDFParserConfig;
+import n10s.quadrdf.NamedGraphDropper.NamedGraphException;
 import n10s.rdf.RDFProcedures.DeleteResults;
 import n10s.rdf.RDFProcedures.ImportResults;
+import n10s.utils.ImportDirectory;
+import n10s.utils.InvalidNamespacePrefixDefinitionInDB;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
 import org.eclipse.rdf4j.rio.RDFFormat;
 import org.eclipse.rdf4j.rio.RDFHandlerException;
 import org.eclipse.rdf4j.rio.RDFParseException;
 import org.neo4j.graphdb.QueryExecutionException;
+import org.neo4j.graphdb.TransientFailureException;
 import org.neo4j.procedure.Name;
 
 public class QuadRDFProcedures extends CommonProcedures {
@@ -103,4 +115,220 @@ public class QuadRDFProcedures extends CommonProcedures {
     }
     return deleteResults;
   }
+
+  protected GraphResults doGraphDrop(String graphUri, Map<String, Object> props) {
+    GraphResults results = new GraphResults(graphUri);
+    NamedGraphDropper dropper = newDropper(props);
+    try {
+      dropper.drop(graphUri);
+    } catch (NamedGraphException | TransientFailureException e) {
+      results.setTerminationKO(e.getMessage());
+    }
+    results.setDeleted(dropper);
+    results.addGraphUriIndexWarning(NamedGraphDropper.isGraphUriIndexed(tx));
+    return results;
+  }
+
+  /**
+   * Replaces the content of a named graph with the RDF passed, all of which goes into the graph
+   * whatever graph it was in. By default (swap: true) the new content is loaded into a staging
+   * graph first, and the old content is only dropped and the staging graph renamed if all of it
+   * loaded, so a failed load leaves the graph as it was. Readers don't see both versions: the
+   * graph is partly or wholly empty while the old content is dropped and the new one renamed.
+   * With swap: false the graph is dropped before loading the new content.
+   */
+  protected GraphResults doGraphReplace(String graphUri, String format, String url,
+      String rdfFragment, Map<String, Object> props) {
+    GraphResults results = new GraphResults(graphUri);
+    RDFQuadDirectStatementLoader statementLoader;
+    RDFFormat rdfFormat;
+    try {
+      checkIndexExist();
+      RDFParserConfig conf = new RDFParserConfig(props, new GraphConfig(tx));
+      rdfFormat = getFormat(format);
+      statementLoader = new RDFQuadDirectStatementLoader(db, tx, conf, log);
+    } catch (RDFImportPreRequisitesNotMet | RDFImportBadParams e) {
+      results.setTerminationKO(e.getMessage());
+      return results;
+    } catch (GraphConfig.GraphConfigNotFound e) {
+      results.setTerminationKO("A Graph Config is required for RDF importing procedures to run");
+      return results;
+    }
+
+    boolean swap = !props.containsKey("swap") || (Boolean) props.get("swap");
+    String targetGraphUri = swap ? graphUri + STAGING_GRAPH_SUFFIX : graphUri;
+    NamedGraphDropper dropper = newDropper(props);
+    try {
+      // what's left of a swap that failed, or the graph itself
+      dropper.drop(targetGraphUri);
+      parseRDFPayloadOrFromUrl(rdfFormat, url, rdfFragment, props,
+          new InGraph(statementLoader, targetGraphUri));
+      results.setTriplesLoaded(statementLoader.totalTriplesMapped);
+      if (statementLoader.getTriplesLost() > 0) {
+        // abortOnError: false, the new content is not all there
+        if (swap) {
+          newDropper(props).drop(targetGraphUri);
+        }
+        results.setTerminationKO(statementLoader.getTriplesLost()
+            + " triples lost in failed partial commits. " + (swap ? "The graph was left as it was."
+            : "The graph was only partly loaded."));
+      } else if (swap) {
+        dropper.drop(graphUri);
+        dropper.rename(targetGraphUri, graphUri);
+      }
+    } catch (IOException | RDFHandlerException | QueryExecutionException | RDFParseException
+        | NamedGraphException | TransientFailureException e) {
+      results.setTerminationKO(e.getMessage());
+      results.setTriplesLoaded(statementLoader.totalTriplesMapped);
+    }
+    results.setDeleted(dropper);
+    results.addGraphUriIndexWarning(NamedGraphDropper.isGraphUriIndexed(tx));
+    return results;
+  }
+
+  private NamedGraphDropper newDropper(Map<String, Object> props) {
+    return new NamedGraphDropper(db, log,
+        props.containsKey("batchSize") ? (long) props.get("batchSize")
+            : NamedGraphDropper.DEFAULT_BATCH_SIZE,
+        props.containsKey("parallelism") ? ((Long) props.get("parallelism")).intValue()
+            : NamedGraphDropper.DEFAULT_PARALLELISM);
+  }
+
+  /**
+   * Exports each named graph to a file of its own in the directory, in parallel. All the named
+   * graphs in the DB if none are given. The directory is relative to the import directory of the
+   * DBMS (dbms.directories.import), and nothing is exported if that's not set.
+   */
+  protected Stream<GraphExportResults> doGraphExport(List<String> graphUris, String directory,
+      Map<String, Object> props) {
+    String format = props.containsKey("format") ? (String) props.get("format")
+        : RDFFormat.NQUADS.getName();
+    if (!format.equals(RDFFormat.NQUADS.getName()) && !format.equals(RDFFormat.TRIG.getName())) {
+      return Stream.of(new GraphExportResults(null, null, 0,
+          "Named graphs can only be exported as N-Quads or TriG, not " + format));
+    }
+    Path importDirectory = ImportDirectory.of(db);
+    if (importDirectory == null) {
+      return Stream.of(new GraphExportResults(null, null, 0,
+          "Named graphs are exported to dbms.directories.import, which is not set"));
+    }
+    NamedGraphExporter exporter = new NamedGraphExporter(db, log,
+        format.equals(RDFFormat.TRIG.getName()) ? RDFFormat.TRIG : RDFFormat.NQUADS);
+    try {
+      Path exportDirectory = ImportDirectory.resolve(importDirectory, directory);
+      return exporter.writeFiles(graphUris == null || graphUris.isEmpty()
+              ? exporter.graphUris() : graphUris, exportDirectory,
+          props.containsKey("parallelism") ? ((Long) props.get("parallelism")).intValue()
+              : NamedGraphExporter.DEFAULT_PARALLELISM).stream()
+          .map(file -> new GraphExportResults(file.graphUri, file.file.toString(),
+              file.statements, file.error));
+    } catch (IOException | InvalidNamespacePrefixDefinitionInDB | IllegalStateException
+        | IllegalArgumentException e) {
+      return Stream.of(new GraphExportResults(null, null, 0, e.getMessage()));
+    }
+  }
+
+  private static final String STAGING_GRAPH_SUFFIX = "#n10s-staging";
+
+  /**
+   * Passes the statements parsed on to the loader as statements of the given graph.
+   */
+  private static class InGraph extends ConfiguredStatementHandler {
+
+    private static final ValueFactory VF = SimpleValueFactory.getInstance();
+    private final ConfiguredStatementHandler loader;
+    private final IRI graph;
+
+    InGraph(ConfiguredStatementHandler loader, String graphUri) {
+      this.loader = loader;
+      this.graph = VF.createIRI(graphUri);
+    }
+
+    @Override
+    public RDFParserConfig getParserConfig() {
+      return loader.getParserConfig();
+    }
+
+    @Override
+    public void startRDF() throws RDFHandlerException {
+      loader.startRDF();
+    }
+
+    @Override
+    public void endRDF() throws RDFHandlerException {
+      loader.endRDF();
+    }
+
+    @Override
+    public void handleNamespace(String prefix, String uri) throws RDFHandlerException {
+      loader.handleNamespace(prefix, uri);
+    }
+
+    @Override
+    public void handleStatement(Statement st) throws RDFHandlerException {
+      loader.handleStatement(
+          VF.createStatement(st.getSubject(), st.getPredicate(), st.getObject(), graph));
+    }
+
+    @Override
+    public void handleComment(String comment) throws RDFHandlerException {
+      loader.handleComment(comment);
+    }
+  }
+
+  public static class GraphResults {
+
+    public String terminationStatus = "OK";
+    public String graphUri;
+    public long triplesLoaded = 0;
+    public long nodesDeleted = 0;
+    public long relationshipsDeleted = 0;
+    public String extraInfo = "";
+
+    public GraphResults(String graphUri) {
+      this.graphUri = graphUri;
+    }
+
+    public void setTriplesLoaded(long triplesLoaded) {
+      this.triplesLoaded = triplesLoaded;
+    }
+
+    void setDeleted(NamedGraphDropper dropper) {
+      this.nodesDeleted = dropper.getNodesDeleted();
+      this.relationshipsDeleted = dropper.getRelationshipsDeleted();
+    }
+
+    void addGraphUriIndexWarning(boolean graphUriIndexed) {
+      if (!graphUriIndexed) {
+        this.extraInfo += (extraInfo.isEmpty() ? "" : " ")
+            + "No index on :Resource(graphUri), the nodes of the graph were found with a label "
+            + "scan. Run 'CREATE INDEX ON :Resource(graphUri)' to speed it up.";
+      }
+    }
+
+    public void setTerminationKO(String message) {
+      this.terminationStatus = "KO";
+      this.extraInfo = message;
+    }
+  }
+
+  public static class GraphExportResults {
+
+    public String terminationStatus = "OK";
+    public String graphUri;
+    public String file;
+    public long triplesExported;
+    public String extraInfo = "";
+
+    public GraphExportResults(String graphUri, String file, long triplesExported,
+        String error) {
+      this.graphUri = graphUri;
+      this.file = file;
+      this.triplesExported = triplesExported;
+      if (error != null) {
+        this.terminationStatus = "KO";
+        this.extraInfo = error;
+      }
+    }
+  }
 }
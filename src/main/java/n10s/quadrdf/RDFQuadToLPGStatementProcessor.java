@@ -9,6 +9,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import n10s.RDFToLPGStatementProcessor;
 import n10s.graphconfig.GraphConfig;
@@ -22,6 +23,9 @@ import org.eclipse.rdf4j.model.Value;
 import org.eclipse.rdf4j.model.vocabulary.RDF;
 import org.eclipse.rdf4j.rio.RDFHandler;
 import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.ResourceIterator;
 import org.neo4j.graphdb.Transaction;
 import org.neo4j.logging.Log;
 
@@ -35,6 +39,8 @@ import org.neo4j.logging.Log;
 abstract class RDFQuadToLPGStatementProcessor extends RDFToLPGStatementProcessor implements
     RDFHandler {
 
+  static final Label RESOURCE = Label.label("Resource");
+
   Map<ContextResource, Map<String, Object>> resourceProps;
   Map<ContextResource, Set<String>> resourceLabels;
 
@@ -112,6 +118,33 @@ abstract class RDFQuadToLPGStatementProcessor extends RDFToLPGStatementProcessor
     return cypher.toString();
   }
 
+  /**
+   * Finds the node of a resource in its graph (or out of any graph if it has no graphUri) through
+   * the index on :Resource(uri) that quad imports require. The index gives the nodes of the uri in
+   * every graph it appears in, the one with the graphUri of the resource is picked among them.
+   *
+   * @return the node, or null if there is none
+   * @throws IllegalStateException if there's more than one
+   */
+  Node findNode(Transaction tx, ContextResource resource) {
+    Node found = null;
+    try (ResourceIterator<Node> nodes = tx.findNodes(RESOURCE, "uri", resource.getUri())) {
+      while (nodes.hasNext()) {
+        Node node = nodes.next();
+        if (Objects.equals(node.getProperty("graphUri", null), resource.getGraphUri())) {
+          if (found != null) {
+            throw new IllegalStateException(
+                "There are multiple matching nodes for the given properties {uri: "
+                    + resource.getUri() + (resource.getGraphUri() == null ? "}"
+                    : ", graphUri: " + resource.getGraphUri() + "}"));
+          }
+          found = node;
+        }
+      }
+    }
+    return found;
+  }
+
   private boolean setProp(ContextResource contextResource, IRI propertyIRI,
       Literal propValueRaw) {
     Map<String, Object> props;
@@ -0,0 +1,50 @@
+package n10s.quadrdf.graph;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import n10s.quadrdf.QuadRDFProcedures;
+import org.neo4j.procedure.Mode;
+import org.neo4j.procedure.Name;
+import org.neo4j.procedure.Procedure;
+
+public class QuadRDFGraphProcedures extends QuadRDFProcedures {
+
+  @Procedure(name = "n10s.experimental.quadrdf.graph.drop", mode = Mode.WRITE)
+  public Stream<GraphResults> drop(@Name("graphUri") String graphUri,
+      @Name(value = "params", defaultValue = "{}") Map<String, Object> props) {
+
+    return Stream.of(doGraphDrop(graphUri, props));
+
+  }
+
+  @Procedure(name = "n10s.experimental.quadrdf.graph.replace.fetch", mode = Mode.WRITE)
+  public Stream<GraphResults> replaceFetch(@Name("graphUri") String graphUri,
+      @Name("url") String url,
+      @Name("format") String format,
+      @Name(value = "params", defaultValue = "{}") Map<String, Object> props) {
+
+    return Stream.of(doGraphReplace(graphUri, format, url, null, props));
+
+  }
+
+  @Procedure(name = "n10s.experimental.quadrdf.graph.replace.inline", mode = Mode.WRITE)
+  public Stream<GraphResults> replaceInline(@Name("graphUri") String graphUri,
+      @Name("rdf") String rdf,
+      @Name("format") String format,
+      @Name(value = "params", defaultValue = "{}") Map<String, Object> props) {
+
+    return Stream.of(doGraphReplace(graphUri, format, null, rdf, props));
+
+  }
+
+  @Procedure(name = "n10s.experimental.quadrdf.graph.export", mode = Mode.READ)
+  public Stream<GraphExportResults> export(@Name("graphUris") List<String> graphUris,
+      @Name("directory") String directory,
+      @Name(value = "params", defaultValue = "{}") Map<String, Object> props) {
+
+    return doGraphExport(graphUris, directory, props);
+
+  }
+
+}
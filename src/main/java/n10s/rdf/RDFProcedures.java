@@ -7,6 +7,7 @@ import static n10s.graphconfig.Params.PREFIX_SEPARATOR;
 import static n10s.graphconfig.Params.SHORTENED_URI_PATTERN;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
@@ -17,18 +18,26 @@ import java.util.regex.Matcher;
 import java.util.stream.Stream;
 import n10s.CommonProcedures;
 import n10s.ConfiguredStatementHandler.TripleLimitReached;
+import n10s.FetchCache;
 import n10s.RDFImportException;
 import n10s.graphconfig.GraphConfig;
 import n10s.graphconfig.GraphConfig.InvalidParamException;
 import n10s.graphconfig.RDFParserConfig;
 import n10s.rdf.delete.DirectStatementDeleter;
+import n10s.rdf.delete.TriplePatternDeleter;
+import n10s.rdf.delete.TriplePatternDeleter.TriplePatternDeleteException;
+import n10s.rdf.delta.SourceSnapshot;
+import n10s.rdf.export.TriplePattern;
 import n10s.rdf.load.DirectStatementLoader;
 import n10s.rdf.preview.StatementPreviewer;
 import n10s.rdf.stream.StatementStreamer;
 import n10s.result.GraphResult;
 import n10s.result.StreamedStatement;
+import n10s.stats.ImportStats;
+import n10s.utils.ImportDirectory;
 import n10s.utils.InvalidNamespacePrefixDefinitionInDB;
 import n10s.utils.NsPrefixMap;
+import n10s.utils.NsPrefixRegistry;
 import org.eclipse.rdf4j.model.IRI;
 import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
 import org.eclipse.rdf4j.model.util.URIUtil;
@@ -61,6 +70,31 @@ public class RDFProcedures extends CommonProcedures {
     try {
       checkConstraintExist();
       conf = new RDFParserConfig(props, (overrideGC != null ? overrideGC : new GraphConfig(tx)));
+      if (conf.isResume() && conf.getJobId() == null) {
+        throw new RDFImportBadParams("The resume param requires the jobId of the import.");
+      }
+      if (conf.isInitialLoad()) {
+        if (conf.isResume()) {
+          // the nodes created by the interrupted run would not be looked up
+          throw new RDFImportBadParams("An initialLoad can't be resumed, please resume it "
+              + "without the initialLoad param.");
+        }
+        if (conf.isConcurrent()) {
+          // other imports would be writing to the graph assumed empty
+          throw new RDFImportBadParams("An initialLoad can't run concurrently with other "
+              + "imports.");
+        }
+        checkNoResourcesInGraph();
+      }
+      if (conf.isDelta()) {
+        if (conf.getJobId() != null) {
+          // the delta is not read in the order of the source
+          throw new RDFImportBadParams("A delta import can't be run as a resumable job.");
+        }
+        if (rdfFragment != null && conf.getSourceId() == null) {
+          throw new RDFImportBadParams("A delta import of an rdf fragment requires a sourceId.");
+        }
+      }
       rdfFormat = getFormat(format);
       statementLoader = new DirectStatementLoader(db, tx, conf, log);
     } catch (RDFImportPreRequisitesNotMet e) {
@@ -73,24 +107,107 @@ public class RDFProcedures extends CommonProcedures {
     }
 
     if (statementLoader != null) {
+      ImportStats stats = statementLoader.getStats()
+          .start(db.databaseName(), rdfFragment != null ? "inline" : url);
+      boolean completed = false;
       try {
-        parseRDFPayloadOrFromUrl(rdfFormat, url, rdfFragment, props, statementLoader);
+        InputStream inputStream = getRDFPayloadOrUrlInputStream(url, rdfFragment, props);
+        if (conf.getJobId() != null) {
+          inputStream = statementLoader.startJob(inputStream, rdfFragment != null ? null : url);
+        }
+        String deltaInfo = "";
+        if (conf.isDelta()) {
+          deltaInfo = importDelta(inputStream, url, rdfFragment, rdfFormat, conf,
+              statementLoader, importResults);
+        } else {
+          instantiateAndKickOffParser(inputStream, getBaseUri(url, rdfFragment), rdfFormat,
+              statementLoader);
+          importResults.setTriplesParsed(statementLoader.totalTriplesParsed);
+        }
         importResults.setTriplesLoaded(statementLoader.totalTriplesMapped);
-        importResults.setTriplesParsed(statementLoader.totalTriplesParsed);
         importResults.setNamespaces(statementLoader.getNamespaces());
         importResults.setConfigSummary(props);
-        importResults.setExtraInfo(statementLoader.getWarnings());
-
-      } catch (IOException | RDFHandlerException | QueryExecutionException | RDFParseException e) {
+        importResults.setExtraInfo(deltaInfo + statementLoader.getWarnings());
+        fetchCompleted();
+        completed = true;
+
+      } catch (FetchCache.SourceNotModified e) {
+        // nothing to import
+        statementLoader.finishPendingCommits();
+        importResults.setExtraInfo(e.getMessage());
+        importResults.setConfigSummary(props);
+        completed = true;
+      } catch (IOException | RDFHandlerException | QueryExecutionException | RDFParseException
+          | IllegalArgumentException e) {
+        statementLoader.finishPendingCommits();
         importResults.setTerminationKO(e.getMessage());
         importResults.setTriplesLoaded(statementLoader.totalTriplesMapped);
         importResults.setTriplesParsed(statementLoader.totalTriplesParsed);
         importResults.setConfigSummary(props);
+      } finally {
+        importResults.setStats(stats.finish(completed).toMap());
       }
     }
     return importResults;
   }
 
+  /**
+   * Loads only what changed in the source since its previous delta import: the triples no longer
+   * in it are passed to a {@link DirectStatementDeleter} and the new ones to the loader.
+   *
+   * @return a summary of the delta for the extraInfo of the results
+   */
+  private String importDelta(InputStream inputStream, String url, String rdfFragment,
+      RDFFormat rdfFormat, RDFParserConfig conf, DirectStatementLoader statementLoader,
+      ImportResults importResults) throws IOException {
+    String sourceId = conf.getSourceId() != null ? conf.getSourceId() : url;
+    // deltaDir is relative to dbms.directories.import, procedures can't write just anywhere
+    SourceSnapshot snapshot = SourceSnapshot.of(conf.getDeltaDir() != null
+        ? ImportDirectory.resolve(db, conf.getDeltaDir()) : null, db.databaseName(), sourceId);
+    SourceSnapshot.Collector current = snapshot.newCollector(conf);
+    try {
+      instantiateAndKickOffParser(inputStream, getBaseUri(url, rdfFragment), rdfFormat, current);
+    } catch (IOException | RuntimeException e) {
+      // closed by the diff otherwise
+      current.close();
+      throw e;
+    }
+    importResults.setTriplesParsed(current.getStatementCount());
+    try (SourceSnapshot.Delta delta = snapshot.diff(current)) {
+      String bNodeInfo = "";
+      long notDeleted = 0;
+      long notDeletedLost = 0;
+      if (delta.getRemoved() > 0) {
+        // removals first, a changed value must not be removed after it's been set again
+        DirectStatementDeleter statementDeleter = new DirectStatementDeleter(db, tx, conf, log);
+        delta.parseRemovals(statementDeleter);
+        bNodeInfo = statementDeleter.getbNodeInfo();
+        notDeleted = statementDeleter.getNotDeletedStatementCount();
+        notDeletedLost = statementDeleter.getTriplesLost();
+      }
+      delta.parseAdditions(statementLoader);
+      // the next delta must include what was not applied, not take it as unchanged
+      String notApplied = "";
+      if (statementLoader.getTriplesLost() > 0) {
+        notApplied += statementLoader.getTriplesLost() + " triples lost in failed partial commits. ";
+      }
+      if (notDeletedLost > 0) {
+        notApplied += notDeletedLost + " triples not removed in failed partial commits. ";
+      }
+      if (notDeleted > 0) {
+        notApplied += notDeleted + " of the triples removed were not found in the graph. ";
+      }
+      if (notApplied.isEmpty()) {
+        delta.commit();
+      } else {
+        notApplied += "The delta will be applied again on the next import. ";
+      }
+      return "Delta of " + sourceId + ": " + delta.getAdded() + " triples added, "
+          + delta.getRemoved() + " removed, " + delta.getUnchanged() + " unchanged. "
+          + notApplied + bNodeInfo;
+    }
+  }
+
   protected GraphResult doPreview(@Name("url") String url, @Name("rdf") String rdfFragment,
       @Name("format") String format,
       @Name(value = "params", defaultValue = "{}") Map<String, Object> props)
@@ -191,6 +308,49 @@ public class RDFProcedures extends CommonProcedures {
     return deleteResults;
   }
 
+  /**
+   * Deletes the triples matching the pattern straight from the graph, in parallel batches. See
+   * {@link TriplePatternDeleter}.
+   */
+  protected DeleteResults doDeleteSpo(TriplePattern tp, Map<String, Object> props) {
+
+    TriplePatternDeleter patternDeleter = null;
+    DeleteResults deleteResults = new DeleteResults();
+
+    try {
+      checkConstraintExist();
+      patternDeleter = new TriplePatternDeleter(db, tx, new RDFParserConfig(props,
+          new GraphConfig(tx)), log,
+          props.containsKey("batchSize") ? (long) props.get("batchSize")
+              : TriplePatternDeleter.DEFAULT_BATCH_SIZE,
+          props.containsKey("parallelism") ? ((Long) props.get("parallelism")).intValue()
+              : TriplePatternDeleter.DEFAULT_PARALLELISM);
+    } catch (RDFImportPreRequisitesNotMet e) {
+      deleteResults.setTerminationKO(e.getMessage());
+    } catch (GraphConfig.GraphConfigNotFound e) {
+      deleteResults
+          .setTerminationKO("A Graph Config is required for RDF importing procedures to run");
+    }
+
+    if (patternDeleter != null) {
+      try {
+        patternDeleter.delete(tp);
+        if (patternDeleter.getNodesDeleted() > 0) {
+          deleteResults.setExtraInfo(patternDeleter.getNodesDeleted()
+              + " resources left with no triples were deleted");
+        }
+      } catch (RDFHandlerException | QueryExecutionException
+          | TriplePatternDeleteException e) {
+        deleteResults.setTerminationKO(e.getMessage());
+        e.printStackTrace();
+      } finally {
+        deleteResults.setTriplesDeleted(patternDeleter.getTriplesDeleted());
+        deleteResults.setNamespaces(patternDeleter.getNamespaces());
+      }
+    }
+    return deleteResults;
+  }
+
   @UserFunction
   @Description("Returns the XMLSchema or custom datatype of a property when present")
   public String getDataType(@Name("literal") Object literal) {
@@ -323,7 +483,7 @@ public class RDFProcedures extends CommonProcedures {
       throw new InvalidShortenedName(
           "Wrong Syntax: " + str + " is not a valid n10s shortened schema name.");
     }
-    NsPrefixMap prefixDefs = new NsPrefixMap(tx, false);
+    NsPrefixMap prefixDefs = NsPrefixRegistry.forDatabase(db).getPrefixes(tx);
     if (!prefixDefs.hasPrefix(m.group(1))) {
       throw new InvalidShortenedName("Prefix Undefined: " + str + " is using an undefined prefix.");
     }
@@ -337,7 +497,7 @@ public class RDFProcedures extends CommonProcedures {
       throws InvalidNamespacePrefixDefinitionInDB, InvalidShortenedName {
 
     IRI iri = SimpleValueFactory.getInstance().createIRI(str);
-    NsPrefixMap prefixDefs = new NsPrefixMap(tx, false);
+    NsPrefixMap prefixDefs = NsPrefixRegistry.forDatabase(db).getPrefixes(tx);
     if (!prefixDefs.hasNs(iri.getNamespace())) {
       throw new InvalidShortenedName(
           "Prefix Undefined: No prefix defined for this namespace <" + str + "> .");
@@ -354,6 +514,7 @@ public class RDFProcedures extends CommonProcedures {
     public Map<String, String> namespaces;
     public String extraInfo = "";
     public Map<String, Object> callParams;
+    public Map<String, Object> stats;
 
     public void setTriplesLoaded(long count) {
       this.triplesLoaded = count;
@@ -380,6 +541,9 @@ public class RDFProcedures extends CommonProcedures {
       this.extraInfo = message;
     }
 
+    public void setStats(Map<String, Object> stats) {
+      this.stats = stats;
+    }
 
   }
 
@@ -0,0 +1,136 @@
+package n10s.rdf.bulk;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import n10s.ChunkedLineParser;
+import n10s.graphconfig.GraphConfig;
+import n10s.graphconfig.GraphConfig.InvalidParamException;
+import n10s.graphconfig.RDFParserConfig;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.eclipse.rdf4j.rio.RDFFormat;
+import org.eclipse.rdf4j.rio.RDFParser;
+import org.eclipse.rdf4j.rio.RDFParserRegistry;
+import org.eclipse.rdf4j.rio.Rio;
+import org.eclipse.rdf4j.rio.helpers.BasicParserSettings;
+import org.neo4j.logging.Log;
+import org.neo4j.logging.NullLog;
+
+/**
+ * Command line entry point to turn an RDF file into the input of neo4j-admin import, for first
+ * loads too big for the transactional import procedures. Needs the n10s jar and the jars in the
+ * neo4j lib directory on the classpath:
+ * <pre>
+ *   java -cp "neosemantics.jar:$NEO4J_HOME/lib/*" n10s.rdf.bulk.AdminImportCsv \
+ *       data.nt.gz N-Triples /tmp/csv '{"handleVocabUris": "IGNORE"}' '{"commitSize": 100000}'
+ *   /tmp/csv/import.sh neo4j
+ * </pre>
+ * then start the database and run post-import.cypher (the n10s uniqueness constraint).
+ */
+public class AdminImportCsv {
+
+  private static final String USAGE = "Usage: AdminImportCsv <rdf file> <format> <output dir> "
+      + "[graph config as json, same params as n10s.graphconfig.init] "
+      + "[import params as json, same params as n10s.rdf.import.fetch]";
+
+  public static void main(String[] args) throws Exception {
+    if (args.length < 3) {
+      System.err.println(USAGE);
+      System.exit(1);
+    }
+    ObjectMapper objectMapper = new ObjectMapper();
+    Map<String, Object> graphConfigParams = args.length > 3 ?
+        normalise(objectMapper.readValue(args[3], Map.class)) : new HashMap<>();
+    Map<String, Object> importParams = args.length > 4 ?
+        normalise(objectMapper.readValue(args[4], Map.class)) : new HashMap<>();
+
+    AdminImportCsvWriter writer;
+    try {
+      // the summary below, with the warnings of the writer, goes to stderr like the usage
+      writer = export(new File(args[0]), getFormat(args[1]), new File(args[2]),
+          graphConfigParams, importParams, NullLog.getInstance());
+    } catch (InvalidParamException e) {
+      System.err.println(e.getMessage());
+      System.exit(1);
+      return;
+    }
+    System.err.println(writer.totalTriplesMapped + " triples mapped out of "
+        + writer.totalTriplesParsed + " parsed. " + writer.getWarnings());
+  }
+
+  public static AdminImportCsvWriter export(File rdfFile, RDFFormat format, File outputDir,
+      Map<String, Object> graphConfigParams, Map<String, Object> importParams, Log log)
+      throws IOException, InvalidParamException {
+    RDFParserConfig conf = new RDFParserConfig(importParams, new GraphConfig(graphConfigParams));
+    if (!AdminImportCsvWriter.isSupported(conf)) {
+      throw new IllegalArgumentException("handleVocabUris: 'MAP' is not supported, mappings "
+          + "are defined in the database");
+    }
+    if (!outputDir.isDirectory() && !outputDir.mkdirs()) {
+      throw new IOException("Can't create output directory " + outputDir);
+    }
+    AdminImportCsvWriter writer = new AdminImportCsvWriter(conf, outputDir, log);
+    try (InputStream in = open(rdfFile)) {
+      if (ChunkedLineParser.supports(format) && conf.getParserThreads() > 1) {
+        new ChunkedLineParser(format, conf.getParserThreads(), conf.isVerifyUriSyntax())
+            .parse(in, rdfFile.toURI().toString(), writer);
+      } else {
+        RDFParser rdfParser = Rio.createParser(format);
+        rdfParser.set(BasicParserSettings.VERIFY_URI_SYNTAX, conf.isVerifyUriSyntax());
+        rdfParser.setRDFHandler(writer);
+        rdfParser.parse(in, rdfFile.toURI().toString());
+      }
+    }
+    return writer;
+  }
+
+  private static InputStream open(File rdfFile) throws IOException {
+    InputStream in = new BufferedInputStream(new FileInputStream(rdfFile), 1 << 16);
+    if (rdfFile.getName().endsWith(".gz")) {
+      return new GZIPInputStream(in);
+    } else if (rdfFile.getName().endsWith(".bz2")) {
+      return new BZip2CompressorInputStream(in);
+    }
+    return in;
+  }
+
+  private static RDFFormat getFormat(String format) {
+    for (RDFFormat rdfFormat : RDFParserRegistry.getInstance().getKeys()) {
+      if (rdfFormat.getName().equals(format)) {
+        return rdfFormat;
+      }
+    }
+    throw new IllegalArgumentException("Unrecognized serialization format: " + format);
+  }
+
+  /**
+   * JSON numbers come as Integer when small but the config classes expect Long, as passed by the
+   * procedures.
+   */
+  private static Map<String, Object> normalise(Map<String, Object> params) {
+    Map<String, Object> result = new HashMap<>();
+    params.forEach((k, v) -> result.put(k, normaliseValue(v)));
+    return result;
+  }
+
+  private static Object normaliseValue(Object value) {
+    if (value instanceof Integer) {
+      return ((Integer) value).longValue();
+    } else if (value instanceof List) {
+      List<Object> values = new ArrayList<>();
+      ((List<?>) value).forEach(v -> values.add(normaliseValue(v)));
+      return values;
+    } else if (value instanceof Map) {
+      return normalise((Map<String, Object>) value);
+    }
+    return value;
+  }
+}
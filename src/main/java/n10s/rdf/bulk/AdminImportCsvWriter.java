@@ -0,0 +1,283 @@
+package n10s.rdf.bulk;
+
+import static n10s.graphconfig.GraphConfig.GRAPHCONF_VOC_URI_MAP;
+import static n10s.graphconfig.GraphConfig.GRAPHCONF_VOC_URI_SHORTEN;
+import static n10s.graphconfig.GraphConfig.GRAPHCONF_VOC_URI_SHORTEN_STRICT;
+
+import com.google.common.collect.Iterators;
+import com.google.common.collect.PeekingIterator;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import n10s.RDFToLPGStatementProcessor;
+import n10s.graphconfig.RDFParserConfig;
+import n10s.utils.ExternalSorter;
+import n10s.utils.NsPrefixMap;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.rio.RDFHandlerException;
+import org.neo4j.logging.Log;
+
+/**
+ * Maps RDF to the same property graph n10s.rdf.import.* builds but, instead of writing to the DB,
+ * produces the CSV files and the command to build a new database with neo4j-admin import.
+ * <p>
+ * Every partial commit spills the nodes and relationships mapped so far to disk. At the end they
+ * are sorted by uri and the fragments of each element merged the way {@link
+ * n10s.rdf.load.DirectStatementLoader} merges them in the DB: labels are added, single values
+ * overwritten, multivalued properties merged into sets (with the same datatype checks) and repeated
+ * relationships collapsed into one.
+ */
+public class AdminImportCsvWriter extends RDFToLPGStatementProcessor {
+
+  static final String NODES_FILE_PREFIX = "nodes";
+  static final String RELATIONSHIPS_FILE_PREFIX = "relationships";
+  static final String IMPORT_SCRIPT = "import.sh";
+  static final String POST_IMPORT_SCRIPT = "post-import.cypher";
+  // id space of the _GraphConfig and _NsPrefDef nodes, can't clash with resource uris
+  private static final String N10S_ID_SPACE = "n10s";
+  private static final int FRAGMENTS_IN_MEMORY = 250_000;
+
+  private final File outputDir;
+  private final ExternalSorter<ElementFragment> nodeFragments;
+  private final ExternalSorter<ElementFragment> relFragments;
+  private long discardedTriples = 0;
+
+  public AdminImportCsvWriter(RDFParserConfig conf, File outputDir, Log l) {
+    // no DB: mappings (handleVocabUris: 'MAP') are stored in it so the caller rejects that mode
+    super(null, null, conf, l);
+    this.outputDir = outputDir;
+    this.nodeFragments = new ExternalSorter<>(outputDir, ElementFragment.BY_KEY,
+        ElementFragment.CODEC, FRAGMENTS_IN_MEMORY);
+    this.relFragments = new ExternalSorter<>(outputDir, ElementFragment.BY_KEY,
+        ElementFragment.CODEC, FRAGMENTS_IN_MEMORY);
+  }
+
+  @Override
+  public void startRDF() throws RDFHandlerException {
+    if (parserConfig.getGraphConf().getHandleVocabUris() == GRAPHCONF_VOC_URI_SHORTEN ||
+        parserConfig.getGraphConf().getHandleVocabUris() == GRAPHCONF_VOC_URI_SHORTEN_STRICT) {
+      // a new DB, no prefixes defined yet
+      namespaces = new NsPrefixMap();
+    }
+  }
+
+  @Override
+  protected void periodicOperation() {
+    try {
+      for (Map.Entry<String, Set<String>> entry : resourceLabels.entrySet()) {
+        nodeFragments.add(new ElementFragment(new String[]{entry.getKey()}, entry.getValue(),
+            resourceProps.get(entry.getKey())));
+      }
+      Map<String, String> relTypes = new HashMap<>();
+      for (Statement st : statements) {
+        String relType = relTypes.computeIfAbsent(st.getPredicate().stringValue(),
+            p -> handleIRI(st.getPredicate(), RELATIONSHIP));
+        Map<String, Object> props = relProps.get(st);
+        relFragments.add(new ElementFragment(
+            new String[]{st.getSubject().stringValue(), relType, st.getObject().stringValue()},
+            new HashSet<>(), props != null ? props : new HashMap<>()));
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    statements = new HashSet<>();
+    resourceLabels = new HashMap<>();
+    resourceProps = new HashMap<>();
+    relProps = new HashMap<>();
+    totalTriplesMapped += mappedTripleCounter;
+    mappedTripleCounter = 0;
+  }
+
+  @Override
+  public void endRDF() throws RDFHandlerException {
+    periodicOperation();
+    try {
+      CsvGroupWriter nodes = new CsvGroupWriter(outputDir, NODES_FILE_PREFIX, "uri:ID", ":LABEL");
+      PeekingIterator<ElementFragment> sortedNodes =
+          Iterators.peekingIterator(nodeFragments.sorted());
+      ElementFragment node;
+      while ((node = mergeNext(sortedNodes)) != null) {
+        Set<String> labels = new TreeSet<>(node.labels);
+        labels.add("Resource");
+        nodes.add(new String[]{CsvGroupWriter.quote(node.keys[0]),
+            CsvGroupWriter.toCsv(new ArrayList<>(labels))}, node.props);
+      }
+
+      CsvGroupWriter rels = new CsvGroupWriter(outputDir, RELATIONSHIPS_FILE_PREFIX,
+          ":START_ID", ":TYPE", ":END_ID");
+      PeekingIterator<ElementFragment> sortedRels =
+          Iterators.peekingIterator(relFragments.sorted());
+      ElementFragment rel;
+      while ((rel = mergeNext(sortedRels)) != null) {
+        rels.add(new String[]{CsvGroupWriter.quote(rel.keys[0]), CsvGroupWriter.quote(rel.keys[1]),
+            CsvGroupWriter.quote(rel.keys[2])}, rel.props);
+      }
+
+      List<File[]> nodeFiles = nodes.finish();
+      nodeFiles.addAll(writeN10sNodes());
+      writeImportScripts(nodeFiles, rels.finish());
+    } catch (IOException e) {
+      throw new RDFHandlerException("Problems writing the CSV files. ", e);
+    } finally {
+      nodeFragments.close();
+      relFragments.close();
+    }
+    totalTriplesMapped -= discardedTriples;
+    log.debug("CSV export complete: " + totalTriplesMapped + " triples mapped out of "
+        + totalTriplesParsed + " parsed");
+  }
+
+  /**
+   * Merges all the fragments of the next element in the sorted input.
+   *
+   * @return the merged element or null if there are no more
+   */
+  private ElementFragment mergeNext(PeekingIterator<ElementFragment> sorted) {
+    if (!sorted.hasNext()) {
+      return null;
+    }
+    ElementFragment first = sorted.next();
+    ElementFragment merged = new ElementFragment(first.keys, new HashSet<>(first.labels),
+        new HashMap<>());
+    mergeProps(merged.props, first.props);
+    while (sorted.hasNext() && sorted.peek().sameElement(merged)) {
+      ElementFragment next = sorted.next();
+      merged.labels.addAll(next.labels);
+      mergeProps(merged.props, next.props);
+    }
+    return merged;
+  }
+
+  private void mergeProps(Map<String, Object> merged, Map<String, Object> props) {
+    props.forEach((k, v) -> mergeProperty(merged, k, v));
+  }
+
+  /**
+   * Same semantics as DirectStatementLoader.setProperty, applied to an in-memory property map.
+   */
+  private void mergeProperty(Map<String, Object> props, String k, Object v) {
+    if (v instanceof List) {
+      Object currentValue = props.get(k);
+      List<Object> newList = new ArrayList<>();
+      if (currentValue instanceof List) {
+        newList.addAll((List<?>) currentValue);
+      } else if (currentValue != null) {
+        newList.add(currentValue);
+      }
+      if (newList.isEmpty() && ((List<?>) v).isEmpty()) {
+        return;
+      }
+
+      Class<?> currentDatatype = newList.isEmpty() ? ((List<?>) v).get(0).getClass()
+          : newList.get(0).getClass();
+
+      List<Object> discardedItems = new ArrayList<>();
+      for (Object x : (List<?>) v) {
+        if (x.getClass().equals(currentDatatype)) {
+          newList.add(x);
+        } else {
+          discardedItems.add(x);
+        }
+      }
+
+      if (!discardedItems.isEmpty()) {
+        this.datatypeConflictFound = true;
+        if (getParserConfig().isStrictDataTypeCheck()) {
+          discardedTriples += discardedItems.size();
+          log.warn("The following values for property '" + k + "' have been discarded because of "
+              + "datatype heterogeneity (previously stored values are of type " + currentDatatype
+              + ") : " + discardedItems);
+          props.put(k, distinct(newList));
+        } else {
+          newList.addAll(discardedItems);
+          props.put(k, distinct(defaultToString(newList.iterator())));
+        }
+      } else {
+        props.put(k, distinct(newList));
+      }
+    } else {
+      props.put(k, v);
+    }
+  }
+
+  private static List<Object> distinct(Collection<?> values) {
+    return new ArrayList<>(new LinkedHashSet<>(values));
+  }
+
+  private List<File[]> writeN10sNodes() throws IOException {
+    List<File[]> files = new ArrayList<>();
+
+    CsvGroupWriter graphConfig = new CsvGroupWriter(outputDir, "n10s-graphconfig",
+        ":ID(" + N10S_ID_SPACE + ")", ":LABEL");
+    Map<String, Object> graphConfigProps = new HashMap<>();
+    parserConfig.getGraphConf().serialiseConfig().forEach((k, v) -> {
+      if (v instanceof Collection) {
+        if (!((Collection<?>) v).isEmpty()) {
+          graphConfigProps.put(k, new ArrayList<>((Collection<?>) v));
+        }
+      } else if (v != null) {
+        graphConfigProps.put(k, v);
+      }
+    });
+    graphConfig.add(new String[]{"\"_GraphConfig\"", "\"_GraphConfig\""}, graphConfigProps);
+    files.addAll(graphConfig.finish());
+
+    if (namespaces != null && !namespaces.getPrefixToNs().isEmpty()) {
+      CsvGroupWriter nsPrefDef = new CsvGroupWriter(outputDir, "n10s-nsprefdef",
+          ":ID(" + N10S_ID_SPACE + ")", ":LABEL");
+      nsPrefDef.add(new String[]{"\"_NsPrefDef\"", "\"_NsPrefDef\""},
+          new HashMap<>(namespaces.getPrefixToNs()));
+      files.addAll(nsPrefDef.finish());
+    }
+    return files;
+  }
+
+  private void writeImportScripts(List<File[]> nodeFiles, List<File[]> relFiles)
+      throws IOException {
+    try (PrintWriter script = new PrintWriter(new File(outputDir, IMPORT_SCRIPT),
+        StandardCharsets.UTF_8.name())) {
+      script.println("#!/bin/sh");
+      script.println("# Builds a new database from the CSV files in this directory.");
+      script.println("# Usage: import.sh [database name] [other neo4j-admin import options],"
+          + " then run " + POST_IMPORT_SCRIPT);
+      script.println("DIR=$(cd \"$(dirname \"$0\")\" && pwd)");
+      script.println("DB=\"${1:-neo4j}\"");
+      // the rest of the arguments are passed on to neo4j-admin
+      script.println("[ $# -gt 0 ] && shift");
+      script.println("neo4j-admin import --database=\"$DB\" \\");
+      // int values in the _GraphConfig node must not become longs
+      script.println("  --normalize-types=false --multiline-fields=true \\");
+      script.println("  --array-delimiter=" + CsvGroupWriter.ARRAY_DELIMITER_OPTION + " \\");
+      for (File[] files : nodeFiles) {
+        script.println("  --nodes=\"$DIR/" + files[0].getName() + ",$DIR/" + files[1].getName()
+            + "\" \\");
+      }
+      for (File[] files : relFiles) {
+        script.println("  --relationships=\"$DIR/" + files[0].getName() + ",$DIR/"
+            + files[1].getName() + "\" \\");
+      }
+      script.println("  \"$@\"");
+    }
+    new File(outputDir, IMPORT_SCRIPT).setExecutable(true);
+
+    try (PrintWriter cypher = new PrintWriter(new File(outputDir, POST_IMPORT_SCRIPT),
+        StandardCharsets.UTF_8.name())) {
+      cypher.println("CREATE CONSTRAINT n10s_unique_uri ON (r:Resource) ASSERT r.uri IS UNIQUE;");
+    }
+  }
+
+  static boolean isSupported(RDFParserConfig conf) {
+    return conf.getGraphConf().getHandleVocabUris() != GRAPHCONF_VOC_URI_MAP;
+  }
+}
@@ -0,0 +1,193 @@
+package n10s.rdf.bulk;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Writes rows in the CSV dialect of neo4j-admin import. A CSV column has a single type but the same
+ * property can hold values of different types on different elements, so rows are distributed in
+ * groups whose columns don't conflict, each group with its own header and data file. Columns are
+ * only known once all rows are in, so rows are spooled to disk until {@link #finish()}.
+ */
+class CsvGroupWriter {
+
+  // passed to neo4j-admin import as --array-delimiter, not expected in RDF literals
+  static final char ARRAY_DELIMITER = '\u001F';
+  static final String ARRAY_DELIMITER_OPTION = "U+001F";
+
+  private final File dir;
+  private final String filePrefix;
+  private final String[] fixedHeader;
+  private final List<Group> groups = new ArrayList<>();
+
+  /**
+   * @param fixedHeader the header of the leading columns, present in every row (ids, labels, type)
+   */
+  CsvGroupWriter(File dir, String filePrefix, String... fixedHeader) {
+    this.dir = dir;
+    this.filePrefix = filePrefix;
+    this.fixedHeader = fixedHeader;
+  }
+
+  /**
+   * @param fixedFields the values of the leading columns, already in CSV form
+   */
+  void add(String[] fixedFields, Map<String, Object> props) throws IOException {
+    Map<String, String> columnTypes = new LinkedHashMap<>();
+    props.forEach((k, v) -> columnTypes.put(k, columnType(v)));
+
+    Group group = null;
+    for (Group candidate : groups) {
+      if (candidate.accepts(columnTypes)) {
+        group = candidate;
+        break;
+      }
+    }
+    if (group == null) {
+      group = new Group(groups.size());
+      groups.add(group);
+    }
+    group.columnTypes.putAll(columnTypes);
+    group.rows++;
+    group.spool.writeInt(fixedFields.length);
+    for (String field : fixedFields) {
+      ElementFragment.writeString(group.spool, field);
+    }
+    ElementFragment.writeProps(group.spool, props);
+  }
+
+  /**
+   * Writes the header and data files of every group.
+   *
+   * @return the header and data file of each group
+   */
+  List<File[]> finish() throws IOException {
+    List<File[]> files = new ArrayList<>();
+    for (Group group : groups) {
+      group.spool.close();
+      List<String> columns = new ArrayList<>(group.columnTypes.keySet());
+      File header = new File(dir, filePrefix + "-header-" + group.index + ".csv");
+      File data = new File(dir, filePrefix + "-" + group.index + ".csv");
+      try (Writer out = writer(header)) {
+        List<String> headerFields = new ArrayList<>();
+        for (String field : fixedHeader) {
+          headerFields.add(field);
+        }
+        for (String column : columns) {
+          headerFields.add(column + ":" + group.columnTypes.get(column));
+        }
+        out.write(String.join(",", headerFields));
+        out.write('\n');
+      }
+      try (DataInputStream in = new DataInputStream(
+          new BufferedInputStream(new FileInputStream(group.spoolFile), 1 << 16));
+          Writer out = writer(data)) {
+        for (long row = 0; row < group.rows; row++) {
+          StringBuilder line = new StringBuilder();
+          int fixedFieldCount = in.readInt();
+          for (int i = 0; i < fixedFieldCount; i++) {
+            if (i > 0) {
+              line.append(',');
+            }
+            line.append(ElementFragment.readString(in));
+          }
+          Map<String, Object> props = ElementFragment.readProps(in);
+          for (String column : columns) {
+            line.append(',');
+            Object value = props.get(column);
+            if (value != null) {
+              line.append(toCsv(value));
+            }
+          }
+          out.write(line.append('\n').toString());
+        }
+      }
+      group.spoolFile.delete();
+      files.add(new File[]{header, data});
+    }
+    return files;
+  }
+
+  static String quote(String value) {
+    return "\"" + value.replace("\"", "\"\"") + "\"";
+  }
+
+  static String toCsv(Object value) {
+    if (value instanceof List) {
+      return quote(((List<?>) value).stream().map(Object::toString)
+          .collect(Collectors.joining(String.valueOf(ARRAY_DELIMITER))));
+    } else if (value instanceof String) {
+      return quote((String) value);
+    } else {
+      return value.toString();
+    }
+  }
+
+  static String columnType(Object value) {
+    if (value instanceof List) {
+      return columnType(((List<?>) value).get(0)) + "[]";
+    } else if (value instanceof Long) {
+      return "long";
+    } else if (value instanceof Integer) {
+      return "int";
+    } else if (value instanceof Double) {
+      return "double";
+    } else if (value instanceof Boolean) {
+      return "boolean";
+    } else if (value instanceof LocalDate) {
+      return "date";
+    } else if (value instanceof LocalDateTime) {
+      return "localdatetime";
+    } else {
+      return "string";
+    }
+  }
+
+  private static Writer writer(File file) throws IOException {
+    return new BufferedWriter(
+        new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8), 1 << 16);
+  }
+
+  private class Group {
+
+    private final int index;
+    private final Map<String, String> columnTypes = new LinkedHashMap<>();
+    private final File spoolFile;
+    private final DataOutputStream spool;
+    private long rows = 0;
+
+    Group(int index) throws IOException {
+      this.index = index;
+      this.spoolFile = File.createTempFile(filePrefix + "-" + index, ".spool", dir);
+      this.spool = new DataOutputStream(
+          new BufferedOutputStream(new FileOutputStream(spoolFile), 1 << 16));
+    }
+
+    boolean accepts(Map<String, String> rowColumnTypes) {
+      for (Map.Entry<String, String> column : rowColumnTypes.entrySet()) {
+        String type = columnTypes.get(column.getKey());
+        if (type != null && !type.equals(column.getValue())) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+}
@@ -0,0 +1,170 @@
+package n10s.rdf.bulk;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import n10s.utils.ExternalSorter;
+
+/**
+ * Part of the description of a node (key: uri) or a relationship (keys: start uri, type, end uri)
+ * as mapped from the triples in one batch. The fragments of an element are spread across the input
+ * and get merged once sorted by key.
+ */
+class ElementFragment {
+
+  private static final byte STRING = 0;
+  private static final byte LONG = 1;
+  private static final byte DOUBLE = 2;
+  private static final byte BOOLEAN = 3;
+  private static final byte DATE = 4;
+  private static final byte LOCAL_DATE_TIME = 5;
+  private static final byte LIST = 6;
+
+  static final Comparator<ElementFragment> BY_KEY = (a, b) -> {
+    for (int i = 0; i < a.keys.length; i++) {
+      int c = a.keys[i].compareTo(b.keys[i]);
+      if (c != 0) {
+        return c;
+      }
+    }
+    return 0;
+  };
+
+  static final ExternalSorter.Codec<ElementFragment> CODEC =
+      new ExternalSorter.Codec<ElementFragment>() {
+        @Override
+        public void write(DataOutput out, ElementFragment fragment) throws IOException {
+          out.writeInt(fragment.keys.length);
+          for (String key : fragment.keys) {
+            writeString(out, key);
+          }
+          out.writeInt(fragment.labels.size());
+          for (String label : fragment.labels) {
+            writeString(out, label);
+          }
+          writeProps(out, fragment.props);
+        }
+
+        @Override
+        public ElementFragment read(DataInput in) throws IOException {
+          String[] keys = new String[in.readInt()];
+          for (int i = 0; i < keys.length; i++) {
+            keys[i] = readString(in);
+          }
+          int labelCount = in.readInt();
+          Set<String> labels = new HashSet<>();
+          for (int i = 0; i < labelCount; i++) {
+            labels.add(readString(in));
+          }
+          return new ElementFragment(keys, labels, readProps(in));
+        }
+      };
+
+  final String[] keys;
+  final Set<String> labels;
+  final Map<String, Object> props;
+
+  ElementFragment(String[] keys, Set<String> labels, Map<String, Object> props) {
+    this.keys = keys;
+    this.labels = labels;
+    this.props = props;
+  }
+
+  boolean sameElement(ElementFragment other) {
+    return other != null && BY_KEY.compare(this, other) == 0;
+  }
+
+  static void writeProps(DataOutput out, Map<String, Object> props) throws IOException {
+    out.writeInt(props.size());
+    for (Map.Entry<String, Object> entry : props.entrySet()) {
+      writeString(out, entry.getKey());
+      writeValue(out, entry.getValue());
+    }
+  }
+
+  static Map<String, Object> readProps(DataInput in) throws IOException {
+    int propCount = in.readInt();
+    Map<String, Object> props = new HashMap<>();
+    for (int i = 0; i < propCount; i++) {
+      props.put(readString(in), readValue(in));
+    }
+    return props;
+  }
+
+  static void writeString(DataOutput out, String s) throws IOException {
+    // writeUTF is limited to 64KB, literals can be longer
+    byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  static String readString(DataInput in) throws IOException {
+    byte[] bytes = new byte[in.readInt()];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static void writeValue(DataOutput out, Object value) throws IOException {
+    if (value instanceof List) {
+      out.writeByte(LIST);
+      List<?> values = (List<?>) value;
+      out.writeInt(values.size());
+      for (Object v : values) {
+        writeValue(out, v);
+      }
+    } else if (value instanceof Long) {
+      out.writeByte(LONG);
+      out.writeLong((Long) value);
+    } else if (value instanceof Double) {
+      out.writeByte(DOUBLE);
+      out.writeDouble((Double) value);
+    } else if (value instanceof Boolean) {
+      out.writeByte(BOOLEAN);
+      out.writeBoolean((Boolean) value);
+    } else if (value instanceof LocalDate) {
+      out.writeByte(DATE);
+      out.writeLong(((LocalDate) value).toEpochDay());
+    } else if (value instanceof LocalDateTime) {
+      out.writeByte(LOCAL_DATE_TIME);
+      writeString(out, value.toString());
+    } else {
+      out.writeByte(STRING);
+      writeString(out, value.toString());
+    }
+  }
+
+  private static Object readValue(DataInput in) throws IOException {
+    byte type = in.readByte();
+    switch (type) {
+      case LIST:
+        int size = in.readInt();
+        List<Object> values = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+          values.add(readValue(in));
+        }
+        return values;
+      case LONG:
+        return in.readLong();
+      case DOUBLE:
+        return in.readDouble();
+      case BOOLEAN:
+        return in.readBoolean();
+      case DATE:
+        return LocalDate.ofEpochDay(in.readLong());
+      case LOCAL_DATE_TIME:
+        return LocalDateTime.parse(readString(in));
+      default:
+        return readString(in);
+    }
+  }
+}
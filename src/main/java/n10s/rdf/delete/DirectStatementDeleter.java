@@ -4,9 +4,12 @@ import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader.InvalidCacheLoadException;
 import com.google.common.collect.Iterators;
-import java.time.LocalDate;
-import java.time.LocalDateTime;
-import java.util.ArrayList;
+import java.lang.reflect.Array;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -41,6 +44,8 @@ public class DirectStatementDeleter extends RDFToLPGStatementProcessor {
 
   private long notDeletedStatementCount;
   private long statementsWithBNodeCount;
+  // triples of the partial commits rolled back when not aborting on error
+  private long triplesLost;
   private String bNodeInfo;
 
   public DirectStatementDeleter(GraphDatabaseService db, Transaction tx, RDFParserConfig conf,
@@ -89,56 +94,15 @@ public class DirectStatementDeleter extends RDFToLPGStatementProcessor {
         });
         resourceProps.get(entry.getKey()).forEach((k, v) -> {
           if (v instanceof List) {
-            List valuesToDelete = (List) v;
+            List<Object> valuesToDelete = (List<Object>) v;
             if (node != null && node.hasProperty(k)) {
-              ArrayList<Object> newProps = new ArrayList<>();
               Object prop = node.getProperty(k);
-              if (prop instanceof long[]) {
-                long[] props = (long[]) prop;
-                for (long currentVal : props) {
-                  if (!valuesToDelete.contains(currentVal)) {
-                    newProps.add(currentVal);
-                  }
-                }
-              } else if (prop instanceof double[]) {
-                double[] props = (double[]) prop;
-                for (double currentVal : props) {
-                  if (!valuesToDelete.contains(currentVal)) {
-                    newProps.add(currentVal);
-                  }
-                }
-              } else if (prop instanceof boolean[]) {
-                boolean[] props = (boolean[]) prop;
-                for (boolean currentVal : props) {
-                  if (!valuesToDelete.contains(currentVal)) {
-                    newProps.add(currentVal);
-                  }
-                }
-              } else if (prop instanceof LocalDateTime[]) {
-                LocalDateTime[] props = (LocalDateTime[]) prop;
-                for (LocalDateTime currentVal : props) {
-                  if (!valuesToDelete.contains(currentVal)) {
-                    newProps.add(currentVal);
-                  }
-                }
-              } else if (prop instanceof LocalDate[]) {
-                LocalDate[] props = (LocalDate[]) prop;
-                for (LocalDate currentVal : props) {
-                  if (!valuesToDelete.contains(currentVal)) {
-                    newProps.add(currentVal);
-                  }
-                }
-              } else {
-                Object[] props = (Object[]) prop;
-                for (Object currentVal : props) {
-                  if (!valuesToDelete.contains(currentVal)) {
-                    newProps.add(currentVal);
-                  }
-                }
-              }
-              node.removeProperty(k);
-              if (!newProps.isEmpty()) {
-                node.setProperty(k, toPropertyValue(newProps));
+              Object remaining = remainingValues(prop, valuesToDelete);
+              // each property is written once, and only if any of its values went
+              if (remaining == null) {
+                node.removeProperty(k);
+              } else if (remaining != prop) {
+                node.setProperty(k, remaining);
               }
             } else {
               notDeletedStatementCount += valuesToDelete.size();
@@ -159,67 +123,48 @@ public class DirectStatementDeleter extends RDFToLPGStatementProcessor {
       }
     }
 
+    // relationships are grouped by start node and type, so the relationships of each start node
+    // are scanned once per type and batch, matching their end nodes against the set to delete
+    Map<String, Map<String, Set<String>>> relsToDelete = new LinkedHashMap<>();
     for (Statement st : statements) {
-      try {
-        if ((st.getSubject() instanceof IRI && st.getSubject().stringValue().startsWith("bnode://")) !=
-                (st.getObject() instanceof IRI && st.getObject().stringValue().startsWith("bnode://"))) {
-          statementsWithBNodeCount++;
-        }
-        if ((st.getSubject() instanceof IRI && st.getSubject().stringValue().startsWith("bnode://")) ||
-                (st.getObject() instanceof IRI && st.getObject().stringValue().startsWith("bnode://"))) { //(st.getSubject() instanceof BNode || st.getObject() instanceof BNode) {
-          //statementsWithBNodeCount++;
-          continue;
-        }
-        Node fromNode = null;
-        try {
-          fromNode = nodeCache.get(st.getSubject().stringValue(), () -> {  //throws AnyException
-            return inThreadTransaction.findNode(RESOURCE, "uri", st.getSubject().stringValue());
-          });
-        } catch (InvalidCacheLoadException icle) {
-          icle.printStackTrace();
-        }
-        Node toNode = null;
-        try {
-          toNode = nodeCache.get(st.getObject().stringValue(), () -> {  //throws AnyException
-            return inThreadTransaction.findNode(RESOURCE, "uri", st.getObject().stringValue());
-          });
-        } catch (InvalidCacheLoadException icle) {
-          icle.printStackTrace();
+      boolean bNodeSubject = st.getSubject() instanceof IRI
+          && st.getSubject().stringValue().startsWith("bnode://");
+      boolean bNodeObject = st.getObject() instanceof IRI
+          && st.getObject().stringValue().startsWith("bnode://");
+      if (bNodeSubject != bNodeObject) {
+        statementsWithBNodeCount++;
+      }
+      if (bNodeSubject || bNodeObject) {
+        continue;
+      }
+      relsToDelete.computeIfAbsent(st.getSubject().stringValue(), subject -> new LinkedHashMap<>())
+          .computeIfAbsent(handleIRI(st.getPredicate(), RELATIONSHIP), t -> new LinkedHashSet<>())
+          .add(st.getObject().stringValue());
+    }
+
+    for (Map.Entry<String, Map<String, Set<String>>> fromEntry : relsToDelete.entrySet()) {
+      Node fromNode = findNode(inThreadTransaction, fromEntry.getKey());
+      Set<Node> touched = new LinkedHashSet<>();
+      for (Map.Entry<String, Set<String>> typeEntry : fromEntry.getValue().entrySet()) {
+        Map<Long, Node> toNodes = new HashMap<>();
+        for (String toUri : typeEntry.getValue()) {
+          Node toNode = fromNode == null ? null : findNode(inThreadTransaction, toUri);
+          if (toNode == null) {
+            notDeletedStatementCount++;
+          } else {
+            toNodes.put(toNode.getId(), toNode);
+          }
         }
-        if (fromNode == null || toNode == null) {
-          notDeletedStatementCount++;
+        if (toNodes.isEmpty()) {
           continue;
         }
-        // find relationship if it exists
-        if (fromNode
-            .getDegree(RelationshipType.withName(handleIRI(st.getPredicate(), RELATIONSHIP)),
-                Direction.OUTGOING) <
-            toNode.getDegree(RelationshipType.withName(handleIRI(st.getPredicate(), RELATIONSHIP)),
-                Direction.INCOMING)) {
-          for (Relationship rel : fromNode
-              .getRelationships(Direction.OUTGOING,
-                  RelationshipType.withName(handleIRI(st.getPredicate(), RELATIONSHIP))
-              )) {
-            if (rel.getEndNode().equals(toNode)) {
-              rel.delete();
-              break;
-            }
-          }
-        } else {
-          for (Relationship rel : toNode
-              .getRelationships(Direction.INCOMING,
-                  RelationshipType.withName(handleIRI(st.getPredicate(), RELATIONSHIP))
-              )) {
-            if (rel.getStartNode().equals(fromNode)) {
-              rel.delete();
-              break;
-            }
-          }
-        }
-        deleteNodeIfEmpty(toNode);
+        deleteRelationships(fromNode, RelationshipType.withName(typeEntry.getKey()), toNodes);
+        touched.addAll(toNodes.values());
+      }
+      touched.remove(fromNode);
+      touched.forEach(DirectStatementDeleter::deleteNodeIfEmpty);
+      if (fromNode != null) {
         deleteNodeIfEmpty(fromNode);
-      } catch (ExecutionException e) {
-        e.printStackTrace();
       }
     }
 
@@ -238,12 +183,30 @@ public class DirectStatementDeleter extends RDFToLPGStatementProcessor {
 
   @Override
   protected void periodicOperation() {
+    long notDeletedBefore = notDeletedStatementCount;
+    long withBNodeBefore = statementsWithBNodeCount;
     try (Transaction tempTransaction = graphdb.beginTx()) {
       this.runPartialTx(tempTransaction);
       tempTransaction.commit();
       totalTriplesMapped += mappedTripleCounter;
       log.debug("Successful partial commit of " + mappedTripleCounter + " triples. " +
           (totalTriplesMapped - notDeletedStatementCount) + " triples deleted so far...");
+    } catch (Exception e) {
+      // none of the batch was deleted, whatever it counted
+      notDeletedStatementCount = notDeletedBefore;
+      statementsWithBNodeCount = withBNodeBefore;
+      statements.clear();
+      resourceLabels.clear();
+      resourceProps.clear();
+      nodeCache.invalidateAll();
+      log.error("Problems when running partial commit. Partial transaction rolled back. "
+          + mappedTripleCounter + " triples not deleted.", e);
+      triplesLost += mappedTripleCounter;
+      if (getParserConfig().isAbortOnError()) {
+        mappedTripleCounter = 0;
+        throw new PartialCommitException(
+            "Problems when running partial commit. Partial transaction rolled back. ", e);
+      }
     }
 
     mappedTripleCounter = 0;
@@ -253,6 +216,14 @@ public class DirectStatementDeleter extends RDFToLPGStatementProcessor {
     return notDeletedStatementCount + statementsWithBNodeCount;
   }
 
+  /**
+   * @return the triples of the partial commits rolled back, none unless the delete doesn't abort
+   * on error
+   */
+  public long getTriplesLost() {
+    return triplesLost;
+  }
+
   public String getbNodeInfo() {
     return bNodeInfo;
   }
@@ -261,7 +232,126 @@ public class DirectStatementDeleter extends RDFToLPGStatementProcessor {
     this.bNodeInfo = bNodeInfo;
   }
 
-  private void deleteNodeIfEmpty(Node node) {
+  private Node findNode(Transaction inThreadTransaction, String uri) {
+    try {
+      return nodeCache.get(uri, () -> inThreadTransaction.findNode(RESOURCE, "uri", uri));
+    } catch (InvalidCacheLoadException e) {
+      // no node with the uri
+      return null;
+    } catch (ExecutionException e) {
+      throw new RuntimeException(e.getCause());
+    }
+  }
+
+  /**
+   * Deletes one relationship of the type from fromNode to each of the nodes, walking whichever
+   * side has fewer relationships of the type: fromNode's outgoing ones, matched against the set of
+   * end nodes, or the incoming ones of each end node.
+   */
+  private void deleteRelationships(Node fromNode, RelationshipType type, Map<Long, Node> toNodes) {
+    long incoming = 0;
+    for (Node toNode : toNodes.values()) {
+      incoming += toNode.getDegree(type, Direction.INCOMING);
+    }
+    if (fromNode.getDegree(type, Direction.OUTGOING) < incoming) {
+      Set<Long> pending = new HashSet<>(toNodes.keySet());
+      for (Relationship rel : fromNode.getRelationships(Direction.OUTGOING, type)) {
+        if (pending.remove(rel.getEndNodeId())) {
+          rel.delete();
+          if (pending.isEmpty()) {
+            break;
+          }
+        }
+      }
+    } else {
+      long fromNodeId = fromNode.getId();
+      for (Node toNode : toNodes.values()) {
+        for (Relationship rel : toNode.getRelationships(Direction.INCOMING, type)) {
+          if (rel.getStartNodeId() == fromNodeId) {
+            rel.delete();
+            break;
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * @return the values of the array property that are not in valuesToDelete, as an array of the
+   * same type, or null if none are left (prop itself if none of them are to be deleted). Values
+   * are compared as List.contains would compare them to the boxed elements of the array, but
+   * against a sorted primitive array or a hash set.
+   */
+  static Object remainingValues(Object prop, List<Object> valuesToDelete) {
+    if (!prop.getClass().isArray()) {
+      return valuesToDelete.contains(prop) ? null : prop;
+    }
+    int length = Array.getLength(prop);
+    Object remaining;
+    int count = 0;
+    if (prop instanceof long[]) {
+      long[] props = (long[]) prop;
+      long[] toDelete = valuesToDelete.stream().filter(x -> x instanceof Long)
+          .mapToLong(x -> (Long) x).sorted().toArray();
+      long[] kept = new long[length];
+      for (long currentVal : props) {
+        if (Arrays.binarySearch(toDelete, currentVal) < 0) {
+          kept[count++] = currentVal;
+        }
+      }
+      remaining = kept;
+    } else if (prop instanceof double[]) {
+      double[] props = (double[]) prop;
+      // sorted and searched with Double.compare, the same equality as Double.equals
+      double[] toDelete = valuesToDelete.stream().filter(x -> x instanceof Double)
+          .mapToDouble(x -> (Double) x).sorted().toArray();
+      double[] kept = new double[length];
+      for (double currentVal : props) {
+        if (Arrays.binarySearch(toDelete, currentVal) < 0) {
+          kept[count++] = currentVal;
+        }
+      }
+      remaining = kept;
+    } else if (prop instanceof boolean[]) {
+      boolean[] props = (boolean[]) prop;
+      boolean deleteTrue = valuesToDelete.contains(Boolean.TRUE);
+      boolean deleteFalse = valuesToDelete.contains(Boolean.FALSE);
+      boolean[] kept = new boolean[length];
+      for (boolean currentVal : props) {
+        if (currentVal ? !deleteTrue : !deleteFalse) {
+          kept[count++] = currentVal;
+        }
+      }
+      remaining = kept;
+    } else {
+      // String, LocalDateTime, LocalDate... arrays
+      Object[] props = (Object[]) prop;
+      Set<Object> toDelete = new HashSet<>(valuesToDelete);
+      Object[] kept = (Object[]) Array.newInstance(props.getClass().getComponentType(), length);
+      for (Object currentVal : props) {
+        if (!toDelete.contains(currentVal)) {
+          kept[count++] = currentVal;
+        }
+      }
+      remaining = kept;
+    }
+    if (count == 0) {
+      return null;
+    }
+    if (count == length) {
+      return prop;
+    }
+    Object trimmed = Array.newInstance(prop.getClass().getComponentType(), count);
+    System.arraycopy(remaining, 0, trimmed, 0, count);
+    return trimmed;
+  }
+
+  /**
+   * Deletes the node if it's a Resource with nothing but its uri left.
+   *
+   * @return true if the node was deleted
+   */
+  static boolean deleteNodeIfEmpty(Node node) {
     int nodePropertyCount = node.getAllProperties().size();
     int labelCount = Iterators.size(node.getLabels().iterator());
     if (!node.hasRelationship(Direction.OUTGOING) &&
@@ -269,7 +359,9 @@ public class DirectStatementDeleter extends RDFToLPGStatementProcessor {
         node.hasLabel(RESOURCE) && labelCount == 1 &&
         (node.getAllProperties().containsKey("uri") && nodePropertyCount == 1)) {
       node.delete();
+      return true;
     }
+    return false;
   }
 
 }
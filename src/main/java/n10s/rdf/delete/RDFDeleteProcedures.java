@@ -3,6 +3,8 @@ package n10s.rdf.delete;
 import java.util.Map;
 import java.util.stream.Stream;
 import n10s.rdf.RDFProcedures;
+import n10s.rdf.export.TriplePattern;
+import org.eclipse.rdf4j.model.vocabulary.XMLSchema;
 import org.neo4j.procedure.Description;
 import org.neo4j.procedure.Mode;
 import org.neo4j.procedure.Name;
@@ -30,4 +32,22 @@ public class RDFDeleteProcedures extends RDFProcedures {
     return Stream.of(doDelete(format, null, rdf, props));
   }
 
+  @Procedure(mode = Mode.WRITE)
+  @Description(
+      "Deletes the triples matching the spo pattern passed as parameter (a null subject, predicate "
+          + "or object matches any) from Neo4j, in batches. Works on a graph resulted of importing "
+          + "RDF via n10s.rdf.import ")
+  public Stream<DeleteResults> spo(@Name("subject") String subject,
+      @Name("predicate") String predicate, @Name("object") String object,
+      @Name(value = "isLiteral", defaultValue = "false") Boolean isLiteral,
+      @Name(value = "literalType", defaultValue = "http://www.w3.org/2001/XMLSchema#string")
+          String literalType,
+      @Name(value = "literalLang", defaultValue = "null") String literalLang,
+      @Name(value = "params", defaultValue = "{}") Map<String, Object> props) {
+    return Stream.of(doDeleteSpo(new TriplePattern(subject, predicate, object,
+        (isLiteral == null ? false : isLiteral),
+        (literalType == null ? XMLSchema.STRING.stringValue() : literalType),
+        (literalLang == null || literalLang.equals("null") ? null : literalLang)), props));
+  }
+
 }
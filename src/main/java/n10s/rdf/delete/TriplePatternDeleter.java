@@ -0,0 +1,360 @@
+package n10s.rdf.delete;
+
+import static n10s.graphconfig.GraphConfig.GRAPHCONF_RDFTYPES_AS_LABELS;
+import static n10s.graphconfig.GraphConfig.GRAPHCONF_RDFTYPES_AS_LABELS_AND_NODES;
+import static n10s.graphconfig.GraphConfig.GRAPHCONF_RDFTYPES_AS_NODES;
+import static n10s.graphconfig.GraphConfig.GRAPHCONF_VOC_URI_SHORTEN;
+import static n10s.graphconfig.GraphConfig.GRAPHCONF_VOC_URI_SHORTEN_STRICT;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import n10s.RDFToLPGMapper;
+import n10s.graphconfig.RDFParserConfig;
+import n10s.rdf.export.TriplePattern;
+import n10s.utils.InvalidNamespacePrefixDefinitionInDB;
+import n10s.utils.NamespaceWithUndefinedPrefix;
+import n10s.utils.NsPrefixMap;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Literal;
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.model.vocabulary.RDF;
+import org.eclipse.rdf4j.rio.RDFHandlerException;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.Result;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.TransientFailureException;
+import org.neo4j.logging.Log;
+
+/**
+ * Deletes the triples matching a {@link TriplePattern} (a null subject, predicate or object
+ * matches any) straight from the graph, with no RDF to serialise and parse. The pattern is
+ * translated with the graph config the same way the triples were on import, and the elements
+ * holding the matching triples are found by a read query that uses the index on :Resource(uri)
+ * when there is a subject or an IRI as object. They are deleted in batches, each in its own
+ * transaction, parallelism of them at a time, as apoc.periodic.iterate would: first the
+ * relationships, then the labels (rdf:type as labels) and the property values. As with
+ * n10s.rdf.delete, the Resources left with nothing but their uri are deleted.
+ */
+public class TriplePatternDeleter {
+
+  public static final long DEFAULT_BATCH_SIZE = 10_000;
+  public static final int DEFAULT_PARALLELISM = Math.min(4,
+      Runtime.getRuntime().availableProcessors());
+  private static final int MAX_RETRIES = 5;
+  private static final int RETRY_BACKOFF_MILLIS = 50;
+  private static final Label RESOURCE = Label.label("Resource");
+  private static final ValueFactory VF = SimpleValueFactory.getInstance();
+
+  private final GraphDatabaseService graphdb;
+  private final Transaction tx;
+  private final RDFParserConfig parserConfig;
+  private final Log log;
+  // the pattern is translated as the triples were on import
+  private final RDFToLPGMapper mapper;
+  private NsPrefixMap namespaces;
+  private final int batchSize;
+  private final int parallelism;
+  private final AtomicLong triplesDeleted = new AtomicLong();
+  private final AtomicLong nodesDeleted = new AtomicLong();
+
+  public TriplePatternDeleter(GraphDatabaseService db, Transaction tx, RDFParserConfig conf,
+      Log l, long batchSize, int parallelism) {
+    this.graphdb = db;
+    this.tx = tx;
+    this.parserConfig = conf;
+    this.log = l;
+    this.mapper = new RDFToLPGMapper(db, conf, l);
+    this.batchSize = (int) Math.max(1, Math.min(batchSize, Integer.MAX_VALUE));
+    this.parallelism = Math.max(1, parallelism);
+  }
+
+  public void delete(TriplePattern tp) throws RDFHandlerException {
+    int handleVocabUris = parserConfig.getGraphConf().getHandleVocabUris();
+    if (handleVocabUris == GRAPHCONF_VOC_URI_SHORTEN
+        || handleVocabUris == GRAPHCONF_VOC_URI_SHORTEN_STRICT) {
+      try {
+        namespaces = new NsPrefixMap(tx, false);
+      } catch (InvalidNamespacePrefixDefinitionInDB e) {
+        throw new RDFHandlerException(e.getMessage());
+      }
+    }
+    IRI predicate = tp.getPredicate() != null ? VF.createIRI(tp.getPredicate()) : null;
+    Value object = tp.getObjectAsValue(VF);
+    int handleRDFTypes = parserConfig.getGraphConf().getHandleRDFTypes();
+    boolean typePredicate = predicate != null && predicate.equals(RDF.TYPE);
+    Map<String, Object> params = new HashMap<>();
+    params.put("subject", tp.getSubject());
+    String subjectMatch = tp.getSubject() != null ? " {uri: $subject}" : "";
+
+    try {
+      if (!(object instanceof Literal) && (!typePredicate
+          || handleRDFTypes == GRAPHCONF_RDFTYPES_AS_NODES
+          || handleRDFTypes == GRAPHCONF_RDFTYPES_AS_LABELS_AND_NODES)) {
+        if (object != null) {
+          params.put("object", object.stringValue());
+        }
+        inBatches("MATCH (:Resource" + subjectMatch + ")-[r"
+                + (predicate != null ? ":" + quoted(name(predicate, RDFToLPGMapper.RELATIONSHIP))
+                : "") + "]->(:Resource" + (object != null ? " {uri: $object}" : "") + ") "
+                + "RETURN id(r) AS id", params, "relationships",
+            (tx, id, key, touched) -> deleteRelationship(tx, id, touched));
+      }
+
+      if (!(object instanceof Literal) && (predicate == null || typePredicate)
+          && (handleRDFTypes == GRAPHCONF_RDFTYPES_AS_LABELS
+          || handleRDFTypes == GRAPHCONF_RDFTYPES_AS_LABELS_AND_NODES)) {
+        String label = object != null ? name((IRI) object, RDFToLPGMapper.LABEL) : null;
+        inBatches("MATCH (r:Resource" + (label != null ? ":" + quoted(label) : "") + subjectMatch
+                + ") " + (label == null ? "WHERE size(labels(r)) > 1 " : "")
+                + "RETURN id(r) AS id", params, "labels",
+            (tx, id, key, touched) -> deleteLabels(tx, id, label, touched));
+      }
+
+      if ((object == null || object instanceof Literal) && !typePredicate) {
+        Object value = object != null
+            ? mapper.getObjectValue(predicate, (Literal) object, namespaces) : null;
+        if (object != null && value == null) {
+          // filtered by the language filter, there can't be such a value in the graph
+          return;
+        }
+        params.put("value", value);
+        if (predicate != null) {
+          // inlined, so that a property index can be used
+          String key = name(predicate, RDFToLPGMapper.PROPERTY);
+          String property = "r." + quoted(key);
+          inBatches("MATCH (r:Resource" + subjectMatch + ") WHERE " + property + " IS NOT NULL "
+                  + (value != null ? "AND $value IN [] + " + property + " " : "")
+                  + "RETURN id(r) AS id", params, "property values",
+              (tx, id, k, touched) -> deletePropertyValues(tx, id, key, value, touched));
+        } else {
+          inBatches("MATCH (r:Resource" + subjectMatch + ") UNWIND keys(r) AS key "
+                  + "WITH r, key WHERE NOT key IN ['uri', 'graphUri'] "
+                  + (value != null ? "AND $value IN [] + r[key] " : "")
+                  + "RETURN id(r) AS id, key", params, "property values",
+              (tx, id, key, touched) -> deletePropertyValues(tx, id, key, value, touched));
+        }
+      }
+    } catch (NamespaceWithUndefinedPrefix e) {
+      // SHORTEN_STRICT and a namespace with no prefix: nothing in the graph can match
+      log.debug("Nothing to delete: " + e.getMessage());
+    }
+  }
+
+  public long getTriplesDeleted() {
+    return triplesDeleted.get();
+  }
+
+  public long getNodesDeleted() {
+    return nodesDeleted.get();
+  }
+
+  public Map<String, String> getNamespaces() {
+    return namespaces == null ? null : namespaces.getPrefixToNs();
+  }
+
+  private String name(IRI iri, int elementType) {
+    return mapper.handleIRI(iri, elementType, namespaces);
+  }
+
+  private static String quoted(String name) {
+    return "`" + name.replace("`", "``") + "`";
+  }
+
+  private long deleteRelationship(Transaction tx, long relId, Set<Node> touched) {
+    Relationship rel;
+    try {
+      rel = tx.getRelationshipById(relId);
+    } catch (NotFoundException e) {
+      return 0;
+    }
+    touched.add(rel.getStartNode());
+    touched.add(rel.getEndNode());
+    rel.delete();
+    return 1;
+  }
+
+  private long deleteLabels(Transaction tx, long nodeId, String label, Set<Node> touched) {
+    Node node = tx.getNodeById(nodeId);
+    touched.add(node);
+    long deleted = 0;
+    for (Label l : node.getLabels()) {
+      if (label != null ? l.name().equals(label) : !l.equals(RESOURCE)) {
+        node.removeLabel(l);
+        deleted++;
+      }
+    }
+    return deleted;
+  }
+
+  private long deletePropertyValues(Transaction tx, long nodeId, String key, Object value,
+      Set<Node> touched) {
+    Node node = tx.getNodeById(nodeId);
+    Object prop = node.getProperty(key, null);
+    if (prop == null) {
+      return 0;
+    }
+    touched.add(node);
+    int values = prop.getClass().isArray() ? Array.getLength(prop) : 1;
+    Object remaining = value == null ? null
+        : DirectStatementDeleter.remainingValues(prop, Collections.singletonList(value));
+    if (remaining == null) {
+      node.removeProperty(key);
+      return values;
+    } else if (remaining != prop) {
+      node.setProperty(key, remaining);
+      return values - Array.getLength(remaining);
+    }
+    return 0;
+  }
+
+  /**
+   * Runs the operation on every element the query returns, a batch of them per transaction,
+   * logging the progress as batches complete. The ids (and keys) are all read before any is
+   * deleted, so that the query doesn't see the deletes of the batches.
+   */
+  private void inBatches(String query, Map<String, Object> params, String what,
+      ElementOperation operation) {
+    Matches matches = new Matches();
+    try (Transaction tx = graphdb.beginTx(); Result result = tx.execute(query, params)) {
+      while (result.hasNext()) {
+        Map<String, Object> row = result.next();
+        matches.add((Long) row.get("id"), (String) row.get("key"));
+      }
+    }
+    int batches = (matches.size + batchSize - 1) / batchSize;
+    if (batches == 0) {
+      return;
+    }
+    ExecutorService pool = Executors.newFixedThreadPool(Math.min(parallelism, batches),
+        new ThreadFactoryBuilder().setNameFormat("n10s-delete-spo-%d").setDaemon(true).build());
+    try {
+      ExecutorCompletionService<Long> completion = new ExecutorCompletionService<>(pool);
+      for (int from = 0; from < matches.size; from += batchSize) {
+        int start = from;
+        int end = Math.min(from + batchSize, matches.size);
+        completion.submit(() -> inTransaction(matches, start, end, operation));
+      }
+      long done = 0;
+      for (int i = 0; i < batches; i++) {
+        completion.take().get();
+        done = Math.min(done + batchSize, matches.size);
+        log.info("Deleting " + what + " matching a triple pattern: " + done + " of "
+            + matches.size + " done, " + triplesDeleted.get() + " triples deleted so far");
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new TriplePatternDeleteException("Interrupted while deleting " + what + ". ", e);
+    } catch (ExecutionException e) {
+      throw new TriplePatternDeleteException("Problems when deleting " + what + ". ", e);
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  private long inTransaction(Matches matches, int start, int end, ElementOperation operation) {
+    for (int attempt = 1; ; attempt++) {
+      try (Transaction tx = graphdb.beginTx()) {
+        long deleted = 0;
+        long emptied = 0;
+        Set<Node> touched = new HashSet<>();
+        for (int i = start; i < end; i++) {
+          try {
+            deleted += operation.apply(tx, matches.ids[i], matches.key(i), touched);
+          } catch (NotFoundException e) {
+            // deleted since the query returned it
+          }
+        }
+        for (Node node : touched) {
+          try {
+            if (DirectStatementDeleter.deleteNodeIfEmpty(node)) {
+              emptied++;
+            }
+          } catch (NotFoundException e) {
+            // deleted by another batch
+          }
+        }
+        tx.commit();
+        triplesDeleted.addAndGet(deleted);
+        nodesDeleted.addAndGet(emptied);
+        return deleted;
+      } catch (TransientFailureException e) {
+        // batches deleting relationships of the same nodes can deadlock
+        if (attempt == MAX_RETRIES) {
+          throw e;
+        }
+        log.debug("Retrying batch of n10s.rdf.delete.spo after: " + e.getMessage());
+        try {
+          Thread.sleep(ThreadLocalRandom.current().nextInt(RETRY_BACKOFF_MILLIS * attempt));
+        } catch (InterruptedException ie) {
+          Thread.currentThread().interrupt();
+          throw e;
+        }
+      }
+    }
+  }
+
+  private interface ElementOperation {
+
+    /**
+     * @param key the property key returned with the id, null if none
+     */
+    long apply(Transaction tx, long id, String key, Set<Node> touched);
+  }
+
+  /**
+   * The ids the query returned, and the property key of each if it returned one, kept in arrays
+   * (the keys as indexes in the list of the distinct ones) rather than as a row map each.
+   */
+  private static final class Matches {
+
+    private long[] ids = new long[1024];
+    private int[] keys = new int[1024];
+    private final List<String> keyNames = new ArrayList<>();
+    private final Map<String, Integer> keyIndexes = new HashMap<>();
+    private int size = 0;
+
+    void add(long id, String key) {
+      if (size == ids.length) {
+        ids = Arrays.copyOf(ids, size * 2);
+        keys = Arrays.copyOf(keys, size * 2);
+      }
+      ids[size] = id;
+      keys[size] = key == null ? -1 : keyIndexes.computeIfAbsent(key, k -> {
+        keyNames.add(k);
+        return keyNames.size() - 1;
+      });
+      size++;
+    }
+
+    String key(int i) {
+      return keys[i] < 0 ? null : keyNames.get(keys[i]);
+    }
+  }
+
+  public static class TriplePatternDeleteException extends RuntimeException {
+
+    public TriplePatternDeleteException(String message, Exception cause) {
+      super(message, cause);
+    }
+  }
+}
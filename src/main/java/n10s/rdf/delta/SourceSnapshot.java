@@ -0,0 +1,370 @@
+package n10s.rdf.delta;
+
+import com.google.common.hash.Hashing;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import n10s.ConfiguredStatementHandler;
+import n10s.graphconfig.RDFParserConfig;
+import n10s.utils.ExternalSorter;
+import org.eclipse.rdf4j.model.BNode;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.rio.RDFFormat;
+import org.eclipse.rdf4j.rio.RDFHandler;
+import org.eclipse.rdf4j.rio.RDFHandlerException;
+import org.eclipse.rdf4j.rio.RDFParser;
+import org.eclipse.rdf4j.rio.Rio;
+import org.eclipse.rdf4j.rio.helpers.BasicParserSettings;
+import org.eclipse.rdf4j.rio.ntriples.NTriplesUtil;
+
+/**
+ * The triples of a source as of its last delta import, kept on disk (gzipped) sorted by hash, so
+ * that a new version of the source can be diffed against them in one streaming merge and only the
+ * triples added and removed since are written to the graph.
+ * <p>
+ * Each triple is kept as its N-Triples line next to a 64 bit hash of it: the hash gives the order,
+ * the line breaks ties between colliding hashes and is what gets passed to the deleter when the
+ * triple disappears from the source. Sources with blank nodes are rejected: their labels are
+ * scoped to each parse, so the same triple would be both removed and added on every import.
+ */
+public class SourceSnapshot {
+
+  public static final String DEFAULT_DIRECTORY = "n10s-delta";
+  private static final int FORMAT_VERSION = 1;
+  // triples sorted in memory before spilling a run to disk
+  private static final int MAX_TRIPLES_IN_MEMORY = 250_000;
+  private static final String DELTA_BASE_URI = "http://neo4j.com/base/";
+
+  private static final Comparator<Triple> ORDER = Comparator.<Triple>comparingLong(t -> t.hash)
+      .thenComparing(t -> t.line);
+
+  private static final ExternalSorter.Codec<Triple> CODEC = new ExternalSorter.Codec<Triple>() {
+    @Override
+    public void write(DataOutput out, Triple triple) throws IOException {
+      writeTriple(out, triple);
+    }
+
+    @Override
+    public Triple read(DataInput in) throws IOException {
+      return readTriple(in);
+    }
+  };
+
+  private final Path directory;
+  private final Path file;
+
+  SourceSnapshot(Path directory, Path file) {
+    this.directory = directory;
+    this.file = file;
+  }
+
+  /**
+   * @param deltaDir the directory passed as param, already resolved within the import directory,
+   * null for the default one
+   * @param sourceId identifies the source within the database, the url if not given
+   */
+  public static SourceSnapshot of(Path deltaDir, String databaseName, String sourceId)
+      throws IOException {
+    Path directory = deltaDir != null ? deltaDir
+        : Paths.get(System.getProperty("java.io.tmpdir"), DEFAULT_DIRECTORY);
+    Files.createDirectories(directory);
+    String key = Hashing.sha256().hashString(databaseName + " " + sourceId,
+        StandardCharsets.UTF_8).toString();
+    return new SourceSnapshot(directory, directory.resolve(key + ".snapshot"));
+  }
+
+  public boolean exists() {
+    return Files.exists(file);
+  }
+
+  /**
+   * @return a handler collecting the triples of the current version of the source, to be passed
+   * to {@link #diff(Collector)} once parsed
+   */
+  public Collector newCollector(RDFParserConfig conf) {
+    return new Collector(conf, new ExternalSorter<>(directory.toFile(), ORDER, CODEC,
+        MAX_TRIPLES_IN_MEMORY));
+  }
+
+  /**
+   * Merges the triples collected with the ones in the snapshot, writing the additions, the
+   * removals and the next snapshot to temp files, and closes the collector. The snapshot itself is
+   * only replaced by {@link Delta#commit()}, once the delta has been applied.
+   */
+  public Delta diff(Collector current) throws IOException {
+    Delta delta = new Delta(Files.createTempFile(directory, "additions", ".nt.gz"),
+        Files.createTempFile(directory, "removals", ".nt.gz"),
+        Files.createTempFile(directory, "snapshot", ".tmp"));
+    try (TripleReader previous = new TripleReader(exists() ? file : null);
+        DataOutputStream next = new DataOutputStream(gzipOut(delta.nextSnapshot));
+        Writer additions = ntriplesOut(delta.additions);
+        Writer removals = ntriplesOut(delta.removals)) {
+      next.writeInt(FORMAT_VERSION);
+      Iterator<Triple> sorted = current.sorter.sorted();
+      Triple added = nextDistinct(sorted, null);
+      Triple removed = previous.next();
+      while (added != null || removed != null) {
+        int c = added == null ? 1 : removed == null ? -1 : ORDER.compare(added, removed);
+        if (c <= 0) {
+          if (c < 0) {
+            additions.write(added.line);
+            additions.write('\n');
+            delta.added++;
+          } else {
+            delta.unchanged++;
+            removed = previous.next();
+          }
+          next.writeBoolean(true);
+          writeTriple(next, added);
+          added = nextDistinct(sorted, added);
+        } else {
+          removals.write(removed.line);
+          removals.write('\n');
+          delta.removed++;
+          removed = previous.next();
+        }
+      }
+      next.writeBoolean(false);
+    } catch (IOException | RuntimeException e) {
+      delta.close();
+      throw e;
+    } finally {
+      // deletes the runs of the sort
+      current.close();
+    }
+    return delta;
+  }
+
+  private static Triple nextDistinct(Iterator<Triple> sorted, Triple last) {
+    while (sorted.hasNext()) {
+      Triple triple = sorted.next();
+      if (last == null || ORDER.compare(triple, last) != 0) {
+        return triple;
+      }
+    }
+    return null;
+  }
+
+  private static void writeTriple(DataOutput out, Triple triple) throws IOException {
+    out.writeLong(triple.hash);
+    // writeUTF is limited to 64KB, literals can be longer
+    byte[] bytes = triple.line.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static Triple readTriple(DataInput in) throws IOException {
+    long hash = in.readLong();
+    byte[] bytes = new byte[in.readInt()];
+    in.readFully(bytes);
+    return new Triple(hash, new String(bytes, StandardCharsets.UTF_8));
+  }
+
+  private static GZIPOutputStream gzipOut(Path path) throws IOException {
+    return new GZIPOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 1 << 16));
+  }
+
+  private static Writer ntriplesOut(Path path) throws IOException {
+    return new BufferedWriter(new OutputStreamWriter(gzipOut(path), StandardCharsets.UTF_8));
+  }
+
+  private static class Triple {
+
+    private final long hash;
+    private final String line;
+
+    Triple(long hash, String line) {
+      this.hash = hash;
+      this.line = line;
+    }
+
+    static Triple of(Statement st) {
+      // the context is left out, a source is loaded as a set of triples
+      String line = NTriplesUtil.toNTriplesString(st.getSubject()) + " "
+          + NTriplesUtil.toNTriplesString(st.getPredicate()) + " "
+          + NTriplesUtil.toNTriplesString(st.getObject()) + " .";
+      return new Triple(Hashing.murmur3_128().hashString(line, StandardCharsets.UTF_8).asLong(),
+          line);
+    }
+  }
+
+  /**
+   * Reads the triples of a snapshot in order. Reads nothing if there's no snapshot yet.
+   */
+  private static class TripleReader implements Closeable {
+
+    private final DataInputStream in;
+
+    TripleReader(Path file) throws IOException {
+      if (file == null) {
+        in = null;
+        return;
+      }
+      in = new DataInputStream(new BufferedInputStream(
+          new GZIPInputStream(Files.newInputStream(file), 1 << 16)));
+      int version = in.readInt();
+      if (version != FORMAT_VERSION) {
+        in.close();
+        throw new IOException("Unsupported delta snapshot version " + version + " in " + file);
+      }
+    }
+
+    Triple next() throws IOException {
+      return in != null && in.readBoolean() ? readTriple(in) : null;
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (in != null) {
+        in.close();
+      }
+    }
+  }
+
+  /**
+   * Collects (and sorts) the triples of the source as it's parsed.
+   */
+  public static class Collector extends ConfiguredStatementHandler implements Closeable {
+
+    private final RDFParserConfig parserConfig;
+    private final ExternalSorter<Triple> sorter;
+    private long statementCount = 0;
+
+    Collector(RDFParserConfig parserConfig, ExternalSorter<Triple> sorter) {
+      this.parserConfig = parserConfig;
+      this.sorter = sorter;
+    }
+
+    @Override
+    public RDFParserConfig getParserConfig() {
+      return parserConfig;
+    }
+
+    @Override
+    public void startRDF() throws RDFHandlerException {
+
+    }
+
+    @Override
+    public void endRDF() throws RDFHandlerException {
+
+    }
+
+    @Override
+    public void handleNamespace(String prefix, String uri) throws RDFHandlerException {
+
+    }
+
+    @Override
+    public void handleStatement(Statement st) throws RDFHandlerException {
+      if (st.getSubject() instanceof BNode || st.getObject() instanceof BNode) {
+        throw new RDFHandlerException("Delta imports of sources with blank nodes are not "
+            + "supported, found: " + st);
+      }
+      try {
+        sorter.add(Triple.of(st));
+      } catch (IOException e) {
+        throw new RDFHandlerException("Could not spill the triples of the source to disk. ", e);
+      }
+      statementCount++;
+    }
+
+    @Override
+    public void handleComment(String comment) throws RDFHandlerException {
+
+    }
+
+    public long getStatementCount() {
+      return statementCount;
+    }
+
+    @Override
+    public void close() {
+      sorter.close();
+    }
+  }
+
+  /**
+   * The triples added to and removed from the source since the snapshot, as gzipped N-Triples.
+   */
+  public class Delta implements Closeable {
+
+    private final Path additions;
+    private final Path removals;
+    private final Path nextSnapshot;
+    private long added = 0;
+    private long removed = 0;
+    private long unchanged = 0;
+
+    Delta(Path additions, Path removals, Path nextSnapshot) {
+      this.additions = additions;
+      this.removals = removals;
+      this.nextSnapshot = nextSnapshot;
+    }
+
+    public long getAdded() {
+      return added;
+    }
+
+    public long getRemoved() {
+      return removed;
+    }
+
+    public long getUnchanged() {
+      return unchanged;
+    }
+
+    public void parseAdditions(RDFHandler handler) throws IOException {
+      parse(additions, handler);
+    }
+
+    public void parseRemovals(RDFHandler handler) throws IOException {
+      parse(removals, handler);
+    }
+
+    /**
+     * Makes the current version of the source the one the next delta is computed against. To be
+     * called once the delta has been applied to the graph.
+     */
+    public void commit() throws IOException {
+      Files.move(nextSnapshot, file, StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void parse(Path triples, RDFHandler handler) throws IOException {
+      RDFParser rdfParser = Rio.createParser(RDFFormat.NTRIPLES);
+      // written by us, and the blank nodes must keep the labels of the source
+      rdfParser.set(BasicParserSettings.VERIFY_URI_SYNTAX, false);
+      rdfParser.set(BasicParserSettings.PRESERVE_BNODE_IDS, true);
+      rdfParser.setRDFHandler(handler);
+      try (InputStream in = new GZIPInputStream(Files.newInputStream(triples), 1 << 16)) {
+        rdfParser.parse(in, DELTA_BASE_URI);
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      Files.deleteIfExists(additions);
+      Files.deleteIfExists(removals);
+      Files.deleteIfExists(nextSnapshot);
+    }
+  }
+}
@@ -170,7 +170,7 @@ public abstract class ExportProcessor {
     return result;
   }
 
-  private Literal getLiteralWithTagOrDTIfPresent(String value) {
+  Literal getLiteralWithTagOrDTIfPresent(String value) {
     Pattern langTagPattern = Pattern.compile("^(.*)@([a-z,\\-]+)$");
     final Pattern customDataTypePattern = Pattern
             .compile("^(.*)" + Pattern.quote(Params.CUSTOM_DATA_TYPE_SEPERATOR) + "(.*)$");
@@ -187,17 +187,7 @@ public abstract class ExportProcessor {
   }
 
   protected Value getValueFromTriplePatternObject(TriplePattern tp) {
-    Value object;
-    if (tp.getLiteral()) {
-      if (tp.getLiteralLang() != null) {
-        object = vf.createLiteral(tp.getObject(), tp.getLiteralLang());
-      } else {
-        object = vf.createLiteral(tp.getObject(), vf.createIRI(tp.getLiteralType()));
-      }
-    } else {
-      object = vf.createIRI(tp.getObject());
-    }
-    return object;
+    return tp.getObjectAsValue(vf);
   }
 
   Object castValue(String valType, String propVal) {
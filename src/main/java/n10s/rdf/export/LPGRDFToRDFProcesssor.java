@@ -21,6 +21,7 @@ import java.util.stream.Stream;
 import n10s.graphconfig.GraphConfig;
 import n10s.utils.InvalidNamespacePrefixDefinitionInDB;
 import n10s.utils.NsPrefixMap;
+import n10s.utils.NsPrefixRegistry;
 import n10s.utils.UriUtils.UriNamespaceHasNoAssociatedPrefix;
 import org.eclipse.rdf4j.model.IRI;
 import org.eclipse.rdf4j.model.Literal;
@@ -49,7 +50,7 @@ public class LPGRDFToRDFProcesssor extends ExportProcessor {
       throws InvalidNamespacePrefixDefinitionInDB {
     super(tx,graphdb, gc);
     this.exportPropertiesInRels = isRDFStarSerialisation;
-    this.namespaces = new NsPrefixMap(tx, false);
+    this.namespaces = NsPrefixRegistry.forDatabase(graphdb).getPrefixes(tx);
 
   }
 
@@ -95,7 +96,7 @@ public class LPGRDFToRDFProcesssor extends ExportProcessor {
     return statements.stream();
   }
 
-  private String buildURI(String baseVocabNS, String name) {
+  String buildURI(String baseVocabNS, String name) {
     //TODO: we know what kind of graph we have from the config (fix this)
     Pattern regex = Pattern.compile("^(\\w+)" + PREFIX_SEPARATOR + "(.*)$");
     Matcher matcher = regex.matcher(name);
@@ -200,6 +201,35 @@ public class LPGRDFToRDFProcesssor extends ExportProcessor {
     return result.stream();
   }
 
+  /**
+   * Streams the statements of a named graph one node at a time, as the nodes of the graph come
+   * from the index on :Resource(graphUri) (or a label scan if there is none), so memory doesn't
+   * grow with the size of the graph. Each relationship is streamed with its start node. The
+   * stream has to be closed to release the iterator over the nodes.
+   */
+  public Stream<Statement> streamNamedGraph(String graphUri) {
+    ResourceIterator<Node> nodes = tx.findNodes(Label.label("Resource"), "graphUri", graphUri);
+    return nodes.stream().flatMap(node -> {
+      Set<Statement> result = processNode(node, null, null);
+      for (Relationship rel : node.getRelationships(Direction.OUTGOING)) {
+        Statement baseStatement = processRelationship(rel, null);
+        result.add(baseStatement);
+        if (this.exportPropertiesInRels) {
+          rel.getAllProperties().forEach((k, v) -> processPropOnRel(result, baseStatement, k, v));
+        }
+      }
+      return result.stream();
+    }).onClose(nodes::close);
+  }
+
+  /**
+   * @return the uris of the named graphs in the DB
+   */
+  public Stream<String> streamNamedGraphUris() {
+    return tx.execute("MATCH (r:Resource) WHERE EXISTS(r.graphUri) "
+        + "RETURN DISTINCT r.graphUri AS graphUri").<String>columnAs("graphUri").stream();
+  }
+
   @Override
   protected boolean filterRelationship(Relationship rel, Map<Long, IRI> ontologyEntitiesUris) {
     //TODO: this type check is going to slow down the query. think how to improve it
@@ -348,7 +378,7 @@ public class LPGRDFToRDFProcesssor extends ExportProcessor {
       if (resource != null) {
         String predicate = null;
         try {
-          predicate = tp.getPredicate() != null ? translateUri(tp.getPredicate(), tx, graphConfig) : null;
+          predicate = tp.getPredicate() != null ? translateUri(tp.getPredicate(), namespaces, graphConfig) : null;
         } catch (UriNamespaceHasNoAssociatedPrefix e) {
           //graph is in shorten mode but the uri in the filter is not in use in the graph
           predicate = tp.getPredicate();
@@ -390,7 +420,7 @@ public class LPGRDFToRDFProcesssor extends ExportProcessor {
     else {
       String predicate = null;
       try {
-        predicate = tp.getPredicate() != null?translateUri(tp.getPredicate(),tx, graphConfig):null;
+        predicate = tp.getPredicate() != null?translateUri(tp.getPredicate(), namespaces, graphConfig):null;
       }  catch (UriNamespaceHasNoAssociatedPrefix e) {
         //graph is in shorten mode but the uri in the filter is not in use in the graph
         predicate = tp.getPredicate();
@@ -440,7 +470,7 @@ public class LPGRDFToRDFProcesssor extends ExportProcessor {
             String objectAsShortenedUri = null;
             if (object instanceof IRI) {
               try {
-                objectAsShortenedUri = translateUri(object.stringValue(), tx, graphConfig);
+                objectAsShortenedUri = translateUri(object.stringValue(), namespaces, graphConfig);
               } catch (UriNamespaceHasNoAssociatedPrefix e) {
                 //TODO: is this ok
                 e.printStackTrace();
@@ -1,5 +1,8 @@
 package n10s.rdf.export;
 
+import org.eclipse.rdf4j.model.Value;
+import org.eclipse.rdf4j.model.ValueFactory;
+
 public class TriplePattern {
 
 
@@ -44,4 +47,21 @@ public class TriplePattern {
   public String getLiteralLang() {
     return literalLang;
   }
+
+  /**
+   * @return the object of the pattern as an IRI or a literal, null if there is no object
+   */
+  public Value getObjectAsValue(ValueFactory vf) {
+    if (object == null) {
+      return null;
+    } else if (isLiteral) {
+      if (literalLang != null) {
+        return vf.createLiteral(object, literalLang);
+      } else {
+        return vf.createLiteral(object, vf.createIRI(literalType));
+      }
+    } else {
+      return vf.createIRI(object);
+    }
+  }
 }
@@ -0,0 +1,56 @@
+package n10s.rdf.load;
+
+/**
+ * Works out the size of the next partial commit from the cost of the last one: the number of
+ * triples that would have taken the target time to commit and the number that would have fitted
+ * the memory budget, whichever is smaller. Growth is damped so that one odd batch doesn't make
+ * the size swing.
+ */
+class AdaptiveCommitSize {
+
+  static final long MIN_COMMIT_SIZE = 100;
+  static final long MAX_COMMIT_SIZE = 5_000_000;
+  // largest change from one batch to the next
+  private static final double MAX_GROWTH = 2.0;
+  private static final double MAX_SHRINK = 0.25;
+
+  private final long targetMillis;
+  private final long memoryBudget;
+
+  AdaptiveCommitSize(long targetMillis, long memoryBudget) {
+    this.targetMillis = targetMillis;
+    this.memoryBudget = memoryBudget;
+  }
+
+  /**
+   * @param commitSize the commit size the batch was built with
+   * @param triples the triples in the batch (can be less than commitSize in the last one)
+   * @param estimatedBytes estimated transaction state of the batch
+   * @param millis time it took to write and commit it
+   * @return the commit size for the next batch
+   */
+  long next(long commitSize, long triples, long estimatedBytes, long millis) {
+    if (triples == 0) {
+      return commitSize;
+    }
+    double forLatency = triples * (double) targetMillis / Math.max(millis, 1);
+    double forMemory = triples * (double) memoryBudget / Math.max(estimatedBytes, 1);
+    double target = Math.min(forLatency, forMemory);
+    double next;
+    if (target > commitSize) {
+      // grow carefully, half way towards the target
+      next = Math.min((commitSize + target) / 2, commitSize * MAX_GROWTH);
+    } else {
+      // too slow or too big is what we want to avoid, shrink straight to the target
+      next = Math.max(target, commitSize * MAX_SHRINK);
+    }
+    return Math.max(MIN_COMMIT_SIZE, Math.min(MAX_COMMIT_SIZE, Math.round(next)));
+  }
+
+  /**
+   * @return the commit size to go on with after a commit failed, possibly for lack of memory
+   */
+  long afterFailure(long commitSize) {
+    return Math.max(MIN_COMMIT_SIZE, commitSize / 2);
+  }
+}
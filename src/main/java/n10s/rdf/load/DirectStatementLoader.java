@@ -1,20 +1,38 @@
 package n10s.rdf.load;
 
 import static n10s.graphconfig.GraphConfig.GRAPHCONF_VOC_URI_SHORTEN;
+import static n10s.graphconfig.GraphConfig.GRAPHCONF_VOC_URI_SHORTEN_STRICT;
 
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
-
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.IOException;
+import java.io.InputStream;
 import java.lang.reflect.Array;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.Set;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import n10s.RDFToLPGStatementProcessor;
 import n10s.graphconfig.RDFParserConfig;
+import n10s.stats.ImportStats;
+import n10s.utils.InvalidNamespacePrefixDefinitionInDB;
+import n10s.utils.NodeIdDictionary;
+import n10s.utils.NsPrefixMap;
+import org.eclipse.rdf4j.model.IRI;
+import org.eclipse.rdf4j.model.Literal;
 import org.eclipse.rdf4j.model.Statement;
 import org.eclipse.rdf4j.rio.RDFHandlerException;
 import org.neo4j.graphdb.*;
@@ -27,181 +45,456 @@ import org.neo4j.logging.Log;
 public class DirectStatementLoader extends RDFToLPGStatementProcessor {
 
   private static final Label RESOURCE = Label.label("Resource");
-  private Cache<String, Node> nodeCache;
+  private static final int DEDUP_NODES_PER_TX = 10_000;
+  // attempts at writing a batch (or removing parallel relationships) that deadlocks
+  private static final int MAX_RETRIES = 5;
+  private static final int RETRY_BACKOFF_MILLIS = 50;
+  // uri -> node id, kept for the whole import so that partial commits don't lose it
+  private final NodeIdDictionary<String> nodeIds;
+  // only set in pipelined mode: commits sealed batches while the parser fills the next one
+  private ExecutorService batchWriter;
+  private Future<?> batchInFlight;
+  // only set in initial load mode: uris of the nodes created by this import (may give false
+  // positives, never false negatives) and the nodes that may end up with parallel relationships
+  private BloomFilter<CharSequence> createdUris;
+  private LongSet dedupCandidates;
+  // the batch being filled by the parser
+  private ImportBatch currentBatch = new ImportBatch();
+  private boolean parsingComplete = false;
+  // only set with the jobId param: last checkpoint recorded and statements to skip on resume
+  private ImportCheckpoint checkpoint;
+  // hash of the statements parsed, recorded with each checkpoint
+  private ImportCheckpoint.StatementsDigest statementsDigest;
+  private long resumeOffset = 0;
+  // only set with the adaptiveCommitSize param
+  private final AdaptiveCommitSize adaptiveCommitSize;
+  // only set with the concurrent param, shared with the other concurrent imports
+  private final ImportCoordinator coordinator;
+  private boolean joined = false;
+  // triples of the partial commits rolled back when not aborting on error
+  private volatile long triplesLost = 0;
 
   public DirectStatementLoader(GraphDatabaseService db, Transaction tx, RDFParserConfig conf,
       Log l) {
 
     super(db, tx, conf, l);
-    nodeCache = CacheBuilder.newBuilder()
-        .maximumSize(conf.getNodeCacheSize())
-        .build();
+    stats = new ImportStats();
+    nodeIds = new NodeIdDictionary<>(conf.getNodeCacheSize(),
+        (uri, node) -> uri.equals(node.getProperty("uri", null)));
+    adaptiveCommitSize = conf.isAdaptiveCommitSize() ? new AdaptiveCommitSize(
+        conf.getTargetCommitMillis(), conf.getTxMemoryBudget()) : null;
+    coordinator = conf.isConcurrent() ? ImportCoordinator.forDatabase(db) : null;
+    if (conf.isPipelined()) {
+      ThreadPoolExecutor writer = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS,
+          new LinkedBlockingQueue<>(), new ThreadFactoryBuilder()
+          .setNameFormat("n10s-batch-writer-%d").setDaemon(true).build());
+      // let the thread go even if the import is aborted before endRDF
+      writer.allowCoreThreadTimeOut(true);
+      batchWriter = writer;
+    }
+    if (conf.isInitialLoad()) {
+      // past the uris expected, false positives (and so index lookups) grow with every new one
+      createdUris = BloomFilter.create(Funnels.stringFunnel(StandardCharsets.UTF_8),
+          Math.max(1, conf.getExpectedResources()));
+      dedupCandidates = new LongSet();
+    }
+  }
+
+  /**
+   * Starts the import job given by the jobId param, or resumes it from its last checkpoint with
+   * the resume param, in which case the content must be the same it was.
+   *
+   * @param source where the content comes from (null for an rdf payload)
+   * @return the stream to parse, to be used in place of the one passed
+   */
+  public InputStream startJob(InputStream in, String source) throws IOException {
+    InputStream content = ImportCheckpoint.markable(in);
+    String fingerprint = ImportCheckpoint.fingerprint(content);
+    ImportCheckpoint last = null;
+    if (parserConfig.isResume()) {
+      try (Transaction tempTransaction = graphdb.beginTx()) {
+        last = ImportCheckpoint.load(tempTransaction, parserConfig.getJobId());
+      }
+    }
+    if (last == null) {
+      checkpoint = new ImportCheckpoint(parserConfig.getJobId(), source, fingerprint, 0, null, 0,
+          ImportCheckpoint.STATUS_RUNNING);
+    } else if (!fingerprint.equals(last.getFingerprint())) {
+      throw new RDFHandlerException("The content of import job '" + parserConfig.getJobId()
+          + "' has changed since its last checkpoint. Run it without resume to start again.");
+    } else {
+      checkpoint = last;
+      resumeOffset = last.getStatementOffset();
+      totalTriplesMapped = last.getTriplesLoaded();
+      log.debug("Resuming import job '" + parserConfig.getJobId() + "' after "
+          + resumeOffset + " statements");
+    }
+    statementsDigest = new ImportCheckpoint.StatementsDigest();
+    return content;
+  }
+
+  @Override
+  public void startRDF() throws RDFHandlerException {
+    if (coordinator == null) {
+      super.startRDF();
+      return;
+    }
+    try {
+      NsPrefixMap shared = coordinator.join(tx);
+      joined = true;
+      if (parserConfig.getGraphConf().getHandleVocabUris() == GRAPHCONF_VOC_URI_SHORTEN ||
+          parserConfig.getGraphConf().getHandleVocabUris() == GRAPHCONF_VOC_URI_SHORTEN_STRICT) {
+        namespaces = shared;
+      }
+    } catch (InvalidNamespacePrefixDefinitionInDB e) {
+      throw new RDFHandlerException(e.getMessage());
+    }
+    log.debug("Concurrent import started, " + coordinator.getRunningImports() + " running");
+  }
+
+  @Override
+  public void handleStatement(Statement st) {
+    if (statementsDigest != null) {
+      statementsDigest.update(st);
+    }
+    if (totalTriplesParsed < resumeOffset) {
+      // committed before, by the run that was interrupted
+      totalTriplesParsed++;
+      if (totalTriplesParsed == resumeOffset) {
+        checkSkippedStatements();
+      }
+      return;
+    }
+    super.handleStatement(st);
+  }
+
+  /**
+   * The statements skipped on a resume must be the very ones committed before the checkpoint,
+   * not just as many of them.
+   */
+  private void checkSkippedStatements() {
+    if (totalTriplesParsed < resumeOffset
+        || !statementsDigest.hash().equals(checkpoint.getStatementsHash())) {
+      throw new RDFHandlerException("The content of import job '" + parserConfig.getJobId()
+          + "' up to its last checkpoint (" + resumeOffset + " statements) has changed since. "
+          + "Run it without resume to start again.");
+    }
   }
 
   @Override
   public void endRDF() throws RDFHandlerException {
-    periodicOperation();
+    if (totalTriplesParsed < resumeOffset) {
+      // fewer statements than were committed
+      checkSkippedStatements();
+    }
+    parsingComplete = true;
+    reportStatementStats();
+    stats.parsingComplete();
+    try {
+      periodicOperation();
+      awaitBatchInFlight();
+    } finally {
+      shutdownBatchWriter();
+      leaveCoordinator();
+    }
+    if (dedupCandidates != null) {
+      log.debug("Initial load: " + removeParallelRelationships()
+          + " parallel relationships removed");
+    }
     log.debug("Import complete: " + totalTriplesMapped + "  triples ingested out of "
         + totalTriplesParsed + " parsed");
   }
 
-  public Integer runPartialTx(Transaction inThreadTransaction) {
+  /**
+   * Waits for the batch being committed in the background (if any) and releases the writer
+   * thread. Meant for the error path, when parsing is interrupted before endRDF is reached.
+   * Problems committing that last batch are logged, not rethrown. In an initial load, the parallel
+   * relationships created by the partial commits that made it are removed all the same.
+   */
+  public void finishPendingCommits() {
+    reportStatementStats();
+    try {
+      awaitBatchInFlight();
+    } catch (RDFHandlerException e) {
+      log.error("Problems when running partial commit. ", e);
+    } finally {
+      shutdownBatchWriter();
+      leaveCoordinator();
+    }
+    if (dedupCandidates != null && !dedupCandidates.isEmpty()) {
+      int candidates = dedupCandidates.size();
+      try {
+        log.warn("Initial load failed: " + removeParallelRelationships()
+            + " parallel relationships removed from the partial commits completed");
+      } catch (RuntimeException e) {
+        log.error("Initial load failed and the parallel relationships of up to " + candidates
+            + " nodes could not be removed. Run it again without initialLoad to merge them. ",
+            e);
+      }
+    }
+    if (checkpoint != null) {
+      try (Transaction tempTransaction = graphdb.beginTx()) {
+        checkpoint.withStatus(ImportCheckpoint.STATUS_FAILED).save(tempTransaction);
+        tempTransaction.commit();
+      } catch (Exception e) {
+        log.error("Problems recording the failure of import job '" + checkpoint.getJobId()
+            + "'. ", e);
+      }
+    }
+  }
+
+  public ImportStats getStats() {
+    return stats;
+  }
+
+  /**
+   * @return the triples of the partial commits that failed and were rolled back, when the import
+   * doesn't abort on error
+   */
+  public long getTriplesLost() {
+    return triplesLost;
+  }
 
+  public Integer runPartialTx(Transaction inThreadTransaction) {
+    ImportBatch batch = sealBatch();
     try {
-      for (Map.Entry<String, Set<String>> entry : resourceLabels.entrySet()) {
-        try {
-          final Node node;
-          node = nodeCache.get(entry.getKey(), () -> {
-            Node node1 = inThreadTransaction.findNode(RESOURCE, "uri", entry.getKey());
-            if (node1 == null) {
-              node1 = inThreadTransaction.createNode(RESOURCE);
-              node1.setProperty("uri", entry.getKey());
-            }
-            return node1;
-          });
+      return runPartialTx(inThreadTransaction, batch);
+    } finally {
+      mappedTripleCounter -= batch.getDiscardedTriples();
+    }
+  }
 
-          entry.getValue().forEach(l -> node.addLabel(Label.label(l)));
-          resourceProps.get(entry.getKey()).forEach((k, v) -> setProperty(node,k,v));
-        } catch (ExecutionException e) {
-          e.printStackTrace();
-        }
-      }
+  /**
+   * Takes the triples mapped so far out of the processor so that parsing can go on filling a new
+   * batch.
+   */
+  private ImportBatch sealBatch() {
+    ImportBatch batch = currentBatch;
+    batch.seal(mappedTripleCounter, totalTriplesParsed,
+        statementsDigest != null ? statementsDigest.hash() : null, parsingComplete);
+    currentBatch = new ImportBatch();
+    return batch;
+  }
 
-      for (Statement st : statements) {
-        try {
+  @Override
+  protected void addResource(String uri) {
+    currentBatch.addResource(uri);
+  }
 
-          final Node fromNode = nodeCache
-                  .get(st.getSubject().stringValue(), () -> {  //throws AnyException
-                    return inThreadTransaction.findNode(RESOURCE, "uri", st.getSubject().stringValue());
-                  });
-
-          final Node toNode = nodeCache
-                  .get(st.getObject().stringValue(), () -> {  //throws AnyException
-                    return inThreadTransaction.findNode(RESOURCE, "uri", st.getObject().stringValue());
-                  });
-
-          // check if the rel is already present. If so, don't recreate.
-          // explore the node with the lowest degree
-          boolean found = false;
-          Relationship theRel = null;
-          if (fromNode
-                  .getDegree(RelationshipType.withName(handleIRI(st.getPredicate(), RELATIONSHIP)),
-                          Direction.OUTGOING) <
-                  toNode.getDegree(RelationshipType.withName(handleIRI(st.getPredicate(), RELATIONSHIP)),
-                          Direction.INCOMING)) {
-            for (Relationship rel : fromNode
-                    .getRelationships(Direction.OUTGOING,
-                            RelationshipType.withName(handleIRI(st.getPredicate(), RELATIONSHIP)))) {
-              if (rel.getEndNode().equals(toNode)) {
-                found = true;
-                theRel = rel;
-                break;
-              }
-            }
-          } else {
-            for (Relationship rel : toNode
-                    .getRelationships(Direction.INCOMING,
-                            RelationshipType.withName(handleIRI(st.getPredicate(), RELATIONSHIP)))) {
-              if (rel.getStartNode().equals(fromNode)) {
-                found = true;
-                theRel = rel;
-                break;
-              }
-            }
-          }
+  @Override
+  protected void setLabel(String subjectUri, String label) {
+    currentBatch.addLabel(subjectUri, label);
+  }
 
-          if (!found) {
-            theRel = fromNode.createRelationshipTo(
-                    toNode,
-                    RelationshipType.withName(handleIRI(st.getPredicate(), RELATIONSHIP)));
-          }
+  @Override
+  protected boolean setProp(String subjectUri, IRI propertyIRI, Literal propValueRaw) {
+    Object propValue = getObjectValue(propertyIRI, propValueRaw);
+    if (propValue != null) {
+      currentBatch.addProperty(subjectUri, handleIRI(propertyIRI, PROPERTY), propValue,
+          isMultivalued(propertyIRI));
+    }
+    return propValue != null;
+  }
 
-          Map<String, Object> relProps = this.relProps.get(st);
-          if (relProps != null) {
-            for (Entry<String, Object> entry : relProps.entrySet()) {
+  @Override
+  protected void addRelationship(String subjectUri, IRI predicate, String objectUri) {
+    // relationship types are resolved here, on the parser thread, so that the writer never
+    // needs to touch the namespace prefix map
+    currentBatch.addRelationship(subjectUri, handleIRI(predicate, RELATIONSHIP), objectUri);
+  }
 
-              setProperty(theRel, entry.getKey(), entry.getValue());
-            }
+  @Override
+  protected boolean addRelationshipProp(String subjectUri, IRI relPredicate, String objectUri,
+      IRI predicate, Literal propValueRaw) {
+    int rel = currentBatch.addRelationship(subjectUri, handleIRI(relPredicate, RELATIONSHIP),
+        objectUri);
+    Object propValue = getObjectValue(predicate, propValueRaw);
+    if (propValue != null) {
+      currentBatch.addRelationshipProperty(rel, handleIRI(predicate, PROPERTY), propValue,
+          isMultivalued(predicate));
+    }
+    return propValue != null;
+  }
+
+  private Integer runPartialTx(Transaction inThreadTransaction, ImportBatch batch) {
+
+    Node[] nodes = new Node[batch.getResourceCount()];
+    boolean[] createdInBatch = new boolean[nodes.length];
+    Label[] labels = new Label[batch.getNameCount()];
+    // concurrent imports take the locks of the nodes in the same order
+    int[] order = coordinator != null ? ImportCoordinator.creationOrder(batch) : null;
+    long lookupNanos = 0;
+    long[] dictionaryMisses = {0};
+    long created = 0;
+    for (int i = 0; i < nodes.length; i++) {
+      final int resource = order != null ? order[i] : i;
+      long lookupStart = System.nanoTime();
+      final Node node = nodeIds.get(inThreadTransaction, batch.getUri(resource), uri -> {
+        dictionaryMisses[0]++;
+        // in an initial load, a uri this import has not created can't be in the graph
+        Node node1 = createdUris != null && !createdUris.mightContain(uri) ? null
+            : inThreadTransaction.findNode(RESOURCE, "uri", uri);
+        if (node1 == null) {
+          node1 = inThreadTransaction.createNode(RESOURCE);
+          node1.setProperty("uri", uri);
+          createdInBatch[resource] = true;
+          if (createdUris != null) {
+            createdUris.put(uri);
           }
+        }
+        return node1;
+      });
+      lookupNanos += System.nanoTime() - lookupStart;
+      if (createdInBatch[resource]) {
+        created++;
+      }
+      nodes[resource] = node;
 
-        } catch (ExecutionException e) {
-          e.printStackTrace();
+      batch.forEachLabel(resource, label -> {
+        if (labels[label] == null) {
+          labels[label] = Label.label(batch.getName(label));
         }
+        node.addLabel(labels[label]);
+      });
+      batch.getResourceProps(resource).forEach((k, v) -> setProperty(node, k, v, batch));
+    }
+    stats.nodesLookedUp(nodes.length, dictionaryMisses[0], created, lookupNanos);
+
+    // relationships come grouped by start node, so the existing relationships of each start node
+    // are scanned once per type and batch instead of once per statement
+    RelationshipType[] relTypes = new RelationshipType[batch.getNameCount()];
+    for (int i = 0; i < nodes.length; i++) {
+      final int resource = order != null ? order[i] : i;
+      if (!batch.hasRelationships(resource)) {
+        continue;
+      }
+      final Node fromNode = nodes[resource];
+      if (dedupCandidates != null && !createdInBatch[resource]) {
+        dedupCandidates.add(fromNode.getId());
       }
+      Map<Integer, Map<Long, Relationship>> relsByType = new HashMap<>();
+      batch.forEachRelationship(resource, (rel, type, end) -> {
+        if (relTypes[type] == null) {
+          relTypes[type] = RelationshipType.withName(batch.getName(type));
+        }
+        // initial load: don't look at what was written before, clean up after the import
+        Map<Long, Relationship> existingByEndNode = relsByType.computeIfAbsent(type,
+            t -> dedupCandidates == null ? existingRelationships(fromNode, relTypes[t])
+                : new HashMap<>());
+        final Node toNode = nodes[end];
+
+        Relationship theRel = existingByEndNode.get(toNode.getId());
+        if (theRel == null) {
+          theRel = fromNode.createRelationshipTo(toNode, relTypes[type]);
+          existingByEndNode.put(toNode.getId(), theRel);
+          stats.relationshipCreated();
+        }
 
+        for (Entry<String, Object> entry : batch.getRelProps(rel).entrySet()) {
+          setProperty(theRel, entry.getKey(), entry.getValue(), batch);
+        }
+      });
+    }
 
-      Integer result = 0;
-      if (parserConfig.getGraphConf().getHandleVocabUris() == GRAPHCONF_VOC_URI_SHORTEN) {
-        result = namespaces.partialRefresh(inThreadTransaction);
-      }
+    Integer result = 0;
+    if (parserConfig.getGraphConf().getHandleVocabUris() == GRAPHCONF_VOC_URI_SHORTEN) {
+      result = namespaces.partialRefresh(inThreadTransaction);
+    }
 
-      return result;
+    return result;
+  }
 
-    } finally {
-      statements.clear();
-      resourceLabels.clear();
-      resourceProps.clear();
-      relProps.clear();
-      nodeCache.invalidateAll();
+  /**
+   * Indexes the existing relationships of the given type from fromNode by end node id, in a
+   * single pass over fromNode's relationships.
+   */
+  private Map<Long, Relationship> existingRelationships(Node fromNode,
+      RelationshipType relType) {
+    long start = System.nanoTime();
+    Map<Long, Relationship> existingByEndNode = new HashMap<>();
+    long scanned = 0;
+    for (Relationship rel : fromNode.getRelationships(Direction.OUTGOING, relType)) {
+      existingByEndNode.putIfAbsent(rel.getEndNodeId(), rel);
+      scanned++;
     }
+    stats.relationshipCheck(scanned, System.nanoTime() - start);
+    return existingByEndNode;
   }
 
-  private void setProperty(Entity node, String k, Object v) {
+  private void setProperty(Entity node, String k, Object v, ImportBatch batch) {
+    stats.propertyWritten();
     if (v instanceof List) {
-      Object currentValue = node.getProperty(k, null);
-      List<Object> newList = new ArrayList<>();
-      if (currentValue != null) {
-        //initialise with existing values
-        if (currentValue.getClass().isArray()) {
-          int length = Array.getLength(currentValue);
-          for (int i = 0; i < length; i ++) {
-            Object atomicValue = Array.get(currentValue, i);
-            newList.add(atomicValue);
-          }
-        } else {
-          //TODO: this logic could go because now it's not possible to change
-          // from atomic to multival without emptying the DB
-          newList.add(node.getProperty(k));
+      int discarded = addValues(node, k, (List<Object>) v);
+      if (discarded > 0) {
+        batch.discard(discarded);
+      }
+    } else {
+      node.setProperty(k, v);
+    }
+  }
+
+  /**
+   * Adds the values of a multivalued property to the array already in the entity (if any), each
+   * value once.
+   *
+   * @return the values discarded because their datatype doesn't match the one of the values
+   * stored, with strictDataTypeCheck
+   */
+  private int addValues(Entity node, String k, List<Object> v) {
+    Object currentValue = node.getProperty(k, null);
+    List<Object> newList = new ArrayList<>();
+    if (currentValue != null) {
+      //initialise with existing values
+      if (currentValue.getClass().isArray()) {
+        int length = Array.getLength(currentValue);
+        for (int i = 0; i < length; i ++) {
+          Object atomicValue = Array.get(currentValue, i);
+          newList.add(atomicValue);
         }
+      } else {
+        //TODO: this logic could go because now it's not possible to change
+        // from atomic to multival without emptying the DB
+        newList.add(node.getProperty(k));
       }
+    }
 
-      Class<?> currentDatatype = newList.isEmpty()?((List) v).get(0).getClass():newList.get(0).getClass();
+    Class<?> currentDatatype = newList.isEmpty()?((List) v).get(0).getClass():newList.get(0).getClass();
 
-      List<Object> discardedItems = new ArrayList<>();
+    List<Object> discardedItems = new ArrayList<>();
 
-      for(Object x:(List)v) {
-        if (x.getClass().equals(currentDatatype)){
-          newList.add(x);
-        }  else {
-          discardedItems.add(x);
-        }
+    for(Object x:(List)v) {
+      if (x.getClass().equals(currentDatatype)){
+        newList.add(x);
+      }  else {
+        discardedItems.add(x);
       }
+    }
 
-      if(!discardedItems.isEmpty()){
-        this.datatypeConflictFound |= true;
-        if (getParserConfig().isStrictDataTypeCheck()){
-          this.mappedTripleCounter-= discardedItems.size();
-          log.warn("The following values for property '" + k + "' have been discarded because of datatype heterogeneity (previously stored values are of type " + currentDatatype + ") : " + discardedItems );
-          node.setProperty(k, toPropertyValue(newList.stream().collect(Collectors.toSet())));
-        } else {
-          //default all to string if they're not already return defaultToString(it.iterator());
-          newList.addAll(discardedItems);
-          node.setProperty(k, toPropertyValue(defaultToString(newList.iterator()).stream().collect(Collectors.toSet())));
-        }
-      } else {
-        //no discarded elements. all good, newlist contains all the values. nothing to do
+    if(!discardedItems.isEmpty()){
+      this.datatypeConflictFound |= true;
+      if (getParserConfig().isStrictDataTypeCheck()){
+        log.warn("The following values for property '" + k + "' have been discarded because of datatype heterogeneity (previously stored values are of type " + currentDatatype + ") : " + discardedItems );
         node.setProperty(k, toPropertyValue(newList.stream().collect(Collectors.toSet())));
+        return discardedItems.size();
+      } else {
+        //default all to string if they're not already return defaultToString(it.iterator());
+        newList.addAll(discardedItems);
+        node.setProperty(k, toPropertyValue(defaultToString(newList.iterator()).stream().collect(Collectors.toSet())));
       }
-
     } else {
-      node.setProperty(k, v);
+      //no discarded elements. all good, newlist contains all the values. nothing to do
+      node.setProperty(k, toPropertyValue(newList.stream().collect(Collectors.toSet())));
     }
+    return 0;
   }
 
 
   @Override
   protected void periodicOperation() {
 
+    ImportBatch batch = sealBatch();
+    mappedTripleCounter = 0;
+
     if (parserConfig.getGraphConf().getHandleVocabUris() == GRAPHCONF_VOC_URI_SHORTEN) {
       try (Transaction tempTransaction = graphdb.beginTx()) {
         namespaces.partialRefresh(tempTransaction);
@@ -215,21 +508,225 @@ public class DirectStatementLoader extends RDFToLPGStatementProcessor {
       }
     }
 
-    try (Transaction tempTransaction = graphdb.beginTx()) {
-      this.runPartialTx(tempTransaction);
-      tempTransaction.commit();
-      log.debug("partial commit: " + mappedTripleCounter + " triples ingested. Total so far: "
+    if (batchWriter == null) {
+      commitBatch(batch);
+    } else {
+      // at most one batch is being written while the parser fills the next one
+      awaitBatchInFlight();
+      batchInFlight = batchWriter.submit(() -> commitBatch(batch));
+    }
+
+  }
+
+  private void commitBatch(ImportBatch batch) {
+    long start = System.nanoTime();
+    try {
+      long triplesIngested = writeBatch(batch);
+      log.debug("partial commit: " + triplesIngested + " triples ingested. Total so far: "
           + totalTriplesMapped);
-      totalTriplesMapped += mappedTripleCounter;
+      totalTriplesMapped += triplesIngested;
+      if (adaptiveCommitSize != null) {
+        long commitSize = adaptiveCommitSize.next(parserConfig.getCommitSize(),
+            batch.getMappedTriples(), batch.getEstimatedTxBytes(),
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        if (commitSize != parserConfig.getCommitSize()) {
+          log.debug("commit size changed from " + parserConfig.getCommitSize() + " to "
+              + commitSize);
+          parserConfig.setCommitSize(commitSize);
+        }
+      }
     } catch (Exception e) {
-      log.error("Problems when running partial commit. Partial transaction rolled back. "  + mappedTripleCounter + " triples lost.", e);
+      // nodes created in the rolled back transaction are gone
+      nodeIds.invalidateAll();
+      if (adaptiveCommitSize != null) {
+        parserConfig.setCommitSize(adaptiveCommitSize.afterFailure(parserConfig.getCommitSize()));
+      }
+      log.error("Problems when running partial commit. Partial transaction rolled back. "  + batch.getMappedTriples() + " triples lost.", e);
+      triplesLost += batch.getMappedTriples();
       if (getParserConfig().isAbortOnError()){
         throw new PartialCommitException("Problems when running partial commit. Partial transaction rolled back. " , e);
       }
     }
+  }
 
-    mappedTripleCounter = 0;
+  /**
+   * Writes the batch in its own transaction. In a concurrent import, a transaction that deadlocks
+   * with another import or clashes with the nodes it has just created is retried.
+   *
+   * @return the triples ingested
+   */
+  private long writeBatch(ImportBatch batch) {
+    for (int attempt = 1; ; attempt++) {
+      try (Transaction tempTransaction = graphdb.beginTx()) {
+        long writeStart = System.nanoTime();
+        this.runPartialTx(tempTransaction, batch);
+        long triplesIngested = batch.getMappedTriples() - batch.getDiscardedTriples();
+        ImportCheckpoint next = null;
+        if (checkpoint != null) {
+          // in the same transaction, so it never gets ahead of (or behind) the graph
+          next = checkpoint.next(batch.getStatementOffset(), batch.getStatementsHash(),
+              totalTriplesMapped + triplesIngested, batch.isLast()
+                  ? ImportCheckpoint.STATUS_COMPLETED : ImportCheckpoint.STATUS_RUNNING);
+          next.save(tempTransaction);
+        }
+        long commitStart = System.nanoTime();
+        tempTransaction.commit();
+        stats.batchCommitted(batch.getMappedTriples(), triplesIngested,
+            commitStart - writeStart, System.nanoTime() - commitStart);
+        if (next != null) {
+          checkpoint = next;
+        }
+        return triplesIngested;
+      } catch (RuntimeException e) {
+        if (coordinator == null || attempt == MAX_RETRIES || !isRetryable(e)) {
+          throw e;
+        }
+        // the nodes it created are gone and the ones created by the other import are there now
+        nodeIds.invalidateAll();
+        batch.resetDiscarded();
+        stats.retried();
+        log.debug("Retrying partial commit (attempt " + (attempt + 1) + ") after: "
+            + e.getMessage());
+        try {
+          Thread.sleep(ThreadLocalRandom.current().nextInt(RETRY_BACKOFF_MILLIS * attempt));
+        } catch (InterruptedException ie) {
+          Thread.currentThread().interrupt();
+          throw e;
+        }
+      }
+    }
+  }
+
+  private static boolean isRetryable(Throwable e) {
+    for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+      if (cause instanceof TransientFailureException
+          || cause instanceof ConstraintViolationException) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void leaveCoordinator() {
+    if (joined) {
+      coordinator.leave();
+      joined = false;
+    }
+  }
+
+  /**
+   * Post-pass of an initial load: removes the parallel relationships (same start node, type and end
+   * node) created by triples repeated across partial commits. Nodes are processed in parallel in
+   * separate transactions that are retried if they deadlock.
+   *
+   * @return the number of relationships removed
+   */
+  private long removeParallelRelationships() {
+    if (dedupCandidates.isEmpty()) {
+      return 0;
+    }
+    ExecutorService dedupPool = Executors.newFixedThreadPool(
+        Runtime.getRuntime().availableProcessors(),
+        new ThreadFactoryBuilder().setNameFormat("n10s-dedup-%d").setDaemon(true).build());
+    try {
+      List<Future<Long>> results = new ArrayList<>();
+      long[] startNodeIds = dedupCandidates.toSortedArray();
+      for (int from = 0; from < startNodeIds.length; from += DEDUP_NODES_PER_TX) {
+        long[] chunk = Arrays.copyOfRange(startNodeIds, from,
+            Math.min(from + DEDUP_NODES_PER_TX, startNodeIds.length));
+        results.add(dedupPool.submit(() -> removeParallelRelationships(chunk)));
+      }
+      long removed = 0;
+      for (Future<Long> result : results) {
+        removed += result.get();
+      }
+      return removed;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new PartialCommitException("Interrupted while removing parallel relationships. ", e);
+    } catch (ExecutionException e) {
+      throw new PartialCommitException("Problems when removing parallel relationships. ", e);
+    } finally {
+      dedupPool.shutdown();
+      dedupCandidates.clear();
+    }
+  }
+
+  private long removeParallelRelationships(long[] startNodeIds) {
+    for (int attempt = 1; ; attempt++) {
+      try (Transaction tempTransaction = graphdb.beginTx()) {
+        long removed = 0;
+        for (long nodeId : startNodeIds) {
+          try {
+            removed += removeParallelRelationships(tempTransaction.getNodeById(nodeId));
+          } catch (NotFoundException e) {
+            // created in a partial commit that was rolled back
+          }
+        }
+        tempTransaction.commit();
+        return removed;
+      } catch (TransientFailureException e) {
+        // deadlocks between the threads removing relationships end up here
+        if (attempt == MAX_RETRIES) {
+          throw e;
+        }
+        log.debug("Retrying removal of parallel relationships after: " + e.getMessage());
+      }
+    }
+  }
+
+  private long removeParallelRelationships(Node startNode) {
+    Map<String, Map<Long, Relationship>> keptByTypeAndEndNode = new HashMap<>();
+    List<Relationship> parallelRels = new ArrayList<>();
+    for (Relationship rel : startNode.getRelationships(Direction.OUTGOING)) {
+      Relationship kept = keptByTypeAndEndNode
+          .computeIfAbsent(rel.getType().name(), t -> new HashMap<>())
+          .putIfAbsent(rel.getEndNodeId(), rel);
+      if (kept != null) {
+        rel.getAllProperties().forEach((k, v) -> {
+          if (!kept.hasProperty(k)) {
+            kept.setProperty(k, v);
+          } else if (v.getClass().isArray() && Array.getLength(v) > 0) {
+            // multivalued, the values of both are kept as they would have been on one
+            List<Object> values = new ArrayList<>();
+            for (int i = 0; i < Array.getLength(v); i++) {
+              values.add(Array.get(v, i));
+            }
+            addValues(kept, k, values);
+          }
+        });
+        parallelRels.add(rel);
+      }
+    }
+    parallelRels.forEach(Relationship::delete);
+    return parallelRels.size();
+  }
+
+  private void awaitBatchInFlight() {
+    if (batchInFlight != null) {
+      long start = System.nanoTime();
+      try {
+        batchInFlight.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new PartialCommitException("Interrupted while waiting for a partial commit. ", e);
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof RDFHandlerException) {
+          throw (RDFHandlerException) e.getCause();
+        }
+        throw new PartialCommitException("Problems when running partial commit. ", e);
+      } finally {
+        batchInFlight = null;
+        stats.commitWaited(System.nanoTime() - start);
+      }
+    }
+  }
 
+  private void shutdownBatchWriter() {
+    if (batchWriter != null) {
+      batchWriter.shutdown();
+      batchWriter = null;
+    }
   }
 
 }
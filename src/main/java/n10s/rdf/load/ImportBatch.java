@@ -0,0 +1,294 @@
+package n10s.rdf.load;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+/**
+ * The triples mapped in a (partial) transaction, dictionary encoded: uris and names (labels,
+ * property names, relationship types) are interned to int ids and everything else is kept in
+ * int arrays indexed by them, linked lists included, so a batch is a handful of arrays instead of
+ * several objects per triple.
+ * <p>
+ * Once sealed, the parser stops touching it so it can be handed over to a writer thread while
+ * parsing of the next batch continues.
+ */
+class ImportBatch {
+
+  static final int NONE = -1;
+  // rough size of the transaction state each change takes (record plus bookkeeping)
+  private static final int NODE_BYTES = 150;
+  private static final int LABEL_BYTES = 24;
+  private static final int PROPERTY_BYTES = 64;
+  private static final int RELATIONSHIP_BYTES = 130;
+
+  private final StringIndex uris = new StringIndex();
+  private final StringIndex names = new StringIndex();
+
+  // by resource id: heads of its lists of labels, properties and outgoing relationships
+  private int[] firstLabel = newIntArray(16);
+  private int[] firstProp = newIntArray(16);
+  private int[] lastProp = newIntArray(16);
+  private int[] firstRel = newIntArray(16);
+
+  // labels: name id and next label of the same resource
+  private int[] labelName = new int[16];
+  private int[] nextLabel = new int[16];
+  private int labelCount = 0;
+
+  // properties of resources and relationships, in the order they were read
+  private int[] propName = new int[16];
+  private Object[] propValue = new Object[16];
+  private boolean[] propMultivalued = new boolean[16];
+  private int[] nextProp = new int[16];
+  private int propCount = 0;
+
+  // relationships: type name id, end resource id, next relationship of the same start resource
+  // and their properties. Repeated triples are merged when written.
+  private int[] relType = new int[16];
+  private int[] relEnd = new int[16];
+  private int[] nextRel = new int[16];
+  private int[] firstRelProp = new int[16];
+  private int[] lastRelProp = new int[16];
+  private int relCount = 0;
+
+  private long mappedTriples = 0;
+  private long discardedTriples = 0;
+  // statements parsed up to the end of this batch (and their hash, when checkpointed) and
+  // whether it's the last one
+  private long statementOffset = 0;
+  private String statementsHash = null;
+  private boolean last = false;
+  private long estimatedTxBytes = 0;
+
+  int addResource(String uri) {
+    int resource = uris.add(uri);
+    if (resource == uris.size() - 1) {
+      // new in the batch, with its uri property
+      estimatedTxBytes += NODE_BYTES + PROPERTY_BYTES + valueBytes(uri);
+    }
+    if (resource == firstLabel.length) {
+      int newLength = firstLabel.length * 2;
+      firstLabel = grow(firstLabel, newLength);
+      firstProp = grow(firstProp, newLength);
+      lastProp = grow(lastProp, newLength);
+      firstRel = grow(firstRel, newLength);
+    }
+    return resource;
+  }
+
+  void addLabel(String uri, String label) {
+    int resource = addResource(uri);
+    if (labelCount == labelName.length) {
+      labelName = Arrays.copyOf(labelName, labelCount * 2);
+      nextLabel = Arrays.copyOf(nextLabel, labelCount * 2);
+    }
+    estimatedTxBytes += LABEL_BYTES;
+    labelName[labelCount] = names.add(label);
+    nextLabel[labelCount] = firstLabel[resource];
+    firstLabel[resource] = labelCount++;
+  }
+
+  void addProperty(String uri, String name, Object value, boolean multivalued) {
+    int resource = addResource(uri);
+    int prop = newProp(name, value, multivalued);
+    if (firstProp[resource] == NONE) {
+      firstProp[resource] = prop;
+    } else {
+      nextProp[lastProp[resource]] = prop;
+    }
+    lastProp[resource] = prop;
+  }
+
+  /**
+   * @return the id of the relationship, to add properties to it
+   */
+  int addRelationship(String startUri, String type, String endUri) {
+    int start = addResource(startUri);
+    int end = addResource(endUri);
+    if (relCount == relType.length) {
+      int newLength = relCount * 2;
+      relType = Arrays.copyOf(relType, newLength);
+      relEnd = Arrays.copyOf(relEnd, newLength);
+      nextRel = Arrays.copyOf(nextRel, newLength);
+      firstRelProp = Arrays.copyOf(firstRelProp, newLength);
+      lastRelProp = Arrays.copyOf(lastRelProp, newLength);
+    }
+    estimatedTxBytes += RELATIONSHIP_BYTES;
+    relType[relCount] = names.add(type);
+    relEnd[relCount] = end;
+    firstRelProp[relCount] = NONE;
+    nextRel[relCount] = firstRel[start];
+    firstRel[start] = relCount;
+    return relCount++;
+  }
+
+  void addRelationshipProperty(int rel, String name, Object value, boolean multivalued) {
+    int prop = newProp(name, value, multivalued);
+    if (firstRelProp[rel] == NONE) {
+      firstRelProp[rel] = prop;
+    } else {
+      nextProp[lastRelProp[rel]] = prop;
+    }
+    lastRelProp[rel] = prop;
+  }
+
+  private int newProp(String name, Object value, boolean multivalued) {
+    if (propCount == propName.length) {
+      int newLength = propCount * 2;
+      propName = Arrays.copyOf(propName, newLength);
+      propValue = Arrays.copyOf(propValue, newLength);
+      propMultivalued = Arrays.copyOf(propMultivalued, newLength);
+      nextProp = Arrays.copyOf(nextProp, newLength);
+    }
+    estimatedTxBytes += PROPERTY_BYTES + valueBytes(value);
+    propName[propCount] = names.add(name);
+    propValue[propCount] = value;
+    propMultivalued[propCount] = multivalued;
+    nextProp[propCount] = NONE;
+    return propCount++;
+  }
+
+  void seal(long mappedTriples, long statementOffset, String statementsHash, boolean last) {
+    this.mappedTriples = mappedTriples;
+    this.statementOffset = statementOffset;
+    this.statementsHash = statementsHash;
+    this.last = last;
+  }
+
+  int getResourceCount() {
+    return uris.size();
+  }
+
+  String getUri(int resource) {
+    return uris.get(resource);
+  }
+
+  /**
+   * @return the number of distinct labels, property names and relationship types
+   */
+  int getNameCount() {
+    return names.size();
+  }
+
+  String getName(int name) {
+    return names.get(name);
+  }
+
+  /**
+   * Passes the name id of each label of the resource to the action.
+   */
+  void forEachLabel(int resource, IntConsumer action) {
+    for (int label = firstLabel[resource]; label != NONE; label = nextLabel[label]) {
+      action.accept(labelName[label]);
+    }
+  }
+
+  /**
+   * @return the properties of the resource, multivalued ones collected in lists
+   */
+  Map<String, Object> getResourceProps(int resource) {
+    return collectProps(firstProp[resource]);
+  }
+
+  boolean hasRelationships(int resource) {
+    return firstRel[resource] != NONE;
+  }
+
+  void forEachRelationship(int resource, RelationshipVisitor visitor) {
+    for (int rel = firstRel[resource]; rel != NONE; rel = nextRel[rel]) {
+      visitor.visit(rel, relType[rel], relEnd[rel]);
+    }
+  }
+
+  /**
+   * @return the properties of the relationship, multivalued ones collected in lists
+   */
+  Map<String, Object> getRelProps(int rel) {
+    return collectProps(firstRelProp[rel]);
+  }
+
+  private Map<String, Object> collectProps(int first) {
+    if (first == NONE) {
+      return Collections.emptyMap();
+    }
+    Map<String, Object> props = new HashMap<>();
+    for (int prop = first; prop != NONE; prop = nextProp[prop]) {
+      String name = names.get(propName[prop]);
+      if (propMultivalued[prop]) {
+        Object values = props.get(name);
+        if (!(values instanceof List)) {
+          values = new ArrayList<>();
+          props.put(name, values);
+        }
+        ((List<Object>) values).add(propValue[prop]);
+      } else {
+        props.put(name, propValue[prop]);
+      }
+    }
+    return props;
+  }
+
+  long getMappedTriples() {
+    return mappedTriples;
+  }
+
+  long getStatementOffset() {
+    return statementOffset;
+  }
+
+  String getStatementsHash() {
+    return statementsHash;
+  }
+
+  boolean isLast() {
+    return last;
+  }
+
+  /**
+   * @return an estimate of the memory the batch takes in transaction state when written
+   */
+  long getEstimatedTxBytes() {
+    return estimatedTxBytes;
+  }
+
+  long getDiscardedTriples() {
+    return discardedTriples;
+  }
+
+  void discard(long count) {
+    discardedTriples += count;
+  }
+
+  /**
+   * Forgets the triples discarded when writing the batch, before writing it again.
+   */
+  void resetDiscarded() {
+    discardedTriples = 0;
+  }
+
+  private static long valueBytes(Object value) {
+    return value instanceof String ? 2L * ((String) value).length() : 8;
+  }
+
+  private static int[] newIntArray(int length) {
+    int[] array = new int[length];
+    Arrays.fill(array, NONE);
+    return array;
+  }
+
+  private static int[] grow(int[] array, int newLength) {
+    int[] grown = Arrays.copyOf(array, newLength);
+    Arrays.fill(grown, array.length, newLength, NONE);
+    return grown;
+  }
+
+  interface RelationshipVisitor {
+
+    void visit(int rel, int type, int end);
+  }
+}
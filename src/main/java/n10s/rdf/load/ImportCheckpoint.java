@@ -0,0 +1,188 @@
+package n10s.rdf.load;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.ZonedDateTime;
+import org.eclipse.rdf4j.model.Statement;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Transaction;
+
+/**
+ * Progress of an import with a jobId, stored on a _n10sImportJob node in the same transaction as
+ * each partial commit, so that it always matches what's in the graph.
+ * <p>
+ * The fingerprint of the first MB of content rejects a resume on other content before anything is
+ * parsed. The hash of all the statements up to the offset, recorded with it, is what makes sure
+ * the statements a resume skips are the ones that were committed.
+ */
+public class ImportCheckpoint {
+
+  public static final Label IMPORT_JOB = Label.label("_n10sImportJob");
+  public static final String STATUS_RUNNING = "RUNNING";
+  public static final String STATUS_FAILED = "FAILED";
+  public static final String STATUS_COMPLETED = "COMPLETED";
+  // bytes of content the fingerprint is computed on
+  private static final int FINGERPRINT_BYTES = 1 << 20;
+
+  private final String jobId;
+  private final String source;
+  private final String fingerprint;
+  private final long statementOffset;
+  private final String statementsHash;
+  private final long triplesLoaded;
+  private final String status;
+
+  ImportCheckpoint(String jobId, String source, String fingerprint, long statementOffset,
+      String statementsHash, long triplesLoaded, String status) {
+    this.jobId = jobId;
+    this.source = source;
+    this.fingerprint = fingerprint;
+    this.statementOffset = statementOffset;
+    this.statementsHash = statementsHash;
+    this.triplesLoaded = triplesLoaded;
+    this.status = status;
+  }
+
+  /**
+   * @return the last checkpoint of the job or null if there is none
+   */
+  public static ImportCheckpoint load(Transaction tx, String jobId) {
+    Node job = tx.findNode(IMPORT_JOB, "jobId", jobId);
+    if (job == null) {
+      return null;
+    }
+    return new ImportCheckpoint(jobId, (String) job.getProperty("source", null),
+        (String) job.getProperty("fingerprint", null),
+        (long) job.getProperty("statementOffset", 0L),
+        (String) job.getProperty("statementsHash", null),
+        (long) job.getProperty("triplesLoaded", 0L),
+        (String) job.getProperty("status", STATUS_RUNNING));
+  }
+
+  void save(Transaction tx) {
+    Node job = tx.findNode(IMPORT_JOB, "jobId", jobId);
+    if (job == null) {
+      job = tx.createNode(IMPORT_JOB);
+      job.setProperty("jobId", jobId);
+    }
+    if (source != null) {
+      job.setProperty("source", source);
+    }
+    job.setProperty("fingerprint", fingerprint);
+    job.setProperty("statementOffset", statementOffset);
+    if (statementsHash != null) {
+      job.setProperty("statementsHash", statementsHash);
+    }
+    job.setProperty("triplesLoaded", triplesLoaded);
+    job.setProperty("status", status);
+    job.setProperty("lastUpdate", ZonedDateTime.now());
+  }
+
+  ImportCheckpoint next(long statementOffset, String statementsHash, long triplesLoaded,
+      String status) {
+    return new ImportCheckpoint(jobId, source, fingerprint, statementOffset, statementsHash,
+        triplesLoaded, status);
+  }
+
+  ImportCheckpoint withStatus(String status) {
+    return next(statementOffset, statementsHash, triplesLoaded, status);
+  }
+
+  /**
+   * Hashes the first MB of the content without consuming it.
+   *
+   * @param in a stream supporting mark/reset, see {@link #markable(InputStream)}
+   * @return the hex encoded sha-256 of the first bytes
+   */
+  static String fingerprint(InputStream in) throws IOException {
+    MessageDigest digest = sha256();
+    in.mark(FINGERPRINT_BYTES);
+    byte[] buffer = new byte[8192];
+    int total = 0;
+    int read;
+    while (total < FINGERPRINT_BYTES
+        && (read = in.read(buffer, 0, Math.min(buffer.length, FINGERPRINT_BYTES - total))) > 0) {
+      digest.update(buffer, 0, read);
+      total += read;
+    }
+    in.reset();
+    return hex(digest.digest());
+  }
+
+  static InputStream markable(InputStream in) {
+    return in.markSupported() ? in : new BufferedInputStream(in, FINGERPRINT_BYTES);
+  }
+
+  public String getJobId() {
+    return jobId;
+  }
+
+  public String getSource() {
+    return source;
+  }
+
+  public String getFingerprint() {
+    return fingerprint;
+  }
+
+  public long getStatementOffset() {
+    return statementOffset;
+  }
+
+  public String getStatementsHash() {
+    return statementsHash;
+  }
+
+  public long getTriplesLoaded() {
+    return triplesLoaded;
+  }
+
+  public String getStatus() {
+    return status;
+  }
+
+  private static MessageDigest sha256() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static String hex(byte[] bytes) {
+    StringBuilder hex = new StringBuilder();
+    for (byte b : bytes) {
+      hex.append(String.format("%02x", b));
+    }
+    return hex.toString();
+  }
+
+  /**
+   * Running sha-256 of the statements parsed, in the order they are parsed.
+   */
+  static class StatementsDigest {
+
+    private final MessageDigest digest = sha256();
+
+    void update(Statement st) {
+      digest.update((st.getSubject() + " " + st.getPredicate() + " " + st.getObject() + "\n")
+          .getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return the hex encoded hash of the statements so far, parsing can go on
+     */
+    String hash() {
+      try {
+        return hex(((MessageDigest) digest.clone()).digest());
+      } catch (CloneNotSupportedException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+  }
+}
@@ -0,0 +1,100 @@
+package n10s.rdf.load;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import n10s.utils.InvalidNamespacePrefixDefinitionInDB;
+import n10s.utils.NsPrefixMap;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Transaction;
+
+/**
+ * Shared by the imports with the concurrent param running at the same time on a database, so that
+ * they can write to it safely:
+ * <ul>
+ * <li>they all allocate namespace prefixes from the same prefix map, so two imports never pick
+ * the same prefix for different namespaces;</li>
+ * <li>every batch finds or creates its nodes in the same global order (by uri hash stripe, then
+ * uri), so the uniqueness constraint locks are always taken in the same order and batches don't
+ * deadlock on them. A batch that tries to create a node another import has just created fails and
+ * is retried, finding the node this time.</li>
+ * </ul>
+ */
+public class ImportCoordinator {
+
+  private static final ConcurrentMap<String, ImportCoordinator> COORDINATORS =
+      new ConcurrentHashMap<>();
+  private static final int STRIPE_BITS = 10;
+  static final int URI_STRIPES = 1 << STRIPE_BITS;
+
+  private NsPrefixMap namespaces;
+  private int runningImports = 0;
+
+  public static ImportCoordinator forDatabase(GraphDatabaseService db) {
+    return COORDINATORS.computeIfAbsent(db.databaseName(), name -> new ImportCoordinator());
+  }
+
+  /**
+   * Registers a new import.
+   *
+   * @return the prefix map shared by the running imports, loaded from the DB if there were none
+   */
+  synchronized NsPrefixMap join(Transaction tx) throws InvalidNamespacePrefixDefinitionInDB {
+    if (runningImports == 0 || namespaces == null) {
+      // prefixes may have been changed since the last concurrent imports finished
+      namespaces = new NsPrefixMap(tx, false);
+    }
+    runningImports++;
+    return namespaces;
+  }
+
+  synchronized void leave() {
+    runningImports--;
+  }
+
+  synchronized int getRunningImports() {
+    return runningImports;
+  }
+
+  static int stripe(String uri) {
+    return spread(uri.hashCode()) >>> (Integer.SIZE - 1 - STRIPE_BITS);
+  }
+
+  /**
+   * @return the resource ids of the batch in the order their nodes have to be found or created:
+   * by stripe and, within a stripe, by uri
+   */
+  static int[] creationOrder(ImportBatch batch) {
+    int resources = batch.getResourceCount();
+    // (hash, id) pairs sorted as unsigned, the stripe is the top bits of the hash
+    long[] keys = new long[resources];
+    for (int resource = 0; resource < resources; resource++) {
+      keys[resource] = ((long) spread(batch.getUri(resource).hashCode()) << 32) | resource;
+    }
+    Arrays.sort(keys);
+    Integer[] order = new Integer[resources];
+    for (int i = 0; i < resources; i++) {
+      order[i] = (int) keys[i];
+    }
+    // sort the (rare) runs with the same hash by uri
+    for (int start = 0, end; start < resources; start = end) {
+      end = start + 1;
+      while (end < resources && (keys[end] >>> 32) == (keys[start] >>> 32)) {
+        end++;
+      }
+      if (end - start > 1) {
+        Arrays.sort(order, start, end, (a, b) -> batch.getUri(a).compareTo(batch.getUri(b)));
+      }
+    }
+    return Arrays.stream(order).mapToInt(Integer::intValue).toArray();
+  }
+
+  /**
+   * Mixes the bits of the hash and makes it non negative, so that the signed sort of the keys
+   * follows the stripes.
+   */
+  private static int spread(int hash) {
+    int h = hash * 0x9E3779B9;
+    return (h ^ (h >>> 16)) >>> 1;
+  }
+}
@@ -0,0 +1,81 @@
+package n10s.rdf.load;
+
+import java.util.Arrays;
+
+/**
+ * Set of non negative longs (node ids). Open addressing over a long table so that there is no
+ * boxed Long nor entry object per id.
+ */
+final class LongSet {
+
+  // id + 1 in each slot, 0 when empty
+  private long[] slots = new long[64];
+  private int size = 0;
+
+  /**
+   * @return true if the id was not in the set
+   */
+  boolean add(long id) {
+    int mask = slots.length - 1;
+    int slot = hash(id) & mask;
+    while (slots[slot] != 0) {
+      if (slots[slot] == id + 1) {
+        return false;
+      }
+      slot = (slot + 1) & mask;
+    }
+    slots[slot] = id + 1;
+    if (++size * 2 > slots.length) {
+      rehash();
+    }
+    return true;
+  }
+
+  int size() {
+    return size;
+  }
+
+  boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * @return the ids in the set, sorted
+   */
+  long[] toSortedArray() {
+    long[] ids = new long[size];
+    int i = 0;
+    for (long slot : slots) {
+      if (slot != 0) {
+        ids[i++] = slot - 1;
+      }
+    }
+    Arrays.sort(ids);
+    return ids;
+  }
+
+  void clear() {
+    slots = new long[64];
+    size = 0;
+  }
+
+  private void rehash() {
+    long[] newSlots = new long[slots.length * 2];
+    int mask = newSlots.length - 1;
+    for (long slotValue : slots) {
+      if (slotValue != 0) {
+        int slot = hash(slotValue - 1) & mask;
+        while (newSlots[slot] != 0) {
+          slot = (slot + 1) & mask;
+        }
+        newSlots[slot] = slotValue;
+      }
+    }
+    slots = newSlots;
+  }
+
+  private static int hash(long id) {
+    long h = id * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32));
+  }
+}
@@ -0,0 +1,65 @@
+package n10s.rdf.load;
+
+import java.util.Arrays;
+
+/**
+ * Interns strings to consecutive int ids (0, 1, 2...). Open addressing over an int table so that
+ * there is no entry object per string.
+ */
+final class StringIndex {
+
+  private String[] values = new String[16];
+  // id + 1 of the string in each slot, 0 when empty
+  private int[] slots = new int[32];
+  private int size = 0;
+
+  /**
+   * @return the id of the string, a new one if it was not in the index
+   */
+  int add(String value) {
+    int mask = slots.length - 1;
+    int slot = hash(value) & mask;
+    while (slots[slot] != 0) {
+      int id = slots[slot] - 1;
+      if (values[id].equals(value)) {
+        return id;
+      }
+      slot = (slot + 1) & mask;
+    }
+    if (size == values.length) {
+      values = Arrays.copyOf(values, size * 2);
+    }
+    values[size] = value;
+    slots[slot] = ++size;
+    if (size * 2 > slots.length) {
+      rehash();
+    }
+    return size - 1;
+  }
+
+  String get(int id) {
+    return values[id];
+  }
+
+  int size() {
+    return size;
+  }
+
+  private void rehash() {
+    int[] newSlots = new int[slots.length * 2];
+    int mask = newSlots.length - 1;
+    for (int id = 0; id < size; id++) {
+      int slot = hash(values[id]) & mask;
+      while (newSlots[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      newSlots[slot] = id + 1;
+    }
+    slots = newSlots;
+  }
+
+  private static int hash(String value) {
+    int h = value.hashCode() * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+}
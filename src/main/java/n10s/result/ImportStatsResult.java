@@ -0,0 +1,28 @@
+package n10s.result;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Map;
+import n10s.stats.ImportStats;
+
+public class ImportStatsResult {
+
+  public final long id;
+  public final String database;
+  public final String source;
+  public final String status;
+  public final ZonedDateTime startTime;
+  public final Map<String, Object> stats;
+
+  public ImportStatsResult(ImportStats importStats) {
+    this.id = importStats.getId();
+    this.database = importStats.getDatabase();
+    this.source = importStats.getSource();
+    this.status = importStats.getStatus();
+    this.startTime = ZonedDateTime
+        .ofInstant(Instant.ofEpochMilli(importStats.getStartMillis()), ZoneOffset.UTC);
+    this.stats = importStats.toMap();
+  }
+
+}
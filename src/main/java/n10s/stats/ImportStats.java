@@ -0,0 +1,260 @@
+package n10s.stats;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Timings and counts of an rdf import, by phase: reading and parsing the source, mapping the
+ * statements, and writing each partial commit (node lookups, checks for existing relationships,
+ * property writes, commit). Updated by the parser thread and by the writer thread of a pipelined
+ * import, and readable while the import runs.
+ * <p>
+ * An import is listed by {@link #all()} (and so by n10s.stats.imports) from {@link #start} until
+ * {@link #finish}, and then among the last {@value #RECENT_IMPORTS} finished.
+ */
+public class ImportStats {
+
+  public static final String STATUS_RUNNING = "running";
+  public static final String STATUS_COMPLETED = "completed";
+  public static final String STATUS_FAILED = "failed";
+  private static final int RECENT_IMPORTS = 20;
+
+  private static final AtomicLong IDS = new AtomicLong();
+  private static final ConcurrentMap<Long, ImportStats> RUNNING = new ConcurrentHashMap<>();
+  private static final Deque<ImportStats> RECENT = new ArrayDeque<>();
+
+  private long id;
+  private String database;
+  private String source;
+  private volatile String status = STATUS_RUNNING;
+  private final long startMillis = System.currentTimeMillis();
+  private final long startNanos = System.nanoTime();
+  private volatile long parseEndNanos = 0;
+  private volatile long endNanos = 0;
+  private final long gcCountAtStart = gcCount();
+  private final long gcMillisAtStart = gcMillis();
+  private volatile long gcCountAtEnd;
+  private volatile long gcMillisAtEnd;
+
+  private final LongAdder statementsHandled = new LongAdder();
+  private final LongAdder handlerNanos = new LongAdder();
+  private final LongAdder periodicNanos = new LongAdder();
+  private final LongAdder nodeLookups = new LongAdder();
+  private final LongAdder nodeCacheMisses = new LongAdder();
+  private final LongAdder nodeLookupNanos = new LongAdder();
+  private final LongAdder nodesCreated = new LongAdder();
+  private final LongAdder relationshipChecks = new LongAdder();
+  private final LongAdder relationshipsScanned = new LongAdder();
+  private final LongAdder relationshipCheckNanos = new LongAdder();
+  private final LongAdder relationshipsCreated = new LongAdder();
+  private final LongAdder propertyWrites = new LongAdder();
+  private final LongAdder writeNanos = new LongAdder();
+  private final LongAdder commitNanos = new LongAdder();
+  private final LongAdder commitWaitNanos = new LongAdder();
+  private final LongAdder batches = new LongAdder();
+  private final LongAdder batchedTriples = new LongAdder();
+  private final LongAdder triplesLoaded = new LongAdder();
+  private final LongAdder retries = new LongAdder();
+  private final AtomicLong maxBatchSize = new AtomicLong();
+  private volatile long lastBatchSize = 0;
+
+  /**
+   * Lists the import until it finishes.
+   *
+   * @param source the url imported, or a description of it
+   */
+  public ImportStats start(String database, String source) {
+    this.id = IDS.incrementAndGet();
+    this.database = database;
+    this.source = source;
+    RUNNING.put(id, this);
+    return this;
+  }
+
+  public ImportStats finish(boolean completed) {
+    if (endNanos == 0) {
+      endNanos = System.nanoTime();
+      gcCountAtEnd = gcCount();
+      gcMillisAtEnd = gcMillis();
+      status = completed ? STATUS_COMPLETED : STATUS_FAILED;
+    }
+    if (RUNNING.remove(id) != null) {
+      synchronized (RECENT) {
+        RECENT.addFirst(this);
+        if (RECENT.size() > RECENT_IMPORTS) {
+          RECENT.removeLast();
+        }
+      }
+    }
+    return this;
+  }
+
+  /**
+   * @return the running imports, then the last ones finished, most recent first
+   */
+  public static List<ImportStats> all() {
+    List<ImportStats> all = new ArrayList<>(RUNNING.values());
+    all.sort((a, b) -> Long.compare(b.id, a.id));
+    synchronized (RECENT) {
+      all.addAll(RECENT);
+    }
+    return all;
+  }
+
+  /**
+   * @param statements statements handled since the last call
+   * @param mappingNanos time spent mapping them, estimated from a sample of them
+   * @param periodicNanos time spent in the partial commits they triggered
+   */
+  public void statementsHandled(long statements, long mappingNanos, long periodicNanos) {
+    statementsHandled.add(statements);
+    handlerNanos.add(mappingNanos + periodicNanos);
+    if (periodicNanos > 0) {
+      this.periodicNanos.add(periodicNanos);
+    }
+  }
+
+  public void parsingComplete() {
+    if (parseEndNanos == 0) {
+      parseEndNanos = System.nanoTime();
+    }
+  }
+
+  /**
+   * @param misses lookups the node id dictionary could not answer (index lookups or creations)
+   */
+  public void nodesLookedUp(long lookups, long misses, long created, long nanos) {
+    nodeLookups.add(lookups);
+    nodeCacheMisses.add(misses);
+    nodesCreated.add(created);
+    nodeLookupNanos.add(nanos);
+  }
+
+  public void relationshipCheck(long relationshipsScanned, long nanos) {
+    relationshipChecks.increment();
+    this.relationshipsScanned.add(relationshipsScanned);
+    relationshipCheckNanos.add(nanos);
+  }
+
+  public void relationshipCreated() {
+    relationshipsCreated.increment();
+  }
+
+  public void propertyWritten() {
+    propertyWrites.increment();
+  }
+
+  /**
+   * @param batchSize triples mapped in the batch
+   * @param ingested triples of the batch actually loaded
+   * @param writeNanos time writing the batch to the transaction
+   * @param commitNanos time committing it
+   */
+  public void batchCommitted(long batchSize, long ingested, long writeNanos, long commitNanos) {
+    batches.increment();
+    batchedTriples.add(batchSize);
+    triplesLoaded.add(ingested);
+    this.writeNanos.add(writeNanos);
+    this.commitNanos.add(commitNanos);
+    lastBatchSize = batchSize;
+    maxBatchSize.accumulateAndGet(batchSize, Math::max);
+  }
+
+  public void retried() {
+    retries.increment();
+  }
+
+  /**
+   * Time the parser waited for the batch being written in the background.
+   */
+  public void commitWaited(long nanos) {
+    commitWaitNanos.add(nanos);
+  }
+
+  public long getId() {
+    return id;
+  }
+
+  public String getDatabase() {
+    return database;
+  }
+
+  public String getSource() {
+    return source;
+  }
+
+  public String getStatus() {
+    return status;
+  }
+
+  public long getStartMillis() {
+    return startMillis;
+  }
+
+  public Map<String, Object> toMap() {
+    long end = endNanos != 0 ? endNanos : System.nanoTime();
+    long parseEnd = parseEndNanos != 0 ? parseEndNanos : end;
+    long lookups = nodeLookups.sum();
+    long batchCount = batches.sum();
+    Map<String, Object> stats = new LinkedHashMap<>();
+    stats.put("elapsedMillis", millis(end - startNanos));
+    // outside the handler: reading, decompressing and parsing the source
+    stats.put("parseMillis", millis(Math.max(0, parseEnd - startNanos - handlerNanos.sum())));
+    stats.put("mappingMillis", millis(handlerNanos.sum() - periodicNanos.sum()));
+    stats.put("triplesParsed", statementsHandled.sum());
+    stats.put("triplesLoaded", triplesLoaded.sum());
+    stats.put("nodeLookups", lookups);
+    stats.put("nodeLookupMillis", millis(nodeLookupNanos.sum()));
+    stats.put("nodeCacheHitRate",
+        lookups == 0 ? 0.0 : (double) (lookups - nodeCacheMisses.sum()) / lookups);
+    stats.put("nodesCreated", nodesCreated.sum());
+    stats.put("relationshipChecks", relationshipChecks.sum());
+    stats.put("relationshipsScanned", relationshipsScanned.sum());
+    stats.put("relationshipCheckMillis", millis(relationshipCheckNanos.sum()));
+    stats.put("relationshipsCreated", relationshipsCreated.sum());
+    stats.put("propertyWrites", propertyWrites.sum());
+    stats.put("writeMillis", millis(writeNanos.sum()));
+    stats.put("commitMillis", millis(commitNanos.sum()));
+    stats.put("commitWaitMillis", millis(commitWaitNanos.sum()));
+    stats.put("batches", batchCount);
+    stats.put("avgBatchSize", batchCount == 0 ? 0 : batchedTriples.sum() / batchCount);
+    stats.put("maxBatchSize", maxBatchSize.get());
+    stats.put("lastBatchSize", lastBatchSize);
+    stats.put("retries", retries.sum());
+    // for the whole JVM, other work running at the same time counts too
+    stats.put("gcCount", (endNanos != 0 ? gcCountAtEnd : gcCount()) - gcCountAtStart);
+    stats.put("gcMillis", (endNanos != 0 ? gcMillisAtEnd : gcMillis()) - gcMillisAtStart);
+    return stats;
+  }
+
+  private static long millis(long nanos) {
+    return TimeUnit.NANOSECONDS.toMillis(nanos);
+  }
+
+  private static long gcCount() {
+    long count = 0;
+    for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+      count += Math.max(0, gc.getCollectionCount());
+    }
+    return count;
+  }
+
+  private static long gcMillis() {
+    long millis = 0;
+    for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+      millis += Math.max(0, gc.getCollectionTime());
+    }
+    return millis;
+  }
+}
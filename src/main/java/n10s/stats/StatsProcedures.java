@@ -0,0 +1,18 @@
+package n10s.stats;
+
+import java.util.stream.Stream;
+import n10s.result.ImportStatsResult;
+import org.neo4j.procedure.Description;
+import org.neo4j.procedure.Mode;
+import org.neo4j.procedure.Procedure;
+
+public class StatsProcedures {
+
+  @Procedure(mode = Mode.READ)
+  @Description("Timings and counts by phase of the rdf imports running, and of the last ones "
+      + "finished")
+  public Stream<ImportStatsResult> imports() {
+    return ImportStats.all().stream().map(ImportStatsResult::new);
+  }
+
+}
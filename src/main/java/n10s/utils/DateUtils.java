@@ -3,6 +3,8 @@ package n10s.utils;
 import java.time.DateTimeException;
 import java.time.LocalDateTime;
 import java.time.LocalDate;
+import java.time.Year;
+import java.time.YearMonth;
 import java.time.format.DateTimeParseException;
 import java.util.Calendar;
 
@@ -11,14 +13,19 @@ import javax.xml.bind.DatatypeConverter;
 public class DateUtils {
 	/**
 	 * Convert a String-formatted date into a LocalDateTime object by using
-	 * LocalDateTime.parse first, and DatatypeConverter.parseDateTime if the
-	 * first one fails.
+	 * parseXsdDateTime first, then LocalDateTime.parse and finally
+	 * DatatypeConverter.parseDateTime if the others fail.
 	 * @param stringDateTime
 	 *            The string-formatted date.
 	 * @return LocalDateTime object.
 	 * @throws IllegalArgumentException if the string is not parseable to a date.
 	 */
 	public static LocalDateTime parseDateTime(String stringDateTime) {
+		LocalDateTime xsdDateTime = parseXsdDateTime(stringDateTime);
+		if (xsdDateTime != null) {
+			return xsdDateTime;
+		}
+
 		boolean dateParsed = false;
 		LocalDateTime localDateTime = null;
 		StringBuilder parserErrors = new StringBuilder("Error parsing ").append(stringDateTime).append(":\n");
@@ -54,6 +61,11 @@ public class DateUtils {
 	}
 
 	public static LocalDate parseDate(String stringDate) {
+		LocalDate xsdDate = parseXsdDate(stringDate);
+		if (xsdDate != null) {
+			return xsdDate;
+		}
+
 		boolean dateParsed = false;
 		LocalDate localDate = null;
 		StringBuilder parserErrors = new StringBuilder("Error parsing ").append(stringDate).append(":\n");
@@ -87,4 +99,156 @@ public class DateUtils {
 			return localDate;
 		}
 	}
+
+	/**
+	 * Parses the xsd:dateTime lexical form (seconds may be omitted) without
+	 * throwing. As with DatatypeConverter, a timezone (Z or +hh:mm / -hh:mm) is
+	 * accepted and the date and time are returned as written, in that timezone.
+	 * @param value
+	 *            The string-formatted dateTime.
+	 * @return LocalDateTime object or null if the string is not a valid xsd:dateTime.
+	 */
+	public static LocalDateTime parseXsdDateTime(String value) {
+		Cursor cursor = new Cursor(value);
+		LocalDate date = readDate(cursor);
+		if (date == null || !cursor.skip('T')) {
+			return null;
+		}
+		int hour = cursor.readDigits(2);
+		if (hour < 0 || !cursor.skip(':')) {
+			return null;
+		}
+		int minute = cursor.readDigits(2);
+		int second = 0;
+		int nano = 0;
+		if (cursor.skip(':')) {
+			second = cursor.readDigits(2);
+			if (cursor.skip('.')) {
+				nano = cursor.readFraction();
+			}
+		}
+		if (minute < 0 || minute > 59 || second < 0 || second > 59 || nano < 0
+				|| !readTimezone(cursor) || !cursor.atEnd()) {
+			return null;
+		}
+		if (hour == 24 && minute == 0 && second == 0 && nano == 0) {
+			// end of the day, same as 00:00:00 of the next one
+			return date.plusDays(1).atStartOfDay();
+		}
+		return hour > 23 ? null : LocalDateTime.of(date.getYear(), date.getMonthValue(),
+				date.getDayOfMonth(), hour, minute, second, nano);
+	}
+
+	/**
+	 * Parses the xsd:date lexical form without throwing. A timezone is accepted
+	 * and ignored, the date is returned as written.
+	 * @param value
+	 *            The string-formatted date.
+	 * @return LocalDate object or null if the string is not a valid xsd:date.
+	 */
+	public static LocalDate parseXsdDate(String value) {
+		Cursor cursor = new Cursor(value);
+		LocalDate date = readDate(cursor);
+		return date != null && readTimezone(cursor) && cursor.atEnd() ? date : null;
+	}
+
+	private static LocalDate readDate(Cursor cursor) {
+		boolean negative = cursor.skip('-');
+		int yearStart = cursor.pos;
+		int year = cursor.readDigits(-1);
+		int yearDigits = cursor.pos - yearStart;
+		// at least four digits, no leading zeros beyond that
+		if (year < 0 || yearDigits < 4 || (yearDigits > 4 && cursor.value.charAt(yearStart) == '0')
+				|| year > Year.MAX_VALUE || !cursor.skip('-')) {
+			return null;
+		}
+		int month = cursor.readDigits(2);
+		if (month < 1 || month > 12 || !cursor.skip('-')) {
+			return null;
+		}
+		int day = cursor.readDigits(2);
+		int signedYear = negative ? -year : year;
+		if (day < 1 || day > YearMonth.of(signedYear, month).lengthOfMonth()) {
+			return null;
+		}
+		return LocalDate.of(signedYear, month, day);
+	}
+
+	private static boolean readTimezone(Cursor cursor) {
+		if (cursor.atEnd() || cursor.skip('Z')) {
+			return true;
+		}
+		if (!cursor.skip('+') && !cursor.skip('-')) {
+			return false;
+		}
+		int hours = cursor.readDigits(2);
+		if (hours < 0 || !cursor.skip(':')) {
+			return false;
+		}
+		int minutes = cursor.readDigits(2);
+		return minutes >= 0 && minutes <= 59 && (hours < 14 || (hours == 14 && minutes == 0));
+	}
+
+	private static class Cursor {
+
+		private final String value;
+		private int pos = 0;
+
+		Cursor(String value) {
+			this.value = value;
+		}
+
+		boolean atEnd() {
+			return pos == value.length();
+		}
+
+		boolean skip(char c) {
+			if (pos < value.length() && value.charAt(pos) == c) {
+				pos++;
+				return true;
+			}
+			return false;
+		}
+
+		/**
+		 * Reads exactly count digits, or all the digits there are if count is -1.
+		 * @return the number read or -1 if there were not enough digits (or too many to fit an int)
+		 */
+		int readDigits(int count) {
+			int start = pos;
+			int result = 0;
+			while (pos < value.length() && (count < 0 || pos - start < count)) {
+				char c = value.charAt(pos);
+				if (c < '0' || c > '9' || result > (Integer.MAX_VALUE - 9) / 10) {
+					break;
+				}
+				result = result * 10 + (c - '0');
+				pos++;
+			}
+			return pos == start || (count > 0 && pos - start < count) ? -1 : result;
+		}
+
+		/**
+		 * Reads the digits of a fraction of a second, beyond nanoseconds are ignored.
+		 * @return the nanoseconds or -1 if there were no digits
+		 */
+		int readFraction() {
+			int start = pos;
+			int nano = 0;
+			while (pos < value.length() && value.charAt(pos) >= '0' && value.charAt(pos) <= '9') {
+				if (pos - start < 9) {
+					nano = nano * 10 + (value.charAt(pos) - '0');
+				}
+				pos++;
+			}
+			int digits = pos - start;
+			if (digits == 0) {
+				return -1;
+			}
+			for (int i = digits; i < 9; i++) {
+				nano *= 10;
+			}
+			return nano;
+		}
+	}
 }
@@ -0,0 +1,198 @@
+package n10s.utils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * Sorts more records than fit in memory. Records are buffered and, when the buffer is full, sorted
+ * and spilled to a run file in a temp directory. {@link #sorted()} merges the runs back. The sort
+ * is stable: records that compare as equal come out in the order they were added.
+ *
+ * @param <T> the type of the records being sorted
+ */
+public class ExternalSorter<T> implements Closeable {
+
+  // runs merged at once, to keep the number of open files bounded
+  private static final int MAX_RUNS_PER_MERGE = 128;
+
+  private final File tempDir;
+  private final Comparator<T> comparator;
+  private final Codec<T> codec;
+  private final int maxRecordsInMemory;
+  private List<T> buffer = new ArrayList<>();
+  private final List<File> runs = new ArrayList<>();
+
+  public ExternalSorter(File tempDir, Comparator<T> comparator, Codec<T> codec,
+      int maxRecordsInMemory) {
+    this.tempDir = tempDir;
+    this.comparator = comparator;
+    this.codec = codec;
+    this.maxRecordsInMemory = maxRecordsInMemory;
+  }
+
+  public void add(T record) throws IOException {
+    buffer.add(record);
+    if (buffer.size() >= maxRecordsInMemory) {
+      spill();
+    }
+  }
+
+  /**
+   * @return the records added so far in order. No more records can be added after calling this.
+   */
+  public Iterator<T> sorted() throws IOException {
+    if (runs.isEmpty()) {
+      buffer.sort(comparator);
+      return buffer.iterator();
+    }
+    spill();
+    while (runs.size() > MAX_RUNS_PER_MERGE) {
+      List<File> merged = new ArrayList<>();
+      for (int i = 0; i < runs.size(); i += MAX_RUNS_PER_MERGE) {
+        List<File> group = runs.subList(i, Math.min(i + MAX_RUNS_PER_MERGE, runs.size()));
+        File run = File.createTempFile("n10s-run", ".bin", tempDir);
+        try (MergeIterator it = new MergeIterator(group);
+            DataOutputStream out = openRun(run)) {
+          while (it.hasNext()) {
+            writeRecord(out, it.next());
+          }
+          out.writeBoolean(false);
+        }
+        group.forEach(File::delete);
+        merged.add(run);
+      }
+      runs.clear();
+      runs.addAll(merged);
+    }
+    return new MergeIterator(runs);
+  }
+
+  private void spill() throws IOException {
+    if (buffer.isEmpty()) {
+      return;
+    }
+    buffer.sort(comparator);
+    File run = File.createTempFile("n10s-run", ".bin", tempDir);
+    try (DataOutputStream out = openRun(run)) {
+      for (T record : buffer) {
+        writeRecord(out, record);
+      }
+      out.writeBoolean(false);
+    }
+    runs.add(run);
+    buffer = new ArrayList<>();
+  }
+
+  private DataOutputStream openRun(File run) throws IOException {
+    return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(run), 1 << 16));
+  }
+
+  private void writeRecord(DataOutputStream out, T record) throws IOException {
+    out.writeBoolean(true);
+    codec.write(out, record);
+  }
+
+  @Override
+  public void close() {
+    runs.forEach(File::delete);
+    runs.clear();
+    buffer = new ArrayList<>();
+  }
+
+  /**
+   * Binary serialisation of the records written to the run files.
+   */
+  public interface Codec<T> {
+
+    void write(DataOutput out, T record) throws IOException;
+
+    T read(DataInput in) throws IOException;
+  }
+
+  private class RunReader {
+
+    private final int runIndex;
+    private final DataInputStream in;
+    private T current;
+
+    RunReader(int runIndex, File run) throws IOException {
+      this.runIndex = runIndex;
+      this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(run), 1 << 16));
+    }
+
+    boolean advance() throws IOException {
+      if (in.readBoolean()) {
+        current = codec.read(in);
+        return true;
+      }
+      current = null;
+      in.close();
+      return false;
+    }
+  }
+
+  private class MergeIterator implements Iterator<T>, Closeable {
+
+    private final PriorityQueue<RunReader> queue;
+    private final List<RunReader> readers = new ArrayList<>();
+
+    MergeIterator(List<File> runFiles) throws IOException {
+      // ties go to the earliest run, which keeps the sort stable
+      queue = new PriorityQueue<>(Math.max(1, runFiles.size()),
+          Comparator.<RunReader, T>comparing(r -> r.current, comparator)
+              .thenComparingInt(r -> r.runIndex));
+      for (int i = 0; i < runFiles.size(); i++) {
+        RunReader reader = new RunReader(i, runFiles.get(i));
+        readers.add(reader);
+        if (reader.advance()) {
+          queue.add(reader);
+        }
+      }
+    }
+
+    @Override
+    public boolean hasNext() {
+      return !queue.isEmpty();
+    }
+
+    @Override
+    public T next() {
+      RunReader reader = queue.poll();
+      if (reader == null) {
+        throw new NoSuchElementException();
+      }
+      T record = reader.current;
+      try {
+        if (reader.advance()) {
+          queue.add(reader);
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      return record;
+    }
+
+    @Override
+    public void close() throws IOException {
+      for (RunReader reader : readers) {
+        reader.in.close();
+      }
+    }
+  }
+}
@@ -0,0 +1,74 @@
+package n10s.utils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import org.neo4j.configuration.Config;
+import org.neo4j.configuration.GraphDatabaseSettings;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+
+/**
+ * The directories procedures are told to write files to (named graph exports, delta snapshots,
+ * the fetch cache) are confined to the import directory of the DBMS (dbms.directories.import),
+ * the way LOAD CSV confines what it reads: they are given relative to it, and can't lead out of
+ * it.
+ */
+public class ImportDirectory {
+
+  /**
+   * @return the import directory of the DBMS the database is in, null if it is not set
+   */
+  public static Path of(GraphDatabaseService db) {
+    if (!(db instanceof GraphDatabaseAPI)) {
+      return null;
+    }
+    return ((GraphDatabaseAPI) db).getDependencyResolver().resolveDependency(Config.class)
+        .get(GraphDatabaseSettings.load_csv_file_url_root);
+  }
+
+  /**
+   * @param directory a directory relative to the import directory of the DBMS
+   * @return the directory, created if it doesn't exist
+   * @throws IllegalArgumentException if the import directory is not set, or the directory is
+   * absolute or is not within it
+   */
+  public static Path resolve(GraphDatabaseService db, String directory) throws IOException {
+    Path importDirectory = of(db);
+    if (importDirectory == null) {
+      throw new IllegalArgumentException("Directories are relative to dbms.directories.import, "
+          + "which is not set");
+    }
+    return resolve(importDirectory, directory);
+  }
+
+  /**
+   * @param importDirectory the import directory of the DBMS (dbms.directories.import)
+   * @param directory a directory relative to the import directory
+   * @return the directory, created if it doesn't exist
+   * @throws IllegalArgumentException if the directory is absolute or is not within the import
+   * directory
+   */
+  public static Path resolve(Path importDirectory, String directory) throws IOException {
+    Path relative = Paths.get(directory == null ? "" : directory);
+    if (relative.isAbsolute() || relative.getRoot() != null) {
+      throw new IllegalArgumentException("Directories are relative to dbms.directories.import, "
+          + "not " + directory);
+    }
+    for (Path name : relative) {
+      if (name.toString().equals("..")) {
+        throw new IllegalArgumentException("Only directories within dbms.directories.import "
+            + "can be used, not " + directory);
+      }
+    }
+    Path root = importDirectory.toAbsolutePath().normalize();
+    Path resolved = Files.createDirectories(root.resolve(relative).normalize());
+    // a symbolic link could still lead out of it
+    if (!resolved.toRealPath().startsWith(root.toRealPath())) {
+      throw new IllegalArgumentException("Only directories within dbms.directories.import "
+          + "can be used, not " + directory);
+    }
+    return resolved;
+  }
+}
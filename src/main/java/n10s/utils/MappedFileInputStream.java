@@ -0,0 +1,150 @@
+package n10s.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a local file through memory mapped windows of the file, so that reading it takes no
+ * system calls other than mapping each window and the bytes are copied once, from the page cache
+ * to the caller's buffer.
+ * <p>
+ * Supports mark/reset at any distance and reports progress (bytes read out of the file size) every
+ * time another {@link #PROGRESS_STEPS}th of the file has been read.
+ */
+public class MappedFileInputStream extends InputStream {
+
+  // a single mapping can't go over 2GB, large files are mapped one window at a time
+  private static final long DEFAULT_WINDOW_SIZE = 1L << 28;
+  public static final int PROGRESS_STEPS = 20;
+
+  private final FileChannel channel;
+  private final long size;
+  private final long windowSize;
+  private final ProgressListener progressListener;
+  private MappedByteBuffer window;
+  private long windowStart;
+  private long position = 0;
+  private long mark = 0;
+  private long nextProgressReport;
+
+  public MappedFileInputStream(Path file, ProgressListener progressListener) throws IOException {
+    this(file, DEFAULT_WINDOW_SIZE, progressListener);
+  }
+
+  MappedFileInputStream(Path file, long windowSize, ProgressListener progressListener)
+      throws IOException {
+    this.channel = FileChannel.open(file, StandardOpenOption.READ);
+    this.size = channel.size();
+    this.windowSize = windowSize;
+    this.progressListener = progressListener;
+    this.nextProgressReport = progressStep();
+  }
+
+  @Override
+  public int read() throws IOException {
+    if (!mapPosition()) {
+      return -1;
+    }
+    int b = window.get((int) (position - windowStart)) & 0xff;
+    advance(1);
+    return b;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    if (len == 0) {
+      return 0;
+    }
+    if (!mapPosition()) {
+      return -1;
+    }
+    int offsetInWindow = (int) (position - windowStart);
+    int n = Math.min(len, window.limit() - offsetInWindow);
+    window.position(offsetInWindow);
+    window.get(b, off, n);
+    advance(n);
+    return n;
+  }
+
+  @Override
+  public long skip(long n) {
+    long skipped = Math.max(0, Math.min(n, size - position));
+    advance(skipped);
+    return skipped;
+  }
+
+  @Override
+  public int available() {
+    return (int) Math.min(Integer.MAX_VALUE, size - position);
+  }
+
+  @Override
+  public boolean markSupported() {
+    return true;
+  }
+
+  @Override
+  public synchronized void mark(int readlimit) {
+    mark = position;
+  }
+
+  @Override
+  public synchronized void reset() {
+    position = mark;
+  }
+
+  @Override
+  public void close() throws IOException {
+    window = null;
+    channel.close();
+  }
+
+  public long getBytesRead() {
+    return position;
+  }
+
+  public long getSize() {
+    return size;
+  }
+
+  /**
+   * Maps the window holding the current position if it's not the current one.
+   *
+   * @return false at the end of the file
+   */
+  private boolean mapPosition() throws IOException {
+    if (position >= size) {
+      return false;
+    }
+    if (window == null || position < windowStart || position >= windowStart + window.limit()) {
+      windowStart = position;
+      window = channel.map(MapMode.READ_ONLY, windowStart, Math.min(windowSize, size - position));
+    }
+    return true;
+  }
+
+  private void advance(long n) {
+    position += n;
+    if (progressListener != null && (position >= nextProgressReport || position == size)
+        && size > 0) {
+      progressListener.progress(position, size);
+      while (nextProgressReport <= position) {
+        nextProgressReport += progressStep();
+      }
+    }
+  }
+
+  private long progressStep() {
+    return Math.max(1, size / PROGRESS_STEPS);
+  }
+
+  public interface ProgressListener {
+
+    void progress(long bytesRead, long size);
+  }
+}
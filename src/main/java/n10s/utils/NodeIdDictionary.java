@@ -0,0 +1,83 @@
+package n10s.utils;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
+import org.neo4j.graphdb.Transaction;
+
+/**
+ * Import-scoped dictionary from a resource key (typically its uri) to the id of the node that
+ * represents it. Unlike a cache of {@link Node} objects, which are bound to the transaction that
+ * produced them, node ids stay valid across partial commits, so resources seen in a previous batch
+ * are rebound by id in the next transaction instead of being looked up in the index again.
+ * <p>
+ * Entries created in a transaction that is later rolled back must be dropped with {@link
+ * #invalidateAll()}. The ids of deleted nodes are reused by Neo4j, so a node rebound by id is only
+ * returned if it still represents the key, otherwise the loader is used.
+ *
+ * @param <K> the type of the key identifying the resource
+ */
+public class NodeIdDictionary<K> {
+
+  private final Cache<K, Long> nodeIds;
+  private final BiPredicate<K, Node> represents;
+
+  /**
+   * @param represents tells if a node is (still) the one for a key, e.g. its uri is the key
+   */
+  public NodeIdDictionary(long maxSize, BiPredicate<K, Node> represents) {
+    this.represents = represents;
+    this.nodeIds = CacheBuilder.newBuilder()
+        .maximumSize(maxSize)
+        .recordStats()
+        .build();
+  }
+
+  /**
+   * Returns the node for the given key in the transaction passed as parameter. On a dictionary miss
+   * (or if the node the dictionary pointed to is gone, or its id now belongs to another node, after
+   * a concurrent delete), the loader is used to find or create it and
+   * its id is recorded for later batches.
+   *
+   * @return the node or null if the loader did not produce one
+   */
+  public Node get(Transaction tx, K key, Function<K, Node> loader) {
+    Long nodeId = nodeIds.getIfPresent(key);
+    if (nodeId != null) {
+      try {
+        Node node = tx.getNodeById(nodeId);
+        if (represents.test(key, node)) {
+          return node;
+        }
+      } catch (NotFoundException e) {
+        //deleted since we last saw it
+      }
+      nodeIds.invalidate(key);
+    }
+    Node node = loader.apply(key);
+    if (node != null) {
+      nodeIds.put(key, node.getId());
+    }
+    return node;
+  }
+
+  public void put(K key, Node node) {
+    nodeIds.put(key, node.getId());
+  }
+
+  public void invalidateAll() {
+    nodeIds.invalidateAll();
+  }
+
+  public long size() {
+    return nodeIds.size();
+  }
+
+  public CacheStats stats() {
+    return nodeIds.stats();
+  }
+}
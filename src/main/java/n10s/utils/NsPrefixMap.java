@@ -1,9 +1,11 @@
 package n10s.utils;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import org.neo4j.graphdb.Label;
 import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.ResourceIterator;
@@ -13,6 +15,9 @@ import static n10s.graphconfig.Params.BASE_SCH_NS;
 
 public class NsPrefixMap {
 
+  static final Label NS_PREF_DEF = Label.label("_NsPrefDef");
+  private static final String GENERATED_PREFIX = "ns";
+
   private static Map<String, String> standardNamespaces = createStandardNamespacesMap();
 
   private static Map<String, String> createStandardNamespacesMap() {
@@ -49,34 +54,62 @@ public class NsPrefixMap {
     return ns;
   }
 
-  Map<String, String> prefixToNs = new HashMap<>();
-  Map<String, String> nsToPrefix = new HashMap<>();
+  // concurrent so that lookups don't need the lock taken by the changes
+  Map<String, String> prefixToNs = new ConcurrentHashMap<>();
+  Map<String, String> nsToPrefix = new ConcurrentHashMap<>();
+  // changes whenever an existing namespace to prefix association is removed
+  private volatile long generation = 0;
+  // prefixes starting with "ns", the next generated one is "ns" + this number
+  private int generatedPrefixCount = 0;
+  private boolean readOnly = false;
+
+  /**
+   * An empty prefix map, for when there is no DB to load the prefix definitions from
+   */
+  public NsPrefixMap() {
+  }
 
   public NsPrefixMap(Transaction tx, boolean acquireLock)
       throws InvalidNamespacePrefixDefinitionInDB {
-    try {
-
-      ResourceIterator<Node> namespacePrefixDefinitionNodes = tx
-          .findNodes(Label.label("_NsPrefDef"));
+    ResourceIterator<Node> namespacePrefixDefinitionNodes = tx.findNodes(NS_PREF_DEF);
 
-      if (namespacePrefixDefinitionNodes.hasNext()) {
-        Node nspd = namespacePrefixDefinitionNodes.next();
-        if (acquireLock) {
-          tx.acquireWriteLock(nspd);
-        }
+    if (namespacePrefixDefinitionNodes.hasNext()) {
+      Node nspd = namespacePrefixDefinitionNodes.next();
+      if (acquireLock) {
+        tx.acquireWriteLock(nspd);
+      }
+      addAll(nspd);
+    }
+  }
 
-        for (Entry<String, Object> entry : nspd.getAllProperties().entrySet()) {
-          add(entry.getKey(), (String) entry.getValue());
-        }
+  /**
+   * @param nspd the _NsPrefDef node, null if there is none
+   */
+  NsPrefixMap(Node nspd) throws InvalidNamespacePrefixDefinitionInDB {
+    if (nspd != null) {
+      addAll(nspd);
+    }
+  }
 
+  private void addAll(Node nspd) throws InvalidNamespacePrefixDefinitionInDB {
+    try {
+      for (Entry<String, Object> entry : nspd.getAllProperties().entrySet()) {
+        add(entry.getKey(), (String) entry.getValue());
       }
-
     } catch (NamespacePrefixConflictException e) {
       throw new InvalidNamespacePrefixDefinitionInDB("The namespace prefix definition in the DB "
           + "is invalid. Detail: " + e.getMessage());
     }
   }
 
+  /**
+   * Makes the map immutable, so that it can be shared. Any later change fails.
+   */
+  NsPrefixMap readOnly() {
+    readOnly = true;
+    return this;
+  }
+
   public String getNsForPrefix(String prefix) {
     return prefixToNs.get(prefix);
   }
@@ -94,6 +127,11 @@ public class NsPrefixMap {
   }
 
   public String getPrefixOrAdd(String ns, boolean strict) {
+    String prefix = nsToPrefix.get(ns);
+    return prefix != null ? prefix : addPrefix(ns, strict);
+  }
+
+  private synchronized String addPrefix(String ns, boolean strict) {
     if (nsToPrefix.containsKey(ns)) {
       return nsToPrefix.get(ns);
     } else if (!strict) {
@@ -103,8 +141,7 @@ public class NsPrefixMap {
         return standardNamespaces.get(ns);
       } else {
         //it's not a standard, we need to generate next in sequence
-        String nextNsPrefix =
-            "ns" + prefixToNs.keySet().stream().filter(x -> x.startsWith("ns")).count();
+        String nextNsPrefix = GENERATED_PREFIX + generatedPrefixCount;
         add(nextNsPrefix, ns);
         return nextNsPrefix;
       }
@@ -114,7 +151,8 @@ public class NsPrefixMap {
     }
   }
 
-  public void add(String prefix, String ns) throws NamespacePrefixConflictException {
+  public synchronized void add(String prefix, String ns) throws NamespacePrefixConflictException {
+    checkWritable();
     if (standardPrefixes.containsKey(prefix) && !standardPrefixes.get(prefix).equals(ns)) {
       throw new NamespacePrefixConflictException("Invalid prefix + namespace combination: "
           + prefix + " is a reserved namespace prefix for <" + standardPrefixes.get(prefix) + ">");
@@ -125,6 +163,9 @@ public class NsPrefixMap {
     } else if (!prefixToNs.containsKey(prefix) && !nsToPrefix.containsKey(ns)) {
       prefixToNs.put(prefix, ns);
       nsToPrefix.put(ns, prefix);
+      if (prefix.startsWith(GENERATED_PREFIX)) {
+        generatedPrefixCount++;
+      }
     } else if (prefixToNs.containsKey(prefix) && !prefixToNs.get(prefix).equals(ns)) {
       throw new NamespacePrefixConflictException(
           "prefix " + prefix + " is in use for namespace <" + prefixToNs.get(prefix) + ">");
@@ -134,41 +175,61 @@ public class NsPrefixMap {
     }
   }
 
-  public void removePrefix(String prefix) {
+  public synchronized void removePrefix(String prefix) {
+    checkWritable();
     if (prefixToNs.containsKey(prefix)) {
       nsToPrefix.remove(prefixToNs.get(prefix));
       prefixToNs.remove(prefix);
+      if (prefix.startsWith(GENERATED_PREFIX)) {
+        generatedPrefixCount--;
+      }
+      generation++;
     }
   }
 
-  public void removeNamespace(String ns) {
+  public synchronized void removeNamespace(String ns) {
+    checkWritable();
     if (nsToPrefix.containsKey(ns)) {
-      prefixToNs.remove(nsToPrefix.get(ns));
-      nsToPrefix.remove(ns);
+      removePrefix(nsToPrefix.get(ns));
     }
   }
 
+  private void checkWritable() {
+    if (readOnly) {
+      throw new UnsupportedOperationException("Shared namespace prefix definitions are read only");
+    }
+  }
+
+  /**
+   * Prefixes are only ever added during an import and an added prefix never changes the prefix of
+   * a namespace already in the map, so names shortened with this map stay valid until the
+   * generation changes.
+   */
+  public long getGeneration() {
+    return generation;
+  }
+
   public Set<String> getPrefixes() {
-    return prefixToNs.keySet();
+    return readOnly ? Collections.unmodifiableSet(prefixToNs.keySet()) : prefixToNs.keySet();
   }
 
   public Set<String> getNamespaces() {
-    return nsToPrefix.keySet();
+    return readOnly ? Collections.unmodifiableSet(nsToPrefix.keySet()) : nsToPrefix.keySet();
   }
 
   public Map<String, String> getPrefixToNs() {
-    return prefixToNs;
+    return readOnly ? Collections.unmodifiableMap(prefixToNs) : prefixToNs;
   }
 
   public Map<String, String> getNsToPrefix() {
-    return nsToPrefix;
+    return readOnly ? Collections.unmodifiableMap(nsToPrefix) : nsToPrefix;
   }
 
-  public void flushToDB(Transaction tx) {
+  public synchronized void flushToDB(Transaction tx) {
     Node nsPrefDefNode;
+    boolean changed = false;
 
-    ResourceIterator<Node> namespacePrefixDefinitionNodes = tx
-        .findNodes(Label.label("_NsPrefDef"));
+    ResourceIterator<Node> namespacePrefixDefinitionNodes = tx.findNodes(NS_PREF_DEF);
 
     if (namespacePrefixDefinitionNodes.hasNext()) {
       nsPrefDefNode = namespacePrefixDefinitionNodes.next();
@@ -180,6 +241,7 @@ public class NsPrefixMap {
             .equals(entry.getValue())) {
           //it's been removed or replaced, we remove it from the DB
           nsPrefDefNode.removeProperty(entry.getKey());
+          changed = true;
         } else {
           nsPrefDefInDB.put(entry.getKey(), (String) entry.getValue());
         }
@@ -190,6 +252,7 @@ public class NsPrefixMap {
         //if  it's not in the latest from the DB then we add it.
         if (!nsPrefDefInDB.containsKey(entry.getKey())) {
           nsPrefDefNode.setProperty(entry.getKey(), entry.getValue());
+          changed = true;
         }
       }
 
@@ -199,13 +262,17 @@ public class NsPrefixMap {
       for (Entry<String, String> entry : prefixToNs.entrySet()) {
         nsPrefDefNode.setProperty(entry.getKey(), entry.getValue());
       }
+      changed = true;
 
     }
 
+    if (changed) {
+      NsPrefixRegistry.prefixesChangedBy(tx);
+    }
 
   }
 
-  public String toString() {
+  public synchronized String toString() {
     StringBuilder sb = new StringBuilder();
     for (Entry<String, String> pair : prefixToNs.entrySet()) {
       sb.append(pair.getKey() + ": <" + pair.getValue() + ">");
@@ -216,8 +283,7 @@ public class NsPrefixMap {
   private boolean reloadFromDB(Transaction tx) throws DynamicNamespacePrefixConflict {
     Node nsPrefDefNode;
 
-    ResourceIterator<Node> namespacePrefixDefinitionNodes = tx
-        .findNodes(Label.label("_NsPrefDef"));
+    ResourceIterator<Node> namespacePrefixDefinitionNodes = tx.findNodes(NS_PREF_DEF);
 
     if (namespacePrefixDefinitionNodes.hasNext()) {
       nsPrefDefNode = namespacePrefixDefinitionNodes.next();
@@ -248,7 +314,7 @@ public class NsPrefixMap {
   }
 
 
-  public Integer partialRefresh(Transaction tx) throws DynamicNamespacePrefixConflict {
+  public synchronized Integer partialRefresh(Transaction tx) throws DynamicNamespacePrefixConflict {
 
     if (reloadFromDB(tx)) {
       flushToDB(tx);
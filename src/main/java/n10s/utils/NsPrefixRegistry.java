@@ -0,0 +1,216 @@
+package n10s.utils;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.neo4j.dbms.api.DatabaseManagementService;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.ResourceIterator;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.event.DatabaseEventContext;
+import org.neo4j.graphdb.event.DatabaseEventListenerAdapter;
+import org.neo4j.graphdb.event.LabelEntry;
+import org.neo4j.graphdb.event.PropertyEntry;
+import org.neo4j.graphdb.event.TransactionData;
+import org.neo4j.graphdb.event.TransactionEventListenerAdapter;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+
+/**
+ * The namespace prefix definitions of a database, loaded once and kept in memory until a
+ * transaction changing the _NsPrefDef node commits. Meant for the paths that only read the
+ * prefixes (shortening and expanding uris, exporting) and run far more often than the prefixes
+ * change.
+ * <p>
+ * The cached map is immutable, so lookups on it need no locking. Each committed change to the
+ * prefixes bumps the version of the registry, and a map loaded under an older version is never
+ * served.
+ * <p>
+ * A transaction that changed the prefixes through n10s is not served the cached map until it
+ * commits. Changes made with plain Cypher are only seen once committed.
+ */
+public class NsPrefixRegistry {
+
+  private static final ConcurrentMap<String, NsPrefixRegistry> REGISTRIES =
+      new ConcurrentHashMap<>();
+  private static final long NO_NODE = -1;
+  // the open transactions that changed the prefixes, gone with them
+  private static final Set<Transaction> CHANGING_PREFIXES =
+      Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+
+  private final String databaseName;
+  private final DatabaseManagementService dbms;
+  private final AtomicLong version = new AtomicLong();
+  private volatile Snapshot snapshot;
+  // id of the _NsPrefDef node when last loaded, to spot changes to it cheaply
+  private volatile long nsPrefDefNodeId = NO_NODE;
+
+  private NsPrefixRegistry(String databaseName, DatabaseManagementService dbms) {
+    this.databaseName = databaseName;
+    this.dbms = dbms;
+  }
+
+  /**
+   * @return the registry of the database, registering the listeners that keep it up to date the
+   * first time
+   */
+  public static NsPrefixRegistry forDatabase(GraphDatabaseService db) {
+    DatabaseManagementService dbms = managementService(db);
+    // a registry left by a previous instance of the DBMS (tests) is replaced
+    return REGISTRIES.compute(db.databaseName(), (name, registry) ->
+        registry != null && registry.dbms == dbms ? registry : newRegistry(name, dbms));
+  }
+
+  private static NsPrefixRegistry newRegistry(String databaseName,
+      DatabaseManagementService dbms) {
+    NsPrefixRegistry registry = new NsPrefixRegistry(databaseName, dbms);
+    if (dbms != null) {
+      dbms.registerTransactionEventListener(databaseName, registry.new PrefixChangeListener());
+      dbms.registerDatabaseEventListener(registry.new DatabaseLifecycleListener());
+    }
+    return registry;
+  }
+
+  private static DatabaseManagementService managementService(GraphDatabaseService db) {
+    if (db instanceof GraphDatabaseAPI) {
+      try {
+        return ((GraphDatabaseAPI) db).getDependencyResolver()
+            .resolveDependency(DatabaseManagementService.class);
+      } catch (RuntimeException e) {
+        // no way to hear about changes, the registry won't cache
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @return the prefix definitions as seen by the transaction. Read only.
+   */
+  public NsPrefixMap getPrefixes(Transaction tx) throws InvalidNamespacePrefixDefinitionInDB {
+    Snapshot current = snapshot;
+    long currentVersion = version.get();
+    if (current != null && current.version == currentVersion && !hasChanges(tx)) {
+      return current.prefixes;
+    }
+    NsPrefixMap loaded = load(tx);
+    if (dbms != null && !hasChanges(tx)) {
+      snapshot = new Snapshot(currentVersion, loaded);
+    }
+    return loaded;
+  }
+
+  public long getVersion() {
+    return version.get();
+  }
+
+  private NsPrefixMap load(Transaction tx) throws InvalidNamespacePrefixDefinitionInDB {
+    try (ResourceIterator<Node> nodes = tx.findNodes(NsPrefixMap.NS_PREF_DEF)) {
+      Node nsPrefDef = nodes.hasNext() ? nodes.next() : null;
+      // before reading it, so that a change committed meanwhile bumps the version
+      nsPrefDefNodeId = nsPrefDef != null ? nsPrefDef.getId() : NO_NODE;
+      return new NsPrefixMap(nsPrefDef).readOnly();
+    }
+  }
+
+  private void invalidate() {
+    version.incrementAndGet();
+    snapshot = null;
+  }
+
+  /**
+   * To be called by whatever writes the prefix definitions: until the transaction commits, the
+   * cached prefixes are not valid for it.
+   */
+  public static void prefixesChangedBy(Transaction tx) {
+    CHANGING_PREFIXES.add(tx);
+  }
+
+  private static boolean hasChanges(Transaction tx) {
+    return CHANGING_PREFIXES.contains(tx);
+  }
+
+  private boolean changesPrefixes(TransactionData data) {
+    for (LabelEntry entry : data.assignedLabels()) {
+      if (entry.label().name().equals(NsPrefixMap.NS_PREF_DEF.name())) {
+        return true;
+      }
+    }
+    for (LabelEntry entry : data.removedLabels()) {
+      if (entry.label().name().equals(NsPrefixMap.NS_PREF_DEF.name())) {
+        return true;
+      }
+    }
+    long nodeId = nsPrefDefNodeId;
+    for (PropertyEntry<Node> entry : data.assignedNodeProperties()) {
+      if (isNsPrefDef(entry.entity(), nodeId, data)) {
+        return true;
+      }
+    }
+    for (PropertyEntry<Node> entry : data.removedNodeProperties()) {
+      if (isNsPrefDef(entry.entity(), nodeId, data)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean isNsPrefDef(Node node, long nsPrefDefNodeId, TransactionData data) {
+    if (nsPrefDefNodeId != NO_NODE) {
+      return node.getId() == nsPrefDefNodeId;
+    }
+    // not loaded yet, or there was no definition node when it was
+    return !data.isDeleted(node) && node.hasLabel(NsPrefixMap.NS_PREF_DEF);
+  }
+
+  private static class Snapshot {
+
+    private final long version;
+    private final NsPrefixMap prefixes;
+
+    Snapshot(long version, NsPrefixMap prefixes) {
+      this.version = version;
+      this.prefixes = prefixes;
+    }
+  }
+
+  private class PrefixChangeListener extends TransactionEventListenerAdapter<Boolean> {
+
+    @Override
+    public Boolean beforeCommit(TransactionData data, Transaction transaction,
+        GraphDatabaseService databaseService) {
+      CHANGING_PREFIXES.remove(transaction);
+      return changesPrefixes(data);
+    }
+
+    @Override
+    public void afterCommit(TransactionData data, Boolean changed,
+        GraphDatabaseService databaseService) {
+      if (Boolean.TRUE.equals(changed)) {
+        invalidate();
+      }
+    }
+  }
+
+  private class DatabaseLifecycleListener extends DatabaseEventListenerAdapter {
+
+    @Override
+    public void databaseStart(DatabaseEventContext eventContext) {
+      invalidateIfThisDatabase(eventContext);
+    }
+
+    // also when it's dropped, which shuts it down first
+    @Override
+    public void databaseShutdown(DatabaseEventContext eventContext) {
+      invalidateIfThisDatabase(eventContext);
+    }
+
+    private void invalidateIfThisDatabase(DatabaseEventContext eventContext) {
+      if (databaseName.equals(eventContext.getDatabaseName())) {
+        invalidate();
+      }
+    }
+  }
+}
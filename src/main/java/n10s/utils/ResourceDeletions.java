@@ -0,0 +1,102 @@
+package n10s.utils;
+
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.neo4j.dbms.api.DatabaseManagementService;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.event.LabelEntry;
+import org.neo4j.graphdb.event.TransactionData;
+import org.neo4j.graphdb.event.TransactionEventListenerAdapter;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+
+/**
+ * Counts the committed transactions that deleted Resource nodes in a database, so that an import
+ * can tell whether anything was deleted since it ran without looking for what it loaded. Only the
+ * deletions since the tracker was first used in the running DBMS are counted: a stamp from before
+ * (or from another DBMS instance) never matches.
+ */
+public class ResourceDeletions {
+
+  private static final ConcurrentMap<String, ResourceDeletions> TRACKERS =
+      new ConcurrentHashMap<>();
+  private static final Label RESOURCE = Label.label("Resource");
+
+  private final DatabaseManagementService dbms;
+  private final String instance = UUID.randomUUID().toString();
+  private final AtomicLong deletions = new AtomicLong();
+
+  private ResourceDeletions(DatabaseManagementService dbms) {
+    this.dbms = dbms;
+  }
+
+  /**
+   * @return the tracker of the database, registering the listener that keeps it up to date the
+   * first time
+   */
+  public static ResourceDeletions forDatabase(GraphDatabaseService db) {
+    DatabaseManagementService dbms = managementService(db);
+    // a tracker left by a previous instance of the DBMS (tests) is replaced
+    return TRACKERS.compute(db.databaseName(), (name, tracker) ->
+        tracker != null && tracker.dbms == dbms ? tracker : newTracker(name, dbms));
+  }
+
+  private static ResourceDeletions newTracker(String databaseName,
+      DatabaseManagementService dbms) {
+    ResourceDeletions tracker = new ResourceDeletions(dbms);
+    if (dbms != null) {
+      dbms.registerTransactionEventListener(databaseName, tracker.new DeletionListener());
+    }
+    return tracker;
+  }
+
+  private static DatabaseManagementService managementService(GraphDatabaseService db) {
+    if (db instanceof GraphDatabaseAPI) {
+      try {
+        return ((GraphDatabaseAPI) db).getDependencyResolver()
+            .resolveDependency(DatabaseManagementService.class);
+      } catch (RuntimeException e) {
+        // no way to hear about deletions, stamps won't match
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @return a stamp that changes whenever Resource nodes are deleted, null if deletions can't be
+   * tracked
+   */
+  public String getStamp() {
+    return dbms != null ? instance + ":" + deletions.get() : null;
+  }
+
+  private static boolean deletesResources(TransactionData data) {
+    // the labels of the nodes deleted are among the ones removed
+    for (LabelEntry entry : data.removedLabels()) {
+      if (entry.label().name().equals(RESOURCE.name()) && data.isDeleted(entry.node())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private class DeletionListener extends TransactionEventListenerAdapter<Boolean> {
+
+    @Override
+    public Boolean beforeCommit(TransactionData data, Transaction transaction,
+        GraphDatabaseService databaseService) {
+      return deletesResources(data);
+    }
+
+    @Override
+    public void afterCommit(TransactionData data, Boolean deleted,
+        GraphDatabaseService databaseService) {
+      if (Boolean.TRUE.equals(deleted)) {
+        deletions.incrementAndGet();
+      }
+    }
+  }
+}
@@ -11,6 +11,7 @@ import n10s.graphconfig.GraphConfig;
 import org.eclipse.rdf4j.model.IRI;
 import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
 import org.eclipse.rdf4j.model.util.URIUtil;
+import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Transaction;
 
 public class UriUtils {
@@ -28,10 +29,38 @@ public class UriUtils {
       return uri;
     }
   }
+
+  /**
+   * Same as {@link #translateUri(String, Transaction, GraphConfig)} with the prefix definitions
+   * already at hand.
+   */
+  public static String translateUri(String uri, NsPrefixMap prefixDefs, GraphConfig gc)
+      throws UriNamespaceHasNoAssociatedPrefix {
+    if (gc == null || gc.getGraphMode() == GRAPHCONF_MODE_LPG) {
+      return uri.substring(URIUtil.getLocalNameIndex(uri));
+    } else if (gc.getHandleVocabUris() == GRAPHCONF_VOC_URI_SHORTEN ||
+        gc.getHandleVocabUris() == GRAPHCONF_VOC_URI_SHORTEN_STRICT ||
+        gc.getHandleVocabUris() == GRAPHCONF_VOC_URI_MAP) {
+      return getShortForm(uri, prefixDefs);
+    } else {
+      //it's GRAPHCONF_VOC_URI_KEEP
+      return uri;
+    }
+  }
+
   public static String getShortForm(String str, Transaction tx)
       throws UriNamespaceHasNoAssociatedPrefix, InvalidNamespacePrefixDefinitionInDB {
+    return getShortForm(str, new NsPrefixMap(tx, false));
+  }
+
+  public static String getShortForm(String str, GraphDatabaseService db, Transaction tx)
+      throws UriNamespaceHasNoAssociatedPrefix, InvalidNamespacePrefixDefinitionInDB {
+    return getShortForm(str, NsPrefixRegistry.forDatabase(db).getPrefixes(tx));
+  }
+
+  public static String getShortForm(String str, NsPrefixMap prefixDefs)
+      throws UriNamespaceHasNoAssociatedPrefix {
     IRI iri = SimpleValueFactory.getInstance().createIRI(str);
-    NsPrefixMap prefixDefs = new NsPrefixMap(tx, false);
     if (!prefixDefs.hasNs(iri.getNamespace())) {
       throw new UriNamespaceHasNoAssociatedPrefix(
           "Prefix Undefined: No prefix defined for namespace <" + str
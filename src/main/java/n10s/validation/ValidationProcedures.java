@@ -9,8 +9,10 @@ import java.util.List;
 import java.util.Map;
 import java.util.stream.Stream;
 import n10s.CommonProcedures;
+import n10s.FetchCache;
 import n10s.utils.InvalidNamespacePrefixDefinitionInDB;
 import n10s.utils.UriUtils.UriNamespaceHasNoAssociatedPrefix;
+import org.neo4j.graphdb.Label;
 import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.Result;
 import org.neo4j.procedure.Description;
@@ -71,6 +73,11 @@ public class ValidationProcedures extends CommonProcedures {
 
   }
 
+  @Override
+  protected boolean isImportedContentInDB(String importStamp) {
+    return tx.findNodes(Label.label("_n10sValidatorConfig")).hasNext();
+  }
+
   private List<ConstraintComponent> doLoad(String format, String url, String rdfFragment,
       Map<String, Object> props)
       throws IOException, RDFImportBadParams, InvalidNamespacePrefixDefinitionInDB, UriNamespaceHasNoAssociatedPrefix {
@@ -79,7 +86,17 @@ public class ValidationProcedures extends CommonProcedures {
     if (rdfFragment != null) {
       is = new ByteArrayInputStream(rdfFragment.getBytes(Charset.defaultCharset()));
     } else {
-      is = getInputStream(url, props);
+      try {
+        is = getInputStream(url, props);
+      } catch (FetchCache.SourceNotModified e) {
+        // the shapes compiled from it are still there
+        log.debug(e.getMessage());
+        try {
+          return new ValidatorConfig(tx).getConstraintList();
+        } catch (ClassNotFoundException cnfe) {
+          throw new IOException(cnfe);
+        }
+      }
     }
 
     SHACLValidator validator = new SHACLValidator(tx, log);
@@ -87,6 +104,7 @@ public class ValidationProcedures extends CommonProcedures {
         .compileValidations(validator.parseConstraints(is, getFormat(format)));
 
     validatorConfig.writeToDB(tx);
+    fetchCompleted();
 
     return validatorConfig.getConstraintList();
   }
@@ -0,0 +1,93 @@
+package n10s;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.eclipse.rdf4j.model.BNode;
+import org.eclipse.rdf4j.model.Statement;
+import org.eclipse.rdf4j.model.ValueFactory;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
+import org.eclipse.rdf4j.rio.RDFFormat;
+import org.eclipse.rdf4j.rio.RDFParseException;
+import org.eclipse.rdf4j.rio.RDFParser;
+import org.eclipse.rdf4j.rio.Rio;
+import org.eclipse.rdf4j.rio.helpers.BasicParserSettings;
+import org.eclipse.rdf4j.rio.helpers.StatementCollector;
+import org.junit.Test;
+
+public class ChunkedLineParserTest {
+
+  private final ValueFactory vf = SimpleValueFactory.getInstance();
+
+  @Test
+  public void testSameStatementsInSameOrderAcrossChunks() throws Exception {
+    // several MB, so that it is split in several chunks
+    StringBuilder nt = new StringBuilder();
+    for (int i = 0; i < 60000; i++) {
+      nt.append("<http://ex.org/s").append(i).append("> <http://ex.org/p> \"value ")
+          .append(i).append("\" .\n");
+      nt.append("<http://ex.org/s").append(i).append("> <http://ex.org/q> _:b")
+          .append(i % 100).append(" .\n");
+    }
+    byte[] bytes = nt.toString().getBytes(StandardCharsets.UTF_8);
+    assertTrue(bytes.length > 4 * (1 << 20));
+
+    List<Statement> expected = new ArrayList<>();
+    RDFParser rdfParser = Rio.createParser(RDFFormat.NTRIPLES);
+    rdfParser.set(BasicParserSettings.PRESERVE_BNODE_IDS, true);
+    rdfParser.setRDFHandler(new StatementCollector(expected));
+    rdfParser.parse(new ByteArrayInputStream(bytes), "http://ex.org/");
+
+    List<Statement> parsed = new ArrayList<>();
+    new ChunkedLineParser(RDFFormat.NTRIPLES, 4, true)
+        .parse(new ByteArrayInputStream(bytes), "http://ex.org/", new StatementCollector(parsed));
+
+    assertEquals(expected.size(), parsed.size());
+    // blank node ids get a prefix of their own for each parse
+    String scope = ((BNode) parsed.get(1).getObject()).getID().replaceFirst("b0$", "");
+    for (int i = 0; i < expected.size(); i++) {
+      Statement st = parsed.get(i);
+      if (st.getObject() instanceof BNode) {
+        st = vf.createStatement(st.getSubject(), st.getPredicate(),
+            vf.createBNode(((BNode) st.getObject()).getID().substring(scope.length())));
+      }
+      assertEquals(expected.get(i), st);
+    }
+    // the same label is the same blank node wherever it appears in the file
+    assertEquals(100, parsed.stream().filter(st -> st.getObject() instanceof BNode)
+        .map(Statement::getObject).distinct().count());
+  }
+
+  @Test
+  public void testBlankNodesAreScopedToTheParse() throws Exception {
+    byte[] nt = "<http://ex.org/s> <http://ex.org/p> _:b0 .\n".getBytes(StandardCharsets.UTF_8);
+    List<Statement> first = new ArrayList<>();
+    List<Statement> second = new ArrayList<>();
+    ChunkedLineParser parser = new ChunkedLineParser(RDFFormat.NTRIPLES, 4, true);
+    parser.parse(new ByteArrayInputStream(nt), "http://ex.org/", new StatementCollector(first));
+    parser.parse(new ByteArrayInputStream(nt), "http://ex.org/", new StatementCollector(second));
+    assertNotEquals(first.get(0).getObject(), second.get(0).getObject());
+  }
+
+  @Test
+  public void testErrorReportsLineInFile() throws Exception {
+    StringBuilder nt = new StringBuilder();
+    for (int i = 0; i < 50000; i++) {
+      nt.append("<http://ex.org/s").append(i).append("> <http://ex.org/p> \"value\" .\n");
+    }
+    nt.append("<http://ex.org/s> <http://ex.org/p> broken .\n");
+    try {
+      new ChunkedLineParser(RDFFormat.NTRIPLES, 4, true).parse(
+          new ByteArrayInputStream(nt.toString().getBytes(StandardCharsets.UTF_8)),
+          "http://ex.org/", new StatementCollector(new ArrayList<>()));
+      assertTrue(false);
+    } catch (RDFParseException e) {
+      assertEquals(50001, e.getLineNumber());
+    }
+  }
+}
@@ -9,17 +9,26 @@ import static org.junit.Assert.assertTrue;
 import static org.neo4j.driver.Values.NULL;
 import static org.neo4j.driver.Values.ofNode;
 
+import com.sun.net.httpserver.HttpServer;
+import java.net.InetSocketAddress;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
 import n10s.experimental.ExperimentalImports;
 import n10s.graphconfig.GraphConfigProcedures;
 import n10s.mapping.MappingUtils;
@@ -27,6 +36,7 @@ import n10s.nsprefixes.NsPrefixDefProcedures;
 import n10s.onto.load.OntoLoadProcedures;
 import n10s.onto.preview.OntoPreviewProcedures;
 import n10s.quadrdf.delete.QuadRDFDeleteProcedures;
+import n10s.quadrdf.graph.QuadRDFGraphProcedures;
 import n10s.quadrdf.load.QuadRDFLoadProcedures;
 import n10s.rdf.RDFProcedures;
 import n10s.rdf.delete.RDFDeleteProcedures;
@@ -34,7 +44,12 @@ import n10s.rdf.load.RDFLoadProcedures;
 import n10s.rdf.preview.RDFPreviewProcedures;
 import n10s.rdf.stream.RDFStreamProcedures;
 import n10s.skos.load.SKOSLoadProcedures;
+import n10s.stats.StatsProcedures;
+import org.eclipse.rdf4j.model.Model;
+import org.eclipse.rdf4j.model.impl.SimpleValueFactory;
 import org.eclipse.rdf4j.model.vocabulary.XMLSchema;
+import org.eclipse.rdf4j.rio.RDFFormat;
+import org.eclipse.rdf4j.rio.Rio;
 import org.junit.Rule;
 import org.junit.Test;
 import org.neo4j.driver.Config;
@@ -43,9 +58,11 @@ import org.neo4j.driver.GraphDatabase;
 import org.neo4j.driver.Record;
 import org.neo4j.driver.Result;
 import org.neo4j.driver.Session;
+import org.neo4j.driver.Values;
 import org.neo4j.driver.internal.InternalRelationship;
 import org.neo4j.driver.internal.value.IntegerValue;
 import org.neo4j.driver.internal.value.ListValue;
+import org.neo4j.configuration.GraphDatabaseSettings;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.Relationship;
@@ -68,10 +85,14 @@ public class RDFProceduresTest {
       .withProcedure(OntoPreviewProcedures.class)
       .withProcedure(QuadRDFLoadProcedures.class)
       .withProcedure(QuadRDFDeleteProcedures.class)
+      .withProcedure(QuadRDFGraphProcedures.class)
       .withProcedure(MappingUtils.class)
       .withProcedure(GraphConfigProcedures.class).withProcedure(NsPrefixDefProcedures.class)
       .withProcedure(ExperimentalImports.class)
-      .withProcedure(SKOSLoadProcedures.class);
+      .withProcedure(SKOSLoadProcedures.class)
+      .withProcedure(StatsProcedures.class)
+      // in the home directory of the test DBMS
+      .withConfig(GraphDatabaseSettings.load_csv_file_url_root, Paths.get("import"));
 
   private String jsonLdFragment = "{\n" +
       "  \"@context\": {\n" +
@@ -703,6 +724,195 @@ public class RDFProceduresTest {
   }
 
 
+  @Test
+  public void testImportArchiveEntriesMatchingPattern() throws Exception {
+    try (Driver driver = GraphDatabase.driver(neo4j.boltURI(),
+        Config.builder().withoutEncryption().build()); Session session = driver.session()) {
+
+      initialiseGraphDB(neo4j.defaultDatabaseService(),
+          "{ handleVocabUris: 'KEEP', handleRDFTypes: 'LABELS' }");
+
+      for (String archive : Arrays.asList("rdf.zip", "rdf.tar.gz")) {
+        String archiveUri = RDFProceduresTest.class.getClassLoader().getResource(archive).toURI()
+            .toString();
+        long allOwl = session.run("CALL n10s.rdf.import.fetch('" + archiveUri + "!rdf/*.owl',"
+            + "'RDF/XML', { commitSize: 50 })").single().get("triplesLoaded").asLong();
+        long ontology = session.run("CALL n10s.rdf.import.fetch('" + archiveUri
+            + "!rdf/moviesontology.owl','RDF/XML')").single().get("triplesLoaded").asLong();
+        long multilabel = session.run("CALL n10s.rdf.import.fetch('" + archiveUri
+            + "!rdf/moviesontologyMultilabel.owl','RDF/XML')").single().get("triplesLoaded")
+            .asLong();
+        assertEquals(60L, ontology);
+        assertEquals(ontology + multilabel, allOwl);
+
+        Record noMatch = session.run("CALL n10s.rdf.import.fetch('" + archiveUri + "!*.nt',"
+            + "'N-Triples')").single();
+        assertEquals("KO", noMatch.get("terminationStatus").asString());
+        assertEquals("No entry of the archive matches '*.nt'",
+            noMatch.get("extraInfo").asString());
+      }
+    }
+  }
+
+  @Test
+  public void testImportFetchCacheSkipsUnchangedContent() throws Exception {
+    String[] content = {"<http://ex.org/a> <http://ex.org/p> <http://ex.org/b> .\n"
+        + "<http://ex.org/b> <http://ex.org/p> <http://ex.org/c> .\n"};
+    AtomicInteger fullResponses = new AtomicInteger();
+    HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/data.nt", exchange -> {
+      String etag = "\"" + Integer.toHexString(content[0].hashCode()) + "\"";
+      if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+        exchange.sendResponseHeaders(304, -1);
+      } else {
+        fullResponses.incrementAndGet();
+        byte[] body = content[0].getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("ETag", etag);
+        exchange.sendResponseHeaders(200, body.length);
+        exchange.getResponseBody().write(body);
+      }
+      exchange.close();
+    });
+    server.start();
+    try (Driver driver = GraphDatabase.driver(neo4j.boltURI(),
+        Config.builder().withoutEncryption().build()); Session session = driver.session()) {
+
+      initialiseGraphDB(neo4j.defaultDatabaseService(), "{ handleVocabUris: 'IGNORE' }");
+      String fetch = "CALL n10s.rdf.import.fetch('http://localhost:"
+          + server.getAddress().getPort() + "/data.nt','N-Triples', { fetchCache: true, "
+          + "fetchCacheDir: 'n10s-fetch-cache' })";
+
+      assertEquals(2L, session.run(fetch).single().get("triplesLoaded").asLong());
+
+      Record unchanged = session.run(fetch).single();
+      assertEquals("OK", unchanged.get("terminationStatus").asString());
+      assertEquals(0L, unchanged.get("triplesLoaded").asLong());
+      assertTrue(unchanged.get("extraInfo").asString().contains("not modified"));
+      assertEquals(1, fullResponses.get());
+
+      content[0] += "<http://ex.org/c> <http://ex.org/p> <http://ex.org/d> .\n";
+      assertEquals(3L, session.run(fetch).single().get("triplesLoaded").asLong());
+      assertEquals(2, fullResponses.get());
+      assertEquals(4L, session.run("MATCH (r:Resource) RETURN count(r) AS c").single()
+          .get("c").asLong());
+
+      // with other params it's another import
+      assertEquals(3L, session.run(fetch.replace("fetchCache: true,",
+          "fetchCache: true, commitSize: 1,")).single().get("triplesLoaded").asLong());
+
+      // unchanged, but no longer in the graph
+      session.run("MATCH (r:Resource) DETACH DELETE r");
+      assertEquals(3L, session.run(fetch).single().get("triplesLoaded").asLong());
+      assertEquals(0L, session.run(fetch).single().get("triplesLoaded").asLong());
+      assertEquals(2, fullResponses.get());
+
+      // other resources deleted, this source's may be among them
+      session.run("CREATE (:Resource { uri: 'http://ex.org/other' })");
+      assertEquals(0L, session.run(fetch).single().get("triplesLoaded").asLong());
+      session.run("MATCH (r:Resource { uri: 'http://ex.org/other' }) DELETE r");
+      assertEquals(3L, session.run(fetch).single().get("triplesLoaded").asLong());
+
+      // relative to dbms.directories.import
+      Record outOfImport = session.run(fetch.replace("'n10s-fetch-cache'", "'../n10s-fetch-cache'"))
+          .single();
+      assertEquals("KO", outOfImport.get("terminationStatus").asString());
+      assertTrue(outOfImport.get("extraInfo").asString().contains("dbms.directories.import"));
+    } finally {
+      server.stop(0);
+    }
+  }
+
+  @Test
+  public void testDeltaImport() throws Exception {
+    try (Driver driver = GraphDatabase.driver(neo4j.boltURI(),
+        Config.builder().withoutEncryption().build()); Session session = driver.session()) {
+
+      initialiseGraphDB(neo4j.defaultDatabaseService(), "{ handleVocabUris: 'IGNORE' }");
+      // relative to dbms.directories.import
+      String params = "{ delta: true, sourceId: 'people', deltaDir: 'n10s-delta' }";
+
+      Record first = session.run("CALL n10s.rdf.import.inline('"
+          + "<http://ex.org/a> <http://ex.org/name> \"A\" .\n"
+          + "<http://ex.org/a> <http://ex.org/knows> <http://ex.org/b> .\n"
+          + "<http://ex.org/b> <http://ex.org/name> \"B\" .\n"
+          + "','N-Triples', " + params + ")").single();
+      assertEquals(3L, first.get("triplesLoaded").asLong());
+
+      Record second = session.run("CALL n10s.rdf.import.inline('"
+          + "<http://ex.org/a> <http://ex.org/name> \"A2\" .\n"
+          + "<http://ex.org/a> <http://ex.org/knows> <http://ex.org/c> .\n"
+          + "<http://ex.org/b> <http://ex.org/name> \"B\" .\n"
+          + "','N-Triples', " + params + ")").single();
+      assertEquals("OK", second.get("terminationStatus").asString());
+      assertEquals(3L, second.get("triplesParsed").asLong());
+      assertEquals(2L, second.get("triplesLoaded").asLong());
+      assertTrue(second.get("extraInfo").asString()
+          .startsWith("Delta of people: 2 triples added, 2 removed, 1 unchanged."));
+
+      Record graph = session.run("MATCH (a:Resource { uri: 'http://ex.org/a' }) "
+          + "RETURN a.name AS name, [(a)-[:knows]->(x) | x.uri] AS knows").single();
+      assertEquals("A2", graph.get("name").asString());
+      assertEquals(Arrays.asList("http://ex.org/c"), graph.get("knows").asList());
+      assertEquals(1L, session.run("MATCH (b:Resource { uri: 'http://ex.org/b' }) "
+          + "RETURN count(b) AS c").single().get("c").asLong());
+
+      Record noSource = session.run("CALL n10s.rdf.import.inline('"
+          + "<http://ex.org/a> <http://ex.org/name> \"A\" .','N-Triples', { delta: true })")
+          .single();
+      assertEquals("KO", noSource.get("terminationStatus").asString());
+
+      for (String outside : new String[]{"../n10s-delta", "/tmp/n10s-delta"}) {
+        Record outOfImport = session.run("CALL n10s.rdf.import.inline('"
+            + "<http://ex.org/a> <http://ex.org/name> \"A\" .','N-Triples', "
+            + "{ delta: true, sourceId: 'people', deltaDir: '" + outside + "' })").single();
+        assertEquals("KO", outOfImport.get("terminationStatus").asString());
+        assertTrue(outOfImport.get("extraInfo").asString().contains("dbms.directories.import"));
+      }
+
+      Record withBNodes = session.run("CALL n10s.rdf.import.inline('"
+          + "<http://ex.org/a> <http://ex.org/address> _:addr .\n"
+          + "_:addr <http://ex.org/city> \"London\" .\n"
+          + "','N-Triples', " + params + ")").single();
+      assertEquals("KO", withBNodes.get("terminationStatus").asString());
+      assertEquals(0L, session.run("MATCH (r:Resource) WHERE r.uri STARTS WITH 'bnode://' "
+          + "RETURN count(r) AS c").single().get("c").asLong());
+      assertEquals("A2", session.run("MATCH (a:Resource { uri: 'http://ex.org/a' }) "
+          + "RETURN a.name AS name").single().get("name").asString());
+    }
+  }
+
+  @Test
+  public void testImportStats() throws Exception {
+    try (Driver driver = GraphDatabase.driver(neo4j.boltURI(),
+        Config.builder().withoutEncryption().build()); Session session = driver.session()) {
+
+      initialiseGraphDB(neo4j.defaultDatabaseService(), "{ handleVocabUris: 'IGNORE' }");
+      String fetch = "CALL n10s.rdf.import.fetch('"
+          + RDFProceduresTest.class.getClassLoader().getResource("nsmntx.ttl").toURI()
+          + "','Turtle', { commitSize: 5 })";
+      Record result = session.run(fetch).single();
+      Map<String, Object> stats = result.get("stats").asMap();
+      assertEquals(result.get("triplesParsed").asLong(), stats.get("triplesParsed"));
+      assertEquals(result.get("triplesLoaded").asLong(), stats.get("triplesLoaded"));
+      assertTrue((Long) stats.get("batches") > 1);
+      assertTrue((Long) stats.get("maxBatchSize") >= 5);
+      assertTrue((Long) stats.get("nodeLookups") >= (Long) stats.get("nodesCreated"));
+      assertTrue((Long) stats.get("nodesCreated") > 0);
+      assertTrue((Long) stats.get("propertyWrites") > 0);
+
+      // the same nodes again, found in the node cache when they show up in another batch
+      Map<String, Object> again = session.run(fetch).single().get("stats").asMap();
+      assertEquals(0L, again.get("nodesCreated"));
+      assertTrue((Double) again.get("nodeCacheHitRate") > 0.0);
+
+      Record listed = session.run("CALL n10s.stats.imports() YIELD source, status, stats "
+          + "RETURN source, status, stats LIMIT 1").single();
+      assertTrue(listed.get("source").asString().endsWith("nsmntx.ttl"));
+      assertEquals("completed", listed.get("status").asString());
+      assertEquals(again.get("triplesLoaded"), listed.get("stats").asMap().get("triplesLoaded"));
+    }
+  }
+
   @Test
   public void testImportSKOSInline() throws Exception {
     try (Driver driver = GraphDatabase.driver(neo4j.boltURI(),
@@ -1017,6 +1227,214 @@ public class RDFProceduresTest {
     }
   }
 
+  @Test
+  public void testImportRDFXMLPipelined() throws Exception {
+    try (Driver driver = GraphDatabase.driver(neo4j.boltURI(),
+        Config.builder().withoutEncryption().build()); Session session = driver.session()) {
+
+      initialiseGraphDB(neo4j.defaultDatabaseService(), null);
+
+      Result importResults
+          = session.run("CALL n10s.rdf.import.fetch('" +
+          RDFProceduresTest.class.getClassLoader()
+              .getResource("jeu-de-donnees-des-jeux-de-donnees-open-data-paris.rdf")
+              .toURI()
+          + "','RDF/XML',{ commitSize: 5, pipelined: true })");
+      assertEquals(38L, importResults
+          .next().get("triplesLoaded").asLong());
+      assertEquals(7L,
+          session
+              .run("MATCH ()-[r]->(b) WHERE type(r) CONTAINS 'relation' RETURN count(b) as count")
+              .next().get("count").asLong());
+      assertEquals(
+          "http://opendata.paris.fr/opendata/jsp/site/Portal.jsp?document_id=109&portlet_id=106",
+          session.run(
+              "MATCH (x:Resource) WHERE x.rdfs" + PREFIX_SEPARATOR + "label = 'harvest_dataset_url'"
+                  + "\nRETURN x.rdf" + PREFIX_SEPARATOR + "value AS datasetUrl").next()
+              .get("datasetUrl").asString());
+    }
+  }
+
+  @Test
+  public void testImportRDFXMLInitialLoad() throws Exception {
+    try (Driver driver = GraphDatabase.driver(neo4j.boltURI(),
+        Config.builder().withoutEncryption().build()); Session session = driver.session()) {
+
+      initialiseGraphDB(neo4j.defaultDatabaseService(), null);
+
+      String importCall = "CALL n10s.rdf.import.fetch('" +
+          RDFProceduresTest.class.getClassLoader()
+              .getResource("jeu-de-donnees-des-jeux-de-donnees-open-data-paris.rdf")
+              .toURI()
+          + "','RDF/XML',{ commitSize: 5, initialLoad: true })";
+      Result importResults = session.run(importCall);
+      assertEquals(38L, importResults
+          .next().get("triplesLoaded").asLong());
+      assertEquals(7L,
+          session
+              .run("MATCH ()-[r]->(b) WHERE type(r) CONTAINS 'relation' RETURN count(b) as count")
+              .next().get("count").asLong());
+      assertEquals(0L,
+          session
+              .run("MATCH (a)-[r]->(b) WITH a, type(r) AS t, b, count(r) AS c WHERE c > 1 "
+                  + "RETURN count(*) AS count")
+              .next().get("count").asLong());
+
+      //not allowed on a non-empty graph
+      Record secondImport = session.run(importCall).next();
+      assertEquals("KO", secondImport.get("terminationStatus").asString());
+      assertEquals(0L, secondImport.get("triplesLoaded").asLong());
+    }
+  }
+
+  @Test
+  public void testBlankNodesOfParallelParsesAreScopedToTheImport() throws Exception {
+    try (Driver driver = GraphDatabase.driver(neo4j.boltURI(),
+        Config.builder().withoutEncryption().build()); Session session = driver.session()) {
+
+      initialiseGraphDB(neo4j.defaultDatabaseService(), null);
+
+      String nt = "<http://example.org/a> <http://example.org/knows> _:b0 .\n"
+          + "_:b0 <http://example.org/name> \"b0\" .\n";
+      for (int i = 0; i < 2; i++) {
+        assertEquals(2L, session.run("CALL n10s.rdf.import.inline($rdf, 'N-Triples', "
+            + "{ parserThreads: 4 })", Values.parameters("rdf", nt)).next()
+            .get("triplesLoaded").asLong());
+      }
+      assertEquals(2L, session.run("MATCH (n:Resource) WHERE n.uri STARTS WITH 'bnode://' "
+          + "RETURN count(n) AS count").next().get("count").asLong());
+    }
+  }
+
+  @Test
+  public void testInitialLoadFailureRemovesParallelRelationships() throws Exception {
+    try (Driver driver = GraphDatabase.driver(neo4j.boltURI(),
+        Config.builder().withoutEncryption().build()); Session session = driver.session()) {
+
+      initialiseGraphDB(neo4j.defaultDatabaseService(), "{ handleVocabUris: 'KEEP' }");
+
+      // the repeated triple is created again by the second partial commit, then parsing fails
+      String rdf = "@prefix ex: <http://example.org/> .\n"
+          + "ex:a ex:p ex:b .\n"
+          + "ex:c ex:q \"1\" .\n"
+          + "ex:d ex:q \"2\" .\n"
+          + "ex:a ex:p ex:b .\n"
+          + "ex:e ex:q \"3\" .\n"
+          + "ex:f ex:q .\n";
+      Record importResults = session.run("CALL n10s.rdf.import.inline($rdf, 'Turtle', "
+              + "{ commitSize: 2, initialLoad: true, expectedResources: 100 })",
+          Values.parameters("rdf", rdf)).next();
+      assertEquals("KO", importResults.get("terminationStatus").asString());
+      assertEquals(1L, session.run("MATCH (:Resource {uri: 'http://example.org/a'})"
+          + "-[r:`http://example.org/p`]->(:Resource {uri: 'http://example.org/b'}) "
+          + "RETURN count(r) AS count").next().get("count").asLong());
+    }
+  }
+
+  @Test
+  public void testInitialLoadMergesMultivaluedPropertiesOfParallelRelationships()
+      throws Exception {
+    try (Driver driver = GraphDatabase.driver(neo4j.boltURI(),
+        Config.builder().withoutEncryption().build()); Session session = driver.session()) {
+
+      initialiseGraphDB(neo4j.defaultDatabaseService(),
+          "{ handleVocabUris: 'KEEP', handleMultival: 'ARRAY' }");
+
+      // the second partial commit creates the relationship again, with the other role
+      String rdf = "@prefix ex: <http://example.org/> .\n"
+          + "ex:a ex:p ex:b .\n"
+          + "<<ex:a ex:p ex:b>> ex:role \"x\" .\n"
+          + "ex:c ex:q \"1\" .\n"
+          + "<<ex:a ex:p ex:b>> ex:role \"y\" .\n";
+      Record importResults = session.run("CALL n10s.rdf.import.inline($rdf, 'Turtle*', "
+              + "{ commitSize: 2, initialLoad: true, expectedResources: 100 })",
+          Values.parameters("rdf", rdf)).next();
+      assertEquals("OK", importResults.get("terminationStatus").asString());
+      Record rel = session.run("MATCH (:Resource {uri: 'http://example.org/a'})"
+          + "-[r:`http://example.org/p`]->(:Resource {uri: 'http://example.org/b'}) "
+          + "RETURN count(r) AS count, collect(r.`http://example.org/role`)[0] AS roles")
+          .next();
+      assertEquals(1L, rel.get("count").asLong());
+      assertEquals(new HashSet<>(Arrays.asList("x", "y")),
+          new HashSet<>(rel.get("roles").asList()));
+    }
+  }
+
+  @Test
+  public void testBlankNodesOfImportJobsAreScopedToTheJob() throws Exception {
+    try (Driver driver = GraphDatabase.driver(neo4j.boltURI(),
+        Config.builder().withoutEncryption().build()); Session session = driver.session()) {
+
+      initialiseGraphDB(neo4j.defaultDatabaseService(), null);
+
+      String ttl = "@prefix ex: <http://example.org/> .\n"
+          + "ex:a ex:knows _:b0 .\n"
+          + "_:b0 ex:name \"b0\" .\n";
+      for (String jobId : Arrays.asList("job1", "job2", "job1")) {
+        assertEquals(2L, session.run("CALL n10s.rdf.import.inline($rdf, 'Turtle', "
+            + "{ jobId: $jobId })", Values.parameters("rdf", ttl, "jobId", jobId)).next()
+            .get("triplesLoaded").asLong());
+      }
+      // the same in the two runs of job1
+      assertEquals(2L, session.run("MATCH (n:Resource) WHERE n.uri STARTS WITH 'bnode://' "
+          + "RETURN count(n) AS count").next().get("count").asLong());
+    }
+  }
+
+  @Test
+  public void testImportRDFXMLCheckpointAndResume() throws Exception {
+    try (Driver driver = GraphDatabase.driver(neo4j.boltURI(),
+        Config.builder().withoutEncryption().build()); Session session = driver.session()) {
+
+      initialiseGraphDB(neo4j.defaultDatabaseService(), null);
+
+      String importCall = "CALL n10s.rdf.import.fetch('" +
+          RDFProceduresTest.class.getClassLoader()
+              .getResource("jeu-de-donnees-des-jeux-de-donnees-open-data-paris.rdf")
+              .toURI()
+          + "','RDF/XML',{ commitSize: 5, jobId: 'paris', resume: $resume })";
+      Record importResults = session.run(importCall, Values.parameters("resume", false))
+          .next();
+      assertEquals(38L, importResults.get("triplesLoaded").asLong());
+      Record job = session.run("MATCH (j:_n10sImportJob { jobId: 'paris' }) RETURN j.status AS "
+          + "status, j.statementOffset AS offset, j.triplesLoaded AS loaded").next();
+      assertEquals("COMPLETED", job.get("status").asString());
+      assertEquals(importResults.get("triplesParsed").asLong(), job.get("offset").asLong());
+      assertEquals(38L, job.get("loaded").asLong());
+
+      // everything was committed, nothing left to map or write
+      long nodeCount = session.run("MATCH (n:Resource) RETURN count(n) AS count").next()
+          .get("count").asLong();
+      Record resumed = session.run(importCall, Values.parameters("resume", true)).next();
+      assertEquals("OK", resumed.get("terminationStatus").asString());
+      assertEquals(38L, resumed.get("triplesLoaded").asLong());
+      assertEquals(nodeCount, session.run("MATCH (n:Resource) RETURN count(n) AS count").next()
+          .get("count").asLong());
+
+      // resuming from a checkpoint in the middle writes the rest of the file
+      session.run("MATCH (n:Resource) DETACH DELETE n");
+      session.run("MATCH (j:_n10sImportJob { jobId: 'paris' }) "
+          + "SET j.statementOffset = 0, j.triplesLoaded = 0, j.status = 'FAILED'");
+      resumed = session.run(importCall, Values.parameters("resume", true)).next();
+      assertEquals(38L, resumed.get("triplesLoaded").asLong());
+      assertEquals(nodeCount, session.run("MATCH (n:Resource) RETURN count(n) AS count").next()
+          .get("count").asLong());
+
+      // same first MB, but not the statements committed before the checkpoint
+      session.run("MATCH (j:_n10sImportJob { jobId: 'paris' }) "
+          + "SET j.statementsHash = 'changed', j.status = 'FAILED'");
+      resumed = session.run(importCall, Values.parameters("resume", true)).next();
+      assertEquals("KO", resumed.get("terminationStatus").asString());
+      assertEquals(nodeCount, session.run("MATCH (n:Resource) RETURN count(n) AS count").next()
+          .get("count").asLong());
+
+      // different content under the same job
+      session.run("MATCH (j:_n10sImportJob { jobId: 'paris' }) SET j.fingerprint = 'changed'");
+      resumed = session.run(importCall, Values.parameters("resume", true)).next();
+      assertEquals("KO", resumed.get("terminationStatus").asString());
+    }
+  }
+
   @Test
   public void testImportRDFXMLShortening() throws Exception {
     try (Driver driver = GraphDatabase.driver(neo4j.boltURI(),
@@ -4447,6 +4865,243 @@ public class RDFProceduresTest {
     }
   }
 
+  @Test
+  public void testImportQuadRDFAcrossPartialCommits() throws Exception {
+    try (Driver driver = GraphDatabase.driver(neo4j.boltURI(),
+        Config.builder().withoutEncryption().build()); Session session = driver.session()) {
+
+      initialiseGraphDBForQuads(neo4j.defaultDatabaseService(), "{ handleVocabUris: 'KEEP' }");
+
+      String rdf = "@prefix ex: <http://example.org/> .\n"
+          + "ex:a ex:knows ex:b . ex:a ex:name \"A\" .\n"
+          + "ex:g1 { ex:a ex:knows ex:b . ex:a ex:name \"A1\" . ex:b ex:knows ex:c . }\n"
+          + "ex:g2 { ex:a ex:knows ex:b . ex:b ex:name \"B2\" . ex:a ex:knows ex:c . }";
+      // the resources of a graph are spread over several partial commits, and found again by
+      // the second import
+      for (int i = 0; i < 2; i++) {
+        Result importResults = session.run("CALL n10s.experimental.quadrdf.import.inline($rdf, "
+            + "'TriG', { commitSize: 2 })", Values.parameters("rdf", rdf));
+        assertEquals(8L, importResults.next().get("triplesLoaded").asLong());
+      }
+
+      assertEquals(8L, session.run("MATCH (n:Resource) RETURN count(n) AS count").next()
+          .get("count").asLong());
+      assertEquals(5L, session.run("MATCH ()-[r]->() RETURN count(r) AS count").next()
+          .get("count").asLong());
+      assertEquals(3L, session.run("MATCH (n:Resource {uri: 'http://example.org/a'}) "
+          + "RETURN count(n) AS count").next().get("count").asLong());
+      assertEquals("A1", session.run("MATCH (n:Resource {uri: 'http://example.org/a', "
+          + "graphUri: 'http://example.org/g1'}) RETURN n.`http://example.org/name` AS name")
+          .next().get("name").asString());
+      assertEquals("A", session.run("MATCH (n:Resource {uri: 'http://example.org/a'}) "
+          + "WHERE NOT EXISTS(n.graphUri) RETURN n.`http://example.org/name` AS name")
+          .next().get("name").asString());
+      assertEquals(1L, session.run("MATCH (:Resource {uri: 'http://example.org/a', "
+          + "graphUri: 'http://example.org/g2'})-[r]->(:Resource {uri: 'http://example.org/c', "
+          + "graphUri: 'http://example.org/g2'}) RETURN count(r) AS count").next()
+          .get("count").asLong());
+    }
+  }
+
+  @Test
+  public void testDropAndReplaceNamedGraph() throws Exception {
+    try (Driver driver = GraphDatabase.driver(neo4j.boltURI(),
+        Config.builder().withoutEncryption().build()); Session session = driver.session()) {
+
+      initialiseGraphDBForQuads(neo4j.defaultDatabaseService(), "{ handleVocabUris: 'KEEP' }");
+
+      String rdf = "@prefix ex: <http://example.org/> .\n"
+          + "ex:a ex:knows ex:b .\n"
+          + "ex:g1 { ex:a ex:knows ex:b . ex:a ex:name \"A1\" . ex:b ex:knows ex:c . }\n"
+          + "ex:g2 { ex:a ex:knows ex:b . ex:b ex:name \"B2\" . }";
+      session.run("CALL n10s.experimental.quadrdf.import.inline($rdf, 'TriG')",
+          Values.parameters("rdf", rdf));
+
+      Record dropResults = session.run("CALL n10s.experimental.quadrdf.graph.drop("
+          + "'http://example.org/g1', { batchSize: 1, parallelism: 2 })").next();
+      assertEquals("OK", dropResults.get("terminationStatus").asString());
+      assertEquals(3L, dropResults.get("nodesDeleted").asLong());
+      assertEquals(2L, dropResults.get("relationshipsDeleted").asLong());
+      assertTrue(dropResults.get("extraInfo").asString()
+          .contains("CREATE INDEX ON :Resource(graphUri)"));
+      assertEquals(4L, session.run("MATCH (n:Resource) RETURN count(n) AS count").next()
+          .get("count").asLong());
+      assertEquals(2L, session.run("MATCH ()-[r]->() RETURN count(r) AS count").next()
+          .get("count").asLong());
+
+      neo4j.defaultDatabaseService().executeTransactionally("CREATE INDEX ON :Resource(graphUri)");
+      neo4j.defaultDatabaseService().executeTransactionally("CALL db.awaitIndexes()");
+
+      // any graph in the payload ends up in the one replaced
+      Record replaceResults = session.run("CALL n10s.experimental.quadrdf.graph.replace.inline("
+          + "'http://example.org/g2', $rdf, 'TriG')", Values.parameters("rdf",
+          "@prefix ex: <http://example.org/> .\n"
+              + "ex:d ex:knows ex:e .\n ex:g3 { ex:d ex:name \"D\" . }")).next();
+      assertEquals("OK", replaceResults.get("terminationStatus").asString());
+      assertEquals(2L, replaceResults.get("triplesLoaded").asLong());
+      assertEquals(2L, replaceResults.get("nodesDeleted").asLong());
+      assertEquals(1L, replaceResults.get("relationshipsDeleted").asLong());
+      assertEquals("", replaceResults.get("extraInfo").asString());
+      assertEquals(2L, session.run("MATCH (n:Resource {graphUri: 'http://example.org/g2'}) "
+          + "RETURN count(n) AS count").next().get("count").asLong());
+      assertEquals("D", session.run("MATCH (n:Resource {uri: 'http://example.org/d', "
+          + "graphUri: 'http://example.org/g2'})-[:`http://example.org/knows`]->"
+          + "(:Resource {uri: 'http://example.org/e', graphUri: 'http://example.org/g2'}) "
+          + "RETURN n.`http://example.org/name` AS name").next().get("name").asString());
+      assertEquals(4L, session.run("MATCH (n:Resource) RETURN count(n) AS count").next()
+          .get("count").asLong());
+
+      // and without swapping, the graph is dropped before loading
+      replaceResults = session.run("CALL n10s.experimental.quadrdf.graph.replace.inline("
+          + "'http://example.org/g2', $rdf, 'Turtle', { swap: false })", Values.parameters("rdf",
+          "<http://example.org/f> <http://example.org/name> \"F\" .")).next();
+      assertEquals("OK", replaceResults.get("terminationStatus").asString());
+      assertEquals(2L, replaceResults.get("nodesDeleted").asLong());
+      assertEquals(1L, session.run("MATCH (n:Resource {graphUri: 'http://example.org/g2'}) "
+          + "RETURN count(n) AS count").next().get("count").asLong());
+    }
+  }
+
+  @Test
+  public void testReplaceNamedGraphWithFailingBatch() throws Exception {
+    try (Driver driver = GraphDatabase.driver(neo4j.boltURI(),
+        Config.builder().withoutEncryption().build()); Session session = driver.session()) {
+
+      initialiseGraphDBForQuads(neo4j.defaultDatabaseService(), "{ handleVocabUris: 'KEEP' }");
+      session.run("CALL n10s.experimental.quadrdf.import.inline($rdf, 'TriG')",
+          Values.parameters("rdf", "@prefix ex: <http://example.org/> .\n"
+              + "ex:g { ex:a ex:name \"A\" . }"));
+      // the second partial commit breaks it
+      neo4j.defaultDatabaseService().executeTransactionally("CREATE CONSTRAINT ON (r:Resource) "
+          + "ASSERT r.`http://example.org/id` IS UNIQUE");
+      String rdf = "<http://example.org/b> <http://example.org/id> \"1\" .\n"
+          + "<http://example.org/c> <http://example.org/id> \"1\" .";
+
+      for (String params : Arrays.asList("{ commitSize: 1, abortOnError: false }",
+          "{ commitSize: 1 }")) {
+        Record replaceResults = session.run("CALL n10s.experimental.quadrdf.graph.replace.inline("
+            + "'http://example.org/g', $rdf, 'Turtle', " + params + ")",
+            Values.parameters("rdf", rdf)).next();
+        assertEquals("KO", replaceResults.get("terminationStatus").asString());
+        assertEquals(0L, replaceResults.get("nodesDeleted").asLong());
+        assertEquals("A", session.run("MATCH (n:Resource {uri: 'http://example.org/a', "
+            + "graphUri: 'http://example.org/g'}) RETURN n.`http://example.org/name` AS name")
+            .next().get("name").asString());
+        assertEquals(1L, session.run("MATCH (n:Resource {graphUri: 'http://example.org/g'}) "
+            + "RETURN count(n) AS count").next().get("count").asLong());
+      }
+    }
+  }
+
+  @Test
+  public void testDeleteTriplePattern() throws Exception {
+    try (Driver driver = GraphDatabase.driver(neo4j.boltURI(),
+        Config.builder().withoutEncryption().build()); Session session = driver.session()) {
+
+      initialiseGraphDB(neo4j.defaultDatabaseService(),
+          "{ handleVocabUris: 'KEEP', handleRDFTypes: 'LABELS', handleMultival: 'ARRAY'}");
+
+      String rdf = "@prefix ex: <http://example.org/> .\n"
+          + "ex:a a ex:T ; ex:p ex:b ; ex:q \"x\", \"y\" .\n"
+          + "ex:b ex:q \"x\" .\n"
+          + "ex:c ex:p ex:b .\n";
+      assertEquals(6L, session.run("CALL n10s.rdf.import.inline($rdf, 'Turtle')",
+          Values.parameters("rdf", rdf)).next().get("triplesLoaded").asLong());
+
+      Record deleteResults = session.run("CALL n10s.rdf.delete.spo(null, "
+          + "'http://example.org/p', null, false, null, null, { batchSize: 1 })").next();
+      assertEquals("OK", deleteResults.get("terminationStatus").asString());
+      assertEquals(2L, deleteResults.get("triplesDeleted").asLong());
+      assertEquals("1 resources left with no triples were deleted",
+          deleteResults.get("extraInfo").asString());
+      assertEquals(2L, session.run("MATCH (n:Resource) RETURN count(n) AS count").next()
+          .get("count").asLong());
+
+      deleteResults = session.run("CALL n10s.rdf.delete.spo(null, "
+          + "'http://example.org/q', 'x', true)").next();
+      assertEquals(2L, deleteResults.get("triplesDeleted").asLong());
+      Record record = session.run("MATCH (n:Resource) RETURN collect(n.uri) AS uris, "
+          + "collect(n.`http://example.org/q`) AS q").next();
+      assertEquals(Collections.singletonList("http://example.org/a"),
+          record.get("uris").asList());
+      assertEquals(Collections.singletonList(Collections.singletonList("y")),
+          record.get("q").asList());
+
+      deleteResults = session.run("CALL n10s.rdf.delete.spo('http://example.org/a', "
+          + "'http://www.w3.org/1999/02/22-rdf-syntax-ns#type', null)").next();
+      assertEquals(1L, deleteResults.get("triplesDeleted").asLong());
+      assertEquals(0L, session.run("MATCH (n:`http://example.org/T`) RETURN count(n) AS count")
+          .next().get("count").asLong());
+
+      deleteResults = session.run("CALL n10s.rdf.delete.spo('http://example.org/a', null, null)")
+          .next();
+      assertEquals(1L, deleteResults.get("triplesDeleted").asLong());
+      assertEquals(0L, session.run("MATCH (n:Resource) RETURN count(n) AS count").next()
+          .get("count").asLong());
+    }
+  }
+
+  @Test
+  public void testExportNamedGraphsToFiles() throws Exception {
+    try (Driver driver = GraphDatabase.driver(neo4j.boltURI(),
+        Config.builder().withoutEncryption().build()); Session session = driver.session()) {
+
+      initialiseGraphDBForQuads(neo4j.defaultDatabaseService(), "{ handleVocabUris: 'KEEP' }");
+
+      String rdf = "@prefix ex: <http://example.org/> .\n"
+          + "ex:a ex:knows ex:b .\n"
+          + "ex:g1 { ex:a ex:knows ex:b . ex:a ex:name \"A1\" . ex:b ex:knows ex:c . }\n"
+          + "ex:g2 { ex:a ex:knows ex:b . ex:b ex:name \"B2\" . }";
+      session.run("CALL n10s.experimental.quadrdf.import.inline($rdf, 'TriG')",
+          Values.parameters("rdf", rdf));
+
+      // relative to dbms.directories.import
+      String directory = "graphs/export";
+      Map<String, Long> triplesExported = new HashMap<>();
+      Result results = session.run("CALL n10s.experimental.quadrdf.graph.export([], $dir, "
+          + "{ parallelism: 2 })", Values.parameters("dir", directory));
+      while (results.hasNext()) {
+        Record record = results.next();
+        assertEquals("OK", record.get("terminationStatus").asString());
+        assertTrue(Paths.get(record.get("file").asString()).getParent()
+            .endsWith(Paths.get("import", "graphs", "export")));
+        triplesExported.put(record.get("graphUri").asString(),
+            record.get("triplesExported").asLong());
+        Model graph = Rio.parse(Files.newInputStream(Paths.get(record.get("file").asString())),
+            "", RDFFormat.NQUADS);
+        assertEquals(record.get("triplesExported").asLong(), graph.size());
+        assertEquals(Collections.singleton(SimpleValueFactory.getInstance()
+            .createIRI(record.get("graphUri").asString())), graph.contexts());
+      }
+      assertEquals(2, triplesExported.size());
+      assertEquals(3L, triplesExported.get("http://example.org/g1").longValue());
+      assertEquals(2L, triplesExported.get("http://example.org/g2").longValue());
+
+      Record record = session.run("CALL n10s.experimental.quadrdf.graph.export("
+          + "['http://example.org/g2'], $dir, { format: 'TriG' })",
+          Values.parameters("dir", directory)).single();
+      assertTrue(record.get("file").asString().endsWith(".trig"));
+      assertEquals(2, Rio.parse(Files.newInputStream(Paths.get(record.get("file").asString())),
+          "", RDFFormat.TRIG).size());
+
+      assertEquals("KO", session.run("CALL n10s.experimental.quadrdf.graph.export([], $dir, "
+          + "{ format: 'Turtle' })", Values.parameters("dir", directory)).single()
+          .get("terminationStatus").asString());
+
+      // nowhere but under the import directory
+      Path outside = Files.createTempDirectory("n10s-graph-export");
+      for (String dir : Arrays.asList(outside.toString(), "../graphs", "graphs/../../graphs")) {
+        record = session.run("CALL n10s.experimental.quadrdf.graph.export([], $dir)",
+            Values.parameters("dir", dir)).single();
+        assertEquals("KO", record.get("terminationStatus").asString());
+        assertTrue(record.get("extraInfo").asString().contains("dbms.directories.import"));
+      }
+      try (Stream<Path> files = Files.list(outside)) {
+        assertEquals(0, files.count());
+      }
+    }
+  }
+
   @Test
   public void testDeleteQuadRDFTriG() throws Exception {
     try (Driver driver = GraphDatabase.driver(neo4j.boltURI(),
@@ -2189,6 +2189,51 @@ public class RDFEndpointTest {
 
   }
 
+  @Test
+  public void testNamedGraphExport() throws Exception {
+    final GraphDatabaseService graphDatabaseService = neo4j.defaultDatabaseService();
+    try (Transaction tx = graphDatabaseService.beginTx()) {
+      tx.execute("CREATE INDEX ON :Resource(uri)");
+      tx.execute("CREATE INDEX ON :Resource(graphUri)");
+      tx.commit();
+    }
+    try (Transaction tx = graphDatabaseService.beginTx()) {
+      tx.execute("CALL n10s.graphconfig.init( { handleVocabUris: 'KEEP', "
+          + " typesToLabels: true, commitSize: 500, keepCustomDataTypes: true, "
+          + " handleMultival: 'ARRAY'} )");
+      tx.execute("CALL n10s.experimental.quadrdf.import.fetch('" +
+          RDFEndpointTest.class.getClassLoader().getResource("RDFDatasets/RDFDataset.trig")
+              .toURI()
+          + "','TriG')");
+      tx.commit();
+    }
+
+    String g1 = "@prefix ex: <http://www.example.org/vocabulary#> .\n"
+        + "@prefix exDoc: <http://www.example.org/exampleDocument#> .\n"
+        + "exDoc:G1 {\n"
+        + "    exDoc:Monica ex:name \"Monica Murphy\" ;\n"
+        + "              ex:homepage <http://www.monicamurphy.org> ;\n"
+        + "              ex:email <mailto:monica@monicamurphy.org> ;\n"
+        + "              ex:hasSkill ex:Management, ex:Programming ;\n"
+        + "              ex:knows exDoc:John . }\n";
+    HTTP.Response response = HTTP.withHeaders("Accept", "application/n-quads").GET(
+        HTTP.GET(neo4j.httpURI().resolve("rdf").toString()).location() + "neo4j/graph?graphuri="
+            + URLEncoder.encode("http://www.example.org/exampleDocument#G1", "UTF-8"));
+    assertEquals(200, response.status());
+    assertTrue(ModelTestUtils
+        .compareModels(g1, RDFFormat.TRIG, response.rawContent(), RDFFormat.NQUADS));
+
+    // all the named graphs, and none of the default graph
+    String allGraphs = g1
+        + "exDoc:G2 { exDoc:Monica ex:city \"New York\" ; ex:country \"USA\" . }\n"
+        + "exDoc:G3 { exDoc:John a ex:Person . }";
+    response = HTTP.GET(HTTP.GET(neo4j.httpURI().resolve("rdf").toString()).location()
+        + "neo4j/graph?format=TriG");
+    assertEquals(200, response.status());
+    assertTrue(ModelTestUtils
+        .compareModels(allGraphs, RDFFormat.TRIG, response.rawContent(), RDFFormat.TRIG));
+  }
+
   @Test
   public void testNodeByUriOnQuadRDF() throws Exception {
     final GraphDatabaseService graphDatabaseService = neo4j.defaultDatabaseService();
@@ -9,6 +9,7 @@ import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 import n10s.graphconfig.GraphConfigProcedures;
+import n10s.rdf.RDFProcedures;
 import n10s.rdf.load.RDFLoadProcedures;
 import org.junit.Rule;
 import org.junit.Test;
@@ -28,7 +29,8 @@ public class NsPrefixDefProceduresTest {
 
   @Rule
   public Neo4jRule neo4j = new Neo4jRule().withProcedure(NsPrefixDefProcedures.class)
-      .withProcedure(RDFLoadProcedures.class).withProcedure(GraphConfigProcedures.class);
+      .withProcedure(RDFLoadProcedures.class).withProcedure(GraphConfigProcedures.class)
+      .withFunction(RDFProcedures.class);
 
 
   @Test
@@ -248,6 +250,31 @@ public class NsPrefixDefProceduresTest {
     }
   }
 
+  @Test
+  public void testShortFormFollowsPrefixChanges() throws Exception {
+    try (Driver driver = GraphDatabase.driver(neo4j.boltURI(),
+        Config.builder().withoutEncryption().build()); Session session = driver.session()) {
+
+      session.run("CALL n10s.nsprefixes.add('voc','http://myvoc#')");
+      assertEquals("voc__a", session.run("RETURN n10s.rdf.shortFormFromFullUri('http://myvoc#a') "
+          + "AS sf").next().get("sf").asString());
+      assertEquals("http://myvoc#a", session.run("RETURN n10s.rdf.fullUriFromShortForm('voc__a') "
+          + "AS uri").next().get("uri").asString());
+
+      // cached prefixes are dropped once the change is committed
+      session.run("CALL n10s.nsprefixes.remove('voc')");
+      session.run("CALL n10s.nsprefixes.add('voc2','http://myvoc#')");
+      assertEquals("voc2__a", session.run("RETURN n10s.rdf.shortFormFromFullUri('http://myvoc#a') "
+          + "AS sf").next().get("sf").asString());
+
+      // and not used by a transaction that changed them itself
+      assertEquals("other__a", session.run("CALL n10s.nsprefixes.add('other','http://other#') "
+          + "YIELD prefix WITH count(prefix) AS ct "
+          + "RETURN n10s.rdf.shortFormFromFullUri('http://other#a') AS sf").next().get("sf")
+          .asString());
+    }
+  }
+
   private void initialiseGraphDB(GraphDatabaseService db, String graphConfigParams) {
     db.executeTransactionally("CREATE CONSTRAINT n10s_unique_uri "
         + "ON (r:Resource) ASSERT r.uri IS UNIQUE");
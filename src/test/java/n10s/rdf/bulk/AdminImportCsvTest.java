@@ -0,0 +1,108 @@
+package n10s.rdf.bulk;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.eclipse.rdf4j.rio.RDFFormat;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.neo4j.logging.NullLog;
+
+public class AdminImportCsvTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testFragmentsMergedAcrossPartialCommits() throws Exception {
+    File rdf = folder.newFile("test.ttl");
+    Files.write(rdf.toPath(), ("@prefix ex: <http://ex.org/> .\n"
+        + "ex:a a ex:Person ; ex:name \"Ann\" .\n"
+        + "ex:a ex:knows ex:b .\n"
+        + "ex:a ex:name \"Anna\" .\n"
+        + "ex:a ex:knows ex:b .\n").getBytes(StandardCharsets.UTF_8));
+    File out = folder.newFolder("csv");
+
+    Map<String, Object> graphConfig = new HashMap<>();
+    graphConfig.put("handleMultival", "ARRAY");
+    Map<String, Object> params = new HashMap<>();
+    params.put("commitSize", 1L);
+
+    AdminImportCsvWriter writer = AdminImportCsv.export(rdf, RDFFormat.TURTLE, out, graphConfig,
+        params, NullLog.getInstance());
+    assertEquals(5L, writer.totalTriplesParsed);
+    assertEquals(5L, writer.totalTriplesMapped);
+
+    List<String> header = Files.readAllLines(new File(out, "nodes-header-0.csv").toPath());
+    assertEquals("uri:ID,:LABEL,ns0__name:string[]", header.get(0));
+    List<String> nodes = Files.readAllLines(new File(out, "nodes-0.csv").toPath());
+    assertEquals(2, nodes.size());
+    assertEquals("\"http://ex.org/a\",\"Resource\u001Fns0__Person\",\"Ann\u001FAnna\"",
+        nodes.get(0));
+    assertEquals("\"http://ex.org/b\",\"Resource\",", nodes.get(1));
+
+    List<String> rels = Files.readAllLines(new File(out, "relationships-0.csv").toPath());
+    assertEquals(1, rels.size());
+    assertEquals("\"http://ex.org/a\",\"ns0__knows\",\"http://ex.org/b\"", rels.get(0));
+
+    assertTrue(new File(out, "n10s-graphconfig-0.csv").exists());
+    assertEquals("\"_NsPrefDef\",\"_NsPrefDef\",\"http://ex.org/\"",
+        Files.readAllLines(new File(out, "n10s-nsprefdef-0.csv").toPath()).get(0));
+    String script = new String(Files.readAllBytes(new File(out, "import.sh").toPath()),
+        StandardCharsets.UTF_8);
+    assertTrue(script.contains("--nodes=\"$DIR/nodes-header-0.csv,$DIR/nodes-0.csv\""));
+    assertTrue(script.contains(
+        "--relationships=\"$DIR/relationships-header-0.csv,$DIR/relationships-0.csv\""));
+  }
+
+  @Test
+  public void testImportScriptPassesDatabaseNameOnce() throws Exception {
+    Assume.assumeTrue(new File("/bin/sh").canExecute());
+    File rdf = folder.newFile("test.nt");
+    Files.write(rdf.toPath(), "<http://ex.org/a> <http://ex.org/knows> <http://ex.org/b> .\n"
+        .getBytes(StandardCharsets.UTF_8));
+    File out = folder.newFolder("csv");
+    AdminImportCsv.export(rdf, RDFFormat.NTRIPLES, out, new HashMap<>(), new HashMap<>(),
+        NullLog.getInstance());
+
+    // neo4j-admin stub that writes its arguments one per line
+    File bin = folder.newFolder("bin");
+    File args = new File(folder.getRoot(), "args.txt");
+    File admin = new File(bin, "neo4j-admin");
+    Files.write(admin.toPath(), ("#!/bin/sh\nfor a in \"$@\"; do echo \"$a\"; done > \""
+        + args.getAbsolutePath() + "\"\n").getBytes(StandardCharsets.UTF_8));
+    assertTrue(admin.setExecutable(true));
+
+    assertEquals(Arrays.asList("import", "--database=mydb"),
+        runImportScript(out, bin, args, "mydb").subList(0, 2));
+    List<String> withOptions = runImportScript(out, bin, args, "mydb", "--high-io=true");
+    assertEquals("--database=mydb", withOptions.get(1));
+    assertEquals("--high-io=true", withOptions.get(withOptions.size() - 1));
+    assertEquals(1, withOptions.stream().filter(arg -> arg.contains("mydb")).count());
+    List<String> noArgs = runImportScript(out, bin, args);
+    assertEquals("--database=neo4j", noArgs.get(1));
+    assertTrue(noArgs.get(noArgs.size() - 1).startsWith("--relationships="));
+  }
+
+  private List<String> runImportScript(File dir, File bin, File args, String... scriptArgs)
+      throws Exception {
+    List<String> command = new ArrayList<>(Arrays.asList("/bin/sh",
+        new File(dir, "import.sh").getAbsolutePath()));
+    command.addAll(Arrays.asList(scriptArgs));
+    ProcessBuilder pb = new ProcessBuilder(command).inheritIO();
+    pb.environment().put("PATH", bin.getAbsolutePath() + File.pathSeparator
+        + pb.environment().get("PATH"));
+    assertEquals(0, pb.start().waitFor());
+    return Files.readAllLines(args.toPath());
+  }
+}
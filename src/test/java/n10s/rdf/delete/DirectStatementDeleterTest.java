@@ -0,0 +1,50 @@
+package n10s.rdf.delete;
+
+import static n10s.rdf.delete.DirectStatementDeleter.remainingValues;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import org.junit.Test;
+
+public class DirectStatementDeleterTest {
+
+  @Test
+  public void testRemainingValuesOfPrimitiveArrays() {
+    assertArrayEquals(new long[]{1L, 3L, 1L},
+        (long[]) remainingValues(new long[]{1L, 2L, 3L, 1L, 4L}, Arrays.asList(4L, 2L, 7L)));
+    // values of another type never match, as with List.contains on the boxed values
+    assertArrayEquals(new long[]{1L, 2L},
+        (long[]) remainingValues(new long[]{1L, 2L}, Arrays.asList(1.0d, "2")));
+    assertArrayEquals(new double[]{1.5d, -0.0d}, (double[]) remainingValues(
+        new double[]{1.5d, Double.NaN, 0.0d, -0.0d, 2.5d}, Arrays.asList(2.5d, 0.0d, Double.NaN)),
+        0.0d);
+    assertArrayEquals(new boolean[]{false, false},
+        (boolean[]) remainingValues(new boolean[]{true, false, true, false},
+            Arrays.asList(true)));
+    assertNull(remainingValues(new long[]{5L, 5L}, Arrays.asList(5L)));
+  }
+
+  @Test
+  public void testRemainingValuesOfObjectArrays() {
+    assertArrayEquals(new String[]{"a", "c"},
+        (String[]) remainingValues(new String[]{"a", "b", "c"}, Arrays.asList("b", "d")));
+    LocalDateTime now = LocalDateTime.of(2020, 11, 5, 10, 15);
+    assertArrayEquals(new LocalDateTime[]{now}, (LocalDateTime[]) remainingValues(
+        new LocalDateTime[]{now, now.plusDays(1)}, Arrays.asList(now.plusDays(1))));
+    assertNull(remainingValues(new LocalDate[]{LocalDate.of(2020, 11, 5)},
+        Arrays.asList(LocalDate.of(2020, 11, 5))));
+  }
+
+  @Test
+  public void testNothingToDeleteLeavesThePropertyAsItIs() {
+    long[] prop = {1L, 2L};
+    assertSame(prop, remainingValues(prop, Arrays.asList(3L)));
+    String single = "a";
+    assertSame(single, remainingValues(single, Arrays.asList("b")));
+    assertNull(remainingValues(single, Arrays.asList("a")));
+  }
+}
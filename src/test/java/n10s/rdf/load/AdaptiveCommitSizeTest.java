@@ -0,0 +1,37 @@
+package n10s.rdf.load;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class AdaptiveCommitSizeTest {
+
+  @Test
+  public void testGrowsWhenCommitsAreCheap() {
+    AdaptiveCommitSize adaptive = new AdaptiveCommitSize(1000, 100_000_000);
+    // 10k triples in 100ms and 1MB: could take 100k, grows at most 2x per batch
+    assertEquals(20_000, adaptive.next(10_000, 10_000, 1_000_000, 100));
+    // could take 20k, moves half way
+    assertEquals(15_000, adaptive.next(10_000, 10_000, 1_000_000, 500));
+  }
+
+  @Test
+  public void testShrinksWhenSlowOrLarge() {
+    AdaptiveCommitSize adaptive = new AdaptiveCommitSize(1000, 100_000_000);
+    // twice the target time
+    assertEquals(5_000, adaptive.next(10_000, 10_000, 1_000_000, 2000));
+    // twice the memory budget: the memory limit wins
+    assertEquals(5_000, adaptive.next(10_000, 10_000, 200_000_000, 100));
+    // shrinks at most 4x per batch
+    assertEquals(2_500, adaptive.next(10_000, 10_000, 4_000_000_000L, 100));
+    assertTrue(adaptive.next(200, 200, 400_000_000, 100) >= AdaptiveCommitSize.MIN_COMMIT_SIZE);
+    assertEquals(5_000, adaptive.afterFailure(10_000));
+  }
+
+  @Test
+  public void testLastPartialBatch() {
+    AdaptiveCommitSize adaptive = new AdaptiveCommitSize(1000, 100_000_000);
+    assertEquals(10_000, adaptive.next(10_000, 0, 0, 5));
+  }
+}
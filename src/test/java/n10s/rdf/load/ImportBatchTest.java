@@ -0,0 +1,60 @@
+package n10s.rdf.load;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.Test;
+
+public class ImportBatchTest {
+
+  @Test
+  public void testResourcesAndNamesAreInterned() {
+    ImportBatch batch = new ImportBatch();
+    for (int i = 0; i < 1000; i++) {
+      batch.addRelationship("http://ex.org/s" + i, "knows", "http://ex.org/s" + (i + 1));
+      batch.addLabel("http://ex.org/s" + i, "Person");
+      batch.addLabel("http://ex.org/s" + i, "Agent");
+    }
+    assertEquals(1001, batch.getResourceCount());
+    assertEquals(3, batch.getNameCount());
+    for (int resource = 0; resource < batch.getResourceCount(); resource++) {
+      assertEquals(batch.getResourceCount() - 1 != resource, batch.hasRelationships(resource));
+    }
+
+    Set<String> labels = new HashSet<>();
+    batch.forEachLabel(0, label -> labels.add(batch.getName(label)));
+    assertEquals(new HashSet<>(Arrays.asList("Person", "Agent")), labels);
+
+    List<String> ends = new ArrayList<>();
+    batch.forEachRelationship(0, (rel, type, end) -> {
+      assertEquals("knows", batch.getName(type));
+      ends.add(batch.getUri(end));
+    });
+    assertEquals(Arrays.asList("http://ex.org/s1"), ends);
+  }
+
+  @Test
+  public void testPropertiesKeepTheOrderTheyWereRead() {
+    ImportBatch batch = new ImportBatch();
+    batch.addProperty("http://ex.org/s", "name", "first", false);
+    batch.addProperty("http://ex.org/s", "name", "second", false);
+    batch.addProperty("http://ex.org/s", "alias", "a", true);
+    batch.addProperty("http://ex.org/s", "alias", "b", true);
+    Map<String, Object> props = batch.getResourceProps(0);
+    assertEquals("second", props.get("name"));
+    assertEquals(Arrays.asList("a", "b"), props.get("alias"));
+    assertFalse(batch.hasRelationships(0));
+
+    int rel = batch.addRelationship("http://ex.org/s", "knows", "http://ex.org/o");
+    batch.addRelationshipProperty(rel, "since", 2001L, false);
+    assertEquals(2001L, batch.getRelProps(rel).get("since"));
+    assertTrue(batch.getResourceProps(1).isEmpty());
+  }
+}
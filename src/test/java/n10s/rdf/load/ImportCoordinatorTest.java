@@ -0,0 +1,44 @@
+package n10s.rdf.load;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+
+public class ImportCoordinatorTest {
+
+  @Test
+  public void testBatchesCreateTheirNodesInTheSameOrder() {
+    List<String> uris = new ArrayList<>();
+    for (int i = 0; i < 5000; i++) {
+      uris.add("http://ex.org/r" + i);
+    }
+    // "Aa" and "BB" have the same hash code
+    uris.add("http://ex.org/Aa");
+    uris.add("http://ex.org/BB");
+
+    ImportBatch batch = new ImportBatch();
+    uris.forEach(batch::addResource);
+    Collections.shuffle(uris);
+    ImportBatch shuffled = new ImportBatch();
+    uris.forEach(shuffled::addResource);
+
+    String[] order = uriOrder(batch);
+    assertArrayEquals(order, uriOrder(shuffled));
+    assertEquals(uris.size(), Arrays.stream(order).distinct().count());
+    for (int i = 1; i < order.length; i++) {
+      assertTrue(ImportCoordinator.stripe(order[i - 1]) <= ImportCoordinator.stripe(order[i]));
+      assertTrue(ImportCoordinator.stripe(order[i]) < ImportCoordinator.URI_STRIPES);
+    }
+  }
+
+  private static String[] uriOrder(ImportBatch batch) {
+    return Arrays.stream(ImportCoordinator.creationOrder(batch)).mapToObj(batch::getUri)
+        .toArray(String[]::new);
+  }
+}
@@ -0,0 +1,33 @@
+package n10s.rdf.load;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import java.util.TreeSet;
+import org.junit.Test;
+
+public class LongSetTest {
+
+  @Test
+  public void testIdsAreAddedOnce() {
+    LongSet set = new LongSet();
+    TreeSet<Long> expected = new TreeSet<>();
+    Random random = new Random(42);
+    for (int i = 0; i < 100_000; i++) {
+      long id = random.nextInt(50_000);
+      assertEquals(expected.add(id), set.add(id));
+    }
+    assertTrue(set.add(0L));
+    assertFalse(set.add(0L));
+    expected.add(0L);
+    assertEquals(expected.size(), set.size());
+    assertArrayEquals(expected.stream().mapToLong(Long::longValue).toArray(),
+        set.toSortedArray());
+    set.clear();
+    assertTrue(set.isEmpty());
+    assertEquals(0, set.toSortedArray().length);
+  }
+}
@@ -0,0 +1,47 @@
+package n10s.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import org.junit.Test;
+
+public class DateUtilsTest {
+
+  @Test
+  public void testXsdDateTime() {
+    assertEquals(LocalDateTime.of(2010, 5, 29, 14, 17, 39),
+        DateUtils.parseXsdDateTime("2010-05-29T14:17:39"));
+    // the time as written, in its timezone, same as DatatypeConverter
+    assertEquals(LocalDateTime.of(2010, 5, 29, 14, 17, 39),
+        DateUtils.parseXsdDateTime("2010-05-29T14:17:39+02:00"));
+    assertEquals(LocalDateTime.of(2019, 1, 16, 17, 8, 9),
+        DateUtils.parseXsdDateTime("2019-01-16T17:08:09Z"));
+    assertEquals(LocalDateTime.of(2019, 1, 16, 17, 8, 9, 120_000_000),
+        DateUtils.parseXsdDateTime("2019-01-16T17:08:09.12-05:00"));
+    assertEquals(LocalDateTime.of(2020, 1, 1, 0, 0),
+        DateUtils.parseXsdDateTime("2019-12-31T24:00:00"));
+    assertEquals(DateUtils.parseDateTime("2010-05-29T14:17:39+02:00"),
+        DateUtils.parseXsdDateTime("2010-05-29T14:17:39+02:00"));
+
+    assertNull(DateUtils.parseXsdDateTime("2019-02-29T10:00:00"));
+    assertNull(DateUtils.parseXsdDateTime("2019-01-16T25:00:00"));
+    assertNull(DateUtils.parseXsdDateTime("2019-01-16T17:08:09+02"));
+    assertNull(DateUtils.parseXsdDateTime("2019-01-16"));
+    assertNull(DateUtils.parseXsdDateTime("not a date"));
+    assertNull(DateUtils.parseXsdDateTime(""));
+  }
+
+  @Test
+  public void testXsdDate() {
+    assertEquals(LocalDate.of(2006, 5, 23), DateUtils.parseXsdDate("2006-05-23"));
+    assertEquals(LocalDate.of(2006, 5, 23), DateUtils.parseXsdDate("2006-05-23Z"));
+    assertEquals(LocalDate.of(2006, 5, 23), DateUtils.parseXsdDate("2006-05-23-03:00"));
+    assertEquals(LocalDate.of(2016, 2, 29), DateUtils.parseXsdDate("2016-02-29"));
+
+    assertNull(DateUtils.parseXsdDate("2006-5-23"));
+    assertNull(DateUtils.parseXsdDate("2006-05-23T00:00:00"));
+    assertNull(DateUtils.parseXsdDate("06-05-23"));
+  }
+}
@@ -0,0 +1,83 @@
+package n10s.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+public class MappedFileInputStreamTest {
+
+  @Test
+  public void testReadsAcrossWindows() throws IOException {
+    byte[] content = new byte[10_000];
+    new Random(42).nextBytes(content);
+    Path file = Files.createTempFile("n10s", ".bin");
+    try {
+      Files.write(file, content);
+      try (MappedFileInputStream in = new MappedFileInputStream(file, 1024, null)) {
+        assertEquals(content.length, in.getSize());
+        assertEquals(content[0] & 0xff, in.read());
+        in.mark(0);
+        // reads stop at the end of the window
+        byte[] head = new byte[3000];
+        assertEquals(1023, in.read(head, 0, head.length));
+        in.reset();
+        assertEquals(9999, in.skip(20_000));
+        assertEquals(-1, in.read());
+        in.reset();
+        assertArrayEquals(content, concat(new byte[]{content[0]}, readAll(in)));
+        assertEquals(content.length, in.getBytesRead());
+      }
+
+      List<Long> progress = new ArrayList<>();
+      try (MappedFileInputStream in = new MappedFileInputStream(file, 1024,
+          (bytesRead, size) -> progress.add(bytesRead))) {
+        assertArrayEquals(content, readAll(in));
+      }
+      assertTrue(progress.size() >= MappedFileInputStream.PROGRESS_STEPS / 2);
+      for (int i = 1; i < progress.size(); i++) {
+        assertTrue(progress.get(i) > progress.get(i - 1));
+      }
+      assertEquals(Long.valueOf(content.length), progress.get(progress.size() - 1));
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  @Test
+  public void testEmptyFile() throws IOException {
+    Path file = Files.createTempFile("n10s", ".bin");
+    try (MappedFileInputStream in = new MappedFileInputStream(file, null)) {
+      assertEquals(-1, in.read());
+      assertEquals(-1, in.read(new byte[10], 0, 10));
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  private static byte[] readAll(InputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[700];
+    int read;
+    while ((read = in.read(buffer, 0, buffer.length)) >= 0) {
+      out.write(buffer, 0, read);
+    }
+    return out.toByteArray();
+  }
+
+  private static byte[] concat(byte[] a, byte[] b) {
+    byte[] all = new byte[a.length + b.length];
+    System.arraycopy(a, 0, all, 0, a.length);
+    System.arraycopy(b, 0, all, a.length, b.length);
+    return all;
+  }
+}
@@ -0,0 +1,54 @@
+package n10s.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.harness.junit.rule.Neo4jRule;
+
+public class NodeIdDictionaryTest {
+
+  private static final Label RESOURCE = Label.label("Resource");
+
+  @Rule
+  public Neo4jRule neo4j = new Neo4jRule();
+
+  @Test
+  public void testIdOfAnotherNodeIsNotReturned() {
+    GraphDatabaseService db = neo4j.defaultDatabaseService();
+    NodeIdDictionary<String> nodeIds = new NodeIdDictionary<>(100,
+        (uri, node) -> uri.equals(node.getProperty("uri", null)));
+    long aId;
+    long otherId;
+    try (Transaction tx = db.beginTx()) {
+      Node a = tx.createNode(RESOURCE);
+      a.setProperty("uri", "http://example.org/a");
+      aId = a.getId();
+      Node other = tx.createNode(RESOURCE);
+      other.setProperty("uri", "http://example.org/other");
+      otherId = other.getId();
+      nodeIds.put("http://example.org/a", a);
+      // as if a had been deleted and its id reused by another node
+      nodeIds.put("http://example.org/b", other);
+      tx.commit();
+    }
+    try (Transaction tx = db.beginTx()) {
+      assertEquals(aId, nodeIds.get(tx, "http://example.org/a",
+          uri -> tx.findNode(RESOURCE, "uri", uri)).getId());
+      Node b = nodeIds.get(tx, "http://example.org/b", uri -> {
+        Node created = tx.createNode(RESOURCE);
+        created.setProperty("uri", uri);
+        return created;
+      });
+      assertNotEquals(otherId, b.getId());
+      assertEquals("http://example.org/b", b.getProperty("uri"));
+      assertEquals(b.getId(), nodeIds.get(tx, "http://example.org/b", uri -> null).getId());
+      tx.commit();
+    }
+  }
+}